@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.inspections;
+
+import org.eclipse.mat.internal.Messages;
+import org.eclipse.mat.query.IQuery;
+import org.eclipse.mat.query.IQueryContext;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.annotations.Argument;
+import org.eclipse.mat.query.annotations.Category;
+import org.eclipse.mat.query.annotations.CommandName;
+import org.eclipse.mat.query.registry.QueryResultCache;
+import org.eclipse.mat.query.results.TextResult;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Deletes the results of queries stored for the snapshot.
+ * 
+ * @see QueryResultCache
+ */
+@CommandName("clear_result_cache")
+@Category(Category.HIDDEN)
+public class ClearResultCacheQuery implements IQuery
+{
+    @Argument
+    public IQueryContext queryContext;
+
+    public IResult execute(IProgressListener listener) throws Exception
+    {
+        if (QueryResultCache.clear(queryContext))
+            return new TextResult(Messages.ClearResultCacheQuery_Msg_Cleared);
+        else
+            return new TextResult(Messages.ClearResultCacheQuery_Msg_NoResults);
+    }
+}
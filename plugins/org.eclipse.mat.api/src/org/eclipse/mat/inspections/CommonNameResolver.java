@@ -15,6 +15,7 @@ import java.lang.reflect.Modifier;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
 import org.eclipse.mat.snapshot.extension.IClassSpecificNameResolver;
 import org.eclipse.mat.snapshot.extension.Subject;
 import org.eclipse.mat.snapshot.extension.Subjects;
@@ -32,6 +33,13 @@ public class CommonNameResolver
     {
         public String resolve(IObject obj) throws SnapshotException
         {
+            IStringIndex index = obj.getSnapshot().getSnapshotAddons(IStringIndex.class);
+            if (index != null && index.isAvailable())
+            {
+                int valueId = index.getValueId(obj.getObjectId());
+                if (valueId >= 0)
+                    return index.getValue(valueId);
+            }
             return PrettyPrinter.objectAsString(obj, 1024);
         }
     }
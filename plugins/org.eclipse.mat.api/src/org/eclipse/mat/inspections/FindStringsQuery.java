@@ -20,6 +20,7 @@ import org.eclipse.mat.query.IResult;
 import org.eclipse.mat.query.annotations.Argument;
 import org.eclipse.mat.query.annotations.CommandName;
 import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
 import org.eclipse.mat.snapshot.model.IClass;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.query.IHeapObjectArgument;
@@ -44,9 +45,16 @@ public class FindStringsQuery implements IQuery
 
         ArrayInt result = new ArrayInt();
 
+        IStringIndex index = snapshot.getSnapshotAddons(IStringIndex.class);
         Collection<IClass> classes = snapshot.getClassesByName("java.lang.String", false); //$NON-NLS-1$
         if (objects == null)
         {
+            if (index != null)
+            {
+                // all strings are read anyway, so build the index if needed
+                return new ObjectListResult.Outbound(snapshot, index.getObjectIds(pattern, listener));
+            }
+
             if (classes != null)
                 ClassesLoop: for (IClass clasz : classes)
                 {
@@ -63,6 +71,32 @@ public class FindStringsQuery implements IQuery
                     }
                 }
         }
+        else if (index != null && index.isAvailable())
+        {
+            // matches by value id: 0 not yet matched, 1 matches, 2 does not
+            byte[] matches = new byte[index.getNumberOfValues()];
+
+            ObjectsLoop: for (int[] objectIds : objects)
+            {
+                for (int id : objectIds)
+                {
+                    if (listener.isCanceled())
+                        break ObjectsLoop;
+
+                    int valueId = index.getValueId(id);
+                    if (valueId < 0)
+                        continue;
+
+                    if (matches[valueId] == 0)
+                    {
+                        String value = index.getValue(valueId);
+                        matches[valueId] = (byte) (value != null && pattern.matcher(value).matches() ? 1 : 2);
+                    }
+                    if (matches[valueId] == 1)
+                        result.add(id);
+                }
+            }
+        }
         else
         {
             if (classes != null && !classes.isEmpty())
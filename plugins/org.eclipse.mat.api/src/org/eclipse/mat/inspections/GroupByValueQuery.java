@@ -19,6 +19,7 @@ import org.eclipse.mat.query.annotations.CommandName;
 import org.eclipse.mat.query.annotations.HelpUrl;
 import org.eclipse.mat.query.quantize.Quantize;
 import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.query.IHeapObjectArgument;
 import org.eclipse.mat.snapshot.query.RetainedSizeDerivedData;
@@ -48,6 +49,9 @@ public class GroupByValueQuery implements IQuery
                         .addDerivedData(RetainedSizeDerivedData.APPROXIMATE) //
                         .build();
 
+        IStringIndex index = field == null ? snapshot.getSnapshotAddons(IStringIndex.class) : null;
+        boolean first = true;
+
         boolean canceled = false;
         for (int[] objectIds : objects)
         {
@@ -60,6 +64,24 @@ public class GroupByValueQuery implements IQuery
                 }
 
                 int objectId = objectIds[ii];
+
+                if (index != null)
+                {
+                    // grouping strings by value, usually to find duplicates
+                    if (first && !index.isAvailable()
+                                    && "java.lang.String".equals(snapshot.getClassOf(objectId).getName())) //$NON-NLS-1$
+                        index.build(listener);
+                    first = false;
+
+                    int valueId = index.isAvailable() ? index.getValueId(objectId) : -1;
+                    if (valueId >= 0)
+                    {
+                        quantize.addValue(objectId, index.getValue(valueId), null, snapshot.getHeapSize(objectId),
+                                        snapshot.getRetainedHeapSize(objectId));
+                        continue;
+                    }
+                }
+
                 IObject object = snapshot.getObject(objectId);
 
                 Object subject = object;
@@ -14,6 +14,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.ArrayInt;
@@ -32,6 +39,7 @@ import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.query.SnapshotQuery;
 import org.eclipse.mat.util.IProgressListener;
 import org.eclipse.mat.util.MessageUtil;
+import org.eclipse.mat.util.SilentProgressListener;
 
 @CommandName("component_report_top")
 public class TopComponentsReportQuery implements IQuery
@@ -56,18 +64,21 @@ public class TopComponentsReportQuery implements IQuery
         long totalHeapSize = snapshot.getSnapshotInfo().getUsedHeapSize();
         long threshold = totalHeapSize / 100 * thresholdPercent;
 
+        List<Record> selected = new ArrayList<Record>();
         for (Record record : loaders)
         {
             if (record.retainedSize < threshold)
                 break;
+            selected.add(record);
+        }
 
-            SnapshotQuery query = SnapshotQuery.lookup("component_report", snapshot) //$NON-NLS-1$
-                            .setArgument("objects", record.objects); //$NON-NLS-1$
-            query.setArgument("aggressive", aggressive); //$NON-NLS-1$
-            IResult report = query.execute(listener);
+        List<IResult> reports = createReports(selected, listener);
 
+        for (int ii = 0; ii < selected.size(); ii++)
+        {
+            Record record = selected.get(ii);
             QuerySpec spec = new QuerySpec(MessageUtil.format("{0} ({1,number,percent})", //$NON-NLS-1$
-                            record.name, (double) record.retainedSize / (double) totalHeapSize), report);
+                            record.name, (double) record.retainedSize / (double) totalHeapSize), reports.get(ii));
             spec.set(Params.Html.SEPARATE_FILE, Boolean.TRUE.toString());
             result.add(spec);
         }
@@ -75,6 +86,97 @@ public class TopComponentsReportQuery implements IQuery
         return result;
     }
 
+    /**
+     * Run the component reports concurrently on a pool of at most one thread
+     * per processor. The reports only read the snapshot. Their progress is not
+     * reported, but cancellation reaches all of them.
+     * 
+     * @return the reports in the order of the records
+     */
+    private List<IResult> createReports(List<Record> records, IProgressListener listener) throws Exception
+    {
+        List<SnapshotQuery> queries = new ArrayList<SnapshotQuery>(records.size());
+        for (Record record : records)
+        {
+            SnapshotQuery query = SnapshotQuery.lookup("component_report", snapshot) //$NON-NLS-1$
+                            .setArgument("objects", record.objects); //$NON-NLS-1$
+            query.setArgument("aggressive", aggressive); //$NON-NLS-1$
+            queries.add(query);
+        }
+
+        List<IResult> reports = new ArrayList<IResult>(queries.size());
+        int threads = Math.min(queries.size(), Runtime.getRuntime().availableProcessors());
+        if (threads < 2)
+        {
+            for (SnapshotQuery query : queries)
+                reports.add(query.execute(listener));
+            return reports;
+        }
+
+        final IProgressListener silent = new SilentProgressListener(listener)
+        {
+            @Override
+            public void beginTask(String name, int totalWork)
+            {}
+
+            @Override
+            public void subTask(String name)
+            {}
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<IResult>> futures = new ArrayList<Future<IResult>>(queries.size());
+            for (final SnapshotQuery query : queries)
+            {
+                futures.add(executor.submit(new Callable<IResult>()
+                {
+                    public IResult call() throws Exception
+                    {
+                        return query.execute(silent);
+                    }
+                }));
+            }
+
+            for (Future<IResult> future : futures)
+                reports.add(get(future, listener));
+
+            return reports;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private IResult get(Future<IResult> future, IProgressListener listener) throws Exception
+    {
+        while (true)
+        {
+            try
+            {
+                return future.get(100, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                if (listener.isCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IProgressListener.OperationCanceledException();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw (Exception) cause;
+            }
+        }
+    }
+
     private List<Record> createClassLoaderRecords(IProgressListener listener, int[] topDominators)
                     throws SnapshotException
     {
@@ -70,6 +70,9 @@ public class Messages extends NLS
     public static String ClassSpecificNameResolverRegistry_ErrorMsg_MissingSubject;
     public static String ClassSpecificNameResolverRegistry_ErrorMsg_WhileCreatingResolver;
 
+    public static String ClearResultCacheQuery_Msg_Cleared;
+    public static String ClearResultCacheQuery_Msg_NoResults;
+
     public static String CollectionFillRatioQuery_ClassNotFound;
     public static String CollectionFillRatioQuery_Column_FillRatio;
     public static String CollectionFillRatioQuery_ColumnNumObjects;
@@ -454,6 +457,9 @@ public class Messages extends NLS
     public static String OQLQuery_NoResult;
     public static String OQLQuery_ProblemReported;
 
+    public static String ParseSnapshotApp_Batch_Analyzing;
+    public static String ParseSnapshotApp_Batch_Failed;
+    public static String ParseSnapshotApp_Batch_Finished;
     public static String ParseSnapshotApp_ErrorMsg_FileNotFound;
 
     public static String ParseSnapshotApp_ErrorMsg_ReportNotFound;
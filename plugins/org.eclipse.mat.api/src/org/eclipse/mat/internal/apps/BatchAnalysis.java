@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.internal.apps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.mat.internal.MATPlugin;
+import org.eclipse.mat.internal.Messages;
+import org.eclipse.mat.report.Spec;
+import org.eclipse.mat.snapshot.MultipleSnapshotsException;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.snapshot.SnapshotFormat;
+import org.eclipse.mat.util.MessageUtil;
+
+/**
+ * Analyzes many dumps in one run of {@link ParseSnapshotApp}, so the
+ * registries of parsers, queries and reports are read once. Each dump is
+ * parsed and the reports are written as for a single dump.
+ * <p>
+ * Options:
+ * <dl>
+ * <dt>-batch_list=&lt;file&gt;</dt>
+ * <dd>a file with the names of the dumps, one per line; lines starting with #
+ * are ignored</dd>
+ * <dt>-batch_spool=&lt;directory&gt;</dt>
+ * <dd>a directory which is watched until the application is stopped; a dump
+ * is analyzed once its size has not changed between two looks. An analyzed
+ * dump gets a marker file, the name of the dump followed by <code>.done</code>,
+ * so it is not analyzed again after a restart unless it has been replaced.</dd>
+ * <dt>-batch_poll=&lt;seconds&gt;</dt>
+ * <dd>how often the spool directory is looked at, default 10</dd>
+ * <dt>-batch_threads=&lt;number&gt;</dt>
+ * <dd>the most dumps analyzed at the same time, default the number of
+ * processors</dd>
+ * <dt>-batch_memory=&lt;megabytes&gt;</dt>
+ * <dd>the memory shared by the dumps analyzed at the same time, default three
+ * quarters of the maximum heap. A dump needing more than the budget is
+ * analyzed alone. Dumps get the memory in the order they were taken, so a
+ * large dump is not passed by smaller ones.</dd>
+ * <dt>-batch_memory_factor=&lt;number&gt;</dt>
+ * <dd>the memory needed to analyze a dump as a multiple of the size of the dump
+ * file, default 1. Parsing mostly needs memory for the identifiers and
+ * references of the objects, so dumps of many small objects need more than
+ * their size, and dumps with large primitive arrays less.</dd>
+ * </dl>
+ * All other options are passed to the parser. A dump which is replaced while
+ * it is analyzed is taken again once the analysis is finished.
+ */
+/* package */class BatchAnalysis
+{
+    private static final String LIST = "batch_list"; //$NON-NLS-1$
+    private static final String SPOOL = "batch_spool"; //$NON-NLS-1$
+    private static final String POLL = "batch_poll"; //$NON-NLS-1$
+    private static final String THREADS = "batch_threads"; //$NON-NLS-1$
+    private static final String MEMORY = "batch_memory"; //$NON-NLS-1$
+    private static final String MEMORY_FACTOR = "batch_memory_factor"; //$NON-NLS-1$
+    private static final String PREFIX = "batch_"; //$NON-NLS-1$
+    private static final String DONE = ".done"; //$NON-NLS-1$
+
+    /**
+     * Memory shared by the dumps being analyzed. It is handed out first come,
+     * first served.
+     */
+    /* package */static final class MemoryBudget
+    {
+        private final long budget;
+        private long available;
+        /** the requests waiting for memory, in order */
+        private final LinkedList<Object> waiting = new LinkedList<Object>();
+
+        MemoryBudget(long budget)
+        {
+            this.budget = budget;
+            this.available = budget;
+        }
+
+        /**
+         * Wait until the memory is available and all earlier requests have
+         * been served.
+         *
+         * @return the amount taken, to be released
+         */
+        synchronized long acquire(long amount) throws InterruptedException
+        {
+            amount = Math.max(0, Math.min(amount, budget));
+            Object request = new Object();
+            waiting.add(request);
+            try
+            {
+                while (waiting.getFirst() != request || available < amount)
+                    wait();
+            }
+            finally
+            {
+                waiting.remove(request);
+                notifyAll();
+            }
+            available -= amount;
+            return amount;
+        }
+
+        synchronized void release(long amount)
+        {
+            available += amount;
+            notifyAll();
+        }
+    }
+
+    private final ParseSnapshotApp app;
+    private final Map<String, String> options;
+    private final List<String> reports;
+    private final Map<String, String> parserOptions = new HashMap<String, String>();
+    private final MemoryBudget memory;
+    private final double memoryFactor;
+    private final ExecutorService executor;
+
+    /** the dumps taken, with their modification time */
+    private final Map<File, Long> submitted = new HashMap<File, Long>();
+    /** the dumps taken and not yet analyzed */
+    private final Set<File> running = new HashSet<File>();
+    /** the size of the dumps in the spool directory when last looked at */
+    private final Map<File, Long> sizes = new HashMap<File, Long>();
+    private boolean stopped;
+
+    /* package */static boolean isBatch(Map<String, String> options)
+    {
+        return options.containsKey(LIST) || options.containsKey(SPOOL);
+    }
+
+    /* package */BatchAnalysis(ParseSnapshotApp app, Map<String, String> options, List<String> reports)
+    {
+        this.app = app;
+        this.options = options;
+        this.reports = reports;
+
+        for (Map.Entry<String, String> entry : options.entrySet())
+        {
+            if (!entry.getKey().startsWith(PREFIX))
+                parserOptions.put(entry.getKey(), entry.getValue());
+        }
+
+        long budget = Runtime.getRuntime().maxMemory() / 4 * 3;
+        if (options.containsKey(MEMORY))
+            budget = Long.parseLong(options.get(MEMORY)) * 1024 * 1024;
+        memory = new MemoryBudget(budget);
+
+        memoryFactor = options.containsKey(MEMORY_FACTOR) ? Double.parseDouble(options.get(MEMORY_FACTOR)) : 1;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (options.containsKey(THREADS))
+            threads = Integer.parseInt(options.get(THREADS));
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+        {
+            int number;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                return new Thread(r, "MAT batch analysis " + (++number)); //$NON-NLS-1$
+            }
+        });
+    }
+
+    /**
+     * Analyze the dumps of the list, then those in the spool directory until
+     * stopped, and wait for the analyses to finish.
+     */
+    /* package */void run() throws IOException, InterruptedException
+    {
+        try
+        {
+            String list = options.get(LIST);
+            if (list != null)
+            {
+                for (File file : readList(new File(list)))
+                    submit(file, false);
+            }
+
+            String spool = options.get(SPOOL);
+            if (spool != null)
+            {
+                File directory = new File(spool);
+                if (!directory.isDirectory())
+                    throw new FileNotFoundException(MessageUtil.format(
+                                    Messages.ParseSnapshotApp_ErrorMsg_FileNotFound, directory.getAbsolutePath()));
+
+                long poll = 10;
+                if (options.containsKey(POLL))
+                    poll = Long.parseLong(options.get(POLL));
+                watch(directory, Math.max(1, poll) * 1000);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                // still analyzing
+            }
+        }
+    }
+
+    /**
+     * Stop watching the spool directory. Dumps already taken are still
+     * analyzed.
+     */
+    /* package */synchronized void stop()
+    {
+        stopped = true;
+        notifyAll();
+    }
+
+    private List<File> readList(File list) throws IOException
+    {
+        List<File> files = new ArrayList<File>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(list), "UTF-8")); //$NON-NLS-1$
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.charAt(0) == '#')
+                    continue;
+
+                File file = new File(line);
+                if (file.exists())
+                    files.add(file);
+                else
+                    System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_ErrorMsg_FileNotFound, file
+                                    .getAbsolutePath()));
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return files;
+    }
+
+    private void watch(File directory, long poll) throws InterruptedException
+    {
+        Set<String> extensions = new HashSet<String>();
+        for (SnapshotFormat format : SnapshotFactory.getSupportedFormats())
+        {
+            for (String extension : format.getFileExtensions())
+                extensions.add(extension.toLowerCase(Locale.ENGLISH));
+        }
+
+        while (true)
+        {
+            File[] files = directory.listFiles();
+            if (files != null)
+            {
+                Set<File> present = new HashSet<File>();
+                Arrays.sort(files);
+                for (File file : files)
+                {
+                    String name = file.getName();
+                    int p = name.lastIndexOf('.');
+                    if (!file.isFile() || p < 0
+                                    || !extensions.contains(name.substring(p + 1).toLowerCase(Locale.ENGLISH)))
+                        continue;
+
+                    file = file.getAbsoluteFile();
+                    present.add(file);
+                    if (isDone(file))
+                        continue;
+
+                    // a dump still being written is taken on a later look
+                    Long size = sizes.put(file, file.length());
+                    if (size != null && size.longValue() == file.length())
+                        submit(file, true);
+                }
+
+                // forget the dumps which have been removed
+                sizes.keySet().retainAll(present);
+                submitted.keySet().retainAll(present);
+            }
+
+            synchronized (this)
+            {
+                if (!stopped)
+                    wait(poll);
+                if (stopped)
+                    return;
+            }
+        }
+    }
+
+    private void submit(File file, final boolean spooled)
+    {
+        final File dump = file.getAbsoluteFile();
+        final long lastModified = dump.lastModified();
+
+        // a dump is analyzed again only if it has been replaced, and not
+        // while it is still analyzed: the watcher takes it on a later look
+        Long previous = submitted.get(dump);
+        if (previous != null && previous.longValue() == lastModified)
+            return;
+        synchronized (this)
+        {
+            if (!running.add(dump))
+                return;
+        }
+        submitted.put(dump, lastModified);
+
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                analyze(dump, lastModified, spooled);
+            }
+        });
+    }
+
+    private void analyze(File dump, long lastModified, boolean spooled)
+    {
+        long reserved;
+        try
+        {
+            reserved = memory.acquire((long) (dump.length() * memoryFactor));
+        }
+        catch (InterruptedException e)
+        {
+            finished(dump);
+            return;
+        }
+
+        try
+        {
+            System.out.println(MessageUtil.format(Messages.ParseSnapshotApp_Batch_Analyzing, dump.getPath()));
+
+            // the specs are changed while a report runs
+            List<Spec> specs = new ArrayList<Spec>();
+            for (String report : reports)
+            {
+                Spec spec = app.createReport(report);
+                if (spec != null)
+                    specs.add(spec);
+            }
+
+            app.parse(dump, new HashMap<String, String>(parserOptions), specs);
+
+            System.out.println(MessageUtil.format(Messages.ParseSnapshotApp_Batch_Finished, dump.getPath()));
+        }
+        catch (MultipleSnapshotsException e)
+        {
+            System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_Batch_Failed, dump.getPath()));
+            app.printRuntimes(e);
+        }
+        catch (Exception e)
+        {
+            System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_Batch_Failed, dump.getPath()));
+            MATPlugin.log(e);
+        }
+        finally
+        {
+            memory.release(reserved);
+        }
+
+        // a dump which failed would fail again, so it is marked as well
+        if (spooled)
+            markDone(dump, lastModified);
+        finished(dump);
+    }
+
+    /**
+     * The marker of an analyzed dump has the modification time of the dump as
+     * it was analyzed, so a dump replaced since then is analyzed again.
+     */
+    private static boolean isDone(File dump)
+    {
+        return new File(dump.getPath() + DONE).lastModified() == dump.lastModified();
+    }
+
+    private static void markDone(File dump, long lastModified)
+    {
+        File marker = new File(dump.getPath() + DONE);
+        try
+        {
+            new FileOutputStream(marker).close();
+            marker.setLastModified(lastModified);
+        }
+        catch (IOException e)
+        {
+            MATPlugin.log(e);
+        }
+    }
+
+    private synchronized void finished(File dump)
+    {
+        running.remove(dump);
+    }
+}
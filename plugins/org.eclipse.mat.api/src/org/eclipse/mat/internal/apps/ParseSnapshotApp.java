@@ -40,9 +40,14 @@ import org.eclipse.mat.util.MessageUtil;
 
 /**
  * Opens and parses a dump into a snapshot and runs reports on the snapshot.
+ * <p>
+ * With the option <code>-batch_list=&lt;file&gt;</code> or
+ * <code>-batch_spool=&lt;directory&gt;</code> the application instead
+ * analyzes many dumps in one run, see {@link BatchAnalysis}.
  */
 public class ParseSnapshotApp implements IApplication
 {
+    private BatchAnalysis batch;
 
     public Object start(IApplicationContext context) throws Exception
     {
@@ -51,11 +56,8 @@ public class ParseSnapshotApp implements IApplication
         if (args == null || args.length < 1)
             throw new IllegalArgumentException(Messages.ParseSnapshotApp_Usage);
 
-        SpecFactory factory = SpecFactory.instance();
-
-        File file = null;
         Map<String, String> options = new HashMap<String, String>();
-        List<Spec> reports = new ArrayList<Spec>();
+        List<String> names = new ArrayList<String>();
 
         for (int ii = 0; ii < args.length; ii++)
         {
@@ -67,38 +69,44 @@ public class ParseSnapshotApp implements IApplication
                 else
                     options.put(args[ii].substring(1, p), args[ii].substring(p + 1));
             }
-            else if (file == null)
-            {
-                file = new File(args[ii]);
-                if (!file.exists())
-                    throw new FileNotFoundException(MessageUtil.format(Messages.ParseSnapshotApp_ErrorMsg_FileNotFound,
-                                    file.getAbsolutePath()));
-            }
             else
             {
-                Spec spec = null;
+                names.add(args[ii]);
+            }
+        }
 
-                File specFile = new File(args[ii]);
-                if (specFile.exists())
-                {
-                    spec = factory.create(specFile);
-                }
-                else
-                {
-                    spec = factory.create(args[ii]);
-                }
+        if (BatchAnalysis.isBatch(options))
+        {
+            // all arguments name reports
+            List<String> reports = new ArrayList<String>();
+            for (String name : names)
+            {
+                if (createReport(name) != null)
+                    reports.add(name);
+            }
 
-                if (spec != null)
-                {
-                    factory.resolve(spec);
-                    reports.add(spec);
-                }
-                else
-                {
-                    System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_ErrorMsg_ReportNotFound, args[ii]));
-                }
+            synchronized (this)
+            {
+                batch = new BatchAnalysis(this, options, reports);
             }
+            batch.run();
+            return IApplication.EXIT_OK;
+        }
+
+        if (names.isEmpty())
+            throw new IllegalArgumentException(Messages.ParseSnapshotApp_Usage);
 
+        File file = new File(names.get(0));
+        if (!file.exists())
+            throw new FileNotFoundException(MessageUtil.format(Messages.ParseSnapshotApp_ErrorMsg_FileNotFound, file
+                            .getAbsolutePath()));
+
+        List<Spec> reports = new ArrayList<Spec>();
+        for (String name : names.subList(1, names.size()))
+        {
+            Spec spec = createReport(name);
+            if (spec != null)
+                reports.add(spec);
         }
 
         try
@@ -107,25 +115,69 @@ public class ParseSnapshotApp implements IApplication
         }
         catch (MultipleSnapshotsException mre)
         {
-            System.err.println(Messages.ParseSnapshotApp_MultipleSnapshotsDetected);
-            List<MultipleSnapshotsException.Context> runtimes = mre.getRuntimes();
-
-            Iterator<MultipleSnapshotsException.Context> it = runtimes.listIterator();
-            while (it.hasNext())
-            {
-                Context runtime = it.next();
-                System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_MultipleSnapshotsDetail,
-                                runtime.getRuntimeId(), runtime.getVersion()));
-            }
+            printRuntimes(mre);
         }
 
         return IApplication.EXIT_OK;
     }
 
-    public void stop()
-    {}
+    public synchronized void stop()
+    {
+        if (batch != null)
+            batch.stop();
+    }
+
+    /**
+     * Synchronized, as the batch analysis creates reports from several
+     * threads.
+     * 
+     * @param name
+     *            the file name or the extension identifier of a report
+     * @return a new, resolved report or null if there is none
+     */
+    /* package */synchronized Spec createReport(String name) throws IOException
+    {
+        SpecFactory factory = SpecFactory.instance();
+
+        Spec spec = null;
+
+        File specFile = new File(name);
+        if (specFile.exists())
+        {
+            spec = factory.create(specFile);
+        }
+        else
+        {
+            spec = factory.create(name);
+        }
+
+        if (spec != null)
+        {
+            factory.resolve(spec);
+        }
+        else
+        {
+            System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_ErrorMsg_ReportNotFound, name));
+        }
+
+        return spec;
+    }
+
+    /* package */void printRuntimes(MultipleSnapshotsException mre)
+    {
+        System.err.println(Messages.ParseSnapshotApp_MultipleSnapshotsDetected);
+        List<MultipleSnapshotsException.Context> runtimes = mre.getRuntimes();
+
+        Iterator<MultipleSnapshotsException.Context> it = runtimes.listIterator();
+        while (it.hasNext())
+        {
+            Context runtime = it.next();
+            System.err.println(MessageUtil.format(Messages.ParseSnapshotApp_MultipleSnapshotsDetail, runtime
+                            .getRuntimeId(), runtime.getVersion()));
+        }
+    }
 
-    private void parse(File file, Map<String, String> arguments, List<Spec> reports) throws SnapshotException
+    /* package */void parse(File file, Map<String, String> arguments, List<Spec> reports) throws SnapshotException
     {
         ConsoleProgressListener listener = new ConsoleProgressListener(System.out);
         ISnapshot snapshot;
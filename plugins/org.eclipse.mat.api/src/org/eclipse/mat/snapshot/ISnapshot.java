@@ -505,6 +505,56 @@ public interface ISnapshot
      */
     public IObject getObject(int objectId) throws SnapshotException;
 
+    /**
+     * Get the value of a primitive instance field for many objects, without
+     * creating the objects.
+     * <p>
+     * The values are read straight from the dump where the parser supports
+     * it, which is much cheaper than {@link #getObject(int)} followed by
+     * {@link IObject#resolveValue(String)} when scanning many objects.
+     * <p>
+     * Performance: Relatively fast - single index operation and one read of
+     * the dump per object.
+     * 
+     * @param objectIds
+     *            ids of instances, each of a class which declares or inherits
+     *            a field of this name
+     * @param fieldName
+     *            name of a primitive field; a field of a subclass hides a
+     *            field of the same name of a superclass
+     * @return the value for each object: 0 or 1 for a boolean, the raw bits
+     *         of a float or a double (see {@link Float#intBitsToFloat(int)}
+     *         and {@link Double#longBitsToDouble(long)}), else the value
+     *         itself
+     * @throws SnapshotException
+     *             if an object is not an instance with a primitive field of
+     *             this name
+     * @since 1.7
+     */
+    public long[] getPrimitiveFieldValues(int[] objectIds, String fieldName) throws SnapshotException;
+
+    /**
+     * Get the object referenced by an instance field for many objects,
+     * without creating the objects.
+     * <p>
+     * Performance: Relatively fast - single index operation and one read of
+     * the dump per object.
+     * 
+     * @param objectIds
+     *            ids of instances, each of a class which declares or inherits
+     *            a field of this name
+     * @param fieldName
+     *            name of a reference field; a field of a subclass hides a
+     *            field of the same name of a superclass
+     * @return the id of the referenced object for each object, -1 for null
+     *         or for an object which is not in the snapshot
+     * @throws SnapshotException
+     *             if an object is not an instance with a reference field of
+     *             this name
+     * @since 1.7
+     */
+    public int[] getReferenceFieldIds(int[] objectIds, String fieldName) throws SnapshotException;
+
     /**
      * Get the GC root info for an object. If the provided object is not a GC
      * root, then null will be returned; otherwise, a GCRootInfo[]. An object
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.snapshot;
+
+import java.util.regex.Pattern;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Index of the values of all <code>java.lang.String</code> objects of a
+ * snapshot, as returned by
+ * {@link org.eclipse.mat.snapshot.model.IObject#getClassSpecificName()}. Each
+ * string refers to an entry of a dictionary of the distinct values, so
+ * searching and grouping strings by value looks at each distinct value once
+ * and does not read the character arrays from the dump.
+ * <p>
+ * Get the index with <code>snapshot.getSnapshotAddons(IStringIndex.class)</code>,
+ * which returns null if the index is switched off. The index is built by
+ * reading all strings when first needed and is then stored with the other
+ * indexes of the snapshot.
+ *
+ * @noimplement
+ * @since 1.7
+ */
+public interface IStringIndex
+{
+    /**
+     * @return true if the index has been built or read and can be used
+     *         without reading the strings
+     */
+    public boolean isAvailable();
+
+    /**
+     * Read the index from its file, or build it by reading all strings, if
+     * this has not happened yet. The other methods do this on demand without
+     * progress reporting.
+     *
+     * @param listener
+     *            to report progress and to cancel
+     * @throws SnapshotException
+     */
+    public void build(IProgressListener listener) throws SnapshotException;
+
+    /**
+     * @return the number of indexed strings
+     */
+    public int size() throws SnapshotException;
+
+    /**
+     * @param objectId
+     *            the object id of any object
+     * @return the id of the value of the string, or -1 if the object is not a
+     *         string
+     * @throws SnapshotException
+     */
+    public int getValueId(int objectId) throws SnapshotException;
+
+    /**
+     * @return the number of distinct values, which have the ids 0 up to this
+     *         number
+     */
+    public int getNumberOfValues() throws SnapshotException;
+
+    /**
+     * @param valueId
+     *            the id of a value
+     * @return the value, which is null if a string has no contents in the dump
+     */
+    public String getValue(int valueId) throws SnapshotException;
+
+    /**
+     * @param valueId
+     *            the id of a value
+     * @return the number of strings with this value
+     */
+    public int getCount(int valueId) throws SnapshotException;
+
+    /**
+     * Find the strings whose value matches a regular expression.
+     *
+     * @param pattern
+     *            the regular expression, matched against the entire value
+     * @param listener
+     *            to report progress and to cancel
+     * @return the object ids of the matching strings, in ascending order
+     * @throws SnapshotException
+     */
+    public int[] getObjectIds(Pattern pattern, IProgressListener listener) throws SnapshotException;
+}
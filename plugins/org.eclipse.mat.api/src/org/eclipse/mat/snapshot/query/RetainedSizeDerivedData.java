@@ -25,6 +25,7 @@ import org.eclipse.mat.query.Bytes;
 import org.eclipse.mat.query.BytesFormat;
 import org.eclipse.mat.query.Column;
 import org.eclipse.mat.query.ContextDerivedData;
+import org.eclipse.mat.query.ContextDerivedData.ConcurrentDerivedCalculator;
 import org.eclipse.mat.query.ContextProvider;
 import org.eclipse.mat.query.IContextObject;
 import org.eclipse.mat.query.IContextObjectSet;
@@ -44,6 +45,14 @@ import org.eclipse.mat.util.VoidProgressListener;
  */
 public class RetainedSizeDerivedData extends ContextDerivedData
 {
+    /**
+     * System property for the most rows of retained sizes calculated at the
+     * same time, e.g. -Dorg.eclipse.mat.retainedSizeThreads=2. The default is
+     * the number of processors.
+     * @since 1.7
+     */
+    public static final String RETAINED_SIZE_THREADS_PROPERTY = "org.eclipse.mat.retainedSizeThreads"; //$NON-NLS-1$
+
     /** Indicates approximate retained size. Sum of retained sizes of each object. */
     public static final DerivedOperation APPROXIMATE = new DerivedOperation("APPROXIMATE", //$NON-NLS-1$
                     Messages.RetainedSizeDerivedData_Label_Approximate);
@@ -126,7 +135,7 @@ public class RetainedSizeDerivedData extends ContextDerivedData
         return column;
     }
 
-    private static class DerivedCalculatorImpl implements DerivedCalculator
+    private static class DerivedCalculatorImpl implements ConcurrentDerivedCalculator
     {
         protected final ISnapshot snapshot;
         protected final ContextProvider provider;
@@ -143,7 +152,10 @@ public class RetainedSizeDerivedData extends ContextDerivedData
         {
             try
             {
-                return values.get(row);
+                synchronized (values)
+                {
+                    return values.get(row);
+                }
             }
             catch (NoSuchElementException e)
             {
@@ -152,6 +164,31 @@ public class RetainedSizeDerivedData extends ContextDerivedData
             }
         }
 
+        /**
+         * Rows are calculated by one thread per processor, at most
+         * {@link #RETAINED_SIZE_THREADS_PROPERTY}. The precise retained set
+         * of several objects can mark all objects of the snapshot in a
+         * boolean[], and collect up to all objects first in pages of ints and
+         * then in an int[], so each thread can need 9 bytes per object. Fewer
+         * threads are used if there is not enough free memory for that. The
+         * free memory is only a snapshot of the heap, which other queries
+         * and caches use at the same time, so only half of it is counted and
+         * the property is the limit to set when that is still too much.
+         */
+        public int getConcurrency(DerivedOperation operation, int rows)
+        {
+            Runtime runtime = Runtime.getRuntime();
+            int threads = Integer.getInteger(RETAINED_SIZE_THREADS_PROPERTY, runtime.availableProcessors());
+            threads = Math.max(1, Math.min(threads, runtime.availableProcessors()));
+            if (operation == PRECISE)
+            {
+                long free = (runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory()) / 2;
+                long perThread = 9L * snapshot.getSnapshotInfo().getNumberOfObjects();
+                threads = (int) Math.min(threads, Math.max(1, free / Math.max(1, perThread)));
+            }
+            return threads;
+        }
+
         public void calculate(DerivedOperation operation, Object row, IProgressListener listener)
                         throws SnapshotException
         {
@@ -163,7 +200,11 @@ public class RetainedSizeDerivedData extends ContextDerivedData
 
             try
             {
-                long v = values.get(row);
+                long v;
+                synchronized (values)
+                {
+                    v = values.get(row);
+                }
                 if (v > 0 || operation == APPROXIMATE)
                     return;
             }
@@ -205,11 +246,17 @@ public class RetainedSizeDerivedData extends ContextDerivedData
                             else
                             {
                                 retainedSet = snapshot.getRetainedSet(retainedSet, listener);
+                                // canceled
+                                if (retainedSet == null)
+                                    return;
                                 retainedSize = snapshot.getHeapSize(retainedSet);
                             }
                         }
 
-                        values.put(row, retainedSize);
+                        synchronized (values)
+                        {
+                            values.put(row, retainedSize);
+                        }
                     }
                 }
 
@@ -226,7 +273,10 @@ public class RetainedSizeDerivedData extends ContextDerivedData
                 else
                 {
                     long retainedSize = snapshot.getRetainedHeapSize(contextObject.getObjectId());
-                    values.put(row, retainedSize);
+                    synchronized (values)
+                    {
+                        values.put(row, retainedSize);
+                    }
                 }
             }
 
@@ -19,6 +19,7 @@ import java.util.List;
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.hprof.extension.IRuntimeEnhancer;
 import org.eclipse.mat.hprof.ui.HprofPreferences;
+import org.eclipse.mat.parser.IFieldValueReader;
 import org.eclipse.mat.parser.IObjectReader;
 import org.eclipse.mat.parser.index.IIndexReader;
 import org.eclipse.mat.parser.index.IndexReader;
@@ -29,7 +30,7 @@ import org.eclipse.mat.snapshot.ISnapshot;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.model.IPrimitiveArray;
 
-public class HprofHeapObjectReader implements IObjectReader
+public class HprofHeapObjectReader implements IObjectReader, IFieldValueReader
 {
     public static final String VERSION_PROPERTY = "hprof.version"; //$NON-NLS-1$
 
@@ -196,6 +197,12 @@ public class HprofHeapObjectReader implements IObjectReader
         return hprofDump.read(objectId, filePosition, snapshot);
     }
 
+    public long[] readFieldValues(int[] objectIds, String fieldName, ISnapshot snapshot) throws SnapshotException,
+                    IOException
+    {
+        return hprofDump.readFieldValues(objectIds, o2hprof, fieldName, snapshot);
+    }
+
     /**
      * Returns extra data to be provided by
      * {@link ISnapshot#getSnapshotAddons(Class addon)}. Also can be returned
@@ -21,15 +21,18 @@ import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.IteratorLong;
 import org.eclipse.mat.hprof.extension.IParsingEnhancer;
 import org.eclipse.mat.hprof.ui.HprofPreferences;
-import org.eclipse.mat.parser.IIndexBuilder;
 import org.eclipse.mat.parser.IPreliminaryIndex;
+import org.eclipse.mat.parser.IPurgedMappingIndexBuilder;
+import org.eclipse.mat.parser.IResumableIndexBuilder;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2LongIndex;
+import org.eclipse.mat.parser.index.IIndexReader.IOne2OneIndex;
+import org.eclipse.mat.parser.index.IndexReader;
 import org.eclipse.mat.parser.index.IndexWriter;
 import org.eclipse.mat.util.IProgressListener;
 import org.eclipse.mat.util.MessageUtil;
 import org.eclipse.mat.util.SimpleMonitor;
 
-public class HprofIndexBuilder implements IIndexBuilder
+public class HprofIndexBuilder implements IResumableIndexBuilder, IPurgedMappingIndexBuilder
 {
     private File file;
     private String prefix;
@@ -91,7 +94,11 @@ public class HprofIndexBuilder implements IIndexBuilder
                         new Object[] { file.getAbsolutePath() }), (int) (file.length() / 1000));
 
         Pass2Parser pass2 = new Pass2Parser(handler, mon, strictnessPreference);
-        pass2.read(file, dumpNrToRead);
+        int pass2Threads = HprofPreferences.getPass2Threads();
+        if (pass2Threads > 1)
+            pass2.readParallel(file, pass1.getHeapDumpChunks(), pass2Threads);
+        else
+            pass2.read(file, dumpNrToRead);
 
         if (listener.isCanceled())
             throw new IProgressListener.OperationCanceledException();
@@ -107,7 +114,27 @@ public class HprofIndexBuilder implements IIndexBuilder
         id2position = handler.fillIn(preliminary);
     }
 
+    public boolean resume(IPreliminaryIndex preliminary, IProgressListener listener) throws IOException
+    {
+        // the object to position index written by fill
+        File indexFile = new File(prefix + "temp.o2hprof.index"); //$NON-NLS-1$
+        if (!indexFile.exists())
+            return false;
+        id2position = new IndexReader.LongIndexReader(indexFile);
+        return true;
+    }
+
     public void clean(final int[] purgedMapping, IProgressListener listener) throws IOException
+    {
+        clean(new IndexIterator(id2position, purgedMapping, null, purgedMapping.length), listener);
+    }
+
+    public void clean(IOne2OneIndex purgedMapping, IProgressListener listener) throws IOException
+    {
+        clean(new IndexIterator(id2position, null, purgedMapping, purgedMapping.size()), listener);
+    }
+
+    private void clean(IndexIterator positions, IProgressListener listener) throws IOException
     {
 
         // //////////////////////////////////////////////////////////////
@@ -117,8 +144,7 @@ public class HprofIndexBuilder implements IIndexBuilder
         File indexFile = new File(prefix + "o2hprof.index"); //$NON-NLS-1$
         listener.subTask(MessageUtil.format(Messages.HprofIndexBuilder_Writing,
                         new Object[] { indexFile.getAbsolutePath() }));
-        IOne2LongIndex newIndex = new IndexWriter.LongIndexStreamer().writeTo(indexFile, new IndexIterator(id2position,
-                        purgedMapping));
+        IOne2LongIndex newIndex = new IndexWriter.LongIndexStreamer().writeTo(indexFile, positions);
 
         try
         {
@@ -154,22 +180,46 @@ public class HprofIndexBuilder implements IIndexBuilder
         }
     }
 
+    public void suspend()
+    {
+        if (id2position != null)
+        {
+            try
+            {
+                id2position.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+            id2position = null;
+        }
+    }
+
+    /**
+     * The positions of the objects which are kept, by the purged mapping as
+     * an array or as an index.
+     */
     private static final class IndexIterator implements IteratorLong
     {
         private final IOne2LongIndex id2position;
         private final int[] purgedMapping;
+        private final IOne2OneIndex mapping;
+        private final int size;
         private int nextIndex = -1;
 
-        private IndexIterator(IOne2LongIndex id2position, int[] purgedMapping)
+        private IndexIterator(IOne2LongIndex id2position, int[] purgedMapping, IOne2OneIndex mapping, int size)
         {
             this.id2position = id2position;
             this.purgedMapping = purgedMapping;
+            this.mapping = mapping;
+            this.size = size;
             findNext();
         }
 
         public boolean hasNext()
         {
-            return nextIndex < purgedMapping.length;
+            return nextIndex < size;
         }
 
         public long next()
@@ -182,7 +232,7 @@ public class HprofIndexBuilder implements IIndexBuilder
         protected void findNext()
         {
             nextIndex++;
-            while (nextIndex < purgedMapping.length && purgedMapping[nextIndex] < 0)
+            while (nextIndex < size && (purgedMapping != null ? purgedMapping[nextIndex] : mapping.get(nextIndex)) < 0)
                 nextIndex++;
         }
     }
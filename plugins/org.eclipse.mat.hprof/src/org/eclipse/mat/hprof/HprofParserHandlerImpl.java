@@ -557,19 +557,16 @@ public class HprofParserHandlerImpl implements IHprofParserHandler
     {
         int index = object.objectId;
 
-        // check if some thread to local variables references have to be added
-        HashMapLongObject<List<XGCRootInfo>> localVars = threadAddressToLocals.get(object.objectAddress);
-        if (localVars != null)
+        // log references
+        if (object.referenceIds != null)
         {
-            IteratorLong e = localVars.keys();
-            while (e.hasNext())
-            {
-                object.references.add(e.next());
-            }
+            outbound.log(index, object.referenceIds);
+        }
+        else
+        {
+            addLocalVariables(object);
+            outbound.log(identifiers, index, object.references);
         }
-
-        // log references
-        outbound.log(identifiers, index, object.references);
 
         int classIndex = object.clazz.getObjectId();
         object.clazz.addInstance(object.usedHeapSize);
@@ -583,6 +580,27 @@ public class HprofParserHandlerImpl implements IHprofParserHandler
             array2size.set(index, object.usedHeapSize);
     }
 
+    public void resolveReferences(HeapObject object)
+    {
+        addLocalVariables(object);
+        object.referenceIds = IndexWriter.IntArray1NWriter.resolve(identifiers, object.references);
+        object.references = null;
+    }
+
+    private void addLocalVariables(HeapObject object)
+    {
+        // check if some thread to local variables references have to be added
+        HashMapLongObject<List<XGCRootInfo>> localVars = threadAddressToLocals.get(object.objectAddress);
+        if (localVars != null)
+        {
+            IteratorLong e = localVars.keys();
+            while (e.hasNext())
+            {
+                object.references.add(e.next());
+            }
+        }
+    }
+
     public void reportInstance(long id, long filePosition)
     {
         this.identifiers.add(id);
@@ -18,8 +18,12 @@ import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.HashMapIntObject;
 import org.eclipse.mat.hprof.ui.HprofPreferences;
+import org.eclipse.mat.parser.index.IIndexReader;
 import org.eclipse.mat.parser.io.BufferedRandomAccessInputStream;
+import org.eclipse.mat.parser.io.MappedRandomAccessFile;
+import org.eclipse.mat.parser.io.MappedRandomAccessInputStream;
 import org.eclipse.mat.parser.io.PositionInputStream;
 import org.eclipse.mat.parser.model.ClassImpl;
 import org.eclipse.mat.parser.model.ClassLoaderImpl;
@@ -39,21 +43,53 @@ public class HprofRandomAccessParser extends AbstractParser
 {
     public static final int LAZY_LOADING_LIMIT = 256;
 
+    /** the dump mapped into memory, null if the buffered stream is used */
+    private MappedRandomAccessFile mapped;
+
     public HprofRandomAccessParser(File file, Version version, int identifierSize,
                     HprofPreferences.HprofStrictness strictnessPreference) throws IOException
     {
         super(strictnessPreference);
-        this.in = new PositionInputStream(new BufferedRandomAccessInputStream(new RandomAccessFile(file, "r"), 512)); //$NON-NLS-1$
+        this.mapped = MappedRandomAccessFile.open(file);
+        if (mapped != null)
+            this.in = new PositionInputStream(new MappedRandomAccessInputStream(mapped));
+        else
+            this.in = new PositionInputStream(new BufferedRandomAccessInputStream(new RandomAccessFile(file, "r"), 512)); //$NON-NLS-1$
         this.version = version;
         this.idSize = identifierSize;
     }
 
+    /**
+     * A reader with its own position on the mapped dump of the parent, so
+     * that several threads can read without locking.
+     */
+    private HprofRandomAccessParser(HprofRandomAccessParser parent)
+    {
+        super(parent.strictnessPreference);
+        this.in = new PositionInputStream(new MappedRandomAccessInputStream(parent.mapped));
+        this.version = parent.version;
+        this.idSize = parent.idSize;
+    }
+
     public synchronized void close() throws IOException
     {
         in.close();
+        if (mapped != null)
+            mapped.close();
+    }
+
+    public IObject read(int objectId, long position, ISnapshot dump) throws IOException, SnapshotException
+    {
+        if (mapped != null)
+            return new HprofRandomAccessParser(this).readAt(objectId, position, dump);
+
+        synchronized (this)
+        {
+            return readAt(objectId, position, dump);
+        }
     }
 
-    public synchronized IObject read(int objectId, long position, ISnapshot dump) throws IOException, SnapshotException
+    private IObject readAt(int objectId, long position, ISnapshot dump) throws IOException, SnapshotException
     {
         in.seek(position);
         int segmentType = in.readUnsignedByte();
@@ -123,6 +159,106 @@ public class HprofRandomAccessParser extends AbstractParser
         }
     }
 
+    /**
+     * Reads one field of instances without creating the objects. The offset
+     * of the field in the instance data is calculated once per class.
+     *
+     * @return the values as described by
+     *         {@link org.eclipse.mat.parser.IFieldValueReader#readFieldValues(int[], String, ISnapshot)}
+     */
+    public long[] readFieldValues(int[] objectIds, IIndexReader.IOne2LongIndex o2hprof, String fieldName,
+                    ISnapshot dump) throws IOException, SnapshotException
+    {
+        if (mapped != null)
+            return new HprofRandomAccessParser(this).readFieldValuesAt(objectIds, o2hprof, fieldName, dump);
+
+        synchronized (this)
+        {
+            return readFieldValuesAt(objectIds, o2hprof, fieldName, dump);
+        }
+    }
+
+    private long[] readFieldValuesAt(int[] objectIds, IIndexReader.IOne2LongIndex o2hprof, String fieldName,
+                    ISnapshot dump) throws IOException, SnapshotException
+    {
+        // class id -> offset of the field in the instance data, type
+        HashMapIntObject<int[]> layouts = new HashMapIntObject<int[]>();
+
+        long[] answer = new long[objectIds.length];
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            IClass clazz = dump.getClassOf(objectIds[ii]);
+            int[] layout = layouts.get(clazz.getObjectId());
+            if (layout == null)
+            {
+                layout = getFieldLayout(dump, clazz, fieldName);
+                layouts.put(clazz.getObjectId(), layout);
+            }
+
+            in.seek(o2hprof.get(objectIds[ii]));
+            int segmentType = in.readUnsignedByte();
+            if (segmentType != Constants.DumpSegment.INSTANCE_DUMP)
+                throw new IOException(MessageUtil.format(Messages.HprofRandomAccessParser_Error_IllegalDumpSegment,
+                                segmentType));
+
+            // address, stack trace serial number, class address, length
+            in.skipBytes(idSize + 4 + idSize + 4 + layout[0]);
+            answer[ii] = readRawValue(layout[1]);
+        }
+        return answer;
+    }
+
+    /**
+     * @return the offset of the field in the instance data and its type
+     */
+    private int[] getFieldLayout(ISnapshot dump, IClass clazz, String fieldName) throws IOException,
+                    SnapshotException
+    {
+        List<IClass> hierarchy = resolveClassHierarchy(dump, clazz);
+        if (hierarchy == null)
+            throw new IOException(Messages.HprofRandomAccessParser_Error_DumpIncomplete);
+
+        int offset = 0;
+        for (IClass c : hierarchy)
+        {
+            for (FieldDescriptor field : c.getFieldDescriptors())
+            {
+                int type = field.getType();
+                if (field.getName().equals(fieldName))
+                    return new int[] { offset, type };
+                offset += type == IObject.Type.OBJECT ? idSize : IPrimitiveArray.ELEMENT_SIZE[type];
+            }
+        }
+
+        throw new SnapshotException(MessageUtil.format(Messages.HprofRandomAccessParser_Error_NoSuchField, clazz
+                        .getName(), fieldName));
+    }
+
+    private long readRawValue(int type) throws IOException
+    {
+        switch (type)
+        {
+            case IObject.Type.OBJECT:
+                return readID();
+            case IObject.Type.BOOLEAN:
+                return in.readByte() != 0 ? 1 : 0;
+            case IObject.Type.CHAR:
+                return in.readChar();
+            case IObject.Type.FLOAT:
+            case IObject.Type.INT:
+                return in.readInt();
+            case IObject.Type.DOUBLE:
+            case IObject.Type.LONG:
+                return in.readLong();
+            case IObject.Type.BYTE:
+                return in.readByte();
+            case IObject.Type.SHORT:
+                return in.readShort();
+            default:
+                throw new IOException(MessageUtil.format(Messages.AbstractParser_Error_IllegalType, type));
+        }
+    }
+
     private IArray readObjectArrayDump(int objectId, ISnapshot dump) throws IOException, SnapshotException
     {
         long id = readID();
@@ -197,27 +333,47 @@ public class HprofRandomAccessParser extends AbstractParser
         return array;
     }
 
-    public synchronized long[] readObjectArray(ArrayDescription.Offline descriptor, int offset, int length)
+    public long[] readObjectArray(ArrayDescription.Offline descriptor, int offset, int length)
                     throws IOException
     {
         int elementSize = this.idSize;
+        long position = descriptor.getPosition() + ((long)offset * elementSize);
 
-        in.seek(descriptor.getPosition() + ((long)offset * elementSize));
         long[] data = new long[length];
-        for (int ii = 0; ii < data.length; ii++)
-            data[ii] = readID();
+        if (mapped != null)
+        {
+            for (int ii = 0; ii < data.length; ii++, position += elementSize)
+                data[ii] = elementSize == 4 ? (0x0FFFFFFFFL & mapped.readInt(position)) : mapped.readLong(position);
+            return data;
+        }
+
+        synchronized (this)
+        {
+            in.seek(position);
+            for (int ii = 0; ii < data.length; ii++)
+                data[ii] = readID();
+        }
         return data;
     }
 
-    public synchronized byte[] readPrimitiveArray(ArrayDescription.Offline descriptor, int offset, int length)
+    public byte[] readPrimitiveArray(ArrayDescription.Offline descriptor, int offset, int length)
                     throws IOException
     {
         int elementSize = descriptor.getElementSize();
-
-        in.seek(descriptor.getPosition() + ((long)offset * elementSize));
+        long position = descriptor.getPosition() + ((long)offset * elementSize);
 
         byte[] data = new byte[length * elementSize];
-        in.readFully(data);
+        if (mapped != null)
+        {
+            mapped.readFully(position, data, 0, data.length);
+            return data;
+        }
+
+        synchronized (this)
+        {
+            in.seek(position);
+            in.readFully(data);
+        }
         return data;
     }
 }
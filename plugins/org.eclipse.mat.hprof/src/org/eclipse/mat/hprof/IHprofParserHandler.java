@@ -38,6 +38,8 @@ public interface IHprofParserHandler
         public ClassImpl clazz;
         public long usedHeapSize;
         public ArrayLong references = new ArrayLong();
+        /** the references already converted to object ids, see {@link IHprofParserHandler#resolveReferences(HeapObject)} */
+        public int[] referenceIds;
         public boolean isArray = false;
 
         public HeapObject(int objectId, long objectAddress, ClassImpl clazz, long usedHeapSize)
@@ -75,6 +77,13 @@ public interface IHprofParserHandler
 
     void addObject(HeapObject object, long filePosition) throws IOException;
 
+    /**
+     * Converts the references of the object into object ids ahead of
+     * {@link #addObject(HeapObject, long)}, so that this work can be done by
+     * several threads in pass 2. Must not modify the handler.
+     */
+    void resolveReferences(HeapObject object);
+
     void reportInstance(long id, long filePosition);
 
     void reportRequiredObjectArray(long arrayClassID);
@@ -35,6 +35,7 @@ public class Messages extends NLS
     public static String HprofRandomAccessParser_Error_IllegalDumpSegment;
     public static String HprofRandomAccessParser_Error_MissingClass;
     public static String HprofRandomAccessParser_Error_MissingFakeClass;
+    public static String HprofRandomAccessParser_Error_NoSuchField;
     public static String JMapHeapDumpProvider_ErrorCreatingDump;
 	public static String JMapHeapDumpProvider_HeapDumpNotCreated;
 	public static String JMapHeapDumpProvider_WaitForHeapDump;
@@ -64,6 +65,7 @@ public class Messages extends NLS
     public static String HPROFPreferences_Strictness_Stop;
     public static String HPROFPreferences_Strictness_Warning;
     public static String HPROFPreferences_Strictness_Permissive;
+    public static String HPROFPreferences_Pass2Threads;
     public static String HPROFStrictness_Unhandled_Preference;
     public static String HPROFStrictness_Stopped;
 
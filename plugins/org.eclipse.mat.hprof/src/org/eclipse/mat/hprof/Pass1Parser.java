@@ -27,6 +27,7 @@ import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayLong;
 import org.eclipse.mat.collect.HashMapLongObject;
 import org.eclipse.mat.hprof.ui.HprofPreferences;
 import org.eclipse.mat.parser.io.PositionInputStream;
@@ -46,6 +47,8 @@ public class Pass1Parser extends AbstractParser
 {
     private static final Pattern PATTERN_OBJ_ARRAY = Pattern.compile("^(\\[+)L(.*);$"); //$NON-NLS-1$
     private static final Pattern PATTERN_PRIMITIVE_ARRAY = Pattern.compile("^(\\[+)(.)$"); //$NON-NLS-1$
+    /** approximate size of the pieces of heap dump handed to each thread of a parallel pass 2 */
+    private static final long CHUNK_SIZE = 1L << 20;
 
     private HashMapLongObject<String> class2name = new HashMapLongObject<String>();
     private HashMapLongObject<Long> thread2id = new HashMapLongObject<Long>();
@@ -58,6 +61,8 @@ public class Pass1Parser extends AbstractParser
     private long previousArrayStart;
     private long previousArrayUncompressedEnd;
     private boolean foundCompressed;
+    /** start and end positions of the heap dump chunks for a parallel pass 2 */
+    private ArrayLong heapDumpChunks = new ArrayLong();
     private final boolean verbose = Platform.inDebugMode() && HprofPlugin.getDefault().isDebugging()
                     && Boolean.parseBoolean(Platform.getDebugOption("org.eclipse.mat.hprof/debug/parser")); //$NON-NLS-1$
 
@@ -259,6 +264,18 @@ public class Pass1Parser extends AbstractParser
 
     }
 
+    /**
+     * The heap dump records of the dump which has been read, split at sub-record
+     * boundaries into pieces of about {@link #CHUNK_SIZE} bytes, so that pass 2
+     * can extract the objects of several pieces at once.
+     * 
+     * @return pairs of start and end file positions, in file order
+     */
+    public ArrayLong getHeapDumpChunks()
+    {
+        return heapDumpChunks;
+    }
+
     private void readString(long length) throws IOException
     {
         long id = readID();
@@ -310,9 +327,17 @@ public class Pass1Parser extends AbstractParser
     {
         long segmentStartPos = in.position();
         long segmentsEndPos = segmentStartPos + length;
+        long chunkStartPos = segmentStartPos;
 
         while (segmentStartPos < segmentsEndPos)
         {
+            if (segmentStartPos - chunkStartPos >= CHUNK_SIZE)
+            {
+                heapDumpChunks.add(chunkStartPos);
+                heapDumpChunks.add(segmentStartPos);
+                chunkStartPos = segmentStartPos;
+            }
+
             long workDone = segmentStartPos / 1000;
             if (this.monitor.getWorkDone() < workDone)
             {
@@ -372,6 +397,11 @@ public class Pass1Parser extends AbstractParser
 
             segmentStartPos = in.position();
         }
+        if (segmentStartPos > chunkStartPos)
+        {
+            heapDumpChunks.add(chunkStartPos);
+            heapDumpChunks.add(segmentStartPos);
+        }
         if (verbose)
             System.out.println("    Finished heap sub-records."); //$NON-NLS-1$
         if (segmentStartPos != segmentsEndPos)
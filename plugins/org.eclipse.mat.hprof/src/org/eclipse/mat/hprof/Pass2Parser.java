@@ -15,9 +15,17 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayLong;
 import org.eclipse.mat.hprof.IHprofParserHandler.HeapObject;
 import org.eclipse.mat.hprof.ui.HprofPreferences;
 import org.eclipse.mat.hprof.ui.HprofPreferences.HprofStrictness;
@@ -41,6 +49,13 @@ public class Pass2Parser extends AbstractParser
     private IHprofParserHandler handler;
     private SimpleMonitor.Listener monitor;
 
+    // only set when reading one chunk of a parallel pass 2
+    private File file;
+    private long chunkStart;
+    private long chunkEnd;
+    private List<HeapObject> objects;
+    private ArrayLong positions;
+
     public Pass2Parser(IHprofParserHandler handler, SimpleMonitor.Listener monitor,
                     HprofPreferences.HprofStrictness strictnessPreference)
     {
@@ -119,6 +134,169 @@ public class Pass2Parser extends AbstractParser
         }
     }
 
+    /**
+     * Extracts the objects of the heap dump chunks found by pass 1 using
+     * several threads. Each thread reads its own chunk and converts the
+     * references to object ids, while the calling thread reports the objects
+     * to the handler in file order, so the indices are the same as those
+     * written by {@link #read(File, String)}.
+     * 
+     * @param file
+     *            the HPROF file
+     * @param chunks
+     *            pairs of start and end positions, see
+     *            {@link Pass1Parser#getHeapDumpChunks()}
+     * @param nThreads
+     *            the number of threads extracting objects
+     */
+    public void readParallel(File file, ArrayLong chunks, int nThreads) throws SnapshotException, IOException
+    {
+        in = new PositionInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            version = readVersion(in);
+            idSize = in.readInt();
+            if (idSize != 4 && idSize != 8)
+                throw new SnapshotException(Messages.Pass1Parser_Error_SupportedDumps);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException ignore)
+            {}
+            in = null;
+        }
+
+        int nChunks = chunks.size() / 2;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            // a few chunks in advance keep all threads busy while bounding
+            // the memory used by the extracted objects
+            LinkedList<Future<Pass2Parser>> pending = new LinkedList<Future<Pass2Parser>>();
+            int next = 0;
+            while (next < nChunks || !pending.isEmpty())
+            {
+                while (next < nChunks && pending.size() < 2 * nThreads)
+                {
+                    ChunkReader reader = new ChunkReader(this, file, chunks.get(2 * next), chunks.get(2 * next + 1));
+                    pending.add(executor.submit(reader));
+                    next++;
+                }
+
+                Pass2Parser chunk = get(pending.removeFirst());
+                for (int ii = 0; ii < chunk.objects.size(); ii++)
+                    handler.addObject(chunk.objects.get(ii), chunk.positions.get(ii));
+
+                if (monitor.isProbablyCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+                monitor.totalWorkDone(chunk.chunkEnd / 1000);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Pass2Parser get(Future<Pass2Parser> future) throws SnapshotException, IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IProgressListener.OperationCanceledException();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof SnapshotException)
+                throw (SnapshotException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new SnapshotException(cause);
+        }
+    }
+
+    /**
+     * Reads the objects of one chunk of the heap dump on a worker thread.
+     */
+    private static final class ChunkReader implements Callable<Pass2Parser>
+    {
+        private final Pass2Parser parser;
+
+        private ChunkReader(Pass2Parser parent, File file, long start, long end)
+        {
+            parser = new Pass2Parser(parent, file, start, end);
+        }
+
+        public Pass2Parser call() throws Exception
+        {
+            parser.readChunk();
+            return parser;
+        }
+    }
+
+    /**
+     * Creates a parser for one chunk, which keeps the objects and their
+     * positions in file order until the calling thread reports them.
+     */
+    private Pass2Parser(Pass2Parser parent, File file, long chunkStart, long chunkEnd)
+    {
+        super(parent.strictnessPreference);
+        this.handler = parent.handler;
+        this.monitor = parent.monitor;
+        this.version = parent.version;
+        this.idSize = parent.idSize;
+        this.file = file;
+        this.chunkStart = chunkStart;
+        this.chunkEnd = chunkEnd;
+        this.objects = new ArrayList<HeapObject>();
+        this.positions = new ArrayLong();
+    }
+
+    private void readChunk() throws SnapshotException, IOException
+    {
+        in = new PositionInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            in.skipBytes(chunkStart);
+            readDumpSegments(chunkEnd - chunkStart);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException ignore)
+            {}
+        }
+    }
+
+    private void addObject(HeapObject heapObject, long filePosition) throws IOException
+    {
+        if (objects != null)
+        {
+            handler.resolveReferences(heapObject);
+            objects.add(heapObject);
+            positions.add(filePosition);
+        }
+        else
+        {
+            handler.addObject(heapObject, filePosition);
+        }
+    }
+
     private void readDumpSegments(long length) throws SnapshotException, IOException
     {
         long segmentStartPos = in.position();
@@ -126,8 +304,9 @@ public class Pass2Parser extends AbstractParser
 
         while (segmentStartPos < segmentsEndPos)
         {
+            // progress of a chunk is reported by the thread collecting the chunks
             long workDone = segmentStartPos / 1000;
-            if (this.monitor.getWorkDone() < workDone)
+            if (objects == null && this.monitor.getWorkDone() < workDone)
             {
                 if (this.monitor.isProbablyCanceled())
                     throw new IProgressListener.OperationCanceledException();
@@ -253,7 +432,7 @@ public class Pass2Parser extends AbstractParser
             }
         }
 
-        handler.addObject(heapObject, segmentStartPos);
+        addObject(heapObject, segmentStartPos);
     }
 
     private void readObjectArrayDump(long segmentStartPos) throws IOException
@@ -282,7 +461,7 @@ public class Pass2Parser extends AbstractParser
                 heapObject.references.add(refId);
         }
 
-        handler.addObject(heapObject, segmentStartPos);
+        addObject(heapObject, segmentStartPos);
     }
 
     private void readPrimitiveArrayDump(long segmentStartPost) throws SnapshotException, IOException
@@ -307,7 +486,7 @@ public class Pass2Parser extends AbstractParser
         heapObject.references.add(clazz.getObjectAddress());
         heapObject.isArray = true;
 
-        handler.addObject(heapObject, segmentStartPost);
+        addObject(heapObject, segmentStartPost);
 
         int elementSize = IPrimitiveArray.ELEMENT_SIZE[elementType];
         in.skipBytes((long) elementSize * size);
@@ -12,6 +12,7 @@ package org.eclipse.mat.hprof.ui;
 
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.RadioGroupFieldEditor;
 import org.eclipse.mat.hprof.HprofPlugin;
 import org.eclipse.mat.hprof.Messages;
@@ -67,6 +68,12 @@ public class HPROFPreferencePage extends FieldEditorPreferencePage implements IW
                         // PreferenceConstants.HprofStrictness.STRICTNESS_PERMISSIVE
                         // .toString() }
                         }, getFieldEditorParent(), true));
+
+        // Number of threads for the second pass
+        IntegerFieldEditor threads = new IntegerFieldEditor(HprofPreferences.PASS2_THREADS_PREF,
+                        Messages.HPROFPreferences_Pass2Threads, getFieldEditorParent());
+        threads.setValidRange(0, 1024);
+        addField(threads);
     }
 
     /**
@@ -24,6 +24,33 @@ public class HprofPreferences
     /** Default strictness for preferences and value parsing */
     public static final HprofStrictness DEFAULT_STRICTNESS = HprofStrictness.STRICTNESS_STOP;
 
+    /** Number of threads extracting objects in the second pass of the HPROF parser */
+    public static final String PASS2_THREADS_PREF = "hprofPass2Threads"; //$NON-NLS-1$
+
+    /** Default number of pass 2 threads: the serial parser */
+    public static final int DEFAULT_PASS2_THREADS = 1;
+
+    /**
+     * Return the number of threads to extract objects in pass 2. This first
+     * checks the preference store, and then checks for a
+     * -D$(PASS2_THREADS_PREF)=n command line argument. Zero or a negative
+     * number means one thread per available processor.
+     * 
+     * @return the number of threads, 1 to use the serial parser
+     */
+    public static int getPass2Threads()
+    {
+        int threads = Platform.getPreferencesService().getInt(HprofPlugin.getDefault().getBundle().getSymbolicName(),
+                        HprofPreferences.PASS2_THREADS_PREF, DEFAULT_PASS2_THREADS, null);
+
+        // Check if the user overrides on the command line
+        threads = Integer.getInteger(PASS2_THREADS_PREF, threads);
+
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        return threads;
+    }
+
     /**
      * Return the currently selected preference for strictness. This first
      * checks the preference store, and then checks for any -D$(STRICTNESS)=true
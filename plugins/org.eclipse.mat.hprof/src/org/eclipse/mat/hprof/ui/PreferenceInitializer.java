@@ -26,6 +26,7 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
         {
             IPreferenceStore store = (IPreferenceStore)HprofPlugin.getDefault().getPreferenceStore();
             store.setDefault(HprofPreferences.STRICTNESS_PREF, HprofPreferences.DEFAULT_STRICTNESS.toString());
+            store.setDefault(HprofPreferences.PASS2_THREADS_PREF, HprofPreferences.DEFAULT_PASS2_THREADS);
         }
         catch (LinkageError e)
         {
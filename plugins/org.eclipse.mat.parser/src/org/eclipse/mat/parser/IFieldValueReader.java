@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser;
+
+import java.io.IOException;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+
+/**
+ * Optional interface of an {@link IObjectReader} which reads a field of many
+ * instances straight from the dump, without creating the objects. Used by
+ * {@link ISnapshot#getPrimitiveFieldValues(int[], String)} and
+ * {@link ISnapshot#getReferenceFieldIds(int[], String)}; other readers are
+ * served by reading each object.
+ *
+ * @since 1.7
+ */
+public interface IFieldValueReader
+{
+    /**
+     * Get the value of an instance field for many objects.
+     *
+     * @param objectIds
+     *            ids of instances, each of a class which declares or inherits
+     *            a field of this name
+     * @param fieldName
+     *            the name of the field; a field of a subclass hides a field
+     *            of the same name of a superclass
+     * @param snapshot
+     *            the snapshot
+     * @return the value for each object: the address of the referenced
+     *         object, 0 for null; 0 or 1 for a boolean; the raw bits of a
+     *         float or a double; else the value itself
+     * @throws SnapshotException
+     *             if an object is not an instance with a field of this name
+     * @throws IOException
+     */
+    long[] readFieldValues(int[] objectIds, String fieldName, ISnapshot snapshot) //
+                    throws SnapshotException, IOException;
+}
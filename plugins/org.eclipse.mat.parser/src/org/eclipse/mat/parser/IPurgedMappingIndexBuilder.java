@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser;
+
+import java.io.IOException;
+
+import org.eclipse.mat.parser.index.IIndexReader;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * An index builder which is told about the discarded objects by an index from
+ * the old to the new object id, instead of an int[] with an entry for every
+ * object of the preliminary index. The index holds about 1.5 bits per object.
+ *
+ * @since 1.7
+ */
+public interface IPurgedMappingIndexBuilder extends IIndexBuilder
+{
+    /**
+     * Called instead of {@link IIndexBuilder#clean(int[], IProgressListener)}
+     * once the unreachable objects have been discarded.
+     *
+     * @param purgedMapping
+     *            mapping from old id to new id, -1 indicates object has been
+     *            discarded
+     * @param listener
+     *            for progress and error reporting
+     * @throws IOException
+     */
+    void clean(IIndexReader.IOne2OneIndex purgedMapping, IProgressListener listener) throws IOException;
+}
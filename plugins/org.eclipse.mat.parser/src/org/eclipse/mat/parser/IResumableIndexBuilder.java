@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser;
+
+import java.io.IOException;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * An index builder which keeps the state it needs after
+ * {@link IIndexBuilder#fill(IPreliminaryIndex, IProgressListener)} in files.
+ * The snapshot factory saves the preliminary index as a checkpoint, and if the
+ * parse fails in a later phase, e.g. by running out of memory or by being
+ * cancelled, the next parse of the same dump continues from the checkpoint
+ * instead of reading the dump again.
+ *
+ * @since 1.7
+ */
+public interface IResumableIndexBuilder extends IIndexBuilder
+{
+    /**
+     * Called after {@link IIndexBuilder#init(java.io.File, String)} instead of
+     * fill, to reattach to the files left by an earlier fill of the same dump
+     * with the same prefix.
+     *
+     * @param index
+     *            the preliminary index restored from the checkpoint
+     * @param listener
+     *            for progress and error reporting
+     * @return false if the files are gone, then the dump is parsed again
+     * @throws SnapshotException
+     * @throws IOException
+     */
+    boolean resume(IPreliminaryIndex index, IProgressListener listener) throws SnapshotException, IOException;
+
+    /**
+     * Called instead of {@link IIndexBuilder#cancel()} if the parse was
+     * cancelled or failed after the checkpoint was saved. Closes any file
+     * handles but keeps the files for {@link #resume}.
+     */
+    void suspend();
+}
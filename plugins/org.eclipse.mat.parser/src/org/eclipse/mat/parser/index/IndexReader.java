@@ -23,6 +23,7 @@ import org.eclipse.mat.collect.ArrayLongCompressed;
 import org.eclipse.mat.collect.HashMapIntObject;
 import org.eclipse.mat.parser.index.IndexWriter.ArrayIntLongCompressed;
 import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.parser.io.MappedRandomAccessFile;
 import org.eclipse.mat.parser.io.SimpleBufferedRandomAccessInputStream;
 
 /**
@@ -67,17 +68,30 @@ public abstract class IndexReader
 
         File indexFile;
         public SimpleBufferedRandomAccessInputStream in;
+        /** the index file mapped into memory, pages are then read without locking */
+        MappedRandomAccessFile mapped;
         long[] pageStart;
+        /** the loaded pages, held in the shared page cache */
+        PageCache.Table cache;
 
         IntIndexReader(File indexFile, IndexWriter.Pages<SoftReference<ArrayIntCompressed>> pages, long size,
                         int pageSize, long[] pageStart)
         {
             this.size = size;
             this.pageSize = pageSize;
-            this.pages = pages;
 
             this.indexFile = indexFile;
             this.pageStart = pageStart;
+            this.cache = PageCache.getDefault().newTable(pageStart.length);
+
+            // the pages just written are likely to be read next
+            for (int ii = 0; ii < pages.size(); ii++)
+            {
+                SoftReference<ArrayIntCompressed> ref = pages.get(ii);
+                ArrayIntCompressed array = ref == null ? null : ref.get();
+                if (array != null)
+                    cachePage(ii, array);
+            }
 
             if (indexFile != null)
                 open();
@@ -93,6 +107,7 @@ public abstract class IndexReader
         {
             this(new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(indexFile, "r")), 0, indexFile.length());//$NON-NLS-1$
             this.indexFile = indexFile;
+            this.mapped = MappedRandomAccessFile.open(indexFile);
         }
 
         public IntIndexReader(SimpleBufferedRandomAccessInputStream in, long start, long length) throws IOException
@@ -124,6 +139,8 @@ public abstract class IndexReader
 
             this.in.seek(start + length - 8 - (pageStart.length * 8));
             this.in.readLongArray(pageStart);
+
+            this.cache = PageCache.getDefault().newTable(pageStart.length);
         }
 
         private synchronized void open()
@@ -137,6 +154,7 @@ public abstract class IndexReader
                     throw new IOException(Messages.IndexReader_Error_IndexIsEmbedded);
 
                 in = new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(this.indexFile, "r"));//$NON-NLS-1$
+                mapped = MappedRandomAccessFile.open(indexFile);
             }
             catch (IOException e)
             {
@@ -148,6 +166,12 @@ public abstract class IndexReader
         {
             unload();
 
+            if (mapped != null)
+            {
+                mapped.close();
+                mapped = null;
+            }
+
             if (in != null)
             {
                 try
@@ -168,14 +192,22 @@ public abstract class IndexReader
         @Override
         protected ArrayIntCompressed getPage(int page)
         {
-            SoftReference<ArrayIntCompressed> ref = pages.get(page);
-            ArrayIntCompressed array = ref == null ? null : ref.get();
-            if (array == null)
+            ArrayIntCompressed array = (ArrayIntCompressed) cache.get(page);
+            if (array != null)
+                return array;
+
+            MappedRandomAccessFile mapped = this.mapped;
+            if (mapped != null)
+            {
+                // positional reads need no lock, at worst a page is read twice
+                array = new ArrayIntCompressed(readPage(mapped, pageStart, page));
+                cachePage(page, array);
+            }
+            else
             {
                 synchronized (LOCK)
                 {
-                    ref = pages.get(page);
-                    array = ref == null ? null : ref.get();
+                    array = (ArrayIntCompressed) cache.peek(page);
 
                     if (array == null)
                     {
@@ -190,11 +222,7 @@ public abstract class IndexReader
                                 throw new IOException();
 
                             array = new ArrayIntCompressed(buffer);
-
-                            synchronized (pages)
-                            {
-                                pages.put(page, new SoftReference<ArrayIntCompressed>(array));
-                            }
+                            cachePage(page, array);
                         }
                         catch (IOException e)
                         {
@@ -206,6 +234,19 @@ public abstract class IndexReader
             return array;
         }
 
+        void cachePage(int page, ArrayIntCompressed array)
+        {
+            // a position page holds the data twice, see ArrayIntLongCompressed
+            int factor = array instanceof ArrayIntLongCompressed ? 2 : 1;
+            cache.put(page, array, factor * (int) (pageStart[page + 1] - pageStart[page]) + PageCache.PAGE_OVERHEAD);
+        }
+
+        @Override
+        public synchronized void unload()
+        {
+            cache.clear();
+        }
+
         public void delete()
         {
             close();
@@ -249,26 +290,13 @@ public abstract class IndexReader
         @Override
         protected ArrayIntLongCompressed getPage(int page)
         {
-            SoftReference<ArrayIntCompressed> ref = pages.get(page);
-            ArrayIntCompressed array = ref == null ? null : ref.get();
+            ArrayIntCompressed array = super.getPage(page);
             if (array instanceof ArrayIntLongCompressed)
-            {
                 return (ArrayIntLongCompressed)array;
-            }
-            else 
-            {
-                synchronized (LOCK)
-                {
-                    if (array == null)
-                        array = super.getPage(page);
-                    ArrayIntLongCompressed ret = new ArrayIntLongCompressed(array);
-                    synchronized (pages)
-                    {
-                        pages.put(page, new SoftReference<ArrayIntCompressed>(ret));
-                    }
-                    return ret;
-                }
-            }
+
+            ArrayIntLongCompressed ret = new ArrayIntLongCompressed(array);
+            cachePage(page, ret);
+            return ret;
         }
     }
 
@@ -366,10 +394,16 @@ public abstract class IndexReader
         }
     }
 
-    /* package */static class IntIndex1NReader implements IIndexReader.IOne2ManyIndex
+    /**
+     * Reads an index from object id to several object ids in the order they
+     * were written.
+     * @since 1.7
+     */
+    public static class IntIndex1NReader implements IIndexReader.IOne2ManyIndex
     {
         File indexFile;
         SimpleBufferedRandomAccessInputStream in;
+        MappedRandomAccessFile mapped;
         IntIndexReader header;
         IntIndexReader body;
 
@@ -389,6 +423,7 @@ public abstract class IndexReader
                 this.body = new IntIndexReader(in, 0, divider);
 
                 this.body.LOCK = this.header.LOCK;
+                this.header.mapped = this.body.mapped = mapped;
 
             }
             catch (RuntimeException e)
@@ -426,12 +461,19 @@ public abstract class IndexReader
                 {
 
                     in = new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(this.indexFile, "r"));//$NON-NLS-1$
+                    mapped = MappedRandomAccessFile.open(indexFile);
 
                     if (this.header != null)
+                    {
                         this.header.in = in;
+                        this.header.mapped = mapped;
+                    }
 
                     if (this.body != null)
+                    {
                         this.body.in = in;
+                        this.body.mapped = mapped;
+                    }
                 }
             }
             catch (IOException e)
@@ -445,6 +487,16 @@ public abstract class IndexReader
             header.unload();
             body.unload();
 
+            if (mapped != null)
+            {
+                mapped.close();
+                mapped = null;
+                if (this.header != null)
+                    this.header.mapped = null;
+                if (this.body != null)
+                    this.body.mapped = null;
+            }
+
             if (in != null)
             {
                 try
@@ -611,17 +663,31 @@ public abstract class IndexReader
 
         File indexFile;
         SimpleBufferedRandomAccessInputStream in;
+        /** the index file mapped into memory, pages are then read without locking */
+        MappedRandomAccessFile mapped;
         long[] pageStart;
+        /** the loaded pages, held in the shared page cache */
+        PageCache.Table cache;
 
         public LongIndexReader(File indexFile, HashMapIntObject<Object> pages, int size, int pageSize, long[] pageStart)
                         throws IOException
         {
             this.size = size;
             this.pageSize = pageSize;
-            this.pages = pages;
 
             this.indexFile = indexFile;
             this.pageStart = pageStart;
+            this.cache = PageCache.getDefault().newTable(pageStart.length);
+
+            // the pages just written are likely to be read next
+            for (int ii = 0; ii < pageStart.length - 1; ii++)
+            {
+                Object o = pages.get(ii);
+                if (o instanceof SoftReference<?>)
+                    o = ((SoftReference<?>) o).get();
+                if (o instanceof ArrayLongCompressed)
+                    cachePage(ii, (ArrayLongCompressed) o);
+            }
 
             open();
         }
@@ -630,6 +696,7 @@ public abstract class IndexReader
         {
             this(new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(indexFile, "r")), 0, indexFile.length());//$NON-NLS-1$
             this.indexFile = indexFile;
+            this.mapped = MappedRandomAccessFile.open(indexFile);
 
             open();
         }
@@ -650,6 +717,8 @@ public abstract class IndexReader
 
             this.in.seek(start + length - 8 - (pageStart.length * 8));
             this.in.readLongArray(pageStart);
+
+            this.cache = PageCache.getDefault().newTable(pageStart.length);
         }
 
         private synchronized void open() throws IOException
@@ -661,12 +730,19 @@ public abstract class IndexReader
                 throw new IOException(Messages.IndexReader_Error_IndexIsEmbedded);
 
             in = new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(this.indexFile, "r"));//$NON-NLS-1$
+            mapped = MappedRandomAccessFile.open(indexFile);
         }
 
         public synchronized void close()
         {
             unload();
 
+            if (mapped != null)
+            {
+                mapped.close();
+                mapped = null;
+            }
+
             if (in != null)
             {
                 try
@@ -684,18 +760,25 @@ public abstract class IndexReader
             }
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         protected ArrayLongCompressed getPage(int page)
         {
-            SoftReference<ArrayLongCompressed> ref = (SoftReference<ArrayLongCompressed>) pages.get(page);
-            ArrayLongCompressed array = ref == null ? null : ref.get();
-            if (array == null)
+            ArrayLongCompressed array = (ArrayLongCompressed) cache.get(page);
+            if (array != null)
+                return array;
+
+            MappedRandomAccessFile mapped = this.mapped;
+            if (mapped != null)
+            {
+                // positional reads need no lock, at worst a page is read twice
+                array = new ArrayLongCompressed(readPage(mapped, pageStart, page));
+                cachePage(page, array);
+            }
+            else
             {
                 synchronized (LOCK)
                 {
-                    ref = (SoftReference<ArrayLongCompressed>) pages.get(page);
-                    array = ref == null ? null : ref.get();
+                    array = (ArrayLongCompressed) cache.peek(page);
 
                     if (array == null)
                     {
@@ -710,11 +793,7 @@ public abstract class IndexReader
                                 throw new IOException();
 
                             array = new ArrayLongCompressed(buffer);
-
-                            synchronized (pages)
-                            {
-                                pages.put(page, new SoftReference<ArrayLongCompressed>(array));
-                            }
+                            cachePage(page, array);
                         }
                         catch (IOException e)
                         {
@@ -726,6 +805,18 @@ public abstract class IndexReader
             return array;
         }
 
+        private void cachePage(int page, ArrayLongCompressed array)
+        {
+            cache.put(page, array, (int) (pageStart[page + 1] - pageStart[page]) + PageCache.PAGE_OVERHEAD);
+        }
+
+        @Override
+        public synchronized void unload()
+        {
+            super.unload();
+            cache.clear();
+        }
+
         public void delete()
         {
             close();
@@ -740,6 +831,7 @@ public abstract class IndexReader
     {
         File indexFile;
         SimpleBufferedRandomAccessInputStream in;
+        MappedRandomAccessFile mapped;
         IntIndexReader header;
         LongIndexReader body;
 
@@ -757,6 +849,7 @@ public abstract class IndexReader
             this.body = new LongIndexReader(in, 0, divider);
 
             this.body.LOCK = this.header.LOCK;
+            this.header.mapped = this.body.mapped = mapped;
         }
 
         public long[] get(int index)
@@ -779,12 +872,19 @@ public abstract class IndexReader
                 {
 
                     in = new SimpleBufferedRandomAccessInputStream(new RandomAccessFile(this.indexFile, "r"));//$NON-NLS-1$
+                    mapped = MappedRandomAccessFile.open(indexFile);
 
                     if (this.header != null)
+                    {
                         this.header.in = in;
+                        this.header.mapped = mapped;
+                    }
 
                     if (this.body != null)
+                    {
                         this.body.in = in;
+                        this.body.mapped = mapped;
+                    }
                 }
             }
             catch (IOException e)
@@ -797,6 +897,12 @@ public abstract class IndexReader
         {
             unload();
 
+            if (mapped != null)
+            {
+                mapped.close();
+                mapped = this.header.mapped = this.body.mapped = null;
+            }
+
             if (in != null)
             {
                 try
@@ -833,4 +939,21 @@ public abstract class IndexReader
                 indexFile.delete();
         }
     }
+
+    /**
+     * Reads the bytes of a page from a mapped index file.
+     */
+    static byte[] readPage(MappedRandomAccessFile mapped, long[] pageStart, int page)
+    {
+        try
+        {
+            byte[] buffer = new byte[(int) (pageStart[page + 1] - pageStart[page])];
+            mapped.readFully(pageStart[page], buffer, 0, buffer.length);
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -744,6 +744,41 @@ public abstract class IndexWriter
          * @since 1.2
          */
         public void log(IIndexReader.IOne2LongIndex identifier, int index, ArrayLong references) throws IOException
+        {
+            int[] objectIds = new int[references.size()];
+            int length = resolve(identifier, references, objectIds);
+
+            this.set(index, objectIds, 0, length);
+        }
+
+        /**
+         * Converts the addresses into object ids the same way
+         * {@link #log(IIndexReader.IOne2LongIndex, int, ArrayLong)} does, but
+         * without writing anything. The result can be logged later with
+         * {@link #log(int, int[])}. Safe to call from several threads as long
+         * as the identifier index is not modified at the same time.
+         *
+         * @param identifier
+         *            maps addresses to object ids
+         * @param references
+         *            the addresses, pseudo reference first; sorted in place
+         * @return the object ids without duplicates, pseudo reference first
+         * @since 1.7
+         */
+        public static int[] resolve(IIndexReader.IOne2LongIndex identifier, ArrayLong references)
+        {
+            int[] objectIds = new int[references.size()];
+            int length = resolve(identifier, references, objectIds);
+
+            if (length == objectIds.length)
+                return objectIds;
+
+            int[] answer = new int[length];
+            System.arraycopy(objectIds, 0, answer, 0, length);
+            return answer;
+        }
+
+        private static int resolve(IIndexReader.IOne2LongIndex identifier, ArrayLong references, int[] objectIds)
         {
             // remove duplicates and convert to identifiers
             // keep pseudo reference as first one
@@ -752,7 +787,6 @@ public abstract class IndexWriter
 
             references.sort();
 
-            int[] objectIds = new int[references.size()];
             int length = 1;
 
             long current = 0, last = references.firstElement() - 1;
@@ -774,7 +808,7 @@ public abstract class IndexWriter
                 last = current;
             }
 
-            this.set(index, objectIds, 0, length);
+            return length;
         }
 
         /**
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A cache for the decompressed pages of the index readers with a limit on the
+ * total number of bytes held.
+ * <p>
+ * Each index has its own {@link Table} of pages, and a page is found with a
+ * plain array lookup without any locking. The cache is split into stripes by
+ * page, each stripe with its own share of the byte budget and its own lock
+ * which is only taken when a page is added or removed. When a stripe exceeds
+ * its budget pages are evicted using the CLOCK algorithm: a page which has
+ * been read since the clock hand last passed gets a second chance.
+ *
+ * @since 1.7
+ */
+public class PageCache
+{
+    /**
+     * System property for the byte budget of the default cache, e.g.
+     * -Dorg.eclipse.mat.pageCacheSize=268435456. The default is an eighth of
+     * the maximum heap size.
+     */
+    public static final String PAGE_CACHE_SIZE_PROPERTY = "org.eclipse.mat.pageCacheSize"; //$NON-NLS-1$
+
+    /** approximate overhead in bytes of a cached page besides the compressed data */
+    static final int PAGE_OVERHEAD = 64;
+
+    private static PageCache defaultCache;
+
+    private final long maxSize;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final AtomicLong tableIds = new AtomicLong();
+
+    /**
+     * @return the cache shared by all index readers
+     */
+    public static synchronized PageCache getDefault()
+    {
+        if (defaultCache == null)
+        {
+            long maxSize = Long.getLong(PAGE_CACHE_SIZE_PROPERTY, Runtime.getRuntime().maxMemory() / 8);
+            defaultCache = new PageCache(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+        }
+        return defaultCache;
+    }
+
+    /**
+     * @param maxSize
+     *            the byte budget of the cache
+     * @param concurrency
+     *            the expected number of concurrent readers, the cache is
+     *            split into the next power of two stripes
+     */
+    public PageCache(long maxSize, int concurrency)
+    {
+        int n = 1;
+        while (n < concurrency)
+            n <<= 1;
+
+        this.maxSize = maxSize;
+        this.stripes = new Stripe[n];
+        this.stripeMask = n - 1;
+        for (int ii = 0; ii < n; ii++)
+            stripes[ii] = new Stripe(maxSize / n);
+    }
+
+    /**
+     * Creates the table of pages for one index.
+     */
+    public Table newTable(int nrPages)
+    {
+        return new Table(this, nrPages, (int) tableIds.incrementAndGet());
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // statistics
+    // //////////////////////////////////////////////////////////////
+
+    /** @return the byte budget */
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /** @return the approximate number of bytes currently cached */
+    public long getSize()
+    {
+        long size = 0;
+        for (Stripe s : stripes)
+        {
+            synchronized (s)
+            {
+                size += s.size;
+            }
+        }
+        return size;
+    }
+
+    /** @return the number of lookups which found the page */
+    public long getHitCount()
+    {
+        long n = 0;
+        for (Stripe s : stripes)
+            n += s.hits.get();
+        return n;
+    }
+
+    /** @return the number of lookups which had to load the page */
+    public long getMissCount()
+    {
+        long n = 0;
+        for (Stripe s : stripes)
+            n += s.misses.get();
+        return n;
+    }
+
+    /** @return the number of pages removed to stay within the budget */
+    public long getEvictionCount()
+    {
+        long n = 0;
+        for (Stripe s : stripes)
+            n += s.evictions.get();
+        return n;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PageCache size=" + getSize() + " max=" + maxSize + " hits=" + getHitCount() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + " misses=" + getMissCount() + " evictions=" + getEvictionCount(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private Stripe stripe(Table table, int page)
+    {
+        int h = table.id * 0x9E3779B9 + page;
+        h ^= h >>> 16;
+        return stripes[h & stripeMask];
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // implementation
+    // //////////////////////////////////////////////////////////////
+
+    /**
+     * The cached pages of one index.
+     */
+    public static final class Table
+    {
+        private final PageCache cache;
+        private final AtomicReferenceArray<Entry> entries;
+        private final int id;
+
+        private Table(PageCache cache, int nrPages, int id)
+        {
+            this.cache = cache;
+            this.entries = new AtomicReferenceArray<Entry>(nrPages);
+            this.id = id;
+        }
+
+        /**
+         * Looks up a page and counts a hit or a miss.
+         *
+         * @return the page or null if it is not cached
+         */
+        public Object get(int page)
+        {
+            Entry e = entries.get(page);
+            Stripe stripe = cache.stripe(this, page);
+            if (e == null)
+            {
+                stripe.misses.incrementAndGet();
+                return null;
+            }
+            stripe.hits.incrementAndGet();
+            if (!e.referenced)
+                e.referenced = true;
+            return e.value;
+        }
+
+        /**
+         * Looks up a page without counting a hit or a miss.
+         */
+        public Object peek(int page)
+        {
+            Entry e = entries.get(page);
+            return e == null ? null : e.value;
+        }
+
+        /**
+         * Adds or replaces a page, evicting other pages if the budget is
+         * exceeded.
+         *
+         * @param bytes
+         *            the approximate size of the page
+         */
+        public void put(int page, Object value, int bytes)
+        {
+            Stripe stripe = cache.stripe(this, page);
+            synchronized (stripe)
+            {
+                Entry e = new Entry(this, page, value, bytes);
+                stripe.remove(entries.getAndSet(page, e));
+                stripe.add(e);
+                stripe.evict(e);
+            }
+        }
+
+        /**
+         * Removes all pages of this index.
+         */
+        public void clear()
+        {
+            for (int ii = 0; ii < entries.length(); ii++)
+            {
+                if (entries.get(ii) == null)
+                    continue;
+                Stripe stripe = cache.stripe(this, ii);
+                synchronized (stripe)
+                {
+                    stripe.remove(entries.getAndSet(ii, null));
+                }
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        final Table table;
+        final int page;
+        final Object value;
+        final int bytes;
+        volatile boolean referenced;
+        /** position in the clock of the stripe, -1 once removed */
+        int slot = -1;
+
+        Entry(Table table, int page, Object value, int bytes)
+        {
+            this.table = table;
+            this.page = page;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Stripe
+    {
+        final long maxSize;
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+
+        // guarded by this
+        Entry[] clock = new Entry[16];
+        int count;
+        int hand;
+        long size;
+
+        Stripe(long maxSize)
+        {
+            this.maxSize = maxSize;
+        }
+
+        void add(Entry e)
+        {
+            if (count == clock.length)
+            {
+                Entry[] copy = new Entry[count << 1];
+                System.arraycopy(clock, 0, copy, 0, count);
+                clock = copy;
+            }
+            e.slot = count;
+            clock[count++] = e;
+            size += e.bytes;
+        }
+
+        void remove(Entry e)
+        {
+            if (e == null || e.slot < 0)
+                return;
+            int slot = e.slot;
+            Entry last = clock[--count];
+            clock[slot] = last;
+            last.slot = slot;
+            clock[count] = null;
+            e.slot = -1;
+            size -= e.bytes;
+            if (hand >= count)
+                hand = 0;
+        }
+
+        /**
+         * Evicts pages until the stripe is within budget, but always keeps
+         * the page just added so that a page larger than the budget can
+         * still be used by the next read.
+         */
+        void evict(Entry added)
+        {
+            while (size > maxSize && count > 1)
+            {
+                Entry e = clock[hand];
+                if (e.referenced || e == added)
+                {
+                    e.referenced = false;
+                    if (++hand >= count)
+                        hand = 0;
+                }
+                else
+                {
+                    e.table.entries.compareAndSet(e.page, e, null);
+                    remove(e);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+}
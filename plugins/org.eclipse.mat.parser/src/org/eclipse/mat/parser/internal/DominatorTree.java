@@ -11,10 +11,18 @@
  *******************************************************************************/
 package org.eclipse.mat.parser.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.ArrayUtils;
 import org.eclipse.mat.collect.BitField;
@@ -24,16 +32,80 @@ import org.eclipse.mat.parser.index.IndexManager;
 import org.eclipse.mat.parser.index.IndexWriter;
 import org.eclipse.mat.parser.index.IndexManager.Index;
 import org.eclipse.mat.parser.internal.util.IntStack;
+import org.eclipse.mat.parser.internal.util.ScratchIntArray;
 import org.eclipse.mat.util.IProgressListener;
 import org.eclipse.mat.util.SimpleMonitor;
 
 public class DominatorTree
 {
+    private static final boolean SERIAL = Platform.inDebugMode() && ParserPlugin.getDefault().isDebugging()
+                    && Boolean.parseBoolean(Platform.getDebugOption("org.eclipse.mat.parser/debug/serialDominatorTree")); //$NON-NLS-1$
+
+    /**
+     * System property for the number of threads calculating the dominator
+     * tree, e.g. -Dorg.eclipse.mat.dominatorTreeThreads=1 for the serial
+     * calculation. Zero or a negative number means one thread per available
+     * processor, which is the default.
+     */
+    public static final String DOMINATOR_TREE_THREADS_PROPERTY = "org.eclipse.mat.dominatorTreeThreads"; //$NON-NLS-1$
+
+    /** number of objects handled by one task of the helper threads */
+    private static final int BATCH_SIZE = 4096;
 
     public static void calculate(SnapshotImpl snapshot, IProgressListener listener) throws SnapshotException,
                     IOException
     {
-        new Calculator(snapshot, listener).compute();
+        int availableProcessors = Integer.getInteger(DOMINATOR_TREE_THREADS_PROPERTY, 0);
+        if (availableProcessors <= 0)
+            availableProcessors = Runtime.getRuntime().availableProcessors();
+        if (SERIAL)
+            availableProcessors = 1;
+        Calculator calculator = new Calculator(snapshot, listener);
+        ExecutorService pool = null;
+        try
+        {
+            if (availableProcessors > 1)
+            {
+                pool = Executors.newFixedThreadPool(availableProcessors);
+                calculator.pool = pool;
+                calculator.nThreads = availableProcessors;
+            }
+            calculator.compute();
+        }
+        finally
+        {
+            if (pool != null)
+                pool.shutdownNow();
+            calculator.closeArrays();
+        }
+    }
+
+    /**
+     * Waits for the result of a helper task.
+     */
+    private static <T> T get(Future<T> future) throws SnapshotException, IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IProgressListener.OperationCanceledException();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof SnapshotException)
+                throw (SnapshotException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new SnapshotException(cause);
+        }
     }
 
     static class Calculator
@@ -43,17 +115,35 @@ public class DominatorTree
         IIndexReader.IOne2ManyIndex inboundIndex;
         IIndexReader.IOne2ManyIndex outboundIndex;
 
+        /**
+         * Helper threads which read the indexes and sort the dominated
+         * objects ahead of the (serial) Lengauer-Tarjan steps, null to do
+         * everything on the calling thread.
+         */
+        ExecutorService pool;
+        int nThreads;
+
         int[] gcRootsArray;
         private BitField gcRootsSet;
 
-        int[] bucket;
+        /**
+         * The working arrays of the Lengauer-Tarjan algorithm are held in
+         * scratch files next to the index files instead of on the Java heap.
+         * The outbound index read by dfs() needs no scratch file: its pages
+         * are held in the shared {@link org.eclipse.mat.parser.index.PageCache}
+         * whose byte budget, -Dorg.eclipse.mat.pageCacheSize, bounds the heap
+         * taken in both modes.
+         */
+        boolean useScratchFiles = ScratchIntArray.isEnabled();
+
+        ScratchIntArray bucket;
         private int r, n;
-        private int[] dom;
-        private int[] parent;
-        private int[] anchestor;
-        private int[] vertex;
-        private int[] label;
-        private int[] semi;
+        private ScratchIntArray dom;
+        private ScratchIntArray parent;
+        private ScratchIntArray anchestor;
+        private ScratchIntArray vertex;
+        private ScratchIntArray label;
+        private ScratchIntArray semi;
 
         private static int ROOT_VALUE = -1;
         private static int[] ROOT_VALUE_ARR = new int[] { ROOT_VALUE };
@@ -88,20 +178,56 @@ public class DominatorTree
             n = snapshot.getSnapshotInfo().getNumberOfObjects() + 1;
             r = 1;
 
-            parent = new int[n + 1];
-            anchestor = new int[n + 1];
-            vertex = new int[n + 1];
-            label = new int[n + 1];
-            semi = new int[n + 1];
+            try
+            {
+                parent = newArray("parent", n + 1); //$NON-NLS-1$
+                anchestor = newArray("anchestor", n + 1); //$NON-NLS-1$
+                vertex = newArray("vertex", n + 1); //$NON-NLS-1$
+                label = newArray("label", n + 1); //$NON-NLS-1$
+                semi = newArray("semi", n + 1); //$NON-NLS-1$
+
+                /*
+                 * Allocate these up front, to check for early OOM, but then
+                 * free so that dfs() can use the space for outbound index
+                 * caching.
+                 */
+                dom = newArray("dom", n + 1); //$NON-NLS-1$
+                bucket = newArray("bucket", n + 1); //$NON-NLS-1$
+                if (!useScratchFiles)
+                {
+                    dom = null;
+                    bucket = null;
+                }
+            }
+            catch (IOException e)
+            {
+                closeArrays();
+                throw new SnapshotException(e);
+            }
+        }
 
-            /*
-             * Allocate these up front, to check for early OOM, but then free
-             * so that dfs() can use the space for outbound index caching.  
-             */
-            dom = new int[n + 1];
-            bucket = new int[n + 1];
-            dom = null;
-            bucket = null;
+        /**
+         * Creates a working array on the heap or in a scratch file
+         * &lt;prefix&gt;scratch&lt;name&gt;.index which is deleted after the
+         * calculation.
+         */
+        private ScratchIntArray newArray(String name, int length) throws IOException
+        {
+            if (!useScratchFiles)
+                return ScratchIntArray.create(length);
+            File file = new File(snapshot.getSnapshotInfo().getPrefix() + "scratch" + name + ".index"); //$NON-NLS-1$ //$NON-NLS-2$
+            return ScratchIntArray.create(file, length);
+        }
+
+        private void closeArrays()
+        {
+            ScratchIntArray[] arrays = new ScratchIntArray[] { parent, anchestor, vertex, label, semi, bucket, dom };
+            for (ScratchIntArray array : arrays)
+            {
+                if (array != null)
+                    array.close();
+            }
+            parent = anchestor = vertex = label = semi = bucket = dom = null;
         }
 
         public void compute() throws IOException, SnapshotException, IProgressListener.OperationCanceledException
@@ -120,47 +246,52 @@ public class DominatorTree
             /*
              * Reallocate just before use. 
              */
-            dom = new int[snapshot.getSnapshotInfo().getNumberOfObjects() + 2];
-            bucket = new int[snapshot.getSnapshotInfo().getNumberOfObjects() + 2];
+            if (dom == null)
+            {
+                dom = newArray("dom", snapshot.getSnapshotInfo().getNumberOfObjects() + 2); //$NON-NLS-1$
+                bucket = newArray("bucket", snapshot.getSnapshotInfo().getNumberOfObjects() + 2); //$NON-NLS-1$
+            }
+
+            bucket.fill(-1);
 
-            Arrays.fill(bucket, -1);
+            PredecessorsReader predecessors = new PredecessorsReader();
 
             for (int i = n; i >= 2; i--)
             {
-                int w = vertex[i];
-                for (int v : getPredecessors(w))
+                int w = vertex.get(i);
+                for (int v : predecessors.get(i))
                 {
                     v += 2;
                     if (v < 0)
                         continue;
                     int u = eval(v);
-                    if (semi[u] < semi[w])
+                    if (semi.get(u) < semi.get(w))
                     {
-                        semi[w] = semi[u];
+                        semi.set(w, semi.get(u));
                     }
                 }
                 // add w to bucket(vertex(semi(w)))
                 // create the bucket if needed
-                bucket[w] = bucket[vertex[semi[w]]]; // serves as next(w)
-                bucket[vertex[semi[w]]] = w; // serves as
+                bucket.set(w, bucket.get(vertex.get(semi.get(w)))); // serves as next(w)
+                bucket.set(vertex.get(semi.get(w)), w); // serves as
                 // first(vertex[semi[w]])
-                link(parent[w], w);
+                link(parent.get(w), w);
 
-                int v = bucket[parent[w]];
+                int v = bucket.get(parent.get(w));
                 while (v != -1)
                 {
                     int u = eval(v);
-                    if (semi[u] < semi[v])
+                    if (semi.get(u) < semi.get(v))
                     {
-                        dom[v] = u;
+                        dom.set(v, u);
                     }
                     else
                     {
-                        dom[v] = parent[w];
+                        dom.set(v, parent.get(w));
                     }
-                    v = bucket[v]; // here bucket serves as next[]
+                    v = bucket.get(v); // here bucket serves as next[]
                 }
-                bucket[parent[w]] = -1;
+                bucket.set(parent.get(w), -1);
                 // }
                 if (i % 1000 == 0)
                 {
@@ -172,17 +303,19 @@ public class DominatorTree
 
             for (int i = 2; i <= n; i++)
             {
-                int w = vertex[i];
-                if (dom[w] != vertex[semi[w]])
+                int w = vertex.get(i);
+                if (dom.get(w) != vertex.get(semi.get(w)))
                 {
-                    dom[w] = dom[dom[w]];
+                    dom.set(w, dom.get(dom.get(w)));
                 }
             }
-            dom[r] = 0;
+            dom.set(r, 0);
 
             progressListener.done();
 
-            parent = anchestor = vertex = label = semi = bucket = null;
+            // only the dominators are needed from here on, on the heap
+            final int[] dom = this.dom.toArray();
+            closeArrays();
             inboundIndex.unload();
 
             if (progressListener0.isCanceled())
@@ -263,13 +396,13 @@ public class DominatorTree
                 successors = (int[]) successorsStack[size - 1];
                 currentSuccessor = currentSuccessorStack[size - 1];
 
-                if (semi[v] == 0)
+                if (semi.get(v) == 0)
                 {
                     n = n + 1;
-                    semi[v] = n;
-                    vertex[n] = v;
-                    label[v] = v;
-                    anchestor[v] = 0;
+                    semi.set(v, n);
+                    vertex.set(n, v);
+                    label.set(v, v);
+                    anchestor.set(v, 0);
                 }
 
                 if (currentSuccessor < successors.length)
@@ -280,9 +413,9 @@ public class DominatorTree
                     // value
 
                     // push the next unvisited successor
-                    if (semi[w] == 0)
+                    if (semi.get(w) == 0)
                     {
-                        parent[w] = v;
+                        parent.set(w, v);
                         successors = outboundIndex.get(w - 2); // get the
                         // successors of w
 
@@ -335,6 +468,57 @@ public class DominatorTree
 
         }
 
+        /**
+         * Supplies the predecessors of vertex[i] for i = n down to 2. With
+         * helper threads the predecessors of the next batches of vertices
+         * are read from the inbound index while the current batch is
+         * processed.
+         */
+        private class PredecessorsReader
+        {
+            private final LinkedList<Future<int[][]>> pending = new LinkedList<Future<int[][]>>();
+            private int nextToSubmit = n;
+            private int[][] batch = new int[0][];
+            private int batchStart = n + 1;
+
+            int[] get(int i) throws SnapshotException, IOException
+            {
+                if (pool == null)
+                    return getPredecessors(vertex.get(i));
+
+                if (batchStart - i > batch.length)
+                {
+                    submit();
+                    batchStart -= batch.length;
+                    batch = DominatorTree.get(pending.removeFirst());
+                    submit();
+                }
+                int[] result = batch[batchStart - i - 1];
+                batch[batchStart - i - 1] = null;
+                return result;
+            }
+
+            private void submit()
+            {
+                while (pending.size() < 2 * nThreads && nextToSubmit >= 2)
+                {
+                    final int from = nextToSubmit;
+                    final int length = Math.min(BATCH_SIZE, from - 1);
+                    nextToSubmit -= length;
+                    pending.add(pool.submit(new Callable<int[][]>()
+                    {
+                        public int[][] call()
+                        {
+                            int[][] result = new int[length][];
+                            for (int k = 0; k < length; k++)
+                                result[k] = getPredecessors(vertex.get(from - k));
+                            return result;
+                        }
+                    }));
+                }
+            }
+        }
+
         // gets retained set idx and returns the real indexes
         private int[] getPredecessors(int v)
         {
@@ -353,46 +537,46 @@ public class DominatorTree
         private void compress(int v)
         {
             IntStack stack = new IntStack();
-            while (anchestor[anchestor[v]] != 0) // is ancestor[v] a root in
+            while (anchestor.get(anchestor.get(v)) != 0) // is ancestor[v] a root in
             // the
             // forest?
             {
                 stack.push(v);
-                v = anchestor[v];
+                v = anchestor.get(v);
             }
             while (stack.size() > 0)
             {
                 v = stack.pop();
-                if (semi[label[anchestor[v]]] < semi[label[v]])
+                if (semi.get(label.get(anchestor.get(v))) < semi.get(label.get(v)))
                 {
-                    label[v] = label[anchestor[v]];
+                    label.set(v, label.get(anchestor.get(v)));
                 }
-                anchestor[v] = anchestor[anchestor[v]];
+                anchestor.set(v, anchestor.get(anchestor.get(v)));
             }
         }
 
         private int eval(int v)
         {
-            if (anchestor[v] == 0)
+            if (anchestor.get(v) == 0)
             {
                 return v;
             }
             else
             {
                 compress(v);
-                return label[v];
+                return label.get(v);
             }
         }
 
         private void link(int v, int w)
         {
-            anchestor[w] = v;
+            anchestor.set(w, v);
         }
 
-        private void writeIndexFiles(FlatDominatorTree tree) throws IOException
+        private void writeIndexFiles(FlatDominatorTree tree) throws IOException, SnapshotException
         {
 
-            IndexWriter.IntArray1NWriter writer = new IndexWriter.IntArray1NWriter(dom.length - 1,
+            IndexWriter.IntArray1NWriter writer = new IndexWriter.IntArray1NWriter(tree.dom.length - 1,
                             IndexManager.Index.DOMINATED.getFile(snapshot.getSnapshotInfo().getPrefix()));
 
             int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
@@ -400,17 +584,24 @@ public class DominatorTree
             IProgressListener progressListener = this.monitor.nextMonitor();
             progressListener.beginTask(Messages.DominatorTree_CreateDominatorsIndexFile, numberOfObjects / 1000);
 
-            for (int i = -1; i < numberOfObjects; i++)
+            if (pool != null)
             {
-                int[] successors = tree.getSuccessorsArr(i);
-                tree.sortByTotalSize(successors);
-                writer.log(i + 1, successors);
-
-                if (i % 1000 == 0)
+                writeIndexFilesParallel(tree, writer, progressListener);
+            }
+            else
+            {
+                for (int i = -1; i < numberOfObjects; i++)
                 {
-                    if (progressListener.isCanceled())
-                        throw new IProgressListener.OperationCanceledException();
-                    progressListener.worked(1);
+                    int[] successors = tree.getSuccessorsArr(i);
+                    tree.sortByTotalSize(successors);
+                    writer.log(i + 1, successors);
+
+                    if (i % 1000 == 0)
+                    {
+                        if (progressListener.isCanceled())
+                            throw new IProgressListener.OperationCanceledException();
+                        progressListener.worked(1);
+                    }
                 }
             }
 
@@ -420,6 +611,56 @@ public class DominatorTree
 
         }
 
+        /**
+         * The helper threads collect and sort the dominated objects, which
+         * are then written in the order of the object ids.
+         */
+        private void writeIndexFilesParallel(final FlatDominatorTree tree, IndexWriter.IntArray1NWriter writer,
+                        IProgressListener progressListener) throws IOException, SnapshotException
+        {
+            int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+            LinkedList<Future<int[][]>> pending = new LinkedList<Future<int[][]>>();
+            int nextToSubmit = -1;
+
+            for (int i = -1; i < numberOfObjects;)
+            {
+                while (pending.size() < 2 * nThreads && nextToSubmit < numberOfObjects)
+                {
+                    final int from = nextToSubmit;
+                    final int length = Math.min(BATCH_SIZE, numberOfObjects - from);
+                    nextToSubmit += length;
+                    pending.add(pool.submit(new Callable<int[][]>()
+                    {
+                        public int[][] call()
+                        {
+                            int[][] result = new int[length][];
+                            for (int k = 0; k < length; k++)
+                            {
+                                int[] successors = tree.getSuccessorsArr(from + k);
+                                tree.sortByTotalSize(successors, null, null);
+                                result[k] = successors;
+                            }
+                            return result;
+                        }
+                    }));
+                }
+
+                int[][] batch = get(pending.removeFirst());
+                for (int[] successors : batch)
+                {
+                    writer.log(i + 1, successors);
+
+                    if (i % 1000 == 0)
+                    {
+                        if (progressListener.isCanceled())
+                            throw new IProgressListener.OperationCanceledException();
+                        progressListener.worked(1);
+                    }
+                    i++;
+                }
+            }
+        }
+
         public class FlatDominatorTree
         {
             private static final int TEMP_ARR_LENGTH = 1000000;
@@ -440,10 +681,39 @@ public class DominatorTree
                 this.dom = dom;
                 this.elements = elements;
                 this.ts = new long[dom.length];
+                if (pool != null)
+                    readHeapSizes();
                 calculateTotalSizesIterative(root);
 
             }
 
+            /**
+             * Reads the shallow sizes of all objects into ts using the helper
+             * threads.
+             */
+            private void readHeapSizes() throws SnapshotException, IOException
+            {
+                int numberOfObjects = dump.getSnapshotInfo().getNumberOfObjects();
+                int chunk = Math.max(BATCH_SIZE, numberOfObjects / (4 * nThreads) + 1);
+                LinkedList<Future<Object>> tasks = new LinkedList<Future<Object>>();
+                for (int start = 0; start < numberOfObjects; start += chunk)
+                {
+                    final int from = start;
+                    final int to = Math.min(start + chunk, numberOfObjects);
+                    tasks.add(pool.submit(new Callable<Object>()
+                    {
+                        public Object call() throws SnapshotException
+                        {
+                            for (int ii = from; ii < to; ii++)
+                                ts[ii + 2] = dump.getHeapSize(ii);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Object> task : tasks)
+                    get(task);
+            }
+
             public SuccessorsEnum getSuccessorsEnum(int i)
             {
                 return new SuccessorsEnum(i);
@@ -474,6 +744,18 @@ public class DominatorTree
             }
 
             public void sortByTotalSize(int[] objectIds)
+            {
+                sortByTotalSize(objectIds, tempLongArray, tempIntArray);
+            }
+
+            /**
+             * @param tmpa
+             *            temporary buffer for the radix sort, or null to
+             *            allocate one when needed
+             * @param tmpb
+             *            temporary buffer for the radix sort, or null
+             */
+            void sortByTotalSize(int[] objectIds, long[] tmpa, int[] tmpb)
             {
                 int length = objectIds.length;
 
@@ -486,13 +768,13 @@ public class DominatorTree
 
                 // sort both arrays according to the total sizes
                 if (totalSizes.length > 1)
-                    if (totalSizes.length > TEMP_ARR_LENGTH)
+                    if (totalSizes.length > TEMP_ARR_LENGTH || tmpa == null)
                     {
                         ArrayUtils.sortDesc(totalSizes, objectIds);
                     }
                     else
                     {
-                        ArrayUtils.sortDesc(totalSizes, objectIds, tempLongArray, tempIntArray);
+                        ArrayUtils.sortDesc(totalSizes, objectIds, tmpa, tmpb);
                     }
             }
 
@@ -565,7 +847,8 @@ public class DominatorTree
                         int nextChild = currentSucc.nextElement();
                         currentSucc = getSuccessorsEnum(nextChild);
 
-                        ts[nextChild + 2] = nextChild < 0 ? 0 : snapshot.getHeapSize(nextChild);
+                        if (pool == null)
+                            ts[nextChild + 2] = nextChild < 0 ? 0 : snapshot.getHeapSize(nextChild);
 
                         if (size == capacity)
                         {
@@ -23,15 +23,19 @@ import org.eclipse.mat.collect.ArrayInt;
 import org.eclipse.mat.collect.BitField;
 import org.eclipse.mat.collect.HashMapIntObject;
 import org.eclipse.mat.collect.IteratorInt;
+import org.eclipse.mat.collect.IteratorLong;
+import org.eclipse.mat.parser.index.IIndexReader;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2LongIndex;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2ManyIndex;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2OneIndex;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2SizeIndex;
 import org.eclipse.mat.parser.index.IndexManager;
 import org.eclipse.mat.parser.index.IndexManager.Index;
+import org.eclipse.mat.parser.index.IndexReader;
 import org.eclipse.mat.parser.index.IndexReader.SizeIndexReader;
 import org.eclipse.mat.parser.index.IndexWriter;
 import org.eclipse.mat.parser.internal.snapshot.ObjectMarker;
+import org.eclipse.mat.parser.internal.util.PurgedMapping;
 import org.eclipse.mat.parser.model.ClassImpl;
 import org.eclipse.mat.parser.model.XGCRootInfo;
 import org.eclipse.mat.snapshot.UnreachableObjectsHistogram;
@@ -45,20 +49,34 @@ import org.eclipse.mat.util.SilentProgressListener;
 /* package */class GarbageCleaner
 {
 
-    public static int[] clean(final PreliminaryIndexImpl idx, final SnapshotImplBuilder builder,
+    /**
+     * Removes the objects not reachable from the GC roots and rewrites the
+     * indexes.
+     *
+     * @return the mapping of the old to the new object ids
+     */
+    public static PurgedMapping clean(final PreliminaryIndexImpl idx, final SnapshotImplBuilder builder,
                     Map<String, String> arguments, IProgressListener listener) throws IOException
     {
         IndexManager idxManager = new IndexManager();
+        List<IIndexReader> paged = new ArrayList<IIndexReader>();
 
         try
         {
             listener.beginTask(Messages.GarbageCleaner_RemovingUnreachableObjects, 11);
             listener.subTask(Messages.GarbageCleaner_SearchingForUnreachableObjects);
 
+            if (!idx.checkpointed)
+            {
+                pageOut(idx, paged);
+                if (listener.isCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+            }
+
             final int oldNoOfObjects = idx.identifiers.size();
 
             // determine reachable objects
-            boolean[] reachable = new boolean[oldNoOfObjects];
+            BitField reachable = new BitField(oldNoOfObjects);
             int newNoOfObjects = 0;
             int[] newRoots = idx.gcRoots.getAllKeys();
 
@@ -71,7 +89,7 @@ import org.eclipse.mat.util.SilentProgressListener;
              * START - marking objects use ObjectMarker to mark the reachable
              * objects if more than 1 CPUs are available - use multithreading
              */
-            ObjectMarker marker = new ObjectMarker(newRoots, reachable, preOutbound, new SilentProgressListener(
+            ObjectMarker marker = new ObjectMarker(newRoots, reachable, preOutbound, 0, new SilentProgressListener(
                             listener));
             int numProcessors = Runtime.getRuntime().availableProcessors();
             if (numProcessors > 1)
@@ -88,22 +106,15 @@ import org.eclipse.mat.util.SilentProgressListener;
                 }
 
                 // find the number of new objects. It's not returned by marker
-                for (boolean b : reachable)
-                    if (b)
+                for (int ii = 0; ii < oldNoOfObjects; ii++)
+                    if (reachable.get(ii))
                         newNoOfObjects++;
 
             }
             else
             {
-                try
-                {
-                    newNoOfObjects = marker.markSingleThreaded();
-                }
-                catch (OperationCanceledException e)
-                {
-                    // $JL-EXC$
-                    return null;
-                }
+                // a cancellation is passed on, so that the checkpoint is kept
+                newNoOfObjects = marker.markSingleThreaded();
             }
             marker = null;
             /* END - marking objects */
@@ -118,11 +129,12 @@ import org.eclipse.mat.util.SilentProgressListener;
                 {
                     int newRoot;
                     newRoot = (Integer)un;
-                    newNoOfObjects = markUnreachableAsGCRoots(idx, reachable, newNoOfObjects, newRoot, listener);
+                    newNoOfObjects = markUnreachableAsGCRoots(idx, reachable, oldNoOfObjects, newNoOfObjects,
+                                    newRoot, listener);
                 }
                 if (newNoOfObjects < oldNoOfObjects)
                 {
-                    createHistogramOfUnreachableObjects(idx, reachable);
+                    createHistogramOfUnreachableObjects(idx, reachable, oldNoOfObjects);
                 }
             }
 
@@ -132,24 +144,17 @@ import org.eclipse.mat.util.SilentProgressListener;
             listener.subTask(Messages.GarbageCleaner_ReIndexingObjects);
 
             // create re-index map
-            final int[] map = new int[oldNoOfObjects];
-            final long[] id2a = new long[newNoOfObjects];
+            final PurgedMapping map = new PurgedMapping(reachable, oldNoOfObjects);
+            reachable = null; // early gc...
 
             List<ClassImpl> classes2remove = new ArrayList<ClassImpl>();
 
             final IOne2SizeIndex preA2size = idx.array2size;
             long memFree = 0;
-            for (int ii = 0, jj = 0; ii < oldNoOfObjects; ii++)
+            for (int ii = 0; ii < oldNoOfObjects; ii++)
             {
-                if (reachable[ii])
-                {
-                    map[ii] = jj;
-                    id2a[jj++] = identifiers.get(ii);
-                }
-                else
+                if (!map.isReachable(ii))
                 {
-                    map[ii] = -1;
-
                     int classId = object2classId.get(ii);
                     ClassImpl clazz = classesById.get(classId);
 
@@ -198,12 +203,6 @@ import org.eclipse.mat.util.SilentProgressListener;
                     superclass.removeSubClass(c);
             }
 
-            reachable = null; // early gc...
-
-            identifiers.close();
-            identifiers.delete();
-            identifiers = null;
-
             if (listener.isCanceled())
                 throw new IProgressListener.OperationCanceledException();
             listener.worked(1); // 4
@@ -214,12 +213,12 @@ import org.eclipse.mat.util.SilentProgressListener;
             for (Iterator<ClassImpl> iter = classesById.values(); iter.hasNext();)
             {
                 ClassImpl clazz = iter.next();
-                int index = map[clazz.getObjectId()];
+                int index = map.get(clazz.getObjectId());
                 clazz.setObjectId(index);
 
                 if (clazz.getSuperClassId() >= 0) // java.lang.Object
-                    clazz.setSuperClassIndex(map[clazz.getSuperClassId()]);
-                clazz.setClassLoaderIndex(map[clazz.getClassLoaderId()]);
+                    clazz.setSuperClassIndex(map.get(clazz.getSuperClassId()));
+                clazz.setClassLoaderIndex(map.get(clazz.getClassLoaderId()));
 
                 classesByNewId.put(index, clazz);
             }
@@ -236,7 +235,25 @@ import org.eclipse.mat.util.SilentProgressListener;
 
             File indexFile = Index.IDENTIFIER.getFile(idx.snapshotInfo.getPrefix());
             listener.subTask(MessageUtil.format(Messages.GarbageCleaner_Writing, indexFile.getAbsolutePath()));
-            idxManager.setReader(Index.IDENTIFIER, new IndexWriter.LongIndexStreamer().writeTo(indexFile, id2a));
+            final IOne2LongIndex preIdentifiers = identifiers;
+            idxManager.setReader(Index.IDENTIFIER, new IndexWriter.LongIndexStreamer().writeTo(indexFile,
+                            new NewObjectLongIterator()
+                            {
+                                @Override
+                                long doGetNextLong(int index)
+                                {
+                                    return preIdentifiers.get(index);
+                                }
+
+                                @Override
+                                PurgedMapping getMap()
+                                {
+                                    return map;
+                                }
+                            }));
+
+            idx.release(identifiers);
+            identifiers = null;
 
             if (listener.isCanceled())
                 throw new IProgressListener.OperationCanceledException();
@@ -254,20 +271,17 @@ import org.eclipse.mat.util.SilentProgressListener;
                                 @Override
                                 int doGetNextInt(int index)
                                 {
-                                    return map[idx.object2classId.get(nextIndex)];
-                                    // return
-                                    // map[object2classId.get(nextIndex)];
+                                    return map.get(idx.object2classId.get(nextIndex));
                                 }
 
                                 @Override
-                                int[] getMap()
+                                PurgedMapping getMap()
                                 {
                                     return map;
                                 }
                             }));
 
-            object2classId.close();
-            object2classId.delete();
+            idx.release(object2classId);
             object2classId = null;
 
             if (listener.isCanceled())
@@ -301,7 +315,7 @@ import org.eclipse.mat.util.SilentProgressListener;
                                 }
 
                                 @Override
-                                int[] getMap()
+                                PurgedMapping getMap()
                                 {
                                     return map;
                                 }
@@ -309,8 +323,7 @@ import org.eclipse.mat.util.SilentProgressListener;
 
             idxManager.setReader(Index.A2SIZE, new SizeIndexReader(newIdx)); 
 
-            preA2size.close();
-            preA2size.delete();
+            idx.release(preA2size);
 
             if (listener.isCanceled())
                 throw new IProgressListener.OperationCanceledException();
@@ -327,16 +340,15 @@ import org.eclipse.mat.util.SilentProgressListener;
             IndexWriter.InboundWriter w_in = new IndexWriter.InboundWriter(newNoOfObjects, IndexManager.Index.INBOUND
                             .getFile(idx.snapshotInfo.getPrefix()));
 
-            for (int ii = 0; ii < oldNoOfObjects; ii++)
+            for (int ii = map.nextReachable(0); ii < oldNoOfObjects; ii = map.nextReachable(ii + 1))
             {
-                int k = map[ii];
-				if (k < 0) continue;
+                int k = map.get(ii);
 
 				int[] a = preOutbound.get(ii);
 				int[] tl = new int[a.length];
 				for (int jj = 0; jj < a.length; jj++)
 				{
-					int t = map[a[jj]];
+					int t = map.get(a[jj]);
 
 					/* No check if the referenced objects are alive */
 					/* The garbage can't be reached from a live object */
@@ -348,8 +360,7 @@ import org.eclipse.mat.util.SilentProgressListener;
 				w_out.log(k, tl);
             }
 
-            preOutbound.close();
-            preOutbound.delete();
+            idx.release(preOutbound);
             preOutbound = null;
 
             if (listener.isCanceled())
@@ -391,7 +402,7 @@ import org.eclipse.mat.util.SilentProgressListener;
             for (IteratorInt iter = idx.thread2objects2roots.keys(); iter.hasNext();)
             {
                 int threadId = iter.next();
-                int fixedThreadId = map[threadId];
+                int fixedThreadId = map.get(threadId);
                 if (fixedThreadId < 0)
                     continue;
 
@@ -411,6 +422,8 @@ import org.eclipse.mat.util.SilentProgressListener;
         {
             // delete all temporary indices
             idx.delete();
+            for (IIndexReader index : paged)
+                index.delete();
 
             if (idxManager != null && listener.isCanceled())
                 idxManager.delete();
@@ -418,7 +431,33 @@ import org.eclipse.mat.util.SilentProgressListener;
         }
     }
 
-    private static HashMapIntObject<XGCRootInfo[]> fix(HashMapIntObject<List<XGCRootInfo>> roots, final int[] map)
+    /**
+     * Copies the identifiers and classes of the objects which the parser holds
+     * in memory to files, so that they are read page by page while the garbage
+     * is removed. Writing the checkpoint of the parse has done that already.
+     */
+    private static void pageOut(PreliminaryIndexImpl idx, List<IIndexReader> paged) throws IOException
+    {
+        String prefix = idx.snapshotInfo.getPrefix() + "clean."; //$NON-NLS-1$
+        if (!(idx.identifiers instanceof IndexReader.LongIndexReader))
+        {
+            IOne2LongIndex identifiers = new IndexWriter.LongIndexStreamer().writeTo(Index.IDENTIFIER
+                            .getFile(prefix), ParseCheckpoint.iterator(idx.identifiers));
+            paged.add(identifiers);
+            idx.release(idx.identifiers);
+            idx.setIdentifiers(identifiers);
+        }
+        if (!(idx.object2classId instanceof IndexReader.IntIndexReader))
+        {
+            IOne2OneIndex object2classId = new IndexWriter.IntIndexStreamer().writeTo(Index.O2CLASS
+                            .getFile(prefix), ParseCheckpoint.iterator(idx.object2classId));
+            paged.add(object2classId);
+            idx.release(idx.object2classId);
+            idx.setObject2classId(object2classId);
+        }
+    }
+
+    private static HashMapIntObject<XGCRootInfo[]> fix(HashMapIntObject<List<XGCRootInfo>> roots, final PurgedMapping map)
     {
         HashMapIntObject<XGCRootInfo[]> answer = new HashMapIntObject<XGCRootInfo[]>(roots.size());
         for (Iterator<List<XGCRootInfo>> iter = roots.values(); iter.hasNext();)
@@ -428,9 +467,9 @@ import org.eclipse.mat.util.SilentProgressListener;
             for (int ii = 0; ii < a.length; ii++)
             {
                 a[ii] = r.get(ii);
-                a[ii].setObjectId(map[a[ii].getObjectId()]);
+                a[ii].setObjectId(map.get(a[ii].getObjectId()));
                 if (a[ii].getContextAddress() != 0)
-                    a[ii].setContextId(map[a[ii].getContextId()]);
+                    a[ii].setContextId(map.get(a[ii].getContextId()));
             }
 
             answer.put(a[0].getObjectId(), a);
@@ -441,7 +480,7 @@ import org.eclipse.mat.util.SilentProgressListener;
     private static abstract class NewObjectIterator
     {
         int nextIndex = -1;
-        int[] $map;
+        PurgedMapping $map;
 
         public NewObjectIterator()
         {
@@ -451,17 +490,15 @@ import org.eclipse.mat.util.SilentProgressListener;
 
         protected void findNext()
         {
-            nextIndex++;
-            while (nextIndex < $map.length && $map[nextIndex] < 0)
-                nextIndex++;
+            nextIndex = $map.nextReachable(nextIndex + 1);
         }
 
         public boolean hasNext()
         {
-            return nextIndex < $map.length;
+            return nextIndex < $map.size();
         }
 
-        abstract int[] getMap();
+        abstract PurgedMapping getMap();
     }
 
     private static abstract class NewObjectIntIterator extends NewObjectIterator implements IteratorInt
@@ -477,6 +514,19 @@ import org.eclipse.mat.util.SilentProgressListener;
 
     }
 
+    private static abstract class NewObjectLongIterator extends NewObjectIterator implements IteratorLong
+    {
+        public long next()
+        {
+            long answer = doGetNextLong(nextIndex);
+            findNext();
+            return answer;
+        }
+
+        abstract long doGetNextLong(int nextIndex);
+
+    }
+
     private static class KeyWriterImpl implements IndexWriter.KeyWriter
     {
         HashMapIntObject<ClassImpl> classesByNewId;
@@ -509,7 +559,8 @@ import org.eclipse.mat.util.SilentProgressListener;
         }
     }
 
-    private static void createHistogramOfUnreachableObjects(PreliminaryIndexImpl idx, boolean[] reachable)
+    private static void createHistogramOfUnreachableObjects(PreliminaryIndexImpl idx, BitField reachable,
+                    int noOfObjects)
     {
         IOne2SizeIndex array2size = idx.array2size;
 
@@ -518,9 +569,9 @@ import org.eclipse.mat.util.SilentProgressListener;
         int totalObjectCount = 0;
         long totalSize = 0;
 
-        for (int ii = 0; ii < reachable.length; ii++)
+        for (int ii = 0; ii < noOfObjects; ii++)
         {
-            if (!reachable[ii])
+            if (!reachable.get(ii))
             {
                 int classId = idx.object2classId.get(ii);
 
@@ -578,11 +629,11 @@ import org.eclipse.mat.util.SilentProgressListener;
     // //////////////////////////////////////////////////////////////
 
     private static int markUnreachableAsGCRoots(final PreliminaryIndexImpl idx, //
-                    boolean[] reachable, //
+                    BitField reachable, //
+                    final int noOfObjects, //
                     int noReachableObjects, //
                     int extraRootType, IProgressListener listener)
     {
-        final int noOfObjects = reachable.length;
         final IOne2LongIndex identifiers = idx.identifiers;
         final IOne2ManyIndex preOutbound = idx.outbound;
 
@@ -590,7 +641,7 @@ import org.eclipse.mat.util.SilentProgressListener;
         byte inbounds[] = new byte[noOfObjects];
         for (int ii = 0; ii < noOfObjects; ++ii)
         {
-            if (!reachable[ii])
+            if (!reachable.get(ii))
             {
                 // We only need search the unreachable objects as
                 // the reachable ones will have already marked
@@ -612,7 +663,7 @@ import org.eclipse.mat.util.SilentProgressListener;
         for (int ii = 0; ii < noOfObjects; ++ii)
         {
             // Do the objects with no inbounds first
-            if (!reachable[ii] && inbounds[ii] == 0)
+            if (!reachable.get(ii) && inbounds[ii] == 0)
             {
                 // Identify this unreachable object as a root,
                 // No need to mark it as the marker will do that
@@ -626,7 +677,7 @@ import org.eclipse.mat.util.SilentProgressListener;
             }
         }
         // See what else is now reachable
-        ObjectMarker marker2 = new ObjectMarker(unref.toArray(), reachable, preOutbound, new SilentProgressListener(listener));
+        ObjectMarker marker2 = new ObjectMarker(unref.toArray(), reachable, preOutbound, 0, new SilentProgressListener(listener));
         int numProcessors = Runtime.getRuntime().availableProcessors();
         if (numProcessors > 1 && unref.size() > 1)
         {
@@ -643,8 +694,8 @@ import org.eclipse.mat.util.SilentProgressListener;
 
             // find the number of new objects. It's not returned by marker
             int newNoOfObjects = 0;
-            for (boolean b : reachable)
-                if (b)
+            for (int ii = 0; ii < noOfObjects; ii++)
+                if (reachable.get(ii))
                     newNoOfObjects++;
             noReachableObjects = newNoOfObjects;
         }
@@ -658,7 +709,7 @@ import org.eclipse.mat.util.SilentProgressListener;
         unref.clear();
         for (int ii = 0; ii < noOfObjects; ++ii)
         {
-            if (!reachable[ii])
+            if (!reachable.get(ii))
             {
                 // Add to list
                 unref.add(ii);
@@ -666,7 +717,7 @@ import org.eclipse.mat.util.SilentProgressListener;
         }
 
         int root[] = new int[1];
-        ObjectMarker marker = new ObjectMarker(root, reachable, preOutbound, new SilentProgressListener(listener));
+        ObjectMarker marker = new ObjectMarker(root, reachable, preOutbound, 0, new SilentProgressListener(listener));
         int passes = 10;
         for (int pass = 0; pass < passes; ++pass)
         {
@@ -676,7 +727,7 @@ import org.eclipse.mat.util.SilentProgressListener;
             for (IteratorInt it = unref.iterator(); it.hasNext();)
             {
                 int ii = it.next();
-                if (!reachable[ii])
+                if (!reachable.get(ii))
                 {
                     // We only need search the unreachable objects as
                     // the reachable ones will have already marked
@@ -688,7 +739,7 @@ import org.eclipse.mat.util.SilentProgressListener;
                         // and only count unreachable refs
                         // We only need to recount outbound refs as the
                         // inbound ref count will be unchanged.
-                        if (out != ii && !reachable[out])
+                        if (out != ii && !reachable.get(out))
                         {
                             // Avoid overflow
                             if (outbounds[ii] != -1) outbounds[ii]++;
@@ -743,10 +794,10 @@ import org.eclipse.mat.util.SilentProgressListener;
      * @param inbounds count of inbounds (as 0..255)
      * @return candidate root or -1
      */
-    private static int selectRoot(int ii, int pass, int passes, boolean[] reachable, final IOne2ManyIndex preOutbound,
+    private static int selectRoot(int ii, int pass, int passes, BitField reachable, final IOne2ManyIndex preOutbound,
                     byte[] outbounds, byte[] inbounds)
     {
-        if (reachable[ii])
+        if (reachable.get(ii))
             return -1;
 
         // Check for objects with 1 inbound, pointing to another object 
@@ -760,7 +811,7 @@ import org.eclipse.mat.util.SilentProgressListener;
                 {
                     // Exclude objects pointing to themselves
                     // and only count unreachable refs
-                    if (out != ii && !reachable[out])
+                    if (out != ii && !reachable.get(out))
                     {
                         if ((inbounds[out] & 0xff) != 1)
                             continue;
@@ -18,6 +18,7 @@ public class Messages extends NLS
     private static final String BUNDLE_NAME = "org.eclipse.mat.parser.internal.messages"; //$NON-NLS-1$
     public static String AbstractObjectImpl_Error_FieldContainsIllegalReference;
     public static String AbstractObjectImpl_Error_FieldIsNotReference;
+    public static String Aggregate_Error_OnlyInSelectList;
     public static String BitOutputStream_Error_ArrayFull;
     public static String ClassHistogramRecordBuilder_Error_IllegalUseOfHistogramBuilder;
     public static String DominatorTree_CalculateRetainedSizes;
@@ -26,6 +27,9 @@ public class Messages extends NLS
     public static String DominatorTree_CreateDominatorsIndexFile;
     public static String DominatorTree_DepthFirstSearch;
     public static String DominatorTree_DominatorTreeCalculation;
+    public static String FieldValueIndex_Error_NotAnInstance;
+    public static String FieldValueIndex_ErrorReadingFieldValues;
+    public static String FieldValueIndex_Warning_IgnoreError;
     public static String Function_Error_NeedsNumberAsInput;
     public static String Function_ErrorNoFunction;
     public static String Function_unknown;
@@ -40,6 +44,7 @@ public class Messages extends NLS
     public static String IndexReader_Error_IndexIsEmbedded;
     public static String IndexWriter_Error_ArrayLength;
     public static String IndexWriter_Error_ObjectArrayLength;
+    public static String IntStack_Error_ArrayLength;
     public static String MethodCallExpression_Error_MethodNotFound;
     public static String MultiplePathsFromGCRootsComputerImpl_FindingPaths;
     public static String SnapshotFactoryImpl_ClassIDNotFound;
@@ -52,6 +57,8 @@ public class Messages extends NLS
     public static String SnapshotFactoryImpl_Error_NoParserRegistered;
     public static String SnapshotFactoryImpl_Error_OpeningHeapDump;
     public static String SnapshotFactoryImpl_Error_ReparsingHeapDump;
+    public static String SnapshotFactoryImpl_Error_ResumingFromCheckpoint;
+    public static String SnapshotFactoryImpl_Error_WritingCheckpoint;
     public static String SnapshotFactoryImpl_ErrorOpeningHeapDump;
     public static String SnapshotFactoryImpl_GCRootIDDoesNotMatchIndex;
     public static String SnapshotFactoryImpl_GCRootIDOutOfRange;
@@ -71,11 +78,16 @@ public class Messages extends NLS
     public static String SnapshotFactoryImpl_ObjectsFoundButClassesHadObjectsAndClassesInTotal;
     public static String SnapshotFactoryImpl_ReparsingHeapDumpAsIndexOutOfDate;
     public static String SnapshotFactoryImpl_ReparsingHeapDumpWithOutOfDateIndex;
+    public static String SnapshotFactoryImpl_ResumingFromCheckpoint;
     public static String SnapshotFactoryImpl_UnableToDeleteIndexFile;
     public static String SnapshotFactoryImpl_ValidatingGCRoots;
     public static String SnapshotFactoryImpl_ValidatingIndices;
+    public static String SnapshotFactoryImpl_WritingCheckpoint;
     public static String SnapshotImpl_BuildingHistogram;
     public static String SnapshotImpl_Error_DomTreeNotAvailable;
+    public static String SnapshotImpl_Error_NoSuchField;
+    public static String SnapshotImpl_Error_NotAPrimitiveField;
+    public static String SnapshotImpl_Error_NotAReferenceField;
     public static String SnapshotImpl_Error_ObjectNotFound;
     public static String SnapshotImpl_Error_ParserNotFound;
     public static String SnapshotImpl_Error_ReplacingNonExistentClassLoader;
@@ -87,6 +99,9 @@ public class Messages extends NLS
     public static String SnapshotImpl_ReadingOutboundReferrers;
     public static String SnapshotImpl_ReopeningParsedHeapDumpFile;
     public static String SnapshotImpl_RetrievingDominators;
+    public static String StringIndex_ErrorReadingStrings;
+    public static String StringIndex_IndexingStrings;
+    public static String StringIndex_Warning_IgnoreError;
     public static String ObjectArrayImpl_forArray;
     public static String ObjectMarker_MarkingObjects;
     public static String Operation_Error_ArgumentOfUnknownClass;
@@ -100,6 +115,7 @@ public class Messages extends NLS
     public static String OQLQueryImpl_Error_CannotCalculateRetainedSet;
     public static String OQLQueryImpl_Error_ClassCastExceptionOccured;
     public static String OQLQueryImpl_Error_ElementIsNotClass;
+    public static String OQLQueryImpl_Error_GroupByNeedsSelectList;
     public static String OQLQueryImpl_Error_InvalidClassNamePattern;
     public static String OQLQueryImpl_Error_MissingSnapshot;
     public static String OQLQueryImpl_Error_MustReturnObjectList;
@@ -108,6 +124,19 @@ public class Messages extends NLS
     public static String OQLQueryImpl_Error_QueryMustReturnObjects;
     public static String OQLQueryImpl_Error_ResultMustReturnObjectList;
     public static String OQLQueryImpl_Errot_IsNotClass;
+    public static String OQLQueryImpl_Plan_Aggregate;
+    public static String OQLQueryImpl_Plan_FieldCondition;
+    public static String OQLQueryImpl_Plan_Filter;
+    public static String OQLQueryImpl_Plan_FromCall;
+    public static String OQLQueryImpl_Plan_FromClassObjects;
+    public static String OQLQueryImpl_Plan_FromInstances;
+    public static String OQLQueryImpl_Plan_FromObjects;
+    public static String OQLQueryImpl_Plan_FromSubQuery;
+    public static String OQLQueryImpl_Plan_GroupBy;
+    public static String OQLQueryImpl_Plan_IndexCondition;
+    public static String OQLQueryImpl_Plan_Parallel;
+    public static String OQLQueryImpl_Plan_Serial;
+    public static String OQLQueryImpl_Plan_Union;
     public static String OQLQueryImpl_SelectingObjects;
     public static String ParserRegistry_ErrorCompilingFileNamePattern;
     public static String ParserRegistry_ErrorWhileCreating;
@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.eclipse.mat.collect.HashMapIntObject;
+import org.eclipse.mat.collect.IteratorInt;
+import org.eclipse.mat.collect.IteratorLong;
+import org.eclipse.mat.parser.index.IIndexReader;
+import org.eclipse.mat.parser.index.IndexManager.Index;
+import org.eclipse.mat.parser.index.IndexReader;
+import org.eclipse.mat.parser.index.IndexWriter;
+import org.eclipse.mat.parser.model.ClassImpl;
+import org.eclipse.mat.parser.model.XGCRootInfo;
+import org.eclipse.mat.parser.model.XSnapshotInfo;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * The checkpoint of a parse in progress, so that a parse which ran out of
+ * memory, crashed or was cancelled continues with the last completed phase
+ * when the dump is opened again.
+ * <ul>
+ * <li>{@link #PRELIMINARY}: the parser has filled the preliminary index, which
+ * is saved next to the index files. Only for parsers implementing
+ * {@link org.eclipse.mat.parser.IResumableIndexBuilder}, as the parser keeps
+ * its own state.</li>
+ * <li>{@link #SNAPSHOT}: the garbage has been removed and the snapshot index
+ * file is written, only the dominator tree is missing.</li>
+ * </ul>
+ * The checkpoint file is written last, so a checkpoint which cannot be read is
+ * ignored, as is one for another length or modification time of the dump,
+ * other options or another phase than the one to resume. The checkpoint is
+ * deleted when the parse completes.
+ */
+/* package */class ParseCheckpoint
+{
+    /**
+     * System property to switch off the checkpoints, e.g.
+     * -Dorg.eclipse.mat.parseCheckpoints=false
+     */
+    public static final String CHECKPOINTS_PROPERTY = "org.eclipse.mat.parseCheckpoints"; //$NON-NLS-1$
+
+    /** the preliminary index is saved */
+    static final int PRELIMINARY = 1;
+    /** the snapshot is saved, the dominator tree is missing */
+    static final int SNAPSHOT = 2;
+
+    private static final String VERSION = "MAT_CHECKPOINT_01"; //$NON-NLS-1$
+    private static final String NAME = "checkpoint."; //$NON-NLS-1$
+    private static final int BATCH_SIZE = 4096;
+
+    private final String prefix;
+    private final int phase;
+    private final String parserId;
+    private final boolean keepUnreachableObjects;
+    private final long dumpLength;
+    private final long dumpLastModified;
+
+    private ParseCheckpoint(String prefix, int phase, String parserId, boolean keepUnreachableObjects,
+                    long dumpLength, long dumpLastModified)
+    {
+        this.prefix = prefix;
+        this.phase = phase;
+        this.parserId = parserId;
+        this.keepUnreachableObjects = keepUnreachableObjects;
+        this.dumpLength = dumpLength;
+        this.dumpLastModified = dumpLastModified;
+    }
+
+    /**
+     * @return false if -Dorg.eclipse.mat.parseCheckpoints=false is set
+     */
+    static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty(CHECKPOINTS_PROPERTY)); //$NON-NLS-1$
+    }
+
+    /**
+     * @return true if there is a checkpoint file, even one which cannot be
+     *         read
+     */
+    static boolean exists(String prefix)
+    {
+        return getFile(prefix).exists();
+    }
+
+    /**
+     * Reads the checkpoint of an earlier parse of the same dump with the same
+     * options.
+     *
+     * @return the checkpoint or null if there is none which fits
+     */
+    static ParseCheckpoint read(File dump, String prefix, boolean keepUnreachableObjects)
+    {
+        File file = getFile(prefix);
+        if (!file.exists())
+            return null;
+
+        ObjectInputStream in = null;
+        try
+        {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (!VERSION.equals(in.readUTF()))
+                return null;
+            ParseCheckpoint checkpoint = new ParseCheckpoint(prefix, in.readInt(), in.readUTF(), in.readBoolean(),
+                            in.readLong(), in.readLong());
+            if (checkpoint.dumpLength != dump.length() || checkpoint.dumpLastModified != dump.lastModified()
+                            || checkpoint.keepUnreachableObjects != keepUnreachableObjects)
+                return null;
+            return checkpoint;
+        }
+        catch (IOException e)
+        {
+            // $JL-EXC$ incomplete checkpoint
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    int getPhase()
+    {
+        return phase;
+    }
+
+    String getParserId()
+    {
+        return parserId;
+    }
+
+    /**
+     * Restores the preliminary index. The indexes are read from the
+     * checkpoint files.
+     */
+    @SuppressWarnings("unchecked")
+    PreliminaryIndexImpl readPreliminaryIndex() throws IOException
+    {
+        if (phase != PRELIMINARY)
+            throw new IOException(getFile(prefix).getPath());
+
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(getFile(prefix))));
+        PreliminaryIndexImpl idx;
+        try
+        {
+            // skip the header
+            in.readUTF();
+            in.readInt();
+            in.readUTF();
+            in.readBoolean();
+            in.readLong();
+            in.readLong();
+
+            XSnapshotInfo snapshotInfo = (XSnapshotInfo) in.readObject();
+            snapshotInfo.setPrefix(prefix);
+            idx = new PreliminaryIndexImpl(snapshotInfo);
+            idx.setClassesById((HashMapIntObject<ClassImpl>) in.readObject());
+            idx.setGcRoots((HashMapIntObject<List<XGCRootInfo>>) in.readObject());
+            idx.setThread2objects2roots((HashMapIntObject<HashMapIntObject<List<XGCRootInfo>>>) in.readObject());
+        }
+        catch (ClassNotFoundException e)
+        {
+            IOException ioe = new IOException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        catch (ClassCastException e)
+        {
+            IOException ioe = new IOException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        finally
+        {
+            close(in);
+        }
+
+        openIndexes(prefix, idx);
+        return idx;
+    }
+
+    /**
+     * Saves the preliminary index. The indexes of the parser are then replaced
+     * by readers of the saved copies, which frees the indexes the parser held
+     * in memory and keeps the checkpoint intact while the garbage is removed.
+     */
+    static void writePreliminaryIndex(File dump, String prefix, String parserId, boolean keepUnreachableObjects,
+                    PreliminaryIndexImpl idx, IProgressListener listener) throws IOException
+    {
+        delete(prefix);
+
+        IIndexReader.IOne2LongIndex identifiers = new IndexWriter.LongIndexStreamer().writeTo(
+                        Index.IDENTIFIER.getFile(prefix + NAME), iterator(idx.identifiers));
+        identifiers.close();
+        checkCanceled(listener);
+
+        IIndexReader.IOne2OneIndex o2c = new IndexWriter.IntIndexStreamer().writeTo(
+                        Index.O2CLASS.getFile(prefix + NAME), iterator(idx.object2classId));
+        o2c.close();
+        checkCanceled(listener);
+
+        // the sizes are copied in their compressed form
+        IIndexReader.IOne2OneIndex a2s = new IndexWriter.IntIndexStreamer().writeTo(
+                        Index.A2SIZE.getFile(prefix + NAME), iterator(idx.array2size));
+        a2s.close();
+        checkCanceled(listener);
+
+        IndexWriter.IntArray1NWriter writer = new IndexWriter.IntArray1NWriter(idx.outbound.size(),
+                        Index.OUTBOUND.getFile(prefix + NAME));
+        try
+        {
+            for (int ii = 0; ii < idx.outbound.size(); ii++)
+            {
+                if ((ii & 0xffff) == 0)
+                    checkCanceled(listener);
+                writer.log(ii, idx.outbound.get(ii));
+            }
+            writer.flush().close();
+        }
+        catch (IOException e)
+        {
+            writer.cancel();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            writer.cancel();
+            throw e;
+        }
+
+        ObjectOutputStream out = openHeader(dump, prefix, PRELIMINARY, parserId, keepUnreachableObjects);
+        try
+        {
+            out.writeObject(idx.snapshotInfo);
+            out.writeObject(idx.classesById);
+            out.writeObject(idx.gcRoots);
+            out.writeObject(idx.thread2objects2roots);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        IIndexReader[] parserIndexes = new IIndexReader[] { idx.identifiers, idx.object2classId, idx.array2size,
+                        idx.outbound };
+        openIndexes(prefix, idx);
+        for (IIndexReader index : parserIndexes)
+        {
+            index.close();
+            index.delete();
+        }
+    }
+
+    /**
+     * Replaces any earlier checkpoint with one which only records that the
+     * snapshot index file is complete.
+     */
+    static void writeSnapshot(File dump, String prefix, String parserId, boolean keepUnreachableObjects)
+                    throws IOException
+    {
+        delete(prefix);
+        openHeader(dump, prefix, SNAPSHOT, parserId, keepUnreachableObjects).close();
+    }
+
+    /**
+     * Deletes the checkpoint file and the saved preliminary indexes.
+     */
+    static void delete(String prefix)
+    {
+        getFile(prefix).delete();
+        Index.IDENTIFIER.getFile(prefix + NAME).delete();
+        Index.O2CLASS.getFile(prefix + NAME).delete();
+        Index.A2SIZE.getFile(prefix + NAME).delete();
+        Index.OUTBOUND.getFile(prefix + NAME).delete();
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // private
+    // //////////////////////////////////////////////////////////////
+
+    private static void openIndexes(String prefix, PreliminaryIndexImpl idx) throws IOException
+    {
+        idx.setIdentifiers(new IndexReader.LongIndexReader(Index.IDENTIFIER.getFile(prefix + NAME)));
+        idx.setObject2classId(new IndexReader.IntIndexReader(Index.O2CLASS.getFile(prefix + NAME)));
+        idx.setArray2size(new IndexReader.SizeIndexReader(Index.A2SIZE.getFile(prefix + NAME)));
+        idx.setOutbound(new IndexReader.IntIndex1NReader(Index.OUTBOUND.getFile(prefix + NAME)));
+        idx.checkpointed = true;
+    }
+
+    private static File getFile(String prefix)
+    {
+        return new File(prefix + NAME + "index"); //$NON-NLS-1$
+    }
+
+    private static ObjectOutputStream openHeader(File dump, String prefix, int phase, String parserId,
+                    boolean keepUnreachableObjects) throws IOException
+    {
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        getFile(prefix))));
+        out.writeUTF(VERSION);
+        out.writeInt(phase);
+        out.writeUTF(parserId);
+        out.writeBoolean(keepUnreachableObjects);
+        out.writeLong(dump.length());
+        out.writeLong(dump.lastModified());
+        return out;
+    }
+
+    /**
+     * Reads the index in batches, also used by the garbage cleaner.
+     */
+    static IteratorLong iterator(final IIndexReader.IOne2LongIndex index)
+    {
+        return new IteratorLong()
+        {
+            int next;
+            int pos;
+            long[] batch = new long[0];
+
+            public boolean hasNext()
+            {
+                return next < index.size();
+            }
+
+            public long next()
+            {
+                if (pos == batch.length)
+                {
+                    batch = index.getNext(next, Math.min(BATCH_SIZE, index.size() - next));
+                    pos = 0;
+                }
+                next++;
+                return batch[pos++];
+            }
+        };
+    }
+
+    static IteratorInt iterator(final IIndexReader.IOne2OneIndex index)
+    {
+        return new IteratorInt()
+        {
+            int next;
+            int pos;
+            int[] batch = new int[0];
+
+            public boolean hasNext()
+            {
+                return next < index.size();
+            }
+
+            public int next()
+            {
+                if (pos == batch.length)
+                {
+                    batch = index.getNext(next, Math.min(BATCH_SIZE, index.size() - next));
+                    pos = 0;
+                }
+                next++;
+                return batch[pos++];
+            }
+        };
+    }
+
+    private static void checkCanceled(IProgressListener listener)
+    {
+        if (listener.isCanceled())
+            throw new IProgressListener.OperationCanceledException();
+    }
+
+    private static void close(ObjectInputStream in)
+    {
+        if (in != null)
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+        }
+    }
+}
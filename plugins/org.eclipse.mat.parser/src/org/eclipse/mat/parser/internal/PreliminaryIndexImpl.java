@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.mat.parser.internal;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.eclipse.mat.collect.HashMapIntObject;
@@ -63,6 +64,12 @@ import org.eclipse.mat.parser.model.XSnapshotInfo;
      */
     IIndexReader.IOne2SizeIndex array2size = null;
 
+    /**
+     * The indexes are read from the files of the parse checkpoint, which are
+     * kept until the parse has completed.
+     */
+    boolean checkpointed;
+
     public PreliminaryIndexImpl(XSnapshotInfo snapshotInfo)
     {
         this.snapshotInfo = snapshotInfo;
@@ -110,4 +117,14 @@ import org.eclipse.mat.parser.model.XSnapshotInfo;
 
     public void delete()
     {}
+
+    /**
+     * Frees one of the indexes once it has been rewritten.
+     */
+    void release(IIndexReader index) throws IOException
+    {
+        index.close();
+        if (!checkpointed)
+            index.delete();
+    }
 }
@@ -18,10 +18,12 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
@@ -32,7 +34,11 @@ import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.HashMapIntObject;
 import org.eclipse.mat.collect.IteratorInt;
 import org.eclipse.mat.parser.IIndexBuilder;
+import org.eclipse.mat.parser.IPurgedMappingIndexBuilder;
+import org.eclipse.mat.parser.IResumableIndexBuilder;
+import org.eclipse.mat.parser.index.IndexManager.Index;
 import org.eclipse.mat.parser.internal.oql.OQLQueryImpl;
+import org.eclipse.mat.parser.internal.util.PurgedMapping;
 import org.eclipse.mat.parser.internal.util.ParserRegistry;
 import org.eclipse.mat.parser.internal.util.ParserRegistry.Parser;
 import org.eclipse.mat.parser.model.ClassImpl;
@@ -63,23 +69,13 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
 
     private Map<File, SnapshotEntry> snapshotCache = new HashMap<File, SnapshotEntry>();
 
+    /** the prefixes of the dumps being read or parsed */
+    private Set<String> opening = new HashSet<String>();
+
     public ISnapshot openSnapshot(File file, Map<String, String> args, IProgressListener listener) throws SnapshotException
     {
         ISnapshot answer = null;
 
-        // lookup in cache
-        SnapshotEntry entry = snapshotCache.get(file);
-        if (entry != null)
-        {
-            answer = entry.snapshot.get();
-
-            if (answer != null)
-            {
-                entry.usageCount++;
-                return answer;
-            }
-        }
-
         String name = file.getName();
 
         int p = name.lastIndexOf('.');
@@ -91,6 +87,68 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
             prefix += snapshot_identifier + "."; //$NON-NLS-1$
         }
 
+        // lookup in cache; dumps may be opened by several threads, but the
+        // index files of a prefix are read or written by one at a time
+        synchronized (this)
+        {
+            while (opening.contains(prefix))
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IProgressListener.OperationCanceledException();
+                }
+            }
+
+            SnapshotEntry entry = snapshotCache.get(file);
+            if (entry != null)
+            {
+                answer = entry.snapshot.get();
+
+                if (answer != null)
+                {
+                    entry.usageCount++;
+                    return answer;
+                }
+            }
+
+            opening.add(prefix);
+        }
+
+        try
+        {
+            answer = openOrParse(file, prefix, args, listener);
+
+            synchronized (this)
+            {
+                snapshotCache.put(file, new SnapshotEntry(1, answer));
+            }
+
+            return answer;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                opening.remove(prefix);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Read the index files of the dump, or parse it if they are missing or
+     * out of date. The caller holds the prefix.
+     */
+    private ISnapshot openOrParse(File file, String prefix, Map<String, String> args, IProgressListener listener)
+                    throws SnapshotException
+    {
+        ISnapshot answer = null;
+
+        boolean keepUnreachableObjects = Boolean.parseBoolean(args.get("keep_unreachable_objects"));//$NON-NLS-1$
         try
         {
             File indexFile = new File(prefix + "index");//$NON-NLS-1$
@@ -99,7 +157,18 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
                 // check if hprof file is newer than index file
                 if (file.lastModified() <= indexFile.lastModified())
                 {
-                    answer = SnapshotImpl.readFromFile(file, prefix, listener);
+                    if (ParseCheckpoint.exists(prefix))
+                    {
+                        // the index file is complete only if the checkpoint
+                        // was written after it for this dump and options
+                        ParseCheckpoint checkpoint = ParseCheckpoint.read(file, prefix, keepUnreachableObjects);
+                        if (checkpoint != null && checkpoint.getPhase() == ParseCheckpoint.SNAPSHOT)
+                            answer = resumeDominatorTree(file, prefix, listener);
+                    }
+                    else
+                    {
+                        answer = SnapshotImpl.readFromFile(file, prefix, listener);
+                    }
                 }
                 else
                 {
@@ -122,14 +191,16 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
 
         if (answer == null)
         {
-            deleteIndexFiles(file, prefix, listener);
-            answer = parse(file, prefix, args, listener);
+            ParseCheckpoint checkpoint = ParseCheckpoint.read(file, prefix, keepUnreachableObjects);
+            if (checkpoint == null || checkpoint.getPhase() != ParseCheckpoint.PRELIMINARY)
+            {
+                ParseCheckpoint.delete(prefix);
+                checkpoint = null;
+            }
+            deleteIndexFiles(file, prefix, checkpoint != null, listener);
+            answer = parse(file, prefix, args, checkpoint, listener);
         }
 
-        entry = new SnapshotEntry(1, answer);
-
-        snapshotCache.put(file, entry);
-
         return answer;
     }
 
@@ -181,7 +252,38 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
     // Internal implementations
     // //////////////////////////////////////////////////////////////
 
-    private final ISnapshot parse(File file, String prefix, Map<String, String> args, IProgressListener listener) throws SnapshotException
+    /**
+     * Completes a parse which failed while calculating the dominator tree.
+     * Everything else is in the snapshot index file.
+     */
+    private SnapshotImpl resumeDominatorTree(File file, String prefix, IProgressListener listener)
+                    throws SnapshotException, IOException
+    {
+        listener.subTask(MessageUtil.format(Messages.SnapshotFactoryImpl_ResumingFromCheckpoint, file.getName()));
+
+        // drop what was written of the dominator tree
+        Index.DOMINATOR.getFile(prefix).delete();
+        Index.DOMINATED.getFile(prefix).delete();
+        Index.O2RETAINED.getFile(prefix).delete();
+
+        SnapshotImpl snapshot = SnapshotImpl.readFromFile(file, prefix, listener);
+        boolean done = false;
+        try
+        {
+            snapshot.calculateDominatorTree(listener);
+            done = true;
+        }
+        finally
+        {
+            if (!done)
+                snapshot.dispose();
+        }
+        ParseCheckpoint.delete(prefix);
+        return snapshot;
+    }
+
+    private final ISnapshot parse(File file, String prefix, Map<String, String> args, ParseCheckpoint checkpoint,
+                    IProgressListener listener) throws SnapshotException
     {
         ParserRegistry registry = ParserPlugin.getDefault().getParserRegistry();
 
@@ -198,29 +300,58 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
 			if (indexBuilder == null)
 				continue;
             
+            boolean keepUnreachableObjects = Boolean.parseBoolean(args.get("keep_unreachable_objects"));//$NON-NLS-1$
+            boolean checkpointed = false;
             try
             {
                 indexBuilder.init(file, prefix);
 
-                XSnapshotInfo snapshotInfo = new XSnapshotInfo();
-                snapshotInfo.setPath(file.getAbsolutePath());
-                snapshotInfo.setPrefix(prefix);
-                snapshotInfo.setProperty("$heapFormat", parser.getId());//$NON-NLS-1$
-                if (Boolean.parseBoolean(args.get("keep_unreachable_objects")))//$NON-NLS-1$
+                PreliminaryIndexImpl idx = null;
+                if (checkpoint != null && checkpoint.getParserId().equals(parser.getUniqueIdentifier())
+                                && indexBuilder instanceof IResumableIndexBuilder)
                 {
-                    snapshotInfo.setProperty("keep_unreachable_objects", GCRootInfo.Type.UNREACHABLE);//$NON-NLS-1$
+                    listener.subTask(MessageUtil.format(Messages.SnapshotFactoryImpl_ResumingFromCheckpoint, file
+                                    .getName()));
+                    try
+                    {
+                        idx = checkpoint.readPreliminaryIndex();
+                        if (((IResumableIndexBuilder) indexBuilder).resume(idx, listener))
+                            checkpointed = true;
+                        else
+                            idx = null;
+                    }
+                    catch (IOException e)
+                    {
+                        listener.sendUserMessage(Severity.INFO, MessageUtil.format(
+                                        Messages.SnapshotFactoryImpl_Error_ResumingFromCheckpoint, e.getMessage()), e);
+                        idx = null;
+                    }
+                    if (idx == null)
+                        ParseCheckpoint.delete(prefix);
                 }
+                checkpoint = null;
 
-                String snapshot_identifier = args.get("snapshot_identifier"); //$NON-NLS-1$
-                if (snapshot_identifier != null)
+                if (idx == null)
+                    idx = fill(file, prefix, args, parser, indexBuilder, listener);
+
+                if (!checkpointed && indexBuilder instanceof IResumableIndexBuilder && ParseCheckpoint.isEnabled())
                 {
-                    snapshotInfo.setProperty("$runtimeId", snapshot_identifier);//$NON-NLS-1$
+                    listener.subTask(Messages.SnapshotFactoryImpl_WritingCheckpoint);
+                    try
+                    {
+                        ParseCheckpoint.writePreliminaryIndex(file, prefix, parser.getUniqueIdentifier(),
+                                        keepUnreachableObjects, idx, listener);
+                        checkpointed = true;
+                    }
+                    catch (IOException e)
+                    {
+                        // parse on without a checkpoint
+                        ParseCheckpoint.delete(prefix);
+                        listener.sendUserMessage(Severity.WARNING, MessageUtil.format(
+                                        Messages.SnapshotFactoryImpl_Error_WritingCheckpoint, e.getMessage()), e);
+                    }
                 }
 
-                PreliminaryIndexImpl idx = new PreliminaryIndexImpl(snapshotInfo);
-
-                indexBuilder.fill(idx, listener);
-
                 if (ParserPlugin.getDefault().isDebugging())
                 {
                     validateIndices(idx, listener);
@@ -228,24 +359,47 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
 
                 SnapshotImplBuilder builder = new SnapshotImplBuilder(idx.getSnapshotInfo());
 
-                int[] purgedMapping = GarbageCleaner.clean(idx, builder, args, listener);
+                PurgedMapping purgedMapping = GarbageCleaner.clean(idx, builder, args, listener);
 
-                indexBuilder.clean(purgedMapping, listener);
+                if (indexBuilder instanceof IPurgedMappingIndexBuilder)
+                    ((IPurgedMappingIndexBuilder) indexBuilder).clean(purgedMapping, listener);
+                else
+                    indexBuilder.clean(purgedMapping.toArray(), listener);
 
                 SnapshotImpl snapshot = builder.create(parser, listener);
 
+                if (ParseCheckpoint.isEnabled())
+                {
+                    ParseCheckpoint.writeSnapshot(file, prefix, parser.getUniqueIdentifier(), keepUnreachableObjects);
+                    checkpointed = true;
+                }
+
                 snapshot.calculateDominatorTree(listener);
 
+                ParseCheckpoint.delete(prefix);
+
                 return snapshot;
             }
             catch (IOException ioe)
             {
                 errors.add(ioe);
                 indexBuilder.cancel();
+                ParseCheckpoint.delete(prefix);
+            }
+            catch (IProgressListener.OperationCanceledException e)
+            {
+                // keep the checkpoint so that the next parse can continue
+                if (checkpointed && indexBuilder instanceof IResumableIndexBuilder)
+                    ((IResumableIndexBuilder) indexBuilder).suspend();
+                else
+                    indexBuilder.cancel();
+
+                throw e;
             }
             catch (Exception e)
             {
                 indexBuilder.cancel();
+                ParseCheckpoint.delete(prefix);
 
                 throw SnapshotException.rethrow(e);
             }
@@ -275,6 +429,34 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
         }
     }
 
+    /**
+     * Runs the parser to fill a new preliminary index.
+     */
+    private PreliminaryIndexImpl fill(File file, String prefix, Map<String, String> args, Parser parser,
+                    IIndexBuilder indexBuilder, IProgressListener listener) throws SnapshotException, IOException
+    {
+        XSnapshotInfo snapshotInfo = new XSnapshotInfo();
+        snapshotInfo.setPath(file.getAbsolutePath());
+        snapshotInfo.setPrefix(prefix);
+        snapshotInfo.setProperty("$heapFormat", parser.getId());//$NON-NLS-1$
+        if (Boolean.parseBoolean(args.get("keep_unreachable_objects")))//$NON-NLS-1$
+        {
+            snapshotInfo.setProperty("keep_unreachable_objects", GCRootInfo.Type.UNREACHABLE);//$NON-NLS-1$
+        }
+
+        String snapshot_identifier = args.get("snapshot_identifier"); //$NON-NLS-1$
+        if (snapshot_identifier != null)
+        {
+            snapshotInfo.setProperty("$runtimeId", snapshot_identifier);//$NON-NLS-1$
+        }
+
+        PreliminaryIndexImpl idx = new PreliminaryIndexImpl(snapshotInfo);
+
+        indexBuilder.fill(idx, listener);
+
+        return idx;
+    }
+
     /**
      * Check that indices look valid
      * 
@@ -553,7 +735,13 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
         return clsInfo;
     }
 
-    private void deleteIndexFiles(File file, final String prefix, IProgressListener listener)
+    /**
+     * @param keepCheckpoint
+     *            do not delete the checkpoint of the parse to resume, nor the
+     *            threads file written by the parser before the checkpoint
+     */
+    private void deleteIndexFiles(File file, final String prefix, final boolean keepCheckpoint,
+                    IProgressListener listener)
     {
         File prefixFile = new File(prefix);
         File directory = prefixFile.getParentFile();
@@ -574,6 +762,9 @@ public class SnapshotFactoryImpl implements SnapshotFactory.Implementation
                     return false;
 
                 String name = f.getName();
+                if (keepCheckpoint
+                                && (name.equals(fragment + "checkpoint.index") || name.equals(fragment + "threads"))) //$NON-NLS-1$ //$NON-NLS-2$
+                    return false;
                 return name.startsWith(fragment)
                                 && (indexPattern.matcher(name.substring(fragment.length())).matches()
                                   || threadPattern.matcher(name.substring(fragment.length())).matches() 
@@ -39,18 +39,23 @@ import org.eclipse.mat.collect.BitField;
 import org.eclipse.mat.collect.HashMapIntObject;
 import org.eclipse.mat.collect.IteratorInt;
 import org.eclipse.mat.collect.SetInt;
+import org.eclipse.mat.parser.IFieldValueReader;
 import org.eclipse.mat.parser.IObjectReader;
 import org.eclipse.mat.parser.index.IIndexReader;
+import org.eclipse.mat.parser.index.IIndexReader.IOne2LongIndex;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2OneIndex;
 import org.eclipse.mat.parser.index.IIndexReader.IOne2SizeIndex;
 import org.eclipse.mat.parser.index.IndexManager;
 import org.eclipse.mat.parser.index.IndexManager.Index;
+import org.eclipse.mat.parser.internal.snapshot.FieldValueIndex;
 import org.eclipse.mat.parser.internal.snapshot.HistogramBuilder;
+import org.eclipse.mat.parser.internal.snapshot.IncrementalRetainedSet;
 import org.eclipse.mat.parser.internal.snapshot.MultiplePathsFromGCRootsComputerImpl;
 import org.eclipse.mat.parser.internal.snapshot.ObjectCache;
 import org.eclipse.mat.parser.internal.snapshot.ObjectMarker;
 import org.eclipse.mat.parser.internal.snapshot.PathsFromGCRootsTreeBuilder;
 import org.eclipse.mat.parser.internal.snapshot.RetainedSizeCache;
+import org.eclipse.mat.parser.internal.snapshot.StringIndex;
 import org.eclipse.mat.parser.internal.util.IntStack;
 import org.eclipse.mat.parser.internal.util.ParserRegistry;
 import org.eclipse.mat.parser.internal.util.ParserRegistry.Parser;
@@ -68,13 +73,18 @@ import org.eclipse.mat.snapshot.Histogram;
 import org.eclipse.mat.snapshot.IMultiplePathsFromGCRootsComputer;
 import org.eclipse.mat.snapshot.IPathsFromGCRootsComputer;
 import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
 import org.eclipse.mat.snapshot.PathsFromGCRootsTree;
 import org.eclipse.mat.snapshot.UnreachableObjectsHistogram;
+import org.eclipse.mat.snapshot.model.Field;
+import org.eclipse.mat.snapshot.model.FieldDescriptor;
 import org.eclipse.mat.snapshot.model.GCRootInfo;
 import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.model.IThreadStack;
 import org.eclipse.mat.snapshot.model.NamedReference;
+import org.eclipse.mat.snapshot.model.ObjectReference;
 import org.eclipse.mat.util.IProgressListener;
 import org.eclipse.mat.util.IProgressListener.OperationCanceledException;
 import org.eclipse.mat.util.MessageUtil;
@@ -252,6 +262,8 @@ public final class SnapshotImpl implements ISnapshot
     private boolean dominatorTreeCalculated;
     private Map<String, List<IClass>> classCacheByName;
     private ObjectCache<IObject> objectCache;
+    private FieldValueIndex fieldValueIndex;
+    private StringIndex stringIndex;
     
     private boolean parsedThreads = false;
     HashMapIntObject<IThreadStack> threadId2stack;
@@ -300,7 +312,12 @@ public final class SnapshotImpl implements ISnapshot
         this.dominatorTreeCalculated = indexManager.dominated() != null && indexManager.o2retained() != null
                         && indexManager.dominator() != null;
 
-        this.objectCache = new HeapObjectCache(this, 1000);
+        this.objectCache = new HeapObjectCache(this, ObjectCache.getConfiguredSize());
+
+        if (FieldValueIndex.isEnabled())
+            this.fieldValueIndex = new FieldValueIndex(snapshotInfo.getPrefix() + "fields.index"); //$NON-NLS-1$
+        if (StringIndex.isEnabled())
+            this.stringIndex = new StringIndex(this, snapshotInfo.getPrefix() + "strings.index"); //$NON-NLS-1$
 
         this.heapObjectReader.open(this);
 
@@ -590,12 +607,6 @@ public final class SnapshotImpl implements ISnapshot
         /* for empty initial set - return immediately an empty retained set */
         if (objectIds.length == 0) { return new int[0]; }
 
-        /*
-         * take the retained set of a single object out of the dominator tree -
-         * it's faster
-         */
-        if (objectIds.length == 1) { return getSingleObjectRetainedSet(objectIds[0]); }
-
         int numberOfObjects = snapshotInfo.getNumberOfObjects();
 
         if (progressMonitor == null)
@@ -664,12 +675,6 @@ public final class SnapshotImpl implements ISnapshot
         /* for empty initial set - return immediately an empty retained set */
         if (objectIds.length == 0) { return new int[0]; }
 
-        /*
-         * take the retained set of a single object out of the dominator tree -
-         * it's faster
-         */
-        if (objectIds.length == 1) { return getSingleObjectRetainedSet(objectIds[0]); }
-
         int numberOfObjects = snapshotInfo.getNumberOfObjects();
 
         if (progressMonitor == null)
@@ -735,6 +740,36 @@ public final class SnapshotImpl implements ISnapshot
 
     public int[] getRetainedSet(int[] objectIds, IProgressListener progressMonitor) throws SnapshotException
     {
+        /*
+         * take the retained set of a single object out of the dominator tree -
+         * it's faster
+         */
+        if (objectIds.length == 1 && isDominatorTreeCalculated())
+            return getSingleObjectRetainedSet(objectIds[0]);
+
+        if (objectIds.length > 1 && isDominatorTreeCalculated())
+        {
+            /*
+             * Try to find the retained set around the dominated objects
+             * first, which is much faster than marking the heap for small
+             * retained sets.
+             */
+            int limit = Math.max(snapshotInfo.getNumberOfObjects() / 16, 1000);
+            try
+            {
+                int[] retained = new IncrementalRetainedSet(this, limit, limit,
+                                progressMonitor != null ? progressMonitor : new VoidProgressListener())
+                                .calculate(objectIds);
+                if (retained != null)
+                    return retained;
+            }
+            catch (OperationCanceledException e)
+            {
+                // $JL-EXC$
+                return null;
+            }
+        }
+
         int availableProcessors = Runtime.getRuntime().availableProcessors();
         if (availableProcessors > 1)
         {
@@ -794,10 +829,21 @@ public final class SnapshotImpl implements ISnapshot
         {
             firstPass[objId] = true;
         }
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
         ObjectMarker marker = new ObjectMarker(getGCRoots(), firstPass, getIndexManager().outbound,
                         IndexManager.Index.OUTBOUND.getFile(getSnapshotInfo().getPrefix()).length(),
                         new VoidProgressListener());
-        marker.markSingleThreaded(excludedReferences, this);
+        try
+        {
+            if (availableProcessors > 1)
+                marker.markMultiThreaded(excludedReferences, this, availableProcessors);
+            else
+                marker.markSingleThreaded(excludedReferences, this);
+        }
+        catch (InterruptedException e)
+        {
+            throw new SnapshotException(e);
+        }
 
         // un-mark initial - they have to go into the retained set
         for (int objId : objectIds)
@@ -814,7 +860,17 @@ public final class SnapshotImpl implements ISnapshot
 
         ObjectMarker secondMarker = new ObjectMarker(objectIds, secondPass, getIndexManager().outbound,
                         new VoidProgressListener());
-        secondMarker.markSingleThreaded();
+        try
+        {
+            if (availableProcessors > 1)
+                secondMarker.markMultiThreaded(availableProcessors);
+            else
+                secondMarker.markSingleThreaded();
+        }
+        catch (InterruptedException e)
+        {
+            throw new SnapshotException(e);
+        }
 
         /*
          * Have to merge the results of the two markings here
@@ -963,12 +1019,8 @@ public final class SnapshotImpl implements ISnapshot
                         // push, check capacity first
                         if (size == capacity)
                         {
-                            int newCapacity = capacity << 1;
-                            int[] newArr = new int[newCapacity];
-                            System.arraycopy(stack, 0, newArr, 0, capacity);
-                            stack = newArr;
-                            capacity = newCapacity;
-
+                            stack = IntStack.grow(stack, size + 1);
+                            capacity = stack.length;
                         }
                         stack[size++] = i;
                     }
@@ -1365,6 +1417,165 @@ public final class SnapshotImpl implements ISnapshot
         return this.objectCache.get(objectId);
     }
 
+    public long[] getPrimitiveFieldValues(int[] objectIds, String fieldName) throws SnapshotException
+    {
+        checkFieldType(objectIds, fieldName, false);
+        return readFieldValues(objectIds, fieldName, false);
+    }
+
+    public int[] getReferenceFieldIds(int[] objectIds, String fieldName) throws SnapshotException
+    {
+        checkFieldType(objectIds, fieldName, true);
+        long[] ids = readFieldValues(objectIds, fieldName, true);
+
+        int[] answer = new int[ids.length];
+        for (int ii = 0; ii < ids.length; ii++)
+            answer[ii] = (int) ids[ii];
+        return answer;
+    }
+
+    /**
+     * Checks once per class that the objects are instances with a reference
+     * or a primitive field of this name.
+     */
+    private void checkFieldType(int[] objectIds, String fieldName, boolean reference) throws SnapshotException
+    {
+        SetInt checked = new SetInt();
+        IOne2OneIndex o2class = indexManager.o2class();
+        for (int objectId : objectIds)
+        {
+            if (isArray(objectId) || isClass(objectId))
+                throw new SnapshotException(MessageUtil.format(Messages.SnapshotImpl_Error_NoSuchField, "0x" //$NON-NLS-1$
+                                + Long.toHexString(mapIdToAddress(objectId)), getClassOf(objectId).getName(),
+                                fieldName));
+
+            int classId = o2class.get(objectId);
+            if (!checked.add(classId))
+                continue;
+
+            IClass clazz = classCache.get(classId);
+            int type = -1;
+            for (IClass c = clazz; c != null && type < 0; c = c.getSuperClass())
+            {
+                for (FieldDescriptor field : c.getFieldDescriptors())
+                {
+                    if (field.getName().equals(fieldName))
+                    {
+                        type = field.getType();
+                        break;
+                    }
+                }
+            }
+
+            if (type < 0)
+                throw new SnapshotException(MessageUtil.format(Messages.SnapshotImpl_Error_NoSuchField, "0x" //$NON-NLS-1$
+                                + Long.toHexString(mapIdToAddress(objectId)), clazz.getName(), fieldName));
+            if ((type == IObject.Type.OBJECT) != reference)
+                throw new SnapshotException(MessageUtil.format(
+                                reference ? Messages.SnapshotImpl_Error_NotAReferenceField
+                                                : Messages.SnapshotImpl_Error_NotAPrimitiveField, clazz.getName(),
+                                fieldName));
+        }
+    }
+
+    /**
+     * Reads the field from the stored columns where possible, else from the
+     * dump. References are returned as object ids.
+     */
+    private long[] readFieldValues(int[] objectIds, String fieldName, boolean reference) throws SnapshotException
+    {
+        if (fieldValueIndex != null)
+            return fieldValueIndex.read(objectIds, fieldName, reference, this, indexManager.o2class(), new FieldValueIndex.Source()
+            {
+                public long[] read(int[] ids, String name, boolean isReference) throws SnapshotException
+                {
+                    return readFieldValuesFromDump(ids, name, isReference);
+                }
+            });
+        return readFieldValuesFromDump(objectIds, fieldName, reference);
+    }
+
+    private long[] readFieldValuesFromDump(int[] objectIds, String fieldName, boolean reference)
+                    throws SnapshotException
+    {
+        long[] values = readFieldValuesFromDump(objectIds, fieldName);
+        if (reference)
+        {
+            IOne2LongIndex o2address = indexManager.o2address();
+            for (int ii = 0; ii < values.length; ii++)
+            {
+                int objectId = values[ii] == 0 ? -1 : o2address.reverse(values[ii]);
+                values[ii] = objectId < 0 ? -1 : objectId;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads the field straight from the dump if the parser supports it, else
+     * from each object.
+     */
+    private long[] readFieldValuesFromDump(int[] objectIds, String fieldName) throws SnapshotException
+    {
+        if (heapObjectReader instanceof IFieldValueReader)
+        {
+            try
+            {
+                return ((IFieldValueReader) heapObjectReader).readFieldValues(objectIds, fieldName, this);
+            }
+            catch (IOException e)
+            {
+                throw new SnapshotException(e);
+            }
+        }
+
+        long[] answer = new long[objectIds.length];
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            Field field = getDeclaredField((IInstance) getObject(objectIds[ii]), fieldName);
+            Object value = field != null ? field.getValue() : null;
+            if (value instanceof ObjectReference)
+                answer[ii] = ((ObjectReference) value).getObjectAddress();
+            else if (value instanceof Boolean)
+                answer[ii] = ((Boolean) value).booleanValue() ? 1 : 0;
+            else if (value instanceof Character)
+                answer[ii] = ((Character) value).charValue();
+            else if (value instanceof Float)
+                answer[ii] = Float.floatToRawIntBits(((Float) value).floatValue());
+            else if (value instanceof Double)
+                answer[ii] = Double.doubleToRawLongBits(((Double) value).doubleValue());
+            else if (value instanceof Number)
+                answer[ii] = ((Number) value).longValue();
+        }
+        return answer;
+    }
+
+    /**
+     * The field of the class nearest to the class of the instance, as read
+     * from the dump. {@link IInstance#getField(String)} instead answers the
+     * field of the superclass if the name is declared more than once.
+     */
+    private static Field getDeclaredField(IInstance instance, String fieldName)
+    {
+        // the fields are listed from the class to the superclasses
+        int index = 0;
+        for (IClass c = instance.getClazz(); c != null; c = c.getSuperClass())
+        {
+            for (FieldDescriptor field : c.getFieldDescriptors())
+            {
+                if (field.getName().equals(fieldName))
+                {
+                    List<Field> fields = instance.getFields();
+                    if (index < fields.size() && fields.get(index).getName().equals(fieldName))
+                        return fields.get(index);
+                    return instance.getField(fieldName);
+                }
+                index++;
+            }
+        }
+        return null;
+    }
+
     public GCRootInfo[] getGCRootInfo(int objectId) throws SnapshotException
     {
         return roots.get(objectId);
@@ -2005,7 +2216,7 @@ public final class SnapshotImpl implements ISnapshot
     /**
      * Get additional JVM information, if available.
      * <p>
-     * A known type is {@link UnreachableObjectsHistogram}. 
+     * Known types are {@link UnreachableObjectsHistogram} and {@link IStringIndex}.
      * Extra information can be obtained from an implementation of {@link IObjectReader#getAddon(Class)}.
      * @param addon the type of the data. For example, {@link UnreachableObjectsHistogram}.class
      * @return the extra data
@@ -2017,6 +2228,10 @@ public final class SnapshotImpl implements ISnapshot
         {
             return (A) this.getSnapshotInfo().getProperty(UnreachableObjectsHistogram.class.getName());
         }
+        else if (addon == IStringIndex.class)
+        {
+            return (A) stringIndex;
+        }
         else
         {
             return heapObjectReader.getAddon(addon);
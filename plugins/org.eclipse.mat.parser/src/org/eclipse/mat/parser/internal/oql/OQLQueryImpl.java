@@ -12,16 +12,27 @@
 package org.eclipse.mat.parser.internal.oql;
 
 import java.io.StringReader;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.ArrayInt;
 import org.eclipse.mat.collect.ArrayLong;
@@ -29,10 +40,13 @@ import org.eclipse.mat.collect.IteratorInt;
 import org.eclipse.mat.collect.IteratorLong;
 import org.eclipse.mat.collect.SetInt;
 import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.parser.internal.ParserPlugin;
+import org.eclipse.mat.parser.internal.oql.compiler.Aggregate;
 import org.eclipse.mat.parser.internal.oql.compiler.CompilerImpl;
 import org.eclipse.mat.parser.internal.oql.compiler.EvaluationContext;
 import org.eclipse.mat.parser.internal.oql.compiler.Expression;
 import org.eclipse.mat.parser.internal.oql.compiler.Query;
+import org.eclipse.mat.parser.internal.oql.compiler.QueryPlan;
 import org.eclipse.mat.parser.internal.oql.compiler.Query.SelectItem;
 import org.eclipse.mat.parser.internal.oql.parser.OQLParser;
 import org.eclipse.mat.parser.internal.oql.parser.ParseException;
@@ -56,8 +70,22 @@ import org.eclipse.mat.util.VoidProgressListener;
 
 public class OQLQueryImpl implements IOQLQuery
 {
+    private static final boolean SERIAL = Platform.inDebugMode() && ParserPlugin.getDefault().isDebugging()
+                    && Boolean.parseBoolean(Platform.getDebugOption("org.eclipse.mat.parser/debug/serialOQL")); //$NON-NLS-1$
+
+    /** number of objects evaluated by one task of the helper threads */
+    private static final int PARTITION_SIZE = 8192;
+
+    /** set on the helper threads, nested queries are then evaluated serially */
+    private static final ThreadLocal<Boolean> IN_PARTITION = new ThreadLocal<Boolean>();
+
+    /** a query prefixed with EXPLAIN returns the plan instead of the result */
+    private static final Pattern EXPLAIN = Pattern.compile("\\s*explain\\s", Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+
     Query query;
     EvaluationContext ctx;
+    QueryPlan plan;
+    boolean explain;
 
     // //////////////////////////////////////////////////////////////
     // result set implementations
@@ -67,28 +95,73 @@ public class OQLQueryImpl implements IOQLQuery
     {}
 
     /**
-     * Result from a select with select list where the from clause returned a list or array of objects.
+     * The column values of a result set. The values are calculated on demand
+     * and kept in pages of rows which the garbage collector may discard, so
+     * that exporting or scrolling through a huge result does not keep all
+     * values in memory.
      */
-    private static class ObjectResultSet implements CustomTableResultSet
+    private static abstract class PagedValues
     {
+        private static final int PAGE_SIZE = 1024;
         private static final Object NULL_VALUE = new Object();
 
-        private static class ValueHolder
+        private final int rowCount;
+        private final int columnCount;
+        private final SoftReference<Object[]>[] pages;
+
+        @SuppressWarnings("unchecked")
+        PagedValues(int rowCount, int columnCount)
+        {
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            this.pages = (SoftReference<Object[]>[]) new SoftReference<?>[(rowCount + PAGE_SIZE - 1) / PAGE_SIZE];
+        }
+
+        Object get(int row, int column)
         {
-            Object subject;
-            Object[] values;
+            int pageNo = row / PAGE_SIZE;
+            Object[] page = pages[pageNo] != null ? pages[pageNo].get() : null;
+            if (page == null)
+            {
+                page = new Object[Math.min(PAGE_SIZE, rowCount - pageNo * PAGE_SIZE) * columnCount];
+                pages[pageNo] = new SoftReference<Object[]>(page);
+            }
 
-            public ValueHolder(Object subject, Object[] values)
+            // each column value is calculated separately, because I do not
+            // want sorting to resolve all values in all rows
+
+            // NULL_VALUE is used to keep track of column values which have
+            // been calculated but returned a null value
+            int slot = (row % PAGE_SIZE) * columnCount + column;
+            if (page[slot] == null)
             {
-                this.subject = subject;
-                this.values = values;
+                try
+                {
+                    Object value = compute(row, column);
+                    page[slot] = value != null ? value : NULL_VALUE;
+                }
+                catch (SnapshotException e)
+                {
+                    throw new RuntimeException(e);
+                }
             }
+
+            return page[slot] == NULL_VALUE ? null : page[slot];
         }
 
+        abstract Object compute(int row, int column) throws SnapshotException;
+    }
+
+    /**
+     * Result from a select with select list where the from clause returned a list or array of objects.
+     */
+    private static class ObjectResultSet implements CustomTableResultSet
+    {
         OQLQueryImpl source;
 
         Column[] columns;
         Object[] objects;
+        PagedValues values;
 
         ObjectResultSet(OQLQueryImpl source, List<Object> objects) throws SnapshotException
         {
@@ -100,8 +173,17 @@ public class OQLQueryImpl implements IOQLQuery
             this.source = source;
             this.objects = objects;
 
-            List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
+            final List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
             columns = new Column[selectList.size()];
+            values = new PagedValues(objects.length, columns.length)
+            {
+                @Override
+                Object compute(int row, int column) throws SnapshotException
+                {
+                    ObjectResultSet.this.source.ctx.setSubject(ObjectResultSet.this.objects[row]);
+                    return selectList.get(column).getExpression().compute(ObjectResultSet.this.source.ctx);
+                }
+            };
 
             try
             {
@@ -131,44 +213,20 @@ public class OQLQueryImpl implements IOQLQuery
 
         public Object getColumnValue(Object row, int columnIndex)
         {
-            int index = (Integer) row;
-            if (!(objects[index] instanceof ValueHolder))
-                resolve(index);
-
-            ValueHolder holder = ((ValueHolder) objects[index]);
-
-            if (holder.values[columnIndex] == null)
-            {
-                try
-                {
-                    source.ctx.setSubject(holder.subject);
-                    Query.SelectItem column = source.query.getSelectClause().getSelectList().get(columnIndex);
-                    Object v = column.getExpression().compute(source.ctx);
-
-                    holder.values[columnIndex] = v == null ? NULL_VALUE : v;
-                }
-                catch (SnapshotException e)
-                {
-                    throw new RuntimeException(e);
-                }
-            }
-
-            return holder.values[columnIndex] == NULL_VALUE ? null : holder.values[columnIndex];
+            return values.get((Integer) row, columnIndex);
         }
 
         public IContextObjectSet getContext(Object row)
         {
             final int index = (Integer) row;
-            if (!(objects[index] instanceof ValueHolder))
-                resolve(index);
 
-            if (((ValueHolder) objects[index]).subject instanceof IObject)
+            if (objects[index] instanceof IObject)
             {
                 return new IContextObjectSet()
                 {
                     public int getObjectId()
                     {
-                        return ((IObject) ((ValueHolder) objects[index]).subject).getObjectId();
+                        return ((IObject) objects[index]).getObjectId();
                     }
 
                     public int[] getObjectIds()
@@ -203,12 +261,6 @@ public class OQLQueryImpl implements IOQLQuery
         {
             return source.toString();
         }
-
-        private void resolve(int index)
-        {
-            ValueHolder answer = new ValueHolder(objects[index], new Object[columns.length]);
-            objects[index] = answer;
-        }
     }
 
     /**
@@ -216,32 +268,29 @@ public class OQLQueryImpl implements IOQLQuery
      */
     private static class ResultSet implements CustomTableResultSet
     {
-        private static final Object NULL_VALUE = new Object();
-
-        private static class ValueHolder
-        {
-            Object[] values;
-
-            public ValueHolder(Object[] values)
-            {
-                this.values = values;
-            }
-        }
-
         OQLQueryImpl source;
 
         Column[] columns;
         int[] objectIds;
-        ValueHolder[] objects;
+        PagedValues values;
 
         public ResultSet(OQLQueryImpl source, int[] objectIds) throws SnapshotException
         {
             this.source = source;
             this.objectIds = objectIds;
-            this.objects = new ValueHolder[objectIds.length];
 
-            List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
+            final List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
             columns = new Column[selectList.size()];
+            values = new PagedValues(objectIds.length, columns.length)
+            {
+                @Override
+                Object compute(int row, int column) throws SnapshotException
+                {
+                    EvaluationContext ctx = ResultSet.this.source.ctx;
+                    ctx.setSubject(ctx.getSnapshot().getObject(ResultSet.this.objectIds[row]));
+                    return selectList.get(column).getExpression().compute(ctx);
+                }
+            };
             try
             {
                 for (int ii = 0; ii < columns.length; ii++)
@@ -266,36 +315,7 @@ public class OQLQueryImpl implements IOQLQuery
 
         public Object getColumnValue(Object row, int columnIndex)
         {
-            int index = (Integer) row;
-
-            if (objects[index] == null)
-                objects[index] = new ValueHolder(new Object[columns.length]);
-
-            if (objects[index].values[columnIndex] == null)
-            {
-                // each column value is calculated separately, because I do not
-                // want sorting to resolve all values in all rows
-
-                // NULL_VALUE is used to keep track of column values which have
-                // been calculated but returned a null value
-
-                try
-                {
-                    IObject object = source.ctx.getSnapshot().getObject(objectIds[index]);
-                    source.ctx.setSubject(object);
-                    List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
-                    Object value = selectList.get(columnIndex).getExpression().compute(source.ctx);
-
-                    objects[index].values[columnIndex] = value != null ? value : NULL_VALUE;
-                }
-                catch (SnapshotException e)
-                {
-                    throw new RuntimeException(e);
-                }
-            }
-
-            Object value = objects[index].values[columnIndex];
-            return value == NULL_VALUE ? null : value;
+            return values.get((Integer) row, columnIndex);
         }
 
         public IContextObjectSet getContext(final Object row)
@@ -341,6 +361,83 @@ public class OQLQueryImpl implements IOQLQuery
         }
     }
 
+    /**
+     * Result from a select with aggregate functions or a GROUP BY clause, one
+     * row per group.
+     */
+    private static class GroupedResultSet implements CustomTableResultSet
+    {
+        OQLQueryImpl source;
+
+        Column[] columns;
+        List<Object[]> rows;
+
+        GroupedResultSet(OQLQueryImpl source, List<Object[]> rows)
+        {
+            this.source = source;
+            this.rows = rows;
+
+            List<SelectItem> selectList = source.query.getSelectClause().getSelectList();
+            columns = new Column[selectList.size()];
+            for (int ii = 0; ii < columns.length; ii++)
+                columns[ii] = buildColumn(selectList.get(ii), rows.get(0)[ii]);
+        }
+
+        public ResultMetaData getResultMetaData()
+        {
+            return null;
+        }
+
+        public Column[] getColumns()
+        {
+            return columns;
+        }
+
+        public int getRowCount()
+        {
+            return rows.size();
+        }
+
+        public Object getRow(int index)
+        {
+            return index;
+        }
+
+        public Object getColumnValue(Object row, int columnIndex)
+        {
+            return rows.get((Integer) row)[columnIndex];
+        }
+
+        public IContextObject getContext(Object row)
+        {
+            return null;
+        }
+
+        public String getOQLQuery()
+        {
+            return source.toString();
+        }
+    }
+
+    /**
+     * The aggregate functions of one group.
+     */
+    private static class Group
+    {
+        /** the first object of the group, for the columns not aggregated */
+        final Object first;
+        final Aggregate.Accumulator[] accumulators;
+
+        Group(Object first, Aggregate[] aggregates)
+        {
+            this.first = first;
+            this.accumulators = new Aggregate.Accumulator[aggregates.length];
+            for (int ii = 0; ii < aggregates.length; ii++)
+                if (aggregates[ii] != null)
+                    accumulators[ii] = aggregates[ii].createAccumulator();
+        }
+    }
+
     private static Column buildColumn(SelectItem column, Object columnValue)
     {
         String name = column.getName();
@@ -364,6 +461,20 @@ public class OQLQueryImpl implements IOQLQuery
                 this.row = row;
             }
 
+            @Override
+            public boolean equals(Object obj)
+            {
+                if (!(obj instanceof ValueHolder))
+                    return false;
+                ValueHolder other = (ValueHolder) obj;
+                return source == other.source && row.equals(other.row);
+            }
+
+            @Override
+            public int hashCode()
+            {
+                return System.identityHashCode(source) * 31 + row.hashCode();
+            }
         }
 
         int size = 0;
@@ -414,10 +525,18 @@ public class OQLQueryImpl implements IOQLQuery
 
         private int findPageFor(int rowNo)
         {
-            int pageIndex = 0;
-            while (pageIndex + 1 < sizes.size() && rowNo >= sizes.get(pageIndex + 1))
-                pageIndex++;
-            return pageIndex;
+            // sizes holds the ascending start rows of the result sets
+            int low = 0;
+            int high = sizes.size() - 1;
+            while (low < high)
+            {
+                int mid = (low + high + 1) >>> 1;
+                if (rowNo >= sizes.get(mid))
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+            return low;
         }
 
         public String getOQLQuery()
@@ -595,6 +714,147 @@ public class OQLQueryImpl implements IOQLQuery
 
     }
 
+    // //////////////////////////////////////////////////////////////
+    // parallel evaluation
+    // //////////////////////////////////////////////////////////////
+
+    private static boolean isParallel(int numberOfObjects)
+    {
+        return !SERIAL && numberOfObjects >= 2 * PARTITION_SIZE && IN_PARTITION.get() == null
+                        && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Evaluates the objects in partitions on helper threads. Each partition
+     * has its own copy of the evaluation context, and the results of the
+     * partitions are merged in the order of the object ids.
+     */
+    private abstract class PartitionedEvaluation
+    {
+        private volatile boolean stop;
+
+        /**
+         * Called concurrently for objects of different partitions.
+         */
+        abstract void evaluate(EvaluationContext context, int objectId, IntResult result) throws SnapshotException;
+
+        void run(final int[] objectIds, IntResult result, IProgressListener listener) throws SnapshotException
+        {
+            int partitions = (objectIds.length + PARTITION_SIZE - 1) / PARTITION_SIZE;
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), partitions);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try
+            {
+                List<Future<IntResult>> futures = new ArrayList<Future<IntResult>>(partitions);
+                for (int from = 0; from < objectIds.length; from += PARTITION_SIZE)
+                {
+                    final int start = from;
+                    final int end = Math.min(from + PARTITION_SIZE, objectIds.length);
+                    futures.add(pool.submit(new Callable<IntResult>()
+                    {
+                        public IntResult call() throws Exception
+                        {
+                            EvaluationContext context = ctx.copy();
+                            IntResult partial = new IntArrayResult(end - start);
+                            IN_PARTITION.set(Boolean.TRUE);
+                            try
+                            {
+                                for (int ii = start; ii < end && !stop; ii++)
+                                    evaluate(context, objectIds[ii], partial);
+                            }
+                            finally
+                            {
+                                IN_PARTITION.remove();
+                            }
+                            return partial;
+                        }
+                    }));
+                }
+
+                for (Future<IntResult> future : futures)
+                    result.addAll(get(future, listener));
+            }
+            finally
+            {
+                stop = true;
+                pool.shutdownNow();
+            }
+        }
+
+        private IntResult get(Future<IntResult> future, IProgressListener listener) throws SnapshotException
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get(100, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException e)
+                {
+                    if (listener.isCanceled())
+                        throw new IProgressListener.OperationCanceledException();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IProgressListener.OperationCanceledException();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SnapshotException)
+                        throw (SnapshotException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new SnapshotException(cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the objects accepted by the where clause to the result, on helper
+     * threads if there are enough objects.
+     */
+    private void filter(int[] objectIds, IntResult result, IProgressListener listener) throws SnapshotException
+    {
+        if (query.getWhereClause() == null)
+        {
+            result.addAll(objectIds);
+            return;
+        }
+
+        // comparisons of fields with numbers, read for all objects at once
+        int[] candidates = plan.filterByFields(ctx.getSnapshot(), objectIds);
+        final boolean fieldsChecked = candidates != null;
+        if (!fieldsChecked)
+            candidates = objectIds;
+
+        if (isParallel(candidates.length))
+        {
+            new PartitionedEvaluation()
+            {
+                void evaluate(EvaluationContext context, int objectId, IntResult partial) throws SnapshotException
+                {
+                    if (accept(context, objectId, fieldsChecked))
+                        partial.add(objectId);
+                }
+            }.run(candidates, result, listener);
+        }
+        else
+        {
+            for (int ii = 0; ii < candidates.length; ii++)
+            {
+                if ((ii & 0xfff) == 0 && listener.isCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+
+                if (accept(ctx, candidates[ii], fieldsChecked))
+                    result.add(candidates[ii]);
+            }
+        }
+    }
+
     // //////////////////////////////////////////////////////////////
     // oql execution
     // //////////////////////////////////////////////////////////////
@@ -606,6 +866,15 @@ public class OQLQueryImpl implements IOQLQuery
 
     public OQLQueryImpl(String queryString) throws OQLParseException
     {
+        Matcher explainMatcher = EXPLAIN.matcher(queryString);
+        if (explainMatcher.lookingAt())
+        {
+            // blank the keyword, so that errors keep their position
+            explain = true;
+            queryString = explainMatcher.group().replaceAll("[^\\r\\n]", " ") //$NON-NLS-1$ //$NON-NLS-2$
+                            + queryString.substring(explainMatcher.end());
+        }
+
         try
         {
             OQLParser p = new OQLParser(new StringReader(queryString));
@@ -648,6 +917,9 @@ public class OQLQueryImpl implements IOQLQuery
 
         if (query.getFromClause() != null)
             this.ctx.setAlias(query.getFromClause().getAlias());
+
+        this.plan = QueryPlan.create(query.getWhereClause(), query.getFromClause() != null ? query.getFromClause()
+                        .getAlias() : null);
     }
 
     private void initSnapshot(ISnapshot snapshot)
@@ -664,6 +936,13 @@ public class OQLQueryImpl implements IOQLQuery
         if (monitor == null)
             monitor = new VoidProgressListener();
 
+        if (explain)
+        {
+            StringBuilder buf = new StringBuilder();
+            explain(buf, ""); //$NON-NLS-1$
+            return buf.toString();
+        }
+
         Object result = internalExecute(monitor);
         return result instanceof IntResult ? ((IntResult) result).toArray() : result;
     }
@@ -690,6 +969,12 @@ public class OQLQueryImpl implements IOQLQuery
             result = doFromItem(listener.nextMonitor());
         }
 
+        // aggregates without GROUP BY give one row even for no objects
+        if (result == null && isGrouped() && query.getGroupByClause() == null)
+        {
+            result = group(new int[0], null, new VoidProgressListener());
+        }
+
         if (query.getUnionQueries() != null)
         {
             result = union(listener, result);
@@ -958,7 +1243,7 @@ public class OQLQueryImpl implements IOQLQuery
 
                 for (Object obj : (Iterable<?>) result)
                 {
-                    if (accept(obj))
+                    if (accept(ctx, obj))
                         r.add(obj);
                 }
 
@@ -972,7 +1257,7 @@ public class OQLQueryImpl implements IOQLQuery
                 for (int ii = 0; ii < length; ii++)
                 {
                     Object obj = Array.get(result, ii);
-                    if (accept(obj))
+                    if (accept(ctx, obj))
                         r.add(obj);
                 }
 
@@ -980,7 +1265,7 @@ public class OQLQueryImpl implements IOQLQuery
             }
             else
             {
-                return accept(result) ? select(result, listener) : null;
+                return accept(ctx, result) ? select(result, listener) : null;
             }
         }
         else
@@ -1107,7 +1392,7 @@ public class OQLQueryImpl implements IOQLQuery
             IntResult filteredSet = createIntResult(classes.size());
             for (IClass clasz : classes)
             {
-                if (accept(clasz.getObjectId()))
+                if (accept(ctx, clasz.getObjectId()))
                     filteredSet.add(clasz.getObjectId());
 
                 if (listener.isCanceled())
@@ -1127,12 +1412,7 @@ public class OQLQueryImpl implements IOQLQuery
                 listener.subTask(MessageUtil.format(Messages.OQLQueryImpl_CheckingClass,
                                 new Object[] { clasz.getName() }));
 
-                int[] ids = clasz.getObjectIds();
-                for (int id : ids)
-                {
-                    if (accept(id))
-                        filteredSet.add(id);
-                }
+                filter(clasz.getObjectIds(), filteredSet, listener);
 
                 if (listener.isCanceled())
                     throw new IProgressListener.OperationCanceledException();
@@ -1143,22 +1423,44 @@ public class OQLQueryImpl implements IOQLQuery
         }
     }
 
-    private boolean accept(int objectId) throws SnapshotException
+    private boolean accept(EvaluationContext context, int objectId) throws SnapshotException
+    {
+        return accept(context, objectId, false);
+    }
+
+    /**
+     * @param fieldsChecked
+     *            true if the object already passed the field conditions of
+     *            the plan
+     */
+    private boolean accept(EvaluationContext context, int objectId, boolean fieldsChecked) throws SnapshotException
     {
         if (query.getWhereClause() == null)
             return true;
 
-        return accept(ctx.getSnapshot().getObject(objectId));
+        // conditions answered from the indexes without reading the object
+        if (!plan.accept(context.getSnapshot(), objectId))
+            return false;
+
+        Expression residualClause = fieldsChecked ? plan.getResidualClause() : plan.getResidualClauseWithFields();
+        if (residualClause == null)
+            return true;
+
+        context.setSubject(context.getSnapshot().getObject(objectId));
+
+        Boolean result = (Boolean) residualClause.compute(context);
+
+        return result == null ? false : result.booleanValue();
     }
 
-    private boolean accept(Object object) throws SnapshotException
+    private boolean accept(EvaluationContext context, Object object) throws SnapshotException
     {
         if (query.getWhereClause() == null)
             return true;
 
-        ctx.setSubject(object);
+        context.setSubject(object);
 
-        Boolean result = (Boolean) query.getWhereClause().compute(ctx);
+        Boolean result = (Boolean) query.getWhereClause().compute(context);
 
         return result == null ? false : result.booleanValue();
     }
@@ -1167,15 +1469,7 @@ public class OQLQueryImpl implements IOQLQuery
     {
         IntResult filteredSet = createIntResult(objectIds.size());
 
-        for (IntIterator iter = objectIds.iterator(); iter.hasNext();)
-        {
-            if (listener.isCanceled())
-                throw new IProgressListener.OperationCanceledException();
-
-            int id = iter.nextInt();
-            if (accept(id))
-                filteredSet.add(id);
-        }
+        filter(objectIds.toArray(), filteredSet, listener);
 
         return filteredSet.isEmpty() ? null : select(filteredSet, listener);
     }
@@ -1190,7 +1484,11 @@ public class OQLQueryImpl implements IOQLQuery
             objectIds = new IntArrayResult(ctx.getSnapshot().getRetainedSet(objectIds.toArray(), listener));
         }
 
-        if (select.getSelectList().isEmpty())
+        if (isGrouped())
+        {
+            return group(objectIds.toArray(), null, listener);
+        }
+        else if (select.getSelectList().isEmpty())
         {
             return objectIds;
         }
@@ -1198,7 +1496,10 @@ public class OQLQueryImpl implements IOQLQuery
         {
             ResultSet temp = new ResultSet(getSelectQuery(), objectIds.toArray());
             IntResult r = createIntResult(objectIds.size());
-            convertToObjects(temp, r, listener);
+            if (isParallel(temp.getRowCount()))
+                convertToObjectsInParallel(temp, r, listener);
+            else
+                convertToObjects(temp, r, listener);
             return r;
         }
         else
@@ -1214,7 +1515,11 @@ public class OQLQueryImpl implements IOQLQuery
         // calculate retained set
         if (select.isRetainedSet()) { return select(convertToObjectIds(objects), listener); }
 
-        if (select.getSelectList().isEmpty())
+        if (isGrouped())
+        {
+            return group(null, objects, listener);
+        }
+        else if (select.getSelectList().isEmpty())
         {
             return objects;
         }
@@ -1239,7 +1544,11 @@ public class OQLQueryImpl implements IOQLQuery
         if (select.isRetainedSet()) { return select(convertToObjectIds(Arrays.asList(new Object[] { object })),
                         listener); }
 
-        if (select.getSelectList().isEmpty())
+        if (isGrouped())
+        {
+            return group(null, Arrays.asList(new Object[] { object }), listener);
+        }
+        else if (select.getSelectList().isEmpty())
         {
             return object;
         }
@@ -1265,10 +1574,155 @@ public class OQLQueryImpl implements IOQLQuery
         q2.setSelectClause(query.getSelectClause());
         q2.setFromClause(query.getFromClause());
         q2.setWhereClause(query.getWhereClause());
+        q2.setGroupByClause(query.getGroupByClause());
         OQLQueryImpl qi = new OQLQueryImpl(ctx, q2);
         return qi;
     }
 
+    // //////////////////////////////////////////////////////////////
+    // aggregation
+    // //////////////////////////////////////////////////////////////
+
+    private boolean isGrouped()
+    {
+        if (query.getGroupByClause() != null)
+            return true;
+        for (SelectItem item : query.getSelectClause().getSelectList())
+        {
+            if (item.getExpression() instanceof Aggregate)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Groups the objects and calculates the aggregate functions in one pass.
+     * Only the group keys, the first object and the accumulators of each group
+     * are kept, not the column values of the objects.
+     * 
+     * @param objectIds
+     *            the ids of the objects, or null
+     * @param objects
+     *            the objects if there are no ids
+     */
+    private Object group(int[] objectIds, List<Object> objects, IProgressListener listener) throws SnapshotException
+    {
+        Query.SelectClause select = query.getSelectClause();
+        if (select.getSelectList().isEmpty() || select.isAsObjects())
+            throw new SnapshotException(MessageUtil.format(Messages.OQLQueryImpl_Error_GroupByNeedsSelectList,
+                            new Object[] { query }));
+
+        List<SelectItem> selectList = select.getSelectList();
+        List<Expression> groupBy = query.getGroupByClause() != null ? query.getGroupByClause() : Collections
+                        .<Expression> emptyList();
+        Aggregate[] aggregates = new Aggregate[selectList.size()];
+        for (int ii = 0; ii < aggregates.length; ii++)
+        {
+            if (selectList.get(ii).getExpression() instanceof Aggregate)
+                aggregates[ii] = (Aggregate) selectList.get(ii).getExpression();
+        }
+
+        int size = objectIds != null ? objectIds.length : objects.size();
+        listener.beginTask(Messages.OQLQueryImpl_SelectingObjects, size / 1000 + 1);
+
+        Map<List<Object>, Group> groups = new LinkedHashMap<List<Object>, Group>();
+        List<Object> noKey = Collections.emptyList();
+        for (int ii = 0; ii < size; ii++)
+        {
+            Object subject = objectIds != null ? ctx.getSnapshot().getObject(objectIds[ii]) : objects.get(ii);
+            ctx.setSubject(subject);
+
+            List<Object> key = noKey;
+            if (!groupBy.isEmpty())
+            {
+                Object[] values = new Object[groupBy.size()];
+                for (int jj = 0; jj < values.length; jj++)
+                    values[jj] = groupBy.get(jj).compute(ctx);
+                key = Arrays.asList(values);
+            }
+
+            Group group = groups.get(key);
+            if (group == null)
+            {
+                group = new Group(objectIds != null ? (Object) objectIds[ii] : subject, aggregates);
+                groups.put(key, group);
+            }
+
+            for (int jj = 0; jj < aggregates.length; jj++)
+            {
+                if (aggregates[jj] != null)
+                    aggregates[jj].accumulate(group.accumulators[jj], ctx);
+            }
+
+            if (ii % 1000 == 999)
+            {
+                if (listener.isCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+                listener.worked(1);
+            }
+        }
+
+        if (groups.isEmpty())
+        {
+            // aggregates over no objects still give one row, a count of 0
+            if (!groupBy.isEmpty())
+                return null;
+            groups.put(noKey, new Group(null, aggregates));
+        }
+
+        // the other columns are calculated from the group key or the first
+        // object of the group
+        int[] keyIndex = new int[selectList.size()];
+        for (int ii = 0; ii < keyIndex.length; ii++)
+        {
+            keyIndex[ii] = -1;
+            String column = selectList.get(ii).getExpression().toString();
+            for (int jj = 0; jj < groupBy.size(); jj++)
+            {
+                if (column.equals(groupBy.get(jj).toString()))
+                    keyIndex[ii] = jj;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<Object[]>(groups.size());
+        for (Map.Entry<List<Object>, Group> entry : groups.entrySet())
+        {
+            Group group = entry.getValue();
+            Object[] row = new Object[selectList.size()];
+            boolean subjectSet = false;
+            for (int ii = 0; ii < row.length; ii++)
+            {
+                if (aggregates[ii] != null)
+                {
+                    row[ii] = aggregates[ii].getValue(group.accumulators[ii]);
+                }
+                else if (keyIndex[ii] >= 0)
+                {
+                    row[ii] = entry.getKey().get(keyIndex[ii]);
+                }
+                else if (group.first == null)
+                {
+                    // no objects
+                    row[ii] = null;
+                }
+                else
+                {
+                    if (!subjectSet)
+                    {
+                        ctx.setSubject(objectIds != null ? ctx.getSnapshot().getObject((Integer) group.first)
+                                        : group.first);
+                        subjectSet = true;
+                    }
+                    row[ii] = selectList.get(ii).getExpression().compute(ctx);
+                }
+            }
+            rows.add(row);
+        }
+
+        listener.done();
+        return new GroupedResultSet(getSelectQuery(), rows);
+    }
+
     private IntArrayResult convertToObjectIds(List<?> objects) throws SnapshotException
     {
         ArrayInt a = new ArrayInt();
@@ -1314,67 +1768,94 @@ public class OQLQueryImpl implements IOQLQuery
                 throw new IProgressListener.OperationCanceledException();
 
             Object rowObject = set.getColumnValue(set.getRow(ii), 0);
-            /**
-             * Convert arrays or collections of IObjects
-             * or ints or int arrays or IObjects
-             * or longs or arrays of longs into object ids.
-             */
-            Iterable<?> it;
-            if (rowObject instanceof Iterable)
+            convertToObjects(set.getOQLQuery(), rowObject, resultSet);
+        }
+    }
+
+    /**
+     * Evaluates the select item for partitions of the objects on helper
+     * threads, the select item is not stored in the result set.
+     */
+    private void convertToObjectsInParallel(ResultSet set, IntResult resultSet, IProgressListener listener)
+                    throws SnapshotException
+    {
+        if (set.getColumns().length != 1) { throw new SnapshotException(MessageUtil.format(
+                        Messages.OQLQueryImpl_Error_QueryCannotBeConverted, new Object[] { set.getOQLQuery() })); }
+
+        final Expression expression = set.source.query.getSelectClause().getSelectList().get(0).getExpression();
+        final String oql = set.getOQLQuery();
+        set.source.new PartitionedEvaluation()
+        {
+            void evaluate(EvaluationContext context, int objectId, IntResult partial) throws SnapshotException
             {
-                it = (Iterable<?>)rowObject;
+                context.setSubject(context.getSnapshot().getObject(objectId));
+                convertToObjects(oql, expression.compute(context), partial);
             }
-            else if (rowObject instanceof Object[])
+        }.run(set.objectIds, resultSet, listener);
+    }
+
+    private void convertToObjects(String oql, Object rowObject, IntResult resultSet) throws SnapshotException
+    {
+        /**
+         * Convert arrays or collections of IObjects
+         * or ints or int arrays or IObjects
+         * or longs or arrays of longs into object ids.
+         */
+        Iterable<?> it;
+        if (rowObject instanceof Iterable)
+        {
+            it = (Iterable<?>)rowObject;
+        }
+        else if (rowObject instanceof Object[])
+        {
+            it = Arrays.asList((Object[])rowObject);
+        }
+        else
+        {
+            it = Collections.singleton(rowObject);
+        }
+        for (Object object : it)
+        {
+            if (object == null)
             {
-                it = Arrays.asList((Object[])rowObject);
+                // acceptable value -> do nothing
             }
-            else
+            else if (object instanceof Integer)
             {
-                it = Collections.singleton(rowObject);
+                resultSet.add(((Integer) object).intValue());
             }
-            for (Object object : it)
+            else if (object instanceof int[])
             {
-                if (object == null)
-                {
-                    // acceptable value -> do nothing
-                }
-                else if (object instanceof Integer)
-                {
-                    resultSet.add(((Integer) object).intValue());
-                }
-                else if (object instanceof int[])
-                {
-                    resultSet.addAll((int[]) object);
-                }
-                else if (object instanceof IObject)
+                resultSet.addAll((int[]) object);
+            }
+            else if (object instanceof IObject)
+            {
+                resultSet.add(((IObject) object).getObjectId());
+            }
+            else if (object instanceof Long)
+            {
+                long addr = ((Long) object).longValue();
+                if (addr != 0)
                 {
-                    resultSet.add(((IObject) object).getObjectId());
+                    int id = ctx.getSnapshot().mapAddressToId(addr);
+                    resultSet.add(id);
                 }
-                else if (object instanceof Long)
+            }
+            else if (object instanceof long[])
+            {
+                for (long addr : (long[])object)
                 {
-                    long addr = ((Long) object).longValue();
                     if (addr != 0)
                     {
                         int id = ctx.getSnapshot().mapAddressToId(addr);
                         resultSet.add(id);
                     }
                 }
-                else if (object instanceof long[])
-                {
-                    for (long addr : (long[])object)
-                    {
-                        if (addr != 0)
-                        {
-                            int id = ctx.getSnapshot().mapAddressToId(addr);
-                            resultSet.add(id);
-                        }
-                    }
-                }
-                else
-                {
-                    throw new SnapshotException(MessageUtil.format(Messages.OQLQueryImpl_Error_ResultMustReturnObjectList,
-                                    new Object[] { set.getOQLQuery(), String.valueOf(rowObject) }));
-                }
+            }
+            else
+            {
+                throw new SnapshotException(MessageUtil.format(Messages.OQLQueryImpl_Error_ResultMustReturnObjectList,
+                                new Object[] { oql, String.valueOf(rowObject) }));
             }
         }
     }
@@ -1385,10 +1866,129 @@ public class OQLQueryImpl implements IOQLQuery
                         capacity) : new IntArrayResult(capacity);
     }
 
+    // //////////////////////////////////////////////////////////////
+    // query plan
+    // //////////////////////////////////////////////////////////////
+
+    private void explain(StringBuilder buf, String indent) throws SnapshotException
+    {
+        Query.FromClause from = query.getFromClause();
+        buf.append(indent).append(getSelectQuery().query).append('\n');
+        indent += "  "; //$NON-NLS-1$
+
+        // sources of the objects
+        int numberOfObjects = -1;
+        if (from.getSubSelect() != null)
+        {
+            buf.append(indent).append(Messages.OQLQueryImpl_Plan_FromSubQuery).append('\n');
+            new OQLQueryImpl(ctx, from.getSubSelect()).explain(buf, indent + "  "); //$NON-NLS-1$
+        }
+        else if (from.getCall() != null)
+        {
+            buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_FromCall, from.getCall()))
+                            .append('\n');
+        }
+        else if (from.getObjectIds() != null || from.getObjectAddresses() != null)
+        {
+            numberOfObjects = from.getObjectIds() != null ? from.getObjectIds().size() : from.getObjectAddresses()
+                            .size();
+            buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_FromObjects, numberOfObjects))
+                            .append('\n');
+        }
+        else
+        {
+            Collection<IClass> classes;
+            if (from.getClassName() != null)
+            {
+                classes = ctx.getSnapshot().getClassesByName(from.getClassName(), from.includeSubClasses());
+            }
+            else
+            {
+                try
+                {
+                    classes = ctx.getSnapshot().getClassesByName(
+                                    Pattern.compile(PatternUtil.smartFix(from.getClassNamePattern(), false)),
+                                    from.includeSubClasses());
+                }
+                catch (PatternSyntaxException e)
+                {
+                    throw new SnapshotException(MessageUtil.format(Messages.OQLQueryImpl_Error_InvalidClassNamePattern,
+                                    new Object[] { from.getClassNamePattern() }), e);
+                }
+            }
+            int numberOfClasses = classes != null ? classes.size() : 0;
+            if (from.includeObjects())
+            {
+                numberOfObjects = numberOfClasses;
+                buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_FromClassObjects,
+                                numberOfClasses)).append('\n');
+            }
+            else
+            {
+                // the objects are filtered class by class
+                long count = 0;
+                numberOfObjects = 0;
+                if (classes != null)
+                {
+                    for (IClass clazz : classes)
+                    {
+                        count += clazz.getNumberOfObjects();
+                        numberOfObjects = Math.max(numberOfObjects, clazz.getNumberOfObjects());
+                    }
+                }
+                buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_FromInstances, count,
+                                numberOfClasses)).append('\n');
+            }
+        }
+
+        // where clause
+        for (String condition : plan.getIndexConditions())
+            buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_IndexCondition, condition))
+                            .append('\n');
+        for (String condition : plan.getFieldConditions())
+            buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_FieldCondition, condition))
+                            .append('\n');
+        if (plan.getResidualClause() != null)
+            buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_Filter, plan.getResidualClause()))
+                            .append('\n');
+        if (query.getWhereClause() != null && numberOfObjects >= 0)
+        {
+            if (isParallel(numberOfObjects))
+                buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_Parallel,
+                                Runtime.getRuntime().availableProcessors(), PARTITION_SIZE)).append('\n');
+            else
+                buf.append(indent).append(Messages.OQLQueryImpl_Plan_Serial).append('\n');
+        }
+        if (isGrouped())
+        {
+            if (query.getGroupByClause() != null)
+            {
+                StringBuilder groupBy = new StringBuilder();
+                for (Expression expression : query.getGroupByClause())
+                    groupBy.append(groupBy.length() > 0 ? ", " : "").append(expression); //$NON-NLS-1$ //$NON-NLS-2$
+                buf.append(indent).append(MessageUtil.format(Messages.OQLQueryImpl_Plan_GroupBy, groupBy))
+                                .append('\n');
+            }
+            else
+            {
+                buf.append(indent).append(Messages.OQLQueryImpl_Plan_Aggregate).append('\n');
+            }
+        }
+
+        if (query.getUnionQueries() != null)
+        {
+            for (Query union : query.getUnionQueries())
+            {
+                buf.append(indent).append(Messages.OQLQueryImpl_Plan_Union).append('\n');
+                new OQLQueryImpl(ctx, union).explain(buf, indent + "  "); //$NON-NLS-1$
+            }
+        }
+    }
+
     @Override
     public String toString()
     {
-        return query.toString();
+        return explain ? "EXPLAIN " + query : query.toString(); //$NON-NLS-1$
     }
 
 }
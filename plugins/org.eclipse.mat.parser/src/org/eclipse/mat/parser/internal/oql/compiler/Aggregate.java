@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.oql.compiler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.util.MessageUtil;
+
+/**
+ * An aggregate function of the select list: <code>count()</code>,
+ * <code>count(expr)</code>, <code>sum(expr)</code>, <code>min(expr)</code>,
+ * <code>max(expr)</code> or <code>avg(expr)</code>. It is calculated over the
+ * objects of a group of a query with a GROUP BY clause, or over all selected
+ * objects. Null values are ignored. A sum of integral numbers which does not
+ * fit in a long is a {@link BigInteger}.
+ */
+public class Aggregate extends Expression
+{
+    private enum Kind
+    {
+        COUNT("count"), //$NON-NLS-1$
+        SUM("sum"), //$NON-NLS-1$
+        MIN("min"), //$NON-NLS-1$
+        MAX("max"), //$NON-NLS-1$
+        AVG("avg"); //$NON-NLS-1$
+
+        final String symbol;
+
+        private Kind(String symbol)
+        {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * The state of an aggregate function for one group. Numbers are
+     * accumulated in primitive fields.
+     */
+    public static final class Accumulator
+    {
+        /** the number of values */
+        long count;
+        /** true once a floating point number was seen */
+        boolean isDouble;
+        long longValue;
+        /** the sum once it does not fit in a long */
+        BigInteger bigValue;
+        double doubleValue;
+        /** minimum or maximum of values which are not numbers */
+        Object value;
+    }
+
+    private final Kind kind;
+    private final Expression argument;
+
+    private Aggregate(Kind kind, Expression argument)
+    {
+        this.kind = kind;
+        this.argument = argument;
+    }
+
+    /**
+     * @return the aggregate function, or null if the name and the number of
+     *         parameters do not denote one
+     */
+    static Aggregate create(String name, List<Expression> parameters)
+    {
+        for (Kind kind : Kind.values())
+        {
+            if (!kind.symbol.equals(name))
+                continue;
+            if (parameters.size() == 1)
+                return new Aggregate(kind, parameters.get(0));
+            if (parameters.isEmpty() && kind == Kind.COUNT)
+                return new Aggregate(kind, null);
+        }
+        return null;
+    }
+
+    public Accumulator createAccumulator()
+    {
+        return new Accumulator();
+    }
+
+    /**
+     * Adds the value of the argument for the current subject of the context.
+     */
+    @SuppressWarnings("unchecked")
+    public void accumulate(Accumulator acc, EvaluationContext ctx) throws SnapshotException
+    {
+        if (argument == null)
+        {
+            acc.count++;
+            return;
+        }
+
+        Object v = argument.compute(ctx);
+        if (v == null)
+            return;
+
+        switch (kind)
+        {
+            case COUNT:
+                break;
+            case SUM:
+            case AVG:
+                if (!(v instanceof Number))
+                    throw new SnapshotException(MessageUtil.format(Messages.Function_Error_NeedsNumberAsInput,
+                                    argument, v, v.getClass().getName(), kind.symbol));
+                if (isFloatingPoint(v) && !acc.isDouble)
+                {
+                    acc.isDouble = true;
+                    acc.doubleValue = acc.bigValue != null ? acc.bigValue.doubleValue() : acc.longValue;
+                }
+                if (acc.isDouble)
+                    acc.doubleValue += ((Number) v).doubleValue();
+                else
+                    add(acc, (Number) v);
+                break;
+            case MIN:
+            case MAX:
+                int sign = kind == Kind.MIN ? -1 : 1;
+                if (v instanceof Number && acc.value == null)
+                {
+                    if (isFloatingPoint(v) && !acc.isDouble)
+                    {
+                        acc.isDouble = true;
+                        acc.doubleValue = acc.longValue;
+                    }
+                    if (acc.isDouble)
+                    {
+                        double d = ((Number) v).doubleValue();
+                        if (acc.count == 0 || Double.compare(d, acc.doubleValue) * sign > 0)
+                            acc.doubleValue = d;
+                    }
+                    else
+                    {
+                        long l = ((Number) v).longValue();
+                        if (acc.count == 0 || (l > acc.longValue ? 1 : l < acc.longValue ? -1 : 0) * sign > 0)
+                            acc.longValue = l;
+                    }
+                }
+                else if (v instanceof Comparable && (acc.count == 0 || acc.value != null))
+                {
+                    try
+                    {
+                        if (acc.count == 0 || ((Comparable<Object>) v).compareTo(acc.value) * sign > 0)
+                            acc.value = v;
+                    }
+                    catch (ClassCastException e)
+                    {
+                        throw new SnapshotException(MessageUtil.format(Messages.Operation_ErrorNoComparable,
+                                        argument, v, v.getClass().getName(), kind.symbol), e);
+                    }
+                }
+                else
+                {
+                    // not comparable, or numbers mixed with other values
+                    throw new SnapshotException(MessageUtil.format(Messages.Operation_ErrorNoComparable, argument,
+                                    v, v.getClass().getName(), kind.symbol));
+                }
+                break;
+        }
+        acc.count++;
+    }
+
+    /**
+     * @return the value of the aggregate function for the accumulated values
+     */
+    public Object getValue(Accumulator acc)
+    {
+        if (kind == Kind.COUNT)
+            return acc.count;
+        if (acc.count == 0)
+            return null;
+
+        switch (kind)
+        {
+            case AVG:
+                return (acc.isDouble ? acc.doubleValue : acc.bigValue != null ? acc.bigValue.doubleValue()
+                                : (double) acc.longValue) / acc.count;
+            case MIN:
+            case MAX:
+                if (acc.value != null)
+                    return acc.value;
+                return acc.isDouble ? (Object) acc.doubleValue : (Object) acc.longValue;
+            default:
+                if (acc.bigValue != null)
+                    return acc.bigValue;
+                return acc.isDouble ? (Object) acc.doubleValue : (Object) acc.longValue;
+        }
+    }
+
+    /**
+     * Adds an integral number, with a BigInteger once the sum overflows.
+     */
+    private static void add(Accumulator acc, Number v)
+    {
+        if (acc.bigValue == null && !(v instanceof BigInteger))
+        {
+            long l = v.longValue();
+            long sum = acc.longValue + l;
+            // the sign of the sum differs from the signs of both numbers
+            if (((acc.longValue ^ sum) & (l ^ sum)) >= 0)
+            {
+                acc.longValue = sum;
+                return;
+            }
+        }
+        if (acc.bigValue == null)
+            acc.bigValue = BigInteger.valueOf(acc.longValue);
+        acc.bigValue = acc.bigValue.add(v instanceof BigInteger ? (BigInteger) v : BigInteger.valueOf(v.longValue()));
+    }
+
+    private static boolean isFloatingPoint(Object v)
+    {
+        return v instanceof Double || v instanceof Float || v instanceof BigDecimal;
+    }
+
+    @Override
+    public Object compute(EvaluationContext ctx) throws SnapshotException
+    {
+        throw new SnapshotException(MessageUtil.format(Messages.Aggregate_Error_OnlyInSelectList, this));
+    }
+
+    @Override
+    public boolean isContextDependent(EvaluationContext ctx)
+    {
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return kind.symbol + "(" + (argument != null ? argument : "") + ")";//$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+    }
+}
@@ -97,11 +97,21 @@ public class CompilerImpl implements ICompiler
 
     public Object path(List<Object> attributes)
     {
+        // aggregate functions are recognized as items of the select list
+        if (attributes.size() == 1 && attributes.get(0) instanceof Aggregate)
+            return attributes.get(0);
         return new PathExpression(attributes);
     }
 
     public Object method(String name, List<Expression> parameters, boolean isFirstInPath)
     {
+        if (isFirstInPath)
+        {
+            Aggregate aggregate = Aggregate.create(name, parameters);
+            if (aggregate != null)
+                return aggregate;
+        }
+
         if (isFirstInPath && parameters.size() == 1)
         {
             Function f = function(name, parameters.get(0));
@@ -27,6 +27,18 @@ public class EvaluationContext
         this.snapshot = parent != null ? parent.snapshot : null;
     }
 
+    /**
+     * A context with the same parent, snapshot and alias but its own subject,
+     * so that another thread can evaluate expressions with it.
+     */
+    public EvaluationContext copy()
+    {
+        EvaluationContext copy = new EvaluationContext(parent);
+        copy.snapshot = snapshot;
+        copy.alias = alias;
+        return copy;
+    }
+
     public ISnapshot getSnapshot()
     {
         return snapshot != null ? snapshot : parent != null ? parent.getSnapshot() : null;
@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.eclipse.mat.SnapshotException;
@@ -31,9 +32,31 @@ import org.eclipse.mat.util.PatternUtil;
 
 class MethodCallExpression extends Expression
 {
+    /**
+     * The method found for a subject class and the classes of the
+     * arguments, so that the overloads are not searched again for every
+     * object of a query.
+     */
+    private static final class ResolvedMethod
+    {
+        final Method method;
+        final Class<?>[] argumentTypes;
+        /** the arguments which are converted to a pattern */
+        final boolean[] patterns;
+
+        ResolvedMethod(Method method, Class<?>[] argumentTypes, boolean[] patterns)
+        {
+            this.method = method;
+            this.argumentTypes = argumentTypes;
+            this.patterns = patterns;
+        }
+    }
+
     String name;
     List<Expression> parameters;
 
+    private final ConcurrentHashMap<Class<?>, ResolvedMethod> resolved = new ConcurrentHashMap<Class<?>, ResolvedMethod>();
+
     public MethodCallExpression(String name, List<Expression> parameters)
     {
         this.name = name;
@@ -62,6 +85,24 @@ class MethodCallExpression extends Expression
             return name != null ? name : ((IObject) subject).getTechnicalName();
         }
 
+        final Class<? extends Object> subjectClass = subject.getClass();
+        Class<?>[] argumentTypes = new Class<?>[arguments.length];
+        for (int ii = 0; ii < arguments.length; ii++)
+            argumentTypes[ii] = arguments[ii] != null ? arguments[ii].getClass() : null;
+
+        ResolvedMethod r = resolved.get(subjectClass);
+        if (r != null && Arrays.equals(r.argumentTypes, argumentTypes))
+        {
+            for (int jj = 0; jj < arguments.length; jj++)
+            {
+                if (arguments[jj] == ConstantExpression.NULL)
+                    arguments[jj] = null;
+                else if (r.patterns[jj])
+                    arguments[jj] = Pattern.compile(PatternUtil.smartFix(String.valueOf(arguments[jj]), false));
+            }
+            return invoke(r.method, subject, arguments);
+        }
+
         /*
          * Finding the right method is tricky as the arguments have already been boxed.
          * E.g. consider overloaded methods 
@@ -70,7 +111,6 @@ class MethodCallExpression extends Expression
          * with argument Integer(1).
          */
         List<Method> extraMethods = new ArrayList<Method>();
-        final Class<? extends Object> subjectClass = subject.getClass();
         Method[] methods;
         methods = subjectClass.getMethods();
         if (!Modifier.isPublic(subjectClass.getModifiers()))
@@ -146,22 +186,12 @@ class MethodCallExpression extends Expression
                         }
                     }
 
-                    try
-                    {
-                        return methods[ii].invoke(subject, arguments);
-                    }
-                    catch (IllegalArgumentException e)
-                    {
-                        throw new SnapshotException(Arrays.toString(arguments), e);
-                    }
-                    catch (IllegalAccessException e)
-                    {
-                        throw new SnapshotException(methods[ii].toString(), e);
-                    }
-                    catch (InvocationTargetException e)
-                    {
-                        throw new SnapshotException(e);
-                    }
+                    boolean[] patterns = new boolean[arguments.length];
+                    for (int jj = 0; savedArgs != null && jj < savedArgs.length; jj++)
+                        patterns[jj] = savedArgs[jj] != null;
+                    resolved.put(subjectClass, new ResolvedMethod(methods[ii], argumentTypes, patterns));
+
+                    return invoke(methods[ii], subject, arguments);
                 }
             }
         }
@@ -177,6 +207,26 @@ class MethodCallExpression extends Expression
                         new Object[] { this.name, argTypes, subject, subject != null ? subject.getClass().getName() : null }));
     }
 
+    private static Object invoke(Method method, Object subject, Object[] arguments) throws SnapshotException
+    {
+        try
+        {
+            return method.invoke(subject, arguments);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new SnapshotException(Arrays.toString(arguments), e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new SnapshotException(method.toString(), e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new SnapshotException(e);
+        }
+    }
+
     /**
      * Try for a good match on the method.
      * Also try unboxed arguments.
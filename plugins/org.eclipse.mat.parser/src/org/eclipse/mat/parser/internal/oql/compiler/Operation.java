@@ -720,7 +720,7 @@ abstract class Operation extends Expression
                             .toString();
         }
 
-        private static Set<String> getIntf(Class<?> context)
+        private static synchronized Set<String> getIntf(Class<?> context)
         {
             Set<String> intf = class2intf.get(context.getName());
             if (intf == null)
@@ -15,17 +15,21 @@ import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.parser.internal.Messages;
 import org.eclipse.mat.snapshot.model.Field;
 import org.eclipse.mat.snapshot.model.FieldDescriptor;
 import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
 import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.ObjectReference;
 import org.eclipse.mat.util.MessageUtil;
 
 class PathExpression extends Expression
@@ -53,11 +57,42 @@ class PathExpression extends Expression
          */
     };
     
+    /**
+     * How an attribute is resolved for the instances of one class. The
+     * position of the field is the same for all instances of the class, so
+     * the field can be read without a lookup by name.
+     */
+    private static final class FieldLookup
+    {
+        final IClass clazz;
+        /** the class or a super class declares an instance field of the name */
+        final boolean found;
+        /** index into {@link IInstance#getFields()}, or -1 */
+        final int index;
+
+        FieldLookup(IClass clazz, boolean found, int index)
+        {
+            this.clazz = clazz;
+            this.found = found;
+            this.index = index;
+        }
+    }
+
     private List<Object> attributes;
 
+    /**
+     * Per position in the path, the field lookups by {@link IClass} and the
+     * bean property read methods by Java class.
+     */
+    private ConcurrentHashMap<Object, Object>[] resolved;
+
+    @SuppressWarnings("unchecked")
     public PathExpression(List<Object> attributes)
     {
         this.attributes = attributes;
+        this.resolved = (ConcurrentHashMap<Object, Object>[]) new ConcurrentHashMap<?, ?>[attributes.size()];
+        for (int ii = 0; ii < resolved.length; ii++)
+            resolved[ii] = new ConcurrentHashMap<Object, Object>();
     }
 
     @Override
@@ -115,24 +150,13 @@ class PathExpression extends Expression
                         }
                         else
                         {
-                            boolean didFindProperty = false;
-
-                            BeanInfo info = Introspector.getBeanInfo(current.getClass());
-                            PropertyDescriptor[] descriptors = info.getPropertyDescriptors();
+                            Method readMethod = getReadMethod(index, current.getClass(), attribute.getName());
 
-                            for (PropertyDescriptor descriptor : descriptors)
-                            {
-                                if (attribute.getName().equals(descriptor.getName()))
-                                {
-                                    current = descriptor.getReadMethod().invoke(current, (Object[]) null);
-                                    didFindProperty = true;
-                                    break;
-                                }
-                            }
-
-                            if (!didFindProperty) { throw new SnapshotException(MessageUtil.format(
+                            if (readMethod == null) { throw new SnapshotException(MessageUtil.format(
                                             Messages.PathExpression_Error_TypeHasNoProperty, new Object[] {
                                                             current.getClass().getName(), attribute.name })); }
+
+                            current = readMethod.invoke(current, (Object[]) null);
                         }
 
                     }
@@ -140,21 +164,12 @@ class PathExpression extends Expression
                     {
                         IObject c = (IObject) current;
                         // Performance optimization - check that the field exists first
-                        boolean found = false;
-                        field: for (IClass cls = c.getClazz(); cls != null; cls = cls.getSuperClass())
-                        {
-                            for (FieldDescriptor fd : cls.getFieldDescriptors())
-                            {
-                                if (fd.getName().equals(attribute.getName()))
-                                {
-                                    found = true;
-                                    break field;
-                                }
-                            }
-                        }
+                        FieldLookup lookup = getFieldLookup(index, c, attribute.getName());
+                        boolean found = lookup.found;
                         if (found)
                         {
-                            current = c.resolveValue(attribute.getName());
+                            current = lookup.index >= 0 ? readField((IInstance) c, lookup.index, attribute.getName())
+                                            : c.resolveValue(attribute.getName());
                         }
                         else
                         {
@@ -202,6 +217,94 @@ class PathExpression extends Expression
         }
     }
 
+    private FieldLookup getFieldLookup(int position, IObject object, String name)
+    {
+        IClass clazz = object.getClazz();
+        FieldLookup lookup = (FieldLookup) resolved[position].get(clazz);
+        // classes are equal by id, but the query might run on another snapshot
+        if (lookup != null && lookup.clazz == clazz)
+            return lookup;
+
+        boolean found = false;
+        field: for (IClass cls = clazz; cls != null; cls = cls.getSuperClass())
+        {
+            for (FieldDescriptor fd : cls.getFieldDescriptors())
+            {
+                if (fd.getName().equals(name))
+                {
+                    found = true;
+                    break field;
+                }
+            }
+        }
+
+        // like the lookup by name, the last field of the name wins
+        int index = -1;
+        if (found && object instanceof IInstance && name.indexOf('.') < 0)
+        {
+            List<Field> fields = ((IInstance) object).getFields();
+            for (int ii = 0; ii < fields.size(); ii++)
+            {
+                if (fields.get(ii).getName().equals(name))
+                    index = ii;
+            }
+        }
+
+        lookup = new FieldLookup(clazz, found, index);
+        resolved[position].put(clazz, lookup);
+        return lookup;
+    }
+
+    /**
+     * Reads the field at the index found for the class of the instance, same
+     * as {@link IObject#resolveValue(String)} for a simple name.
+     */
+    private static Object readField(IInstance object, int index, String name) throws SnapshotException
+    {
+        List<Field> fields = object.getFields();
+        Field field = index < fields.size() ? fields.get(index) : null;
+        if (field == null || !field.getName().equals(name))
+            return object.resolveValue(name);
+
+        Object value = field.getValue();
+        if (value instanceof ObjectReference)
+        {
+            try
+            {
+                return ((ObjectReference) value).getObject();
+            }
+            catch (SnapshotException e)
+            {
+                // for the message about the illegal reference
+                return object.resolveValue(name);
+            }
+        }
+        return value;
+    }
+
+    private Method getReadMethod(int position, Class<?> type, String name) throws Exception
+    {
+        Method readMethod = (Method) resolved[position].get(type);
+        if (readMethod != null)
+            return readMethod;
+
+        BeanInfo info = Introspector.getBeanInfo(type);
+        PropertyDescriptor[] descriptors = info.getPropertyDescriptors();
+
+        for (PropertyDescriptor descriptor : descriptors)
+        {
+            if (name.equals(descriptor.getName()))
+            {
+                readMethod = descriptor.getReadMethod();
+                if (readMethod != null)
+                    resolved[position].put(type, readMethod);
+                return readMethod;
+            }
+        }
+
+        return null;
+    }
+
     protected static List<?> asList(final Object element)
     {
         int size = Array.getLength(element);
@@ -224,6 +327,11 @@ class PathExpression extends Expression
         return answer;
     }
 
+    List<Object> getAttributes()
+    {
+        return attributes;
+    }
+
     @Override
     public boolean isContextDependent(EvaluationContext ctx)
     {
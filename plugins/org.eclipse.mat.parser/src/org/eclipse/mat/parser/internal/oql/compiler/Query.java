@@ -8,6 +8,7 @@
  * Contributors:
  *    SAP AG - initial API and implementation
  *    IBM Corporation - bug fix for printing AS clause
+ *    agent - GROUP BY
  *******************************************************************************/
 package org.eclipse.mat.parser.internal.oql.compiler;
 
@@ -336,6 +337,7 @@ public class Query
     private SelectClause selectClause;
     private FromClause fromClause;
     private Expression whereClause;
+    private List<Expression> groupByClause;
     private List<Query> unionQueries;
 
     public SelectClause getSelectClause()
@@ -368,6 +370,16 @@ public class Query
         this.whereClause = whereClause;
     }
 
+    public List<Expression> getGroupByClause()
+    {
+        return groupByClause;
+    }
+
+    public void setGroupByClause(List<Expression> groupByClause)
+    {
+        this.groupByClause = groupByClause;
+    }
+
     public void addUnionQuery(Query query)
     {
         if (unionQueries == null)
@@ -398,6 +410,20 @@ public class Query
         if (whereClause != null)
             buf.append("WHERE ").append(whereClause);//$NON-NLS-1$
 
+        // group by clause
+        if (groupByClause != null)
+        {
+            if (whereClause != null)
+                buf.append(" ");//$NON-NLS-1$
+            buf.append("GROUP BY ");//$NON-NLS-1$
+            for (Iterator<Expression> iter = groupByClause.iterator(); iter.hasNext();)
+            {
+                buf.append(iter.next());
+                if (iter.hasNext())
+                    buf.append(", ");//$NON-NLS-1$
+            }
+        }
+
         if (unionQueries != null)
         {
             for (Query q : unionQueries)
@@ -30,15 +30,19 @@ public class QueryExpression extends Expression
     @Override
     public Object compute(EvaluationContext ctx) throws SnapshotException, OperationCanceledException
     {
-        if (!isDependencyCalculated)
+        // the where clause may be evaluated by several threads
+        synchronized (this)
         {
-            isQueryContextDependent = this.isContextDependent(ctx);
-            isDependencyCalculated = true;
-
-            if (!isQueryContextDependent)
+            if (!isDependencyCalculated)
             {
-                OQLQueryImpl q = new OQLQueryImpl(ctx, query);
-                queryResult = q.execute(ctx.getSnapshot(), null);
+                isQueryContextDependent = this.isContextDependent(ctx);
+
+                if (!isQueryContextDependent)
+                {
+                    OQLQueryImpl q = new OQLQueryImpl(ctx, query);
+                    queryResult = q.execute(ctx.getSnapshot(), null);
+                }
+                isDependencyCalculated = true;
             }
         }
 
@@ -0,0 +1,493 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.oql.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.collect.SetInt;
+import org.eclipse.mat.parser.internal.oql.compiler.CompilerImpl.ConstantExpression;
+import org.eclipse.mat.parser.internal.oql.compiler.Operation.RelationalOperation;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.FieldDescriptor;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IObject;
+
+/**
+ * Splits the where clause of a query into conditions which are answered from
+ * the indexes of the snapshot by object id, and the rest of the clause which
+ * needs the object.
+ * <p>
+ * Recognized are comparisons of a number with <code>@objectId</code>,
+ * <code>@objectAddress</code>, <code>@usedHeapSize</code> or
+ * <code>@retainedHeapSize</code> of the object or of
+ * <code>dominatorof(alias)</code>, and <code>dominatorof(alias) = null</code>
+ * or <code>!= null</code>, as terms of the top level <code>and</code>. They
+ * are evaluated before the rest of the where clause, so that the objects are
+ * only read for the objects which pass them.
+ * <p>
+ * Comparisons of a number with a primitive field of the object,
+ * <code>alias.field</code>, are field conditions. They are evaluated for all
+ * objects of a class at once with the values read straight from the dump,
+ * see {@link ISnapshot#getPrimitiveFieldValues(int[], String)}.
+ */
+public class QueryPlan
+{
+    private enum IndexedAttribute
+    {
+        OBJECT_ID("objectId", "IDENTIFIER"), //$NON-NLS-1$ //$NON-NLS-2$
+        OBJECT_ADDRESS("objectAddress", "O2ADDRESS"), //$NON-NLS-1$ //$NON-NLS-2$
+        USED_HEAP_SIZE("usedHeapSize", "A2SIZE"), //$NON-NLS-1$ //$NON-NLS-2$
+        RETAINED_HEAP_SIZE("retainedHeapSize", "O2RETAINED"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final String name;
+        final String index;
+
+        private IndexedAttribute(String name, String index)
+        {
+            this.name = name;
+            this.index = index;
+        }
+
+        static IndexedAttribute of(Object element)
+        {
+            if (!(element instanceof Attribute))
+                return null;
+            Attribute a = (Attribute) element;
+            if (!a.isNative())
+                return null;
+            for (IndexedAttribute attribute : values())
+            {
+                if (attribute.name.equals(a.getName()))
+                    return attribute;
+            }
+            return null;
+        }
+
+        long get(ISnapshot snapshot, int objectId) throws SnapshotException
+        {
+            switch (this)
+            {
+                case OBJECT_ADDRESS:
+                    return snapshot.mapIdToAddress(objectId);
+                case USED_HEAP_SIZE:
+                    return snapshot.getHeapSize(objectId);
+                case RETAINED_HEAP_SIZE:
+                    return snapshot.getRetainedHeapSize(objectId);
+                default:
+                    return objectId;
+            }
+        }
+    }
+
+    /**
+     * A comparison of an attribute with a constant, evaluated with the
+     * operation of the where clause.
+     */
+    private static class IndexCondition
+    {
+        final RelationalOperation operation;
+        /** the attribute of the immediate dominator instead of the object */
+        final boolean dominator;
+        /** null for a comparison of the dominator with null */
+        final IndexedAttribute attribute;
+        final Object constant;
+        final boolean constantLeft;
+
+        IndexCondition(RelationalOperation operation, boolean dominator, IndexedAttribute attribute, Object constant,
+                        boolean constantLeft)
+        {
+            this.operation = operation;
+            this.dominator = dominator;
+            this.attribute = attribute;
+            this.constant = constant;
+            this.constantLeft = constantLeft;
+        }
+
+        boolean accept(ISnapshot snapshot, int objectId) throws SnapshotException
+        {
+            if (dominator)
+            {
+                objectId = snapshot.getImmediateDominatorId(objectId);
+                if (objectId < 0)
+                {
+                    // the path expression is null
+                    Object result = constantLeft ? operation.evalNull(constant, null) : operation.evalNull(null,
+                                    constant);
+                    return ((Boolean) result).booleanValue();
+                }
+                else if (attribute == null)
+                {
+                    // an object, compared with null
+                    Object object = new Object();
+                    Object result = constantLeft ? operation.eval(constant, object) : operation.eval(object, constant);
+                    return ((Boolean) result).booleanValue();
+                }
+            }
+
+            long value = attribute.get(snapshot, objectId);
+            Object result;
+            if (constant instanceof Double || constant instanceof Float)
+            {
+                double c = ((Number) constant).doubleValue();
+                result = constantLeft ? operation.eval(c, (double) value) : operation.eval((double) value, c);
+            }
+            else
+            {
+                long c = ((Number) constant).longValue();
+                result = constantLeft ? operation.eval(c, value) : operation.eval(value, c);
+            }
+            return ((Boolean) result).booleanValue();
+        }
+
+        String getIndex()
+        {
+            if (attribute == null)
+                return "DOMINATOR"; //$NON-NLS-1$
+            return dominator ? "DOMINATOR, " + attribute.index : attribute.index; //$NON-NLS-1$
+        }
+
+        @Override
+        public String toString()
+        {
+            return operation.toString() + " [" + getIndex() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * A comparison of a primitive field of the object with a constant,
+     * evaluated with the operation of the where clause.
+     */
+    private static class FieldCondition
+    {
+        final RelationalOperation operation;
+        final String fieldName;
+        final Object constant;
+        final boolean constantLeft;
+
+        FieldCondition(RelationalOperation operation, String fieldName, Object constant, boolean constantLeft)
+        {
+            this.operation = operation;
+            this.fieldName = fieldName;
+            this.constant = constant;
+            this.constantLeft = constantLeft;
+        }
+
+        /**
+         * @param value
+         *            the value as returned by
+         *            {@link ISnapshot#getPrimitiveFieldValues(int[], String)}
+         */
+        boolean accept(long value, int type)
+        {
+            Object result;
+            if (type == IObject.Type.FLOAT || type == IObject.Type.DOUBLE || constant instanceof Double
+                            || constant instanceof Float)
+            {
+                double v = type == IObject.Type.FLOAT ? Float.intBitsToFloat((int) value)
+                                : type == IObject.Type.DOUBLE ? Double.longBitsToDouble(value) : value;
+                double c = ((Number) constant).doubleValue();
+                result = constantLeft ? operation.eval(c, v) : operation.eval(v, c);
+            }
+            else
+            {
+                long c = ((Number) constant).longValue();
+                result = constantLeft ? operation.eval(c, value) : operation.eval(value, c);
+            }
+            return ((Boolean) result).booleanValue();
+        }
+
+        @Override
+        public String toString()
+        {
+            return operation.toString() + " [FIELD]"; //$NON-NLS-1$
+        }
+    }
+
+    private final List<IndexCondition> conditions;
+    private final List<FieldCondition> fieldConditions;
+    private final Expression residualClause;
+    private final Expression residualClauseWithFields;
+
+    private QueryPlan(List<IndexCondition> conditions, List<FieldCondition> fieldConditions,
+                    Expression residualClause, Expression residualClauseWithFields)
+    {
+        this.conditions = conditions;
+        this.fieldConditions = fieldConditions;
+        this.residualClause = residualClause;
+        this.residualClauseWithFields = residualClauseWithFields;
+    }
+
+    /**
+     * @param whereClause
+     *            the where clause of the query, may be null
+     * @param alias
+     *            the alias of the FROM clause, may be null
+     */
+    public static QueryPlan create(Expression whereClause, String alias)
+    {
+        List<IndexCondition> conditions = new ArrayList<IndexCondition>();
+        List<FieldCondition> fieldConditions = new ArrayList<FieldCondition>();
+        if (whereClause == null)
+            return new QueryPlan(conditions, fieldConditions, null, null);
+
+        Expression[] terms = whereClause instanceof Operation.And ? ((Operation.And) whereClause).getArguments()
+                        : new Expression[] { whereClause };
+        List<Expression> residual = new ArrayList<Expression>(terms.length);
+        List<Expression> fieldTerms = new ArrayList<Expression>();
+        for (Expression term : terms)
+        {
+            IndexCondition condition = null;
+            FieldCondition fieldCondition = null;
+            if (term instanceof RelationalOperation)
+            {
+                condition = createCondition((RelationalOperation) term, alias);
+                if (condition == null)
+                    fieldCondition = createFieldCondition((RelationalOperation) term, alias);
+            }
+            if (condition != null)
+            {
+                conditions.add(condition);
+            }
+            else if (fieldCondition != null)
+            {
+                fieldConditions.add(fieldCondition);
+                fieldTerms.add(term);
+            }
+            else
+            {
+                residual.add(term);
+            }
+        }
+
+        if (conditions.isEmpty() && fieldConditions.isEmpty())
+            return new QueryPlan(conditions, fieldConditions, whereClause, whereClause);
+
+        fieldTerms.addAll(residual);
+        return new QueryPlan(conditions, fieldConditions, and(residual), and(fieldTerms));
+    }
+
+    private static Expression and(List<Expression> terms)
+    {
+        if (terms.isEmpty())
+            return null;
+        // still an and, which converts the values of the terms to boolean
+        return new Operation.And(terms.toArray(new Expression[terms.size()]));
+    }
+
+    private static IndexCondition createCondition(RelationalOperation operation, String alias)
+    {
+        Expression[] args = operation.getArguments();
+        for (int ii = 0; ii < 2; ii++)
+        {
+            if (!(args[1 - ii] instanceof ConstantExpression) || !(args[ii] instanceof PathExpression))
+                continue;
+            Object constant = ((ConstantExpression) args[1 - ii]).literal;
+            List<Object> path = ((PathExpression) args[ii]).getAttributes();
+            boolean constantLeft = ii == 1;
+
+            if (path.get(0) instanceof Function.DominatorOf)
+            {
+                if (!isAlias(((Function.DominatorOf) path.get(0)).argument, alias))
+                    return null;
+                if (path.size() == 1 && constant == ConstantExpression.NULL
+                                && (operation instanceof Operation.Equal || operation instanceof Operation.NotEqual))
+                    return new IndexCondition(operation, true, null, constant, constantLeft);
+                if (path.size() == 2 && constant instanceof Number && IndexedAttribute.of(path.get(1)) != null)
+                    return new IndexCondition(operation, true, IndexedAttribute.of(path.get(1)), constant, constantLeft);
+                return null;
+            }
+
+            if (!(constant instanceof Number))
+                return null;
+            if (path.size() == 1 && IndexedAttribute.of(path.get(0)) != null)
+                return new IndexCondition(operation, false, IndexedAttribute.of(path.get(0)), constant, constantLeft);
+            if (path.size() == 2 && isAlias(path.get(0), alias) && IndexedAttribute.of(path.get(1)) != null)
+                return new IndexCondition(operation, false, IndexedAttribute.of(path.get(1)), constant, constantLeft);
+        }
+        return null;
+    }
+
+    private static FieldCondition createFieldCondition(RelationalOperation operation, String alias)
+    {
+        Expression[] args = operation.getArguments();
+        for (int ii = 0; ii < 2; ii++)
+        {
+            if (!(args[1 - ii] instanceof ConstantExpression) || !(args[ii] instanceof PathExpression))
+                continue;
+            Object constant = ((ConstantExpression) args[1 - ii]).literal;
+            List<Object> path = ((PathExpression) args[ii]).getAttributes();
+            if (!(constant instanceof Number) || path.size() != 2 || !isAlias(path.get(0), alias)
+                            || !(path.get(1) instanceof Attribute))
+                continue;
+            Attribute field = (Attribute) path.get(1);
+            if (field.isNative() || field.isEnvVar())
+                continue;
+            return new FieldCondition(operation, field.getName(), constant, ii == 1);
+        }
+        return null;
+    }
+
+    private static boolean isAlias(Object element, String alias)
+    {
+        if (alias == null)
+            return false;
+        if (element instanceof PathExpression)
+        {
+            List<Object> path = ((PathExpression) element).getAttributes();
+            if (path.size() != 1)
+                return false;
+            element = path.get(0);
+        }
+        if (!(element instanceof Attribute))
+            return false;
+        Attribute a = (Attribute) element;
+        return !a.isNative() && !a.isEnvVar() && alias.equals(a.getName());
+    }
+
+    /**
+     * @return true if there are conditions answered from the indexes
+     */
+    public boolean hasIndexConditions()
+    {
+        return !conditions.isEmpty();
+    }
+
+    /**
+     * Evaluates the conditions answered from the indexes.
+     */
+    public boolean accept(ISnapshot snapshot, int objectId) throws SnapshotException
+    {
+        for (int ii = 0; ii < conditions.size(); ii++)
+        {
+            if (!conditions.get(ii).accept(snapshot, objectId))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the field conditions for many objects at once, if all objects
+     * are instances of classes with a numeric field of the same type for each
+     * field condition.
+     *
+     * @return the objects passing the field conditions, or null if they have
+     *         to be evaluated on each object
+     */
+    public int[] filterByFields(ISnapshot snapshot, int[] objectIds) throws SnapshotException
+    {
+        if (fieldConditions.isEmpty())
+            return null;
+
+        int[] types = new int[fieldConditions.size()];
+        Arrays.fill(types, -1);
+        SetInt classes = new SetInt();
+        for (int objectId : objectIds)
+        {
+            if (snapshot.isArray(objectId) || snapshot.isClass(objectId))
+                return null;
+            IClass clazz = snapshot.getClassOf(objectId);
+            if (!classes.add(clazz.getObjectId()))
+                continue;
+            for (int ii = 0; ii < types.length; ii++)
+            {
+                int type = getFieldType(clazz, fieldConditions.get(ii).fieldName);
+                if (type == IObject.Type.OBJECT || type == IObject.Type.BOOLEAN || type == IObject.Type.CHAR
+                                || type < 0 || types[ii] >= 0 && types[ii] != type)
+                    return null;
+                types[ii] = type;
+            }
+        }
+
+        int[] candidates = objectIds;
+        for (int ii = 0; ii < types.length && candidates.length > 0; ii++)
+        {
+            FieldCondition condition = fieldConditions.get(ii);
+            long[] values = snapshot.getPrimitiveFieldValues(candidates, condition.fieldName);
+            ArrayInt accepted = new ArrayInt(candidates.length);
+            for (int jj = 0; jj < candidates.length; jj++)
+            {
+                if (condition.accept(values[jj], types[ii]))
+                    accepted.add(candidates[jj]);
+            }
+            candidates = accepted.toArray();
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the type of the field which the object has, or -1 if there is
+     *         none or the name is declared more than once in the class
+     *         hierarchy: the path expression then reads the field of the
+     *         superclass, the bulk read the field of the subclass
+     */
+    private static int getFieldType(IClass clazz, String fieldName)
+    {
+        int type = -1;
+        for (IClass c = clazz; c != null; c = c.getSuperClass())
+        {
+            for (FieldDescriptor field : c.getFieldDescriptors())
+            {
+                if (field.getName().equals(fieldName))
+                {
+                    if (type >= 0)
+                        return -1;
+                    type = field.getType();
+                }
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return the part of the where clause which is evaluated on the objects
+     *         passing the index conditions and the field conditions, or null
+     */
+    public Expression getResidualClause()
+    {
+        return residualClause;
+    }
+
+    /**
+     * @return the part of the where clause which is evaluated on the objects
+     *         passing the index conditions, including the field conditions,
+     *         or null
+     */
+    public Expression getResidualClauseWithFields()
+    {
+        return residualClauseWithFields;
+    }
+
+    /**
+     * @return the index conditions, one per line
+     */
+    public List<String> getIndexConditions()
+    {
+        List<String> answer = new ArrayList<String>(conditions.size());
+        for (IndexCondition condition : conditions)
+            answer.add(condition.toString());
+        return answer;
+    }
+
+    /**
+     * @return the field conditions, one per line
+     */
+    public List<String> getFieldConditions()
+    {
+        List<String> answer = new ArrayList<String>(fieldConditions.size());
+        for (FieldCondition condition : fieldConditions)
+            answer.add(condition.toString());
+        return answer;
+    }
+}
@@ -151,6 +151,14 @@ public class OQLParser implements OQLParserConstants
         else
         {
 
+        }
+        if (seeUnreservedKeyword("GROUP", "BY"))
+        {
+            GroupByClause(q);
+        }
+        else
+        {
+
         }
         if (jj_2_2(1))
         {
@@ -594,7 +602,7 @@ public class OQLParser implements OQLParserConstants
                 jj_consume_token(-1);
                 throw new ParseException();
         }
-        if (seeExclude("WHERE", "UNION"))
+        if (seeExclude("WHERE", "GROUP", "UNION"))
         {
             t2 = jj_consume_token(IDENTIFIER);
         }
@@ -762,12 +770,39 @@ public class OQLParser implements OQLParserConstants
         q.setWhereClause((Expression) ex);
     }
 
+    /* ---------------- group by --------------------- */
+    final public void GroupByClause(Query q) throws ParseException
+    {
+        List<Expression> groupBy = new ArrayList<Expression>();
+        Object ex;
+        jj_consume_token(IDENTIFIER);
+        jj_consume_token(IDENTIFIER);
+        ex = SimpleExpression();
+        groupBy.add((Expression) ex);
+        label_9: while (true)
+        {
+            switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
+            {
+                case COMMA:
+
+                    break;
+                default:
+                    jj_la1[20] = jj_gen;
+                    break label_9;
+            }
+            jj_consume_token(COMMA);
+            ex = SimpleExpression();
+            groupBy.add((Expression) ex);
+        }
+        q.setGroupByClause(groupBy);
+    }
+
     final public Object ConditionalOrExpression() throws ParseException
     {
         Object ex, r;
         ArrayList<Object> list = null;
         ex = ConditionalAndExpression();
-        label_9: while (true)
+        label_10: while (true)
         {
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -775,8 +810,8 @@ public class OQLParser implements OQLParserConstants
 
                     break;
                 default:
-                    jj_la1[20] = jj_gen;
-                    break label_9;
+                    jj_la1[21] = jj_gen;
+                    break label_10;
             }
             jj_consume_token(OR);
             r = ConditionalAndExpression();
@@ -803,7 +838,7 @@ public class OQLParser implements OQLParserConstants
         Object ex, r;
         ArrayList<Object> list = null;
         ex = EqualityExpression();
-        label_10: while (true)
+        label_11: while (true)
         {
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -811,8 +846,8 @@ public class OQLParser implements OQLParserConstants
 
                     break;
                 default:
-                    jj_la1[21] = jj_gen;
-                    break label_10;
+                    jj_la1[22] = jj_gen;
+                    break label_11;
             }
             jj_consume_token(AND);
             r = EqualityExpression();
@@ -838,7 +873,7 @@ public class OQLParser implements OQLParserConstants
     {
         Object ex, r;
         ex = RelationalExpression();
-        label_11: while (true)
+        label_12: while (true)
         {
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -847,8 +882,8 @@ public class OQLParser implements OQLParserConstants
 
                     break;
                 default:
-                    jj_la1[22] = jj_gen;
-                    break label_11;
+                    jj_la1[23] = jj_gen;
+                    break label_12;
             }
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -863,7 +898,7 @@ public class OQLParser implements OQLParserConstants
                     ex = compiler.notEqual(ex, r);
                     break;
                 default:
-                    jj_la1[23] = jj_gen;
+                    jj_la1[24] = jj_gen;
                     jj_consume_token(-1);
                     throw new ParseException();
             }
@@ -904,7 +939,7 @@ public class OQLParser implements OQLParserConstants
                     ex = compiler.greaterThanOrEqual(ex, r);
                     break;
                 default:
-                    jj_la1[24] = jj_gen;
+                    jj_la1[25] = jj_gen;
                     if (seeUnreservedKeyword("LIKE"))
                     {
                         ex = LikeClause(ex, true);
@@ -927,7 +962,7 @@ public class OQLParser implements OQLParserConstants
                                 ex = compiler.instanceOf(ex, (String) r);
                                 break;
                             default:
-                                jj_la1[25] = jj_gen;
+                                jj_la1[26] = jj_gen;
                                 jj_consume_token(-1);
                                 throw new ParseException();
                         }
@@ -1000,7 +1035,7 @@ public class OQLParser implements OQLParserConstants
     {
         Object ex, r;
         ex = MultiplicativeExpression();
-        label_12: while (true)
+        label_13: while (true)
         {
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -1009,8 +1044,8 @@ public class OQLParser implements OQLParserConstants
 
                     break;
                 default:
-                    jj_la1[26] = jj_gen;
-                    break label_12;
+                    jj_la1[27] = jj_gen;
+                    break label_13;
             }
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -1025,7 +1060,7 @@ public class OQLParser implements OQLParserConstants
                     ex = compiler.minus(ex, r);
                     break;
                 default:
-                    jj_la1[27] = jj_gen;
+                    jj_la1[28] = jj_gen;
                     jj_consume_token(-1);
                     throw new ParseException();
             }
@@ -1041,7 +1076,7 @@ public class OQLParser implements OQLParserConstants
     {
         Object ex, r;
         ex = PrimaryExpression();
-        label_13: while (true)
+        label_14: while (true)
         {
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -1050,8 +1085,8 @@ public class OQLParser implements OQLParserConstants
 
                     break;
                 default:
-                    jj_la1[28] = jj_gen;
-                    break label_13;
+                    jj_la1[29] = jj_gen;
+                    break label_14;
             }
             switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
             {
@@ -1066,7 +1101,7 @@ public class OQLParser implements OQLParserConstants
                     ex = compiler.divide(ex, r);
                     break;
                 default:
-                    jj_la1[29] = jj_gen;
+                    jj_la1[30] = jj_gen;
                     jj_consume_token(-1);
                     throw new ParseException();
             }
@@ -1126,7 +1161,7 @@ public class OQLParser implements OQLParserConstants
                             ex = ConditionalOrExpression();
                             break;
                         default:
-                            jj_la1[30] = jj_gen;
+                            jj_la1[31] = jj_gen;
                             jj_consume_token(-1);
                             throw new ParseException();
                     }
@@ -1153,7 +1188,7 @@ public class OQLParser implements OQLParserConstants
                 }
                 break;
             default:
-                jj_la1[31] = jj_gen;
+                jj_la1[32] = jj_gen;
                 jj_consume_token(-1);
                 throw new ParseException();
         }
@@ -1200,7 +1235,7 @@ public class OQLParser implements OQLParserConstants
                 ex = NullLiteral();
                 break;
             default:
-                jj_la1[32] = jj_gen;
+                jj_la1[33] = jj_gen;
                 jj_consume_token(-1);
                 throw new ParseException();
         }
@@ -1228,13 +1263,13 @@ public class OQLParser implements OQLParserConstants
                         unary = jj_consume_token(MINUS);
                         break;
                     default:
-                        jj_la1[33] = jj_gen;
+                        jj_la1[34] = jj_gen;
                         jj_consume_token(-1);
                         throw new ParseException();
                 }
                 break;
             default:
-                jj_la1[34] = jj_gen;
+                jj_la1[35] = jj_gen;
 
         }
         switch ((jj_ntk == -1) ? jj_ntk() : jj_ntk)
@@ -1264,7 +1299,7 @@ public class OQLParser implements OQLParserConstants
                 ex = compiler.literal(aFloat);
                 break;
             default:
-                jj_la1[35] = jj_gen;
+                jj_la1[36] = jj_gen;
                 jj_consume_token(-1);
                 throw new ParseException();
         }
@@ -1294,7 +1329,7 @@ public class OQLParser implements OQLParserConstants
                 }
                 break;
             default:
-                jj_la1[36] = jj_gen;
+                jj_la1[37] = jj_gen;
                 jj_consume_token(-1);
                 throw new ParseException();
         }
@@ -1315,7 +1350,7 @@ public class OQLParser implements OQLParserConstants
     final public void UnionClause(Query q) throws ParseException
     {
         Query unionQuery = null;
-        label_14: while (true)
+        label_15: while (true)
         {
             jj_consume_token(IDENTIFIER);
             jj_consume_token(LPAREN);
@@ -1328,7 +1363,7 @@ public class OQLParser implements OQLParserConstants
             }
             else
             {
-                break label_14;
+                break label_15;
             }
         }
     }
@@ -1722,7 +1757,7 @@ public class OQLParser implements OQLParserConstants
     private boolean jj_lookingAhead = false;
     private boolean jj_semLA;
     private int jj_gen;
-    final private int[] jj_la1 = new int[37];
+    final private int[] jj_la1 = new int[38];
     static private int[] jj_la1_0;
     static private int[] jj_la1_1;
     static
@@ -1734,17 +1769,17 @@ public class OQLParser implements OQLParserConstants
     private static void jj_la1_init_0()
     {
         jj_la1_0 = new int[] { 0x0, 0x0, 0x69b46000, 0x40200000, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x0, 0x69b46000,
-                        0x69b46000, 0x60212000, 0x0, 0x0, 0x60212000, 0x0, 0x0, 0x2000000, 0x4000000, 0x0, 0x0, 0x0,
-                        0x10000000, 0x0, 0x0, 0x0, 0x0, 0x69b46000, 0x69b46000, 0x9b46000, 0x0, 0x0, 0x46000,
-                        0x1800000, };
+                        0x69b46000, 0x60212000, 0x0, 0x0, 0x60212000, 0x0, 0x0, 0x0, 0x2000000, 0x4000000, 0x0, 0x0,
+                        0x0, 0x10000000, 0x0, 0x0, 0x0, 0x0, 0x69b46000, 0x69b46000, 0x9b46000, 0x0, 0x0,
+                        0x46000, 0x1800000, };
     }
 
     private static void jj_la1_init_1()
     {
         jj_la1_1 = new int[] { 0x200, 0x100, 0x186000, 0x0, 0x20400, 0x400000, 0x20400, 0x20400, 0x400000, 0x20400,
-                        0x2000, 0x200, 0x186000, 0x186000, 0x4000, 0x200, 0x200, 0x0, 0x400, 0x10000, 0x0, 0x0, 0x48,
-                        0x48, 0x36, 0x0, 0x180000, 0x180000, 0x200100, 0x200100, 0x186000, 0x186000, 0x180000,
-                        0x180000, 0x180000, 0x0, 0x0, };
+                        0x2000, 0x200, 0x186000, 0x186000, 0x4000, 0x200, 0x200, 0x0, 0x400, 0x10000, 0x200, 0x0, 0x0,
+                        0x48, 0x48, 0x36, 0x0, 0x180000, 0x180000, 0x200100, 0x200100, 0x186000, 0x186000,
+                        0x180000, 0x180000, 0x180000, 0x0, 0x0, };
     }
 
     final private JJCalls[] jj_2_rtns = new JJCalls[7];
@@ -1772,7 +1807,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -1799,7 +1834,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -1813,7 +1848,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -1827,7 +1862,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -1840,7 +1875,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -1853,7 +1888,7 @@ public class OQLParser implements OQLParserConstants
         token = new Token();
         jj_ntk = -1;
         jj_gen = 0;
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
             jj_la1[i] = -1;
         for (int i = 0; i < jj_2_rtns.length; i++)
             jj_2_rtns[i] = new JJCalls();
@@ -2019,7 +2054,7 @@ public class OQLParser implements OQLParserConstants
             la1tokens[jj_kind] = true;
             jj_kind = -1;
         }
-        for (int i = 0; i < 37; i++)
+        for (int i = 0; i < 38; i++)
         {
             if (jj_la1[i] == jj_gen)
             {
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.collect.BitField;
+import org.eclipse.mat.collect.HashMapIntObject;
+import org.eclipse.mat.snapshot.ExcludedReferencesDescriptor;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.FieldDescriptor;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.NamedReference;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Decides for each reference from the outbound index whether it may be
+ * followed when some references are excluded, without loading any objects
+ * while marking.
+ * <p>
+ * A reference is excluded if it comes from one of the excluded objects and
+ * all the named references from the object to the referent go through
+ * excluded fields. The referents which can still be reached from an excluded
+ * object are therefore calculated up front, once per object instead of once
+ * per reference. Instances of classes without any of the excluded fields, and
+ * object arrays, keep all their references and are not loaded at all.
+ */
+class ExcludedReferencesFilter
+{
+    private static final int[] NONE = new int[0];
+    private static final int BATCH_SIZE = 1024;
+
+    /** objects with at least one excluded reference */
+    private final BitField excluded;
+    /** the referents which can still be reached, sorted */
+    private final HashMapIntObject<int[]> allowed;
+
+    /**
+     * @param pool
+     *            threads to load the excluded objects, or null to load them
+     *            on the calling thread
+     */
+    ExcludedReferencesFilter(ExcludedReferencesDescriptor[] excludeSets, final ISnapshot snapshot,
+                    ExecutorService pool, IProgressListener listener) throws SnapshotException
+    {
+        int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+        excluded = new BitField(numberOfObjects);
+        allowed = new HashMapIntObject<int[]>();
+
+        /*
+         * The first descriptor containing an object decides which of its
+         * fields are excluded.
+         */
+        BitField seen = new BitField(numberOfObjects);
+        final List<ArrayInt> toLoad = new ArrayList<ArrayInt>();
+        final List<Set<String>> toLoadFields = new ArrayList<Set<String>>();
+        for (ExcludedReferencesDescriptor set : excludeSets)
+        {
+            Set<String> fields = set.getFields();
+            HashMapIntObject<Boolean> classHasField = new HashMapIntObject<Boolean>();
+            ArrayInt objects = new ArrayInt();
+            for (int objectId : set.getObjectIds())
+            {
+                if (seen.get(objectId))
+                    continue;
+                seen.set(objectId);
+
+                if (fields == null)
+                {
+                    // all references are excluded
+                    excluded.set(objectId);
+                    allowed.put(objectId, NONE);
+                }
+                else if (mayExclude(snapshot, objectId, fields, classHasField))
+                {
+                    excluded.set(objectId);
+                    objects.add(objectId);
+                }
+            }
+            if (!objects.isEmpty())
+            {
+                toLoad.add(objects);
+                toLoadFields.add(fields);
+            }
+        }
+
+        if (pool == null)
+        {
+            for (int ii = 0; ii < toLoad.size(); ii++)
+            {
+                int[] objects = toLoad.get(ii).toArray();
+                int[][] result = load(snapshot, objects, 0, objects.length, toLoadFields.get(ii), listener);
+                for (int jj = 0; jj < objects.length; jj++)
+                    allowed.put(objects[jj], result[jj]);
+            }
+            return;
+        }
+
+        List<Future<int[][]>> futures = new ArrayList<Future<int[][]>>();
+        List<int[]> batches = new ArrayList<int[]>();
+        for (int ii = 0; ii < toLoad.size(); ii++)
+        {
+            final int[] objects = toLoad.get(ii).toArray();
+            final Set<String> fields = toLoadFields.get(ii);
+            final IProgressListener l = listener;
+            for (int from = 0; from < objects.length; from += BATCH_SIZE)
+            {
+                final int start = from;
+                final int end = Math.min(from + BATCH_SIZE, objects.length);
+                futures.add(pool.submit(new Callable<int[][]>()
+                {
+                    public int[][] call() throws SnapshotException
+                    {
+                        return load(snapshot, objects, start, end, fields, l);
+                    }
+                }));
+                int[] batch = new int[end - start];
+                System.arraycopy(objects, start, batch, 0, batch.length);
+                batches.add(batch);
+            }
+        }
+
+        try
+        {
+            for (int ii = 0; ii < futures.size(); ii++)
+            {
+                int[][] result = futures.get(ii).get();
+                int[] batch = batches.get(ii);
+                for (int jj = 0; jj < batch.length; jj++)
+                    allowed.put(batch[jj], result[jj]);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            throw new IProgressListener.OperationCanceledException();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof SnapshotException)
+                throw (SnapshotException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new SnapshotException(cause);
+        }
+        finally
+        {
+            for (Future<int[][]> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * @return true if the reference from referrer to referent may be followed
+     */
+    boolean follow(int referrerId, int referentId)
+    {
+        if (!excluded.get(referrerId))
+            return true;
+        return Arrays.binarySearch(allowed.get(referrerId), referentId) >= 0;
+    }
+
+    /**
+     * Checks by the class of an object whether any of its references can go
+     * through the excluded fields. The pseudo references of objects have
+     * names starting with '&lt;', array elements with '['; if such names are
+     * excluded the object has to be loaded.
+     */
+    private static boolean mayExclude(ISnapshot snapshot, int objectId, Set<String> fields,
+                    HashMapIntObject<Boolean> classHasField) throws SnapshotException
+    {
+        for (String field : fields)
+        {
+            if (field != null && (field.startsWith("<") || field.startsWith("["))) //$NON-NLS-1$ //$NON-NLS-2$
+                return true;
+        }
+
+        if (snapshot.isArray(objectId))
+            return false;
+        if (snapshot.isClass(objectId))
+            return true;
+
+        IClass clazz = snapshot.getClassOf(objectId);
+        Boolean answer = classHasField.get(clazz.getObjectId());
+        if (answer == null)
+        {
+            answer = Boolean.FALSE;
+            for (IClass c = clazz; c != null && !answer.booleanValue(); c = c.getSuperClass())
+            {
+                for (FieldDescriptor fd : c.getFieldDescriptors())
+                {
+                    if (fields.contains(fd.getName()))
+                    {
+                        answer = Boolean.TRUE;
+                        break;
+                    }
+                }
+            }
+            classHasField.put(clazz.getObjectId(), answer);
+        }
+        return answer.booleanValue();
+    }
+
+    /**
+     * Finds the referents of the objects which are reachable through fields
+     * which are not excluded.
+     */
+    private static int[][] load(ISnapshot snapshot, int[] objects, int from, int to, Set<String> fields,
+                    IProgressListener listener) throws SnapshotException
+    {
+        int[][] result = new int[to - from][];
+        ArrayInt referents = new ArrayInt();
+        for (int ii = from; ii < to; ii++)
+        {
+            if (listener.isCanceled())
+                throw new IProgressListener.OperationCanceledException();
+
+            referents.clear();
+            for (NamedReference reference : snapshot.getObject(objects[ii]).getOutboundReferences())
+            {
+                if (!fields.contains(reference.getName()))
+                {
+                    try
+                    {
+                        referents.add(snapshot.mapAddressToId(reference.getObjectAddress()));
+                    }
+                    catch (SnapshotException e)
+                    {
+                        // $JL-EXC$ not in the outbound index either
+                    }
+                }
+            }
+            int[] r = referents.toArray();
+            Arrays.sort(r);
+            result[ii - from] = r;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.collect.ArrayIntCompressed;
+import org.eclipse.mat.collect.ArrayLongCompressed;
+import org.eclipse.mat.collect.HashMapIntObject;
+import org.eclipse.mat.parser.index.IIndexReader.IOne2OneIndex;
+import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.util.MessageUtil;
+
+/**
+ * Column store of instance field values, kept in the file
+ * <code>fields.index</code> next to the other indexes of a snapshot.
+ * <p>
+ * A column holds the values of one field for all instances of one class, in
+ * ascending order of object id, compressed with {@link ArrayIntCompressed} or
+ * {@link ArrayLongCompressed}. A column is built the first time a request
+ * covers at least half of the instances of a class and is appended to the
+ * file, so later requests, also of later sessions, are answered from memory
+ * instead of from the dump. The file is deleted with the other indexes when
+ * the dump is parsed again.
+ */
+public class FieldValueIndex
+{
+    /**
+     * System property to switch off the index,
+     * -Dorg.eclipse.mat.fieldIndex=false.
+     */
+    public static final String FIELD_INDEX_PROPERTY = "org.eclipse.mat.fieldIndex"; //$NON-NLS-1$
+
+    /** values which fit into an int */
+    private static final byte INT_COLUMN = 0;
+    /** values which need a long */
+    private static final byte LONG_COLUMN = 1;
+    /** object ids, stored incremented by one so null is 0 */
+    private static final byte REFERENCE_COLUMN = 2;
+
+    /**
+     * Reads values of a field from the dump.
+     */
+    public interface Source
+    {
+        /**
+         * @return the value of the field for each object as returned by
+         *         {@link ISnapshot#getPrimitiveFieldValues(int[], String)},
+         *         or for a reference the object id, -1 for null
+         */
+        long[] read(int[] objectIds, String fieldName, boolean reference) throws SnapshotException;
+    }
+
+    private static final class Column
+    {
+        final byte kind;
+        final int size;
+        final ArrayIntCompressed ints;
+        final ArrayLongCompressed longs;
+
+        Column(byte kind, int size, byte[] bytes)
+        {
+            this.kind = kind;
+            this.size = size;
+            this.ints = kind != LONG_COLUMN ? new ArrayIntCompressed(bytes) : null;
+            this.longs = kind == LONG_COLUMN ? new ArrayLongCompressed(bytes) : null;
+        }
+
+        static Column create(long[] values, boolean reference)
+        {
+            byte kind = reference ? REFERENCE_COLUMN : INT_COLUMN;
+            for (int ii = 0; kind == INT_COLUMN && ii < values.length; ii++)
+            {
+                if (values[ii] != (int) values[ii])
+                    kind = LONG_COLUMN;
+            }
+
+            byte[] bytes;
+            if (kind == LONG_COLUMN)
+            {
+                bytes = new ArrayLongCompressed(values).toByteArray();
+            }
+            else
+            {
+                int[] ints = new int[values.length];
+                for (int ii = 0; ii < values.length; ii++)
+                    ints[ii] = kind == REFERENCE_COLUMN ? (int) values[ii] + 1 : (int) values[ii];
+                bytes = new ArrayIntCompressed(ints).toByteArray();
+            }
+            return new Column(kind, values.length, bytes);
+        }
+
+        long get(int index)
+        {
+            switch (kind)
+            {
+                case LONG_COLUMN:
+                    return longs.get(index);
+                case REFERENCE_COLUMN:
+                    return ints.get(index) - 1;
+                default:
+                    return ints.get(index);
+            }
+        }
+
+        byte[] toByteArray()
+        {
+            return longs != null ? longs.toByteArray() : ints.toByteArray();
+        }
+    }
+
+    /**
+     * The columns of one class.
+     */
+    private static final class ClassColumns
+    {
+        final Map<String, Column> columns = new HashMap<String, Column>();
+        /** the sorted object ids of the instances, read when first needed */
+        int[] objectIds;
+    }
+
+    private final String filename;
+    private HashMapIntObject<ClassColumns> classes;
+
+    public static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty(FIELD_INDEX_PROPERTY)); //$NON-NLS-1$
+    }
+
+    public FieldValueIndex(String filename)
+    {
+        this.filename = filename;
+    }
+
+    /**
+     * Get the value of an instance field for many objects, from the columns
+     * where available. The objects are expected to have a field of this name
+     * of the given kind.
+     *
+     * @return the values as returned by the source
+     */
+    public synchronized long[] read(int[] objectIds, String fieldName, boolean reference, ISnapshot snapshot,
+                    IOne2OneIndex o2class, Source source) throws SnapshotException
+    {
+        if (classes == null)
+            load();
+
+        // positions of the objects by class
+        HashMapIntObject<ArrayInt> positionsByClass = new HashMapIntObject<ArrayInt>();
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            int classId = o2class.get(objectIds[ii]);
+            ArrayInt positions = positionsByClass.get(classId);
+            if (positions == null)
+                positionsByClass.put(classId, positions = new ArrayInt());
+            positions.add(ii);
+        }
+
+        long[] answer = new long[objectIds.length];
+        for (Iterator<HashMapIntObject.Entry<ArrayInt>> iter = positionsByClass.entries(); iter.hasNext();)
+        {
+            HashMapIntObject.Entry<ArrayInt> entry = iter.next();
+            IClass clazz = (IClass) snapshot.getObject(entry.getKey());
+            int[] positions = entry.getValue().toArray();
+
+            Column column = getColumn(clazz, fieldName, reference, positions.length, source);
+            if (column != null)
+            {
+                int[] classObjectIds = classes.get(clazz.getObjectId()).objectIds;
+                int index = -1;
+                for (int position : positions)
+                {
+                    // objects are often requested in ascending order
+                    int objectId = objectIds[position];
+                    if (++index >= classObjectIds.length || classObjectIds[index] != objectId)
+                        index = Arrays.binarySearch(classObjectIds, objectId);
+                    if (index < 0)
+                        throw new SnapshotException(MessageUtil.format(Messages.FieldValueIndex_Error_NotAnInstance,
+                                        objectId, clazz.getName()));
+                    answer[position] = column.get(index);
+                }
+            }
+            else
+            {
+                int[] ids = new int[positions.length];
+                for (int ii = 0; ii < positions.length; ii++)
+                    ids[ii] = objectIds[positions[ii]];
+                long[] values = source.read(ids, fieldName, reference);
+                for (int ii = 0; ii < positions.length; ii++)
+                    answer[positions[ii]] = values[ii];
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * @return the column of the field of the class, built if enough of the
+     *         instances are requested, else null
+     */
+    private Column getColumn(IClass clazz, String fieldName, boolean reference, int requested, Source source)
+                    throws SnapshotException
+    {
+        ClassColumns classColumns = classes.get(clazz.getObjectId());
+        Column column = classColumns != null ? classColumns.columns.get(fieldName) : null;
+
+        if (column != null && (column.size != clazz.getNumberOfObjects() //
+                        || (column.kind == REFERENCE_COLUMN) != reference))
+        {
+            // written for another dump or a field of another type
+            classColumns.columns.remove(fieldName);
+            column = null;
+        }
+
+        if (column == null && requested * 2L < clazz.getNumberOfObjects())
+            return null;
+
+        if (classColumns == null)
+            classes.put(clazz.getObjectId(), classColumns = new ClassColumns());
+        if (classColumns.objectIds == null)
+        {
+            int[] ids = clazz.getObjectIds();
+            Arrays.sort(ids);
+            classColumns.objectIds = ids;
+        }
+
+        if (column == null)
+        {
+            column = Column.create(source.read(classColumns.objectIds, fieldName, reference), reference);
+            classColumns.columns.put(fieldName, column);
+            append(clazz.getObjectId(), fieldName, column);
+        }
+        return column;
+    }
+
+    private void load()
+    {
+        classes = new HashMapIntObject<ClassColumns>();
+
+        File file = new File(filename);
+        if (!file.exists())
+            return;
+
+        DataInputStream in = null;
+        boolean delete = false;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            while (in.available() > 0)
+            {
+                int classId = in.readInt();
+                String fieldName = in.readUTF();
+                byte kind = in.readByte();
+                int size = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if (kind < INT_COLUMN || kind > REFERENCE_COLUMN || bytes.length < 2)
+                    throw new IOException(file.getName());
+
+                ClassColumns classColumns = classes.get(classId);
+                if (classColumns == null)
+                    classes.put(classId, classColumns = new ClassColumns());
+                classColumns.columns.put(fieldName, new Column(kind, size, bytes));
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(FieldValueIndex.class.getName()).log(Level.WARNING,
+                            Messages.FieldValueIndex_ErrorReadingFieldValues, e);
+
+            // might have read corrupt data
+            classes.clear();
+            delete = true;
+        }
+        finally
+        {
+            try
+            {
+                if (in != null)
+                    in.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+            if (delete)
+                file.delete();
+        }
+    }
+
+    private void append(int classId, String fieldName, Column column)
+    {
+        DataOutputStream out = null;
+        try
+        {
+            byte[] bytes = column.toByteArray();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename, true)));
+            out.writeInt(classId);
+            out.writeUTF(fieldName);
+            out.writeByte(column.kind);
+            out.writeInt(column.size);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(FieldValueIndex.class.getName()).log(Level.WARNING,
+                            Messages.FieldValueIndex_Warning_IgnoreError, e);
+        }
+        finally
+        {
+            try
+            {
+                if (out != null)
+                    out.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+        }
+    }
+}
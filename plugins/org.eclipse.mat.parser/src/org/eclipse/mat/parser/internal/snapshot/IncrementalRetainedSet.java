@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.snapshot;
+
+import java.util.Arrays;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.collect.IteratorInt;
+import org.eclipse.mat.collect.SetInt;
+import org.eclipse.mat.parser.internal.util.IntStack;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Calculates the retained set of a group of objects from the dominator tree
+ * instead of marking the whole heap.
+ * <p>
+ * The objects dominated by the top ancestors of the group are retained for
+ * sure. Other objects can only be retained if they are referenced from the
+ * retained set, so starting from these references each candidate is checked
+ * with a search backwards along the inbound references which does not enter
+ * the retained set. If the search reaches a GC root the candidate is alive,
+ * otherwise all objects found by the search are retained as well, and their
+ * references become new candidates.
+ * <p>
+ * The work is proportional to the retained set and its surroundings, so the
+ * calculation gives up and returns null if the retained set or the searches
+ * get too big, and the caller should then mark the whole heap.
+ */
+public class IncrementalRetainedSet
+{
+    private final ISnapshot snapshot;
+    private final IProgressListener listener;
+    private final int maxRetained;
+    private int budget;
+
+    /** objects known to be retained */
+    private final SetInt retained;
+    /** objects known to be reachable without going through the retained set */
+    private final SetInt alive = new SetInt();
+    /** retained objects whose dominated objects have been retained */
+    private final SetInt expanded = new SetInt();
+    private final ArrayInt result = new ArrayInt();
+    private final IntStack candidates = new IntStack();
+    private int iterations;
+
+    /**
+     * @param maxRetained
+     *            give up if the retained set gets bigger
+     * @param budget
+     *            give up if the backward searches visit more objects in
+     *            total
+     */
+    public IncrementalRetainedSet(ISnapshot snapshot, int maxRetained, int budget, IProgressListener listener)
+    {
+        this.snapshot = snapshot;
+        this.listener = listener;
+        this.maxRetained = maxRetained;
+        this.budget = budget;
+        this.retained = new SetInt(1024);
+    }
+
+    /**
+     * @return the sorted retained set, or null if the limits were exceeded
+     */
+    public int[] calculate(int[] objectIds) throws SnapshotException
+    {
+        // the initial objects are part of the retained set
+        for (int objectId : objectIds)
+        {
+            if (!retain(objectId))
+                return null;
+        }
+
+        // everything dominated by the top ancestors
+        for (int topAncestor : snapshot.getTopAncestorsInDominatorTree(objectIds, listener))
+        {
+            if (!retainDominated(topAncestor))
+                return null;
+        }
+
+        // check the objects referenced from the retained set
+        int next = 0;
+        while (true)
+        {
+            while (next < result.size())
+                addCandidates(result.get(next++));
+            if (candidates.size() == 0)
+                break;
+
+            int candidate = candidates.pop();
+            if (retained.contains(candidate) || alive.contains(candidate))
+                continue;
+            if (!check(candidate))
+                return null;
+        }
+
+        int[] answer = result.toArray();
+        Arrays.sort(answer);
+        return answer;
+    }
+
+    private boolean retain(int objectId)
+    {
+        if (retained.add(objectId))
+        {
+            result.add(objectId);
+            return result.size() <= maxRetained;
+        }
+        return true;
+    }
+
+    /**
+     * Retains the objects dominated by an object.
+     */
+    private boolean retainDominated(int objectId) throws SnapshotException
+    {
+        if (!expanded.add(objectId))
+            return true;
+        IntStack stack = new IntStack();
+        stack.push(objectId);
+        while (stack.size() > 0)
+        {
+            for (int dominated : snapshot.getImmediateDominatedIds(stack.pop()))
+            {
+                if (!retain(dominated))
+                    return false;
+                if (expanded.add(dominated))
+                    stack.push(dominated);
+            }
+            checkCanceled();
+        }
+        return true;
+    }
+
+    private void addCandidates(int objectId) throws SnapshotException
+    {
+        for (int referent : snapshot.getOutboundReferentIds(objectId))
+        {
+            if (!retained.contains(referent) && !alive.contains(referent))
+                candidates.push(referent);
+        }
+    }
+
+    /**
+     * Searches backwards from the candidate without entering the retained
+     * set. The search is depth first and takes the inbound references of an
+     * object one at a time, so an object with many referrers, e.g. a class,
+     * usually only needs a few of them to find a path from a GC root. All
+     * objects on that path are alive as well.
+     *
+     * @return false if the budget is exceeded
+     */
+    private boolean check(int candidate) throws SnapshotException
+    {
+        if (snapshot.isGCRoot(candidate))
+        {
+            alive.add(candidate);
+            return true;
+        }
+
+        SetInt visited = new SetInt();
+        visited.add(candidate);
+        int[] path = new int[16];
+        int[] positions = new int[16];
+        int[][] referrers = new int[16][];
+        int depth = 0;
+        path[0] = candidate;
+        referrers[0] = snapshot.getInboundRefererIds(candidate);
+
+        while (depth >= 0)
+        {
+            int[] refs = referrers[depth];
+            if (positions[depth] == refs.length)
+            {
+                referrers[depth--] = null;
+                continue;
+            }
+
+            int referrer = refs[positions[depth]++];
+            if (retained.contains(referrer) || !visited.add(referrer))
+                continue;
+            if (alive.contains(referrer) || snapshot.isGCRoot(referrer))
+            {
+                // there is a path from a GC root to the candidate
+                for (int ii = 0; ii <= depth; ii++)
+                    alive.add(path[ii]);
+                return true;
+            }
+            if (--budget < 0)
+                return false;
+            checkCanceled();
+
+            if (++depth == path.length)
+            {
+                int newLength = path.length << 1;
+                path = copy(path, newLength);
+                positions = copy(positions, newLength);
+                int[][] r = new int[newLength][];
+                System.arraycopy(referrers, 0, r, 0, depth);
+                referrers = r;
+            }
+            path[depth] = referrer;
+            positions[depth] = 0;
+            referrers[depth] = snapshot.getInboundRefererIds(referrer);
+        }
+
+        // all paths to the visited objects go through the retained set
+        for (IteratorInt it = visited.iterator(); it.hasNext();)
+        {
+            int objectId = it.next();
+            if (!retain(objectId) || !retainDominated(objectId))
+                return false;
+        }
+        return true;
+    }
+
+    private static int[] copy(int[] array, int newLength)
+    {
+        int[] copy = new int[newLength];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private void checkCanceled()
+    {
+        if ((++iterations & 0xfff) == 0 && listener.isCanceled())
+            throw new IProgressListener.OperationCanceledException();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 SAP AG.
+ * Copyright (c) 2008, 2026 SAP AG and agent.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,124 +7,455 @@
  *
  * Contributors:
  *    SAP AG - initial API and implementation
+ *    agent - sharded W-TinyLFU cache
  *******************************************************************************/
 package org.eclipse.mat.parser.internal.snapshot;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
 import org.eclipse.mat.collect.HashMapIntObject;
 
+/**
+ * A bounded cache of objects by object id.
+ * <p>
+ * The cache is split into shards by object id, each with its own lock and its
+ * own share of the entries, so that threads reading different objects do not
+ * contend. The lock is not held while an object is loaded. Each shard evicts
+ * with W-TinyLFU: new entries go to a small LRU window, and an entry leaving
+ * the window only replaces the least recently used entry of the main segmented
+ * LRU if it has been requested more often, as estimated by a small frequency
+ * sketch. All operations are O(1).
+ */
 abstract public class ObjectCache<E>
 {
-    static class Entry<E>
+    /**
+     * System property for the number of objects held by the object cache of a
+     * snapshot, e.g. -Dorg.eclipse.mat.objectCacheSize=10000.
+     */
+    public static final String OBJECT_CACHE_SIZE_PROPERTY = "org.eclipse.mat.objectCacheSize"; //$NON-NLS-1$
+
+    /** default number of objects held by the object cache of a snapshot */
+    public static final int DEFAULT_SIZE = 1000;
+
+    /** a cache is not split into shards smaller than this */
+    private static final int MIN_SHARD_SIZE = 32;
+
+    private final int maxSize;
+    private final Shard<E>[] shards;
+    private final int shardMask;
+
+    /**
+     * @return the size configured with {@link #OBJECT_CACHE_SIZE_PROPERTY}
+     */
+    public static int getConfiguredSize()
     {
-        E object;
-        int key;
-        int numUsages;
+        return Math.max(1, Integer.getInteger(OBJECT_CACHE_SIZE_PROPERTY, DEFAULT_SIZE));
     }
 
-    private int maxSize;
-    private final HashMapIntObject<Entry<E>> map;
-    private final List<LinkedList<Entry<E>>> lfus;
-    private int maxLfuBuckets = 0;
-    private int lowestNonEmptyLfu = 0;
-
     public ObjectCache(int maxSize)
     {
+        this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxSize
+     *            the maximum number of cached objects
+     * @param concurrency
+     *            the expected number of concurrent readers, the cache is
+     *            split into up to the next power of two shards
+     */
+    @SuppressWarnings("unchecked")
+    public ObjectCache(int maxSize, int concurrency)
+    {
+        int n = 1;
+        while (n < concurrency && maxSize / (n << 1) >= MIN_SHARD_SIZE)
+            n <<= 1;
+
         this.maxSize = maxSize;
-        this.map = new HashMapIntObject<Entry<E>>(maxSize);
-        this.lfus = new ArrayList<LinkedList<Entry<E>>>(5);
-        this.maxLfuBuckets = maxSize / 3;
+        this.shards = (Shard<E>[]) new Shard<?>[n];
+        this.shardMask = n - 1;
+        for (int ii = 0; ii < n; ii++)
+            shards[ii] = new Shard<E>(maxSize / n + (ii < maxSize % n ? 1 : 0));
     }
 
-    public synchronized E get(int objectId)
+    public E get(int objectId)
     {
-        Entry<E> e = map.get(objectId);
-        if (e != null)
+        Shard<E> shard = shard(objectId);
+        synchronized (shard)
         {
-            revalueEntry(e);
+            shard.sketch.increment(objectId);
+            Entry<E> e = shard.map.get(objectId);
+            if (e != null)
+            {
+                shard.hits++;
+                shard.onHit(e);
+                return e.object;
+            }
+            shard.misses++;
         }
-        else
-        {
-            e = new Entry<E>();
-            e.object = load(objectId);
-            e.key = objectId;
 
-            doInsert(e);
+        E object = load(objectId);
 
-            while (map.size() > maxSize)
-                removeLeastValuableNode();
+        synchronized (shard)
+        {
+            // another thread may have loaded the object meanwhile
+            Entry<E> e = shard.map.get(objectId);
+            if (e != null)
+                return e.object;
+            shard.insert(objectId, object);
         }
-
-        return e.object;
+        return object;
     }
 
-    public synchronized void clear()
+    public void clear()
     {
-        this.map.clear();
-        this.lfus.clear();
+        for (Shard<E> shard : shards)
+        {
+            synchronized (shard)
+            {
+                shard.clear();
+            }
+        }
     }
 
     protected abstract E load(int key);
 
-    protected synchronized void doInsert(final Entry<E> e)
+    // //////////////////////////////////////////////////////////////
+    // statistics
+    // //////////////////////////////////////////////////////////////
+
+    /** @return the maximum number of cached objects */
+    public int getMaxSize()
     {
-        lfu(e.numUsages).addFirst(e);
-        Entry<?> p = map.put(e.key, e);
-        lowestNonEmptyLfu = 0;
+        return maxSize;
+    }
 
-        if (p != null)
-            lfu(p.numUsages).remove(p);
+    /** @return the number of cached objects */
+    public int getSize()
+    {
+        int size = 0;
+        for (Shard<E> shard : shards)
+        {
+            synchronized (shard)
+            {
+                size += shard.map.size();
+            }
+        }
+        return size;
     }
 
-    protected final LinkedList<Entry<E>> lfu(int numUsageIndex)
+    /** @return the number of lookups which found the object */
+    public long getHitCount()
     {
-        int lfuIndex = Math.min(maxLfuBuckets, numUsageIndex);
+        long n = 0;
+        for (Shard<E> shard : shards)
+        {
+            synchronized (shard)
+            {
+                n += shard.hits;
+            }
+        }
+        return n;
+    }
 
-        if (lfuIndex >= lfus.size())
+    /** @return the number of lookups which had to load the object */
+    public long getMissCount()
+    {
+        long n = 0;
+        for (Shard<E> shard : shards)
         {
-            LinkedList<Entry<E>> lfu = new LinkedList<Entry<E>>();
-            lfus.add(lfuIndex, lfu);
-            return lfu;
+            synchronized (shard)
+            {
+                n += shard.misses;
+            }
         }
-        else
+        return n;
+    }
+
+    /** @return the number of objects removed to stay within the size */
+    public long getEvictionCount()
+    {
+        long n = 0;
+        for (Shard<E> shard : shards)
         {
-            return lfus.get(lfuIndex);
+            synchronized (shard)
+            {
+                n += shard.evictions;
+            }
         }
+        return n;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ObjectCache size=" + getSize() + " max=" + maxSize + " hits=" + getHitCount() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + " misses=" + getMissCount() + " evictions=" + getEvictionCount(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private Shard<E> shard(int objectId)
+    {
+        int h = objectId * 0x9E3779B9;
+        h ^= h >>> 16;
+        return shards[h & shardMask];
     }
 
-    protected void revalueEntry(Entry<E> entry)
+    // //////////////////////////////////////////////////////////////
+    // implementation
+    // //////////////////////////////////////////////////////////////
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    /**
+     * An entry, linked into one of the LRU lists of its shard.
+     */
+    static final class Entry<E>
     {
-        LinkedList<Entry<E>> currBucket = lfu(entry.numUsages);
-        LinkedList<Entry<E>> nextBucket = lfu(++entry.numUsages);
+        E object;
+        int key;
+        byte queue;
+        Entry<E> prev;
+        Entry<E> next;
+
+        /** creates the head of an empty list */
+        Entry()
+        {
+            prev = next = this;
+        }
+
+        Entry(int key, E object)
+        {
+            this.key = key;
+            this.object = object;
+        }
+
+        boolean isEmpty()
+        {
+            return next == this;
+        }
+
+        /** @return the least recently used entry of the list */
+        Entry<E> first()
+        {
+            return next;
+        }
+
+        void addLast(Entry<E> e)
+        {
+            e.prev = prev;
+            e.next = this;
+            prev.next = e;
+            prev = e;
+        }
+
+        void moveToLast(Entry<E> e)
+        {
+            e.unlink();
+            addLast(e);
+        }
 
-        currBucket.remove(entry);
-        nextBucket.addFirst(entry);
+        void unlink()
+        {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
     }
 
-    protected LinkedList<Entry<E>> getLowestNonEmptyLfu()
+    private static final class Shard<E>
     {
-        LinkedList<Entry<E>> lfu = null;
-        for (int i = lowestNonEmptyLfu; i < lfus.size(); i++)
+        final HashMapIntObject<Entry<E>> map;
+        final FrequencySketch sketch;
+
+        final int windowMax;
+        final int mainMax;
+        final int protectedMax;
+
+        final Entry<E> windowList = new Entry<E>();
+        final Entry<E> probationList = new Entry<E>();
+        final Entry<E> protectedList = new Entry<E>();
+        int windowSize;
+        int mainSize;
+        int protectedSize;
+
+        long hits;
+        long misses;
+        long evictions;
+
+        Shard(int maxSize)
         {
-            lfu = lfu(i);
+            this.map = new HashMapIntObject<Entry<E>>(maxSize);
+            this.sketch = new FrequencySketch(maxSize);
+            this.windowMax = Math.max(1, maxSize / 100);
+            this.mainMax = Math.max(0, maxSize - windowMax);
+            this.protectedMax = mainMax * 4 / 5;
+        }
 
-            if (lfu.size() != 0)
+        void onHit(Entry<E> e)
+        {
+            switch (e.queue)
             {
-                lowestNonEmptyLfu = i;
-                return lfu;
+                case WINDOW:
+                    windowList.moveToLast(e);
+                    break;
+                case PROBATION:
+                    e.unlink();
+                    e.queue = PROTECTED;
+                    protectedList.addLast(e);
+                    if (++protectedSize > protectedMax)
+                    {
+                        Entry<E> demoted = protectedList.first();
+                        demoted.unlink();
+                        demoted.queue = PROBATION;
+                        probationList.addLast(demoted);
+                        protectedSize--;
+                    }
+                    break;
+                default:
+                    protectedList.moveToLast(e);
+                    break;
             }
         }
-        return lfu;
+
+        void insert(int key, E object)
+        {
+            Entry<E> e = new Entry<E>(key, object);
+            e.queue = WINDOW;
+            windowList.addLast(e);
+            map.put(key, e);
+            if (++windowSize <= windowMax)
+                return;
+
+            // the least recently used entry of the window moves to the main
+            // area if there is room or if it is used more often than the
+            // entry which would be evicted instead
+            Entry<E> candidate = windowList.first();
+            candidate.unlink();
+            windowSize--;
+
+            if (mainSize < mainMax)
+            {
+                admit(candidate);
+                return;
+            }
+
+            Entry<E> victim = null;
+            if (!probationList.isEmpty())
+                victim = probationList.first();
+            else if (!protectedList.isEmpty())
+                victim = protectedList.first();
+            if (victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key))
+            {
+                if (victim.queue == PROTECTED)
+                    protectedSize--;
+                victim.unlink();
+                mainSize--;
+                evict(victim);
+                admit(candidate);
+            }
+            else
+            {
+                evict(candidate);
+            }
+        }
+
+        private void admit(Entry<E> e)
+        {
+            e.queue = PROBATION;
+            probationList.addLast(e);
+            mainSize++;
+        }
+
+        private void evict(Entry<E> e)
+        {
+            map.remove(e.key);
+            evictions++;
+        }
+
+        void clear()
+        {
+            map.clear();
+            sketch.clear();
+            windowList.prev = windowList.next = windowList;
+            probationList.prev = probationList.next = probationList;
+            protectedList.prev = protectedList.next = protectedList;
+            windowSize = mainSize = protectedSize = 0;
+        }
     }
 
-    protected void removeLeastValuableNode()
+    /**
+     * Estimates how often a key was requested recently with four saturating
+     * counters per key. All counters are halved after a number of requests
+     * proportional to the size of the shard, so that old requests age out.
+     */
+    private static final class FrequencySketch
     {
-        LinkedList<Entry<E>> lfu = getLowestNonEmptyLfu();
-        Entry<?> lln = lfu.remove(lfu.size() - 1);
-        map.remove(lln.key);
-    }
+        private static final int MAX_COUNT = 15;
+
+        final byte[] counters;
+        final int mask;
+        final int sampleSize;
+        int additions;
+
+        FrequencySketch(int maxSize)
+        {
+            int n = 16;
+            while (n < 4 * maxSize)
+                n <<= 1;
+            this.counters = new byte[n];
+            this.mask = n - 1;
+            this.sampleSize = 10 * Math.max(1, maxSize);
+        }
+
+        void increment(int key)
+        {
+            int h1 = hash1(key);
+            int h2 = hash2(key);
+            boolean added = false;
+            for (int ii = 0; ii < 4; ii++)
+            {
+                int index = (h1 + ii * h2) & mask;
+                if (counters[index] < MAX_COUNT)
+                {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize)
+            {
+                for (int ii = 0; ii < counters.length; ii++)
+                    counters[ii] >>= 1;
+                additions >>= 1;
+            }
+        }
+
+        int frequency(int key)
+        {
+            int h1 = hash1(key);
+            int h2 = hash2(key);
+            int frequency = MAX_COUNT;
+            for (int ii = 0; ii < 4; ii++)
+                frequency = Math.min(frequency, counters[(h1 + ii * h2) & mask]);
+            return frequency;
+        }
 
+        void clear()
+        {
+            for (int ii = 0; ii < counters.length; ii++)
+                counters[ii] = 0;
+            additions = 0;
+        }
+
+        private static int hash1(int key)
+        {
+            int h = key * 0x85EBCA6B;
+            return h ^ (h >>> 13);
+        }
+
+        private static int hash2(int key)
+        {
+            int h = key * 0xC2B2AE35;
+            return (h ^ (h >>> 16)) | 1;
+        }
+    }
 }
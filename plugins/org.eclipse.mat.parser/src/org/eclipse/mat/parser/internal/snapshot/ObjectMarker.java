@@ -8,13 +8,24 @@
  * Contributors:
  *    SAP AG - initial API and implementation
  *    Andrew Johnson (IBM Corporation) - improved multithreading using local stacks
+ *    agent - work stealing marker
  *******************************************************************************/
 package org.eclipse.mat.parser.internal.snapshot;
 
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.mat.SnapshotException;
@@ -26,20 +37,20 @@ import org.eclipse.mat.parser.internal.ParserPlugin;
 import org.eclipse.mat.parser.internal.util.IntStack;
 import org.eclipse.mat.snapshot.ExcludedReferencesDescriptor;
 import org.eclipse.mat.snapshot.ISnapshot;
-import org.eclipse.mat.snapshot.model.IObject;
-import org.eclipse.mat.snapshot.model.NamedReference;
 import org.eclipse.mat.util.IProgressListener;
 
 public class ObjectMarker
 {
     int[] roots;
-    boolean[] bits;
+    Marks bits;
     IIndexReader.IOne2ManyIndex outbound;
     long outboundMem;
     IProgressListener progressListener;
     private static final boolean DEBUG = Platform.inDebugMode() && ParserPlugin.getDefault().isDebugging();
     private static final boolean USELOCAL = !(Platform.inDebugMode() && ParserPlugin.getDefault().isDebugging() && 
                     Boolean.parseBoolean(Platform.getDebugOption("org.eclipse.mat.parser/debug/oldMarker"))); //$NON-NLS-1$
+    private static final boolean USESTEALING = USELOCAL && !(Platform.inDebugMode() && ParserPlugin.getDefault().isDebugging() && 
+                    Boolean.parseBoolean(Platform.getDebugOption("org.eclipse.mat.parser/debug/localMarker"))); //$NON-NLS-1$
     private static final int MIN_LOCALITY = 1000000;
 
     public ObjectMarker(int[] roots, boolean[] bits, IIndexReader.IOne2ManyIndex outbound,
@@ -50,6 +61,23 @@ public class ObjectMarker
     
     public ObjectMarker(int[] roots, boolean[] bits, IIndexReader.IOne2ManyIndex outbound,
                     long outboundLength, IProgressListener progressListener)
+    {
+        this(roots, new Marks(bits), outbound, outboundLength, progressListener);
+    }
+
+    /**
+     * Marks into a bit per object instead of a boolean. The multi-threaded
+     * marking then always steals work, and sets the bits once all threads
+     * are done.
+     */
+    public ObjectMarker(int[] roots, BitField bits, IIndexReader.IOne2ManyIndex outbound,
+                    long outboundLength, IProgressListener progressListener)
+    {
+        this(roots, new Marks(bits, outbound.size()), outbound, outboundLength, progressListener);
+    }
+
+    private ObjectMarker(int[] roots, Marks bits, IIndexReader.IOne2ManyIndex outbound, long outboundLength,
+                    IProgressListener progressListener)
     {
         this.roots = roots;
         this.bits = bits;
@@ -67,19 +95,17 @@ public class ObjectMarker
 
         for (int rootId : roots)
         {
-            if (!bits[rootId])
+            if (!bits.get(rootId))
             {
                 /* start stack.push() */
                 if (size == data.length)
                 {
-                    int[] newArr = new int[data.length << 1];
-                    System.arraycopy(data, 0, newArr, 0, data.length);
-                    data = newArr;
+                    data = IntStack.grow(data, size + 1);
                 }
                 data[size++] = rootId;
                 /* end stack.push() */
 
-                bits[rootId] = true;
+                bits.set(rootId);
                 count++;
 
                 rootsToProcess++;
@@ -105,20 +131,18 @@ public class ObjectMarker
 
             for (int child : outbound.get(current))
             {
-                if (!bits[child])
+                if (!bits.get(child))
                 {
                     // stack.push(child);
                     /* start stack.push() */
                     if (size == data.length)
                     {
-                        int[] newArr = new int[data.length << 1];
-                        System.arraycopy(data, 0, newArr, 0, data.length);
-                        data = newArr;
+                        data = IntStack.grow(data, size + 1);
                     }
                     data[size++] = child;
                     /* end stack.push() */
 
-                    bits[child] = true;
+                    bits.set(child);
                     count++;
                 }
 
@@ -136,14 +160,7 @@ public class ObjectMarker
         /*
          * prepare the exclude stuff
          */
-        BitField excludeObjectsBF = new BitField(snapshot.getSnapshotInfo().getNumberOfObjects());
-        for (ExcludedReferencesDescriptor set : excludeSets)
-        {
-            for (int k : set.getObjectIds())
-            {
-                excludeObjectsBF.set(k);
-            }
-        }
+        ExcludedReferencesFilter filter = new ExcludedReferencesFilter(excludeSets, snapshot, null, progressListener);
 
         int count = 0; // # of processed objects in the stack
         int rootsToProcess = 0; // counter to report progress
@@ -155,19 +172,17 @@ public class ObjectMarker
         /* first put all "roots" in the stack, and mark them as processed */
         for (int rootId : roots)
         {
-            if (!bits[rootId])
+            if (!bits.get(rootId))
             {
                 /* start stack.push() */
                 if (size == data.length)
                 {
-                    int[] newArr = new int[data.length << 1];
-                    System.arraycopy(data, 0, newArr, 0, data.length);
-                    data = newArr;
+                    data = IntStack.grow(data, size + 1);
                 }
                 data[size++] = rootId;
                 /* end stack.push() */
 
-                bits[rootId] = true; // mark the object
+                bits.set(rootId); // mark the object
                 count++;
 
                 rootsToProcess++;
@@ -195,21 +210,19 @@ public class ObjectMarker
 
             for (int child : outbound.get(current))
             {
-                if (!bits[child]) // already visited?
+                if (!bits.get(child)) // already visited?
                 {
-                    if (!refersOnlyThroughExcluded(current, child, excludeSets, excludeObjectsBF, snapshot))
+                    if (filter.follow(current, child))
                     {
                         /* start stack.push() */
                         if (size == data.length)
                         {
-                            int[] newArr = new int[data.length << 1];
-                            System.arraycopy(data, 0, newArr, 0, data.length);
-                            data = newArr;
+                            data = IntStack.grow(data, size + 1);
                         }
                         data[size++] = child;
                         /* end stack.push() */
 
-                        bits[child] = true; // mark the object
+                        bits.set(child); // mark the object
                         count++;
                     }
                 }
@@ -364,14 +377,35 @@ public class ObjectMarker
 
     public void markMultiThreaded(int numberOfThreads) throws InterruptedException
     {
+        if (USESTEALING || bits.field != null)
+        {
+            markWorkStealing(numberOfThreads);
+            return;
+        }
+        markLocalStacks(numberOfThreads);
+    }
+
+    /**
+     * Marks with threads sharing one stack of roots, each thread with a local
+     * stack and queue for objects in the range of the current object.
+     */
+    public void markLocalStacks(int numberOfThreads) throws InterruptedException
+    {
+        if (bits.field != null)
+        {
+            // the threads would set bits of the same int at the same time
+            markWorkStealing(numberOfThreads);
+            return;
+        }
+
         MultiThreadedRootStack rootsStack = new MultiThreadedRootStack(roots.length);
 
         for (int rootId : roots)
         {
-            if (!bits[rootId])
+            if (!bits.get(rootId))
             {
                 rootsStack.push(rootId);
-                bits[rootId] = true;
+                bits.set(rootId);
             }
         }
 
@@ -380,7 +414,7 @@ public class ObjectMarker
         progressListener.beginTask(Messages.ObjectMarker_MarkingObjects, rootsStack.size());
 
         // Heuristic guess as to a reasonable local range for thread to search
-        int n = bits.length;
+        int n = bits.size;
         Runtime runtime = Runtime.getRuntime();
         // This free memory calculation is very approximate - we do a GC to get a better estimate
         long maxFree = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
@@ -393,7 +427,7 @@ public class ObjectMarker
          *  Guess as to how many objects with outbound refs we can support @ 30 bytes per ref.
          *  A better estimate would use the size of the outbound refs file.
          */
-        int n1 = (int)Math.min(bits.length, bits.length * maxFree / outboundMem);
+        int n1 = (int)Math.min(bits.size, bits.size * maxFree / outboundMem);
         // guess as to size for each thread so we don't use all of the memory - allow for overlaps
         int m = (int)((1.0 - Math.pow((double)(n - n1)/n, 1.0/numberOfThreads)) * n);
         // now impose some reasonable limits
@@ -477,16 +511,14 @@ public class ObjectMarker
                          * performance It is possible that some bits are marked
                          * more than once, but this is not a problem
                          */
-                        if (!bits[child])
+                        if (!bits.get(child))
                         {
-                            bits[child] = true;
+                            bits.set(child);
                             // stack.push(child);
                             /* start stack.push() */
                             if (size == data.length)
                             {
-                                int[] newArr = new int[data.length << 1];
-                                System.arraycopy(data, 0, newArr, 0, data.length);
-                                data = newArr;
+                                data = IntStack.grow(data, size + 1);
                             }
                             data[size++] = child;
                             /* end stack.push() */
@@ -643,9 +675,9 @@ public class ObjectMarker
                                  * marked more than once, but this is not a
                                  * problem
                                  */
-                                if (!bits[child])
+                                if (!bits.get(child))
                                 {
-                                    bits[child] = true;
+                                    bits.set(child);
                                     if (size == 0)
                                     {
                                         // We have emptied the stack, so reset
@@ -709,7 +741,7 @@ public class ObjectMarker
         private int calcBase(int v)
         {
             calcRange();
-            return Math.max(Math.min(v + (localRange * 3 >>> 2), bits.length) - localRange, 0);
+            return Math.max(Math.min(v + (localRange * 3 >>> 2), bits.size) - localRange, 0);
         }
         /**
          * Heuristic to vary size of range depending on GC pressure.
@@ -726,10 +758,10 @@ public class ObjectMarker
             }
             else if (sr.get() != null)
             {
-                if (localRange < bits.length && scaleUp > 0.0)
+                if (localRange < bits.size && scaleUp > 0.0)
                 {
                     // Increase slowly
-                    localRange = Math.min((int)(localRange * (1.0 + scaleUp)), bits.length);
+                    localRange = Math.min((int)(localRange * (1.0 + scaleUp)), bits.size);
                     if (DEBUG) System.out.println("Increased local range="+localRange+" "+scaleUp); //$NON-NLS-1$ //$NON-NLS-2$
                 }
             }
@@ -753,34 +785,431 @@ public class ObjectMarker
         }
     }
 
-    private boolean refersOnlyThroughExcluded(int referrerId, int referentId,
-                    ExcludedReferencesDescriptor[] excludeSets, BitField excludeObjectsBF, ISnapshot snapshot)
-                    throws SnapshotException
+    /**
+     * Marks the objects reachable from the roots with a work stealing
+     * algorithm. Each thread does a depth first search on its own stack
+     * without locking. The roots are handed out through an atomic cursor, and
+     * when another thread runs out of work part of the stack is moved to a
+     * small shared deque from where idle threads can steal it. An object is
+     * claimed with a compare and swap on an atomic bit set, so each object is
+     * processed exactly once.
+     * 
+     * @return the number of objects marked, including the roots
+     */
+    public int markWorkStealing(int numberOfThreads) throws InterruptedException
     {
-        if (!excludeObjectsBF.get(referrerId))
-            return false;
+        return markWorkStealing(numberOfThreads, null);
+    }
 
-        IObject referrerObject = snapshot.getObject(referrerId);
-        Set<String> excludeFields = null;
-        for (ExcludedReferencesDescriptor set : excludeSets)
+    /**
+     * Marks the objects reachable from the roots with several threads,
+     * without following the excluded references.
+     * 
+     * @return the number of objects marked, including the roots
+     */
+    public int markMultiThreaded(ExcludedReferencesDescriptor[] excludeSets, ISnapshot snapshot, int numberOfThreads)
+                    throws SnapshotException, InterruptedException
+    {
+        ExcludedReferencesFilter filter;
+        ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+        try
         {
-            if (set.contains(referrerId))
+            filter = new ExcludedReferencesFilter(excludeSets, snapshot, pool, progressListener);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return markWorkStealing(numberOfThreads, filter);
+    }
+
+    private int markWorkStealing(int numberOfThreads, ExcludedReferencesFilter filter) throws InterruptedException
+    {
+        int count = 0;
+        int[] todo = new int[roots.length];
+        for (int rootId : roots)
+        {
+            if (!bits.get(rootId))
+            {
+                bits.set(rootId);
+                todo[count++] = rootId;
+            }
+        }
+
+        long l = System.currentTimeMillis();
+        progressListener.beginTask(Messages.ObjectMarker_MarkingObjects, count);
+
+        StealingMarker marker = new StealingMarker(todo, count, numberOfThreads, filter);
+        ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+        try
+        {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>(numberOfThreads);
+            for (StealingWorker worker : marker.workers)
+                futures.add(pool.submit(worker));
+
+            int reported = 0;
+            for (Future<Integer> future : futures)
             {
-                excludeFields = set.getFields();
-                break;
+                while (true)
+                {
+                    try
+                    {
+                        count += future.get(100, TimeUnit.MILLISECONDS).intValue();
+                        break;
+                    }
+                    catch (TimeoutException e)
+                    {
+                        // report progress and check for cancellation
+                    }
+                    catch (ExecutionException e)
+                    {
+                        marker.stop = true;
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        throw new RuntimeException(cause);
+                    }
+                    int claimed = Math.min(marker.nextRoot.get(), marker.nrRoots);
+                    if (claimed > reported)
+                    {
+                        progressListener.worked(claimed - reported);
+                        reported = claimed;
+                    }
+                    if (progressListener.isCanceled())
+                    {
+                        marker.stop = true;
+                        return count;
+                    }
+                }
             }
         }
-        if (excludeFields == null)
-            return true; // treat null as all fields
+        finally
+        {
+            marker.stop = true;
+            pool.shutdownNow();
+        }
+
+        marker.copyMarks();
+        progressListener.done();
+        if (DEBUG) System.out.println("Work stealing marker took " + (System.currentTimeMillis() - l) + "ms, steals=" + marker.steals.get()); //$NON-NLS-1$ //$NON-NLS-2$
+        return count;
+    }
 
-        long referentAddr = snapshot.mapIdToAddress(referentId);
+    /**
+     * The marks of the objects, a boolean per object or a bit per object.
+     */
+    static final class Marks
+    {
+        final boolean[] array;
+        final BitField field;
+        final int size;
+
+        Marks(boolean[] array)
+        {
+            this.array = array;
+            this.field = null;
+            this.size = array.length;
+        }
 
-        List<NamedReference> refs = referrerObject.getOutboundReferences();
-        for (NamedReference reference : refs)
+        Marks(BitField field, int size)
+        {
+            this.array = null;
+            this.field = field;
+            this.size = size;
+        }
+
+        boolean get(int index)
+        {
+            return array != null ? array[index] : field.get(index);
+        }
+
+        void set(int index)
+        {
+            if (array != null)
+                array[index] = true;
+            else
+                field.set(index);
+        }
+    }
+
+    /**
+     * The state shared by the work stealing threads.
+     */
+    class StealingMarker
+    {
+        /** number of roots taken from the roots array at once */
+        static final int ROOTS_CHUNK = 16;
+
+        final int[] todo;
+        final int nrRoots;
+        final AtomicInteger nextRoot = new AtomicInteger();
+        final AtomicLongArray marked;
+        /** the references which may be followed, null for all */
+        final ExcludedReferencesFilter filter;
+        final AtomicInteger idle = new AtomicInteger();
+        final AtomicInteger steals = new AtomicInteger();
+        final StealingWorker[] workers;
+        volatile boolean stop;
+
+        StealingMarker(int[] todo, int nrRoots, int numberOfThreads, ExcludedReferencesFilter filter)
+        {
+            this.todo = todo;
+            this.nrRoots = nrRoots;
+            this.filter = filter;
+
+            // objects marked before, including the roots, are never claimed
+            marked = new AtomicLongArray((bits.size + 63) >>> 6);
+            for (int word = 0; word < marked.length(); word++)
+            {
+                long value = 0;
+                for (int ii = word << 6, end = Math.min(ii + 64, bits.size); ii < end; ii++)
+                {
+                    if (bits.get(ii))
+                        value |= 1L << ii;
+                }
+                marked.set(word, value);
+            }
+
+            workers = new StealingWorker[numberOfThreads];
+            for (int ii = 0; ii < numberOfThreads; ii++)
+                workers[ii] = new StealingWorker(this, ii);
+        }
+
+        /**
+         * @return true if this thread has claimed the object
+         */
+        boolean mark(int objectId)
         {
-            if (referentAddr == reference.getObjectAddress() && !excludeFields.contains(reference.getName())) { return false; }
+            if (bits.get(objectId))
+                return false;
+            int word = objectId >>> 6;
+            long mask = 1L << objectId;
+            while (true)
+            {
+                long old = marked.get(word);
+                if ((old & mask) != 0)
+                    return false;
+                if (marked.compareAndSet(word, old, old | mask))
+                    return true;
+            }
+        }
+
+        /**
+         * Sets the marks of the claimed objects, once all threads are done.
+         */
+        void copyMarks()
+        {
+            for (int word = 0; word < marked.length(); word++)
+            {
+                long value = marked.get(word);
+                while (value != 0)
+                {
+                    bits.set((word << 6) + Long.numberOfTrailingZeros(value));
+                    value &= value - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * The part of the stack of a thread which other threads may steal.
+     */
+    static final class WorkDeque
+    {
+        private int[] data = new int[StealingWorker.SHARE_LIMIT];
+        /** read without the lock as a hint */
+        volatile int size;
+
+        synchronized void addAll(int[] src, int from, int length)
+        {
+            if (size + length > data.length)
+            {
+                data = IntStack.grow(data, size + length);
+            }
+            System.arraycopy(src, from, data, size, length);
+            size += length;
+        }
+
+        /**
+         * Moves up to half of the entries, but at least one, onto the stack.
+         * 
+         * @return the new stack
+         */
+        synchronized int[] takeHalf(StealingWorker worker)
+        {
+            int s = size;
+            if (s == 0)
+                return null;
+            int length = (s + 1) >>> 1;
+            int[] stack = worker.ensureCapacity(length);
+            System.arraycopy(data, 0, stack, worker.size, length);
+            System.arraycopy(data, length, data, 0, s - length);
+            worker.size += length;
+            size = s - length;
+            return stack;
+        }
+    }
+
+    /**
+     * One of the work stealing threads.
+     */
+    final class StealingWorker implements Callable<Integer>
+    {
+        /** maximum number of entries moved to the shared deque at once */
+        static final int SHARE_LIMIT = 1024;
+        /** how often to check whether other threads need work */
+        static final int CHECK_INTERVAL = 64;
+
+        final StealingMarker marker;
+        final int index;
+        final WorkDeque deque = new WorkDeque();
+        int[] data = new int[10 * 1024];
+        int size;
+
+        StealingWorker(StealingMarker marker, int index)
+        {
+            this.marker = marker;
+            this.index = index;
+        }
+
+        public Integer call()
+        {
+            try
+            {
+                ExcludedReferencesFilter filter = marker.filter;
+                int count = 0;
+                int check = 0;
+                while (size > 0 || refill())
+                {
+                    int current = data[--size];
+                    for (int child : outbound.get(current))
+                    {
+                        if ((filter == null || filter.follow(current, child)) && marker.mark(child))
+                        {
+                            if (size == data.length)
+                                ensureCapacity(1);
+                            data[size++] = child;
+                            count++;
+                        }
+                    }
+
+                    if (++check == CHECK_INTERVAL)
+                    {
+                        check = 0;
+                        if (marker.stop)
+                            break;
+                        share();
+                    }
+                }
+                return Integer.valueOf(count);
+            }
+            catch (RuntimeException e)
+            {
+                marker.stop = true;
+                throw e;
+            }
+            catch (Error e)
+            {
+                marker.stop = true;
+                throw e;
+            }
+        }
+
+        int[] ensureCapacity(int extra)
+        {
+            if (size + extra > data.length)
+            {
+                data = IntStack.grow(data, size + extra);
+            }
+            return data;
+        }
+
+        /**
+         * Moves the top of the stack to the shared deque if another thread
+         * is idle and there is nothing left to steal.
+         */
+        private void share()
+        {
+            if (size > 1 && deque.size == 0 && marker.idle.get() > 0)
+            {
+                int length = Math.min(size >>> 1, SHARE_LIMIT);
+                size -= length;
+                deque.addAll(data, size, length);
+            }
+        }
+
+        /**
+         * Finds more work: first from the own deque, then from the roots,
+         * then from the other threads.
+         * 
+         * @return false if all the work is done
+         */
+        private boolean refill()
+        {
+            if (deque.size > 0 && deque.takeHalf(this) != null)
+                return true;
+
+            int from = marker.nextRoot.getAndAdd(StealingMarker.ROOTS_CHUNK);
+            if (from < marker.nrRoots)
+            {
+                int length = Math.min(StealingMarker.ROOTS_CHUNK, marker.nrRoots - from);
+                ensureCapacity(length);
+                // the first root is processed first
+                for (int ii = from + length - 1; ii >= from; ii--)
+                    data[size++] = marker.todo[ii];
+                return true;
+            }
+
+            if (steal())
+                return true;
+
+            // no work found, wait until there is work to steal or all the
+            // threads are idle
+            int spins = 0;
+            marker.idle.incrementAndGet();
+            while (!marker.stop && marker.idle.get() < marker.workers.length)
+            {
+                if (canSteal())
+                {
+                    marker.idle.decrementAndGet();
+                    if (steal())
+                        return true;
+                    marker.idle.incrementAndGet();
+                }
+                if (++spins < 100)
+                    Thread.yield();
+                else
+                    LockSupport.parkNanos(50000L);
+            }
+            return false;
+        }
+
+        private boolean canSteal()
+        {
+            for (StealingWorker w : marker.workers)
+            {
+                if (w.deque.size > 0)
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean steal()
+        {
+            StealingWorker[] workers = marker.workers;
+            for (int ii = 1; ii < workers.length; ii++)
+            {
+                StealingWorker victim = workers[(index + ii) % workers.length];
+                if (victim.deque.size > 0 && victim.deque.takeHalf(this) != null)
+                {
+                    marker.steals.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
         }
-        return true;
     }
 
 }
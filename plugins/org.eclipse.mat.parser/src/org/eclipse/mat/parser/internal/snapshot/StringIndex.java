@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.collect.ArrayIntCompressed;
+import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.VoidProgressListener;
+
+/**
+ * The string index of a snapshot, kept in the file <code>strings.index</code>
+ * next to the other indexes.
+ * <p>
+ * The file holds the distinct values and, for the strings in ascending order
+ * of object id, the id of the value compressed with
+ * {@link ArrayIntCompressed}. The object ids are not stored but taken from the
+ * classes. A file for a different number of strings is replaced.
+ */
+public class StringIndex implements IStringIndex
+{
+    /**
+     * System property to switch off the index,
+     * -Dorg.eclipse.mat.stringIndex=false.
+     */
+    public static final String STRING_INDEX_PROPERTY = "org.eclipse.mat.stringIndex"; //$NON-NLS-1$
+
+    private final ISnapshot snapshot;
+    private final String filename;
+
+    // set by build, before available
+    private int[] objectIds;
+    private ArrayIntCompressed valueIds;
+    private String[] values;
+    private int[] counts;
+    private volatile boolean available;
+
+    public static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty(STRING_INDEX_PROPERTY)); //$NON-NLS-1$
+    }
+
+    public StringIndex(ISnapshot snapshot, String filename)
+    {
+        this.snapshot = snapshot;
+        this.filename = filename;
+    }
+
+    public boolean isAvailable()
+    {
+        return available;
+    }
+
+    public synchronized void build(IProgressListener listener) throws SnapshotException
+    {
+        if (available)
+            return;
+
+        ArrayInt ids = new ArrayInt();
+        Collection<IClass> classes = snapshot.getClassesByName("java.lang.String", false); //$NON-NLS-1$
+        if (classes != null)
+        {
+            for (IClass clazz : classes)
+                ids.addAll(clazz.getObjectIds());
+        }
+        objectIds = ids.toArray();
+        Arrays.sort(objectIds);
+
+        if (!read())
+        {
+            create(listener);
+            write();
+        }
+        available = true;
+    }
+
+    public int size() throws SnapshotException
+    {
+        ensureAvailable();
+        return objectIds.length;
+    }
+
+    public int getValueId(int objectId) throws SnapshotException
+    {
+        ensureAvailable();
+        int index = Arrays.binarySearch(objectIds, objectId);
+        return index >= 0 ? valueIds.get(index) : -1;
+    }
+
+    public int getNumberOfValues() throws SnapshotException
+    {
+        ensureAvailable();
+        return values.length;
+    }
+
+    public String getValue(int valueId) throws SnapshotException
+    {
+        ensureAvailable();
+        return values[valueId];
+    }
+
+    public int getCount(int valueId) throws SnapshotException
+    {
+        ensureAvailable();
+        return counts[valueId];
+    }
+
+    public int[] getObjectIds(Pattern pattern, IProgressListener listener) throws SnapshotException
+    {
+        build(listener);
+
+        // each distinct value is matched once
+        boolean[] matches = new boolean[values.length];
+        for (int ii = 0; ii < values.length; ii++)
+        {
+            if (ii % 1000 == 0 && listener.isCanceled())
+                throw new IProgressListener.OperationCanceledException();
+            matches[ii] = values[ii] != null && pattern.matcher(values[ii]).matches();
+        }
+
+        ArrayInt result = new ArrayInt();
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            if (matches[valueIds.get(ii)])
+                result.add(objectIds[ii]);
+        }
+        return result.toArray();
+    }
+
+    private void ensureAvailable() throws SnapshotException
+    {
+        if (!available)
+            build(new VoidProgressListener());
+    }
+
+    /**
+     * Reads the value of each string.
+     */
+    private void create(IProgressListener listener) throws SnapshotException
+    {
+        listener.beginTask(Messages.StringIndex_IndexingStrings, objectIds.length / 1000 + 1);
+
+        HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+        List<String> distinct = new ArrayList<String>();
+        int[] ids = new int[objectIds.length];
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            if (ii % 1000 == 0)
+            {
+                if (listener.isCanceled())
+                    throw new IProgressListener.OperationCanceledException();
+                listener.worked(1);
+            }
+
+            String value = snapshot.getObject(objectIds[ii]).getClassSpecificName();
+            Integer valueId = dictionary.get(value);
+            if (valueId == null)
+            {
+                valueId = distinct.size();
+                dictionary.put(value, valueId);
+                distinct.add(value);
+            }
+            ids[ii] = valueId;
+        }
+
+        setValues(ids, distinct.toArray(new String[distinct.size()]));
+        listener.done();
+    }
+
+    private void setValues(int[] ids, String[] values)
+    {
+        this.values = values;
+        this.valueIds = new ArrayIntCompressed(ids);
+        this.counts = new int[values.length];
+        for (int valueId : ids)
+            counts[valueId]++;
+    }
+
+    /**
+     * @return true if the file exists and is for the current strings
+     */
+    private boolean read()
+    {
+        File file = new File(filename);
+        if (!file.exists())
+            return false;
+
+        DataInputStream in = null;
+        boolean delete = false;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != objectIds.length)
+                return false;
+
+            String[] values = new String[in.readInt()];
+            char[] chars = new char[256];
+            for (int ii = 0; ii < values.length; ii++)
+            {
+                if (!in.readBoolean())
+                    continue;
+                int length = in.readInt();
+                if (length > chars.length)
+                    chars = new char[Math.max(length, 2 * chars.length)];
+                for (int jj = 0; jj < length; jj++)
+                    chars[jj] = in.readChar();
+                values[ii] = new String(chars, 0, length);
+            }
+
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            ArrayIntCompressed compressed = new ArrayIntCompressed(bytes);
+            int[] ids = new int[objectIds.length];
+            for (int ii = 0; ii < ids.length; ii++)
+            {
+                ids[ii] = compressed.get(ii);
+                if (ids[ii] < 0 || ids[ii] >= values.length)
+                    throw new IOException(file.getName());
+            }
+
+            setValues(ids, values);
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(StringIndex.class.getName()).log(Level.WARNING,
+                            Messages.StringIndex_ErrorReadingStrings, e);
+            delete = true;
+            return false;
+        }
+        catch (RuntimeException e)
+        {
+            // truncated or corrupt compressed data
+            Logger.getLogger(StringIndex.class.getName()).log(Level.WARNING,
+                            Messages.StringIndex_ErrorReadingStrings, e);
+            delete = true;
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                if (in != null)
+                    in.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+            if (delete)
+                file.delete();
+        }
+    }
+
+    private void write()
+    {
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+            out.writeInt(objectIds.length);
+            out.writeInt(values.length);
+            for (String value : values)
+            {
+                out.writeBoolean(value != null);
+                if (value != null)
+                {
+                    out.writeInt(value.length());
+                    out.writeChars(value);
+                }
+            }
+            byte[] bytes = valueIds.toByteArray();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(StringIndex.class.getName()).log(Level.WARNING,
+                            Messages.StringIndex_Warning_IgnoreError, e);
+        }
+        finally
+        {
+            try
+            {
+                if (out != null)
+                    out.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+        }
+    }
+}
@@ -10,8 +10,14 @@
  *******************************************************************************/
 package org.eclipse.mat.parser.internal.util;
 
+import org.eclipse.mat.parser.internal.Messages;
+import org.eclipse.mat.util.MessageUtil;
+
 public class IntStack
 {
+    /** the longest array the VM can be expected to allocate */
+    public static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private int[] data;
     private int size;
 
@@ -33,11 +39,7 @@ public class IntStack
     public final void push(int i)
     {
         if (size == data.length)
-        {
-            int[] newArr = new int[data.length << 1];
-            System.arraycopy(data, 0, newArr, 0, data.length);
-            data = newArr;
-        }
+            data = grow(data, size + 1);
         data[size++] = i;
     }
 
@@ -56,4 +58,35 @@ public class IntStack
         return data.length;
     }
 
+    /**
+     * The new length for a growing array: double the length, but not beyond
+     * the limit of the VM, so that a stack can hold any number of object ids.
+     * 
+     * @param capacity
+     *            the current length
+     * @param minCapacity
+     *            the length needed, negative if it overflowed
+     * @throws OutOfMemoryError
+     *             if the length needed is beyond the limit
+     */
+    public static int newCapacity(int capacity, int minCapacity)
+    {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError(MessageUtil.format(Messages.IntStack_Error_ArrayLength,
+                            minCapacity & 0xffffffffL, MAX_ARRAY_SIZE));
+        int newCapacity = capacity <= MAX_ARRAY_SIZE >>> 1 ? capacity << 1 : MAX_ARRAY_SIZE;
+        return Math.max(newCapacity, minCapacity);
+    }
+
+    /**
+     * @return a copy of the array with at least the given length
+     * @see #newCapacity(int, int)
+     */
+    public static int[] grow(int[] data, int minCapacity)
+    {
+        int[] newArr = new int[newCapacity(data.length, minCapacity)];
+        System.arraycopy(data, 0, newArr, 0, data.length);
+        return newArr;
+    }
+
 }
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.util;
+
+import org.eclipse.mat.collect.BitField;
+import org.eclipse.mat.parser.index.IIndexReader;
+
+/**
+ * Maps the object ids of the preliminary index to the ids of the reachable
+ * objects in the final indexes.
+ * <p>
+ * Instead of an int per object the mapping is held in two levels: a bitset of
+ * the reachable objects, and for every 64 bit word the number of reachable
+ * objects before it. The new id of an object is the count of its word plus
+ * the population count of the lower bits in the word, which needs about 1.5
+ * bits per object instead of 32.
+ * <p>
+ * As a one to one index from the old to the new id it is passed to the index
+ * builders implementing
+ * {@link org.eclipse.mat.parser.IPurgedMappingIndexBuilder}, the others get
+ * {@link #toArray()}.
+ */
+public final class PurgedMapping implements IIndexReader.IOne2OneIndex
+{
+    private final long[] bits;
+    private final int[] counts;
+    private final int size;
+    private final int reachable;
+
+    /**
+     * @param reachable
+     *            the result of the marking, may be discarded afterwards
+     * @param size
+     *            the number of objects in the preliminary index
+     */
+    public PurgedMapping(BitField reachable, int size)
+    {
+        this.size = size;
+        this.bits = new long[(int) ((size + 63L) >>> 6)];
+        this.counts = new int[bits.length];
+
+        int count = 0;
+        for (int ii = 0; ii < bits.length; ii++)
+        {
+            counts[ii] = count;
+            long word = 0;
+            int base = ii << 6;
+            int end = Math.min(base + 64, size);
+            for (int jj = base; jj < end; jj++)
+            {
+                if (reachable.get(jj))
+                    word |= 1L << jj;
+            }
+            bits[ii] = word;
+            count += Long.bitCount(word);
+        }
+        this.reachable = count;
+    }
+
+    /**
+     * @return the number of objects in the preliminary index
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of reachable objects
+     */
+    public int getNumberOfReachableObjects()
+    {
+        return reachable;
+    }
+
+    public boolean isReachable(int oldId)
+    {
+        return (bits[oldId >>> 6] & (1L << oldId)) != 0;
+    }
+
+    /**
+     * @return the new id of the object, or -1 if the object is removed
+     */
+    public int get(int oldId)
+    {
+        int word = oldId >>> 6;
+        long bit = 1L << oldId;
+        long w = bits[word];
+        if ((w & bit) == 0)
+            return -1;
+        return counts[word] + Long.bitCount(w & (bit - 1));
+    }
+
+    public int[] getAll(int[] index)
+    {
+        int[] answer = new int[index.length];
+        for (int ii = 0; ii < index.length; ii++)
+            answer[ii] = get(index[ii]);
+        return answer;
+    }
+
+    public int[] getNext(int index, int length)
+    {
+        int[] answer = new int[length];
+        for (int ii = 0; ii < length; ii++)
+            answer[ii] = get(index + ii);
+        return answer;
+    }
+
+    /**
+     * @return the next reachable object at or after the given id, or
+     *         {@link #size()} if there is none
+     */
+    public int nextReachable(int oldId)
+    {
+        if (oldId >= size)
+            return size;
+        int word = oldId >>> 6;
+        long w = bits[word] & (-1L << oldId);
+        while (w == 0)
+        {
+            if (++word == bits.length)
+                return size;
+            w = bits[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    /**
+     * @return the mapping as an array from the old to the new id, -1 for
+     *         removed objects
+     */
+    public int[] toArray()
+    {
+        int[] map = new int[size];
+        int next = 0;
+        for (int ii = 0; ii < size; ii++)
+            map[ii] = isReachable(ii) ? next++ : -1;
+        return map;
+    }
+
+    public void unload()
+    {}
+
+    public void close()
+    {}
+
+    public void delete()
+    {}
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A fixed size int array which is either held on the Java heap or in a
+ * memory mapped scratch file. The scratch file lets the operating system page
+ * the data out, so arrays larger than the Java heap can be used at the cost of
+ * some throughput.
+ * <p>
+ * The two kinds are separate implementations rather than one class which
+ * checks its mode on every access. Only the kind which is used is loaded, so
+ * the JIT compiler can inline {@link #get} and {@link #set} of the heap array
+ * into the dominator tree calculation as plain array accesses.
+ * <p>
+ * Like a new Java array all elements are initially 0. Reads may be done by
+ * several threads at the same time, writes must be done by one thread.
+ */
+public abstract class ScratchIntArray
+{
+    /**
+     * System property to put the working arrays of the dominator tree
+     * calculation into scratch files next to the index files, e.g.
+     * -Dorg.eclipse.mat.scratchFiles=true
+     */
+    public static final String SCRATCH_FILES_PROPERTY = "org.eclipse.mat.scratchFiles"; //$NON-NLS-1$
+
+    /**
+     * Creates an array on the Java heap.
+     */
+    public static ScratchIntArray create(int length)
+    {
+        return new HeapArray(length);
+    }
+
+    /**
+     * Creates an array in a new scratch file which is deleted by
+     * {@link #close()}.
+     */
+    public static ScratchIntArray create(File file, int length) throws IOException
+    {
+        return new MappedArray(file, length);
+    }
+
+    /**
+     * @return true if -Dorg.eclipse.mat.scratchFiles=true is set
+     */
+    public static boolean isEnabled()
+    {
+        return Boolean.getBoolean(SCRATCH_FILES_PROPERTY);
+    }
+
+    public abstract int get(int index);
+
+    public abstract void set(int index, int value);
+
+    public abstract void fill(int value);
+
+    public abstract int length();
+
+    /**
+     * @return true if the array is held in a scratch file
+     */
+    public abstract boolean isMapped();
+
+    /**
+     * @return a copy of the content on the Java heap, or the array itself if
+     *         it is already held there
+     */
+    public abstract int[] toArray();
+
+    /**
+     * Releases the array and deletes the scratch file.
+     */
+    public abstract void close();
+
+    private static final class HeapArray extends ScratchIntArray
+    {
+        private int[] array;
+
+        HeapArray(int length)
+        {
+            this.array = new int[length];
+        }
+
+        public int get(int index)
+        {
+            return array[index];
+        }
+
+        public void set(int index, int value)
+        {
+            array[index] = value;
+        }
+
+        public void fill(int value)
+        {
+            Arrays.fill(array, value);
+        }
+
+        public int length()
+        {
+            return array.length;
+        }
+
+        public boolean isMapped()
+        {
+            return false;
+        }
+
+        public int[] toArray()
+        {
+            return array;
+        }
+
+        public void close()
+        {
+            array = null;
+        }
+    }
+
+    private static final class MappedArray extends ScratchIntArray
+    {
+        /** 2^28 ints = 1GB per mapping */
+        private static final int SEGMENT_SHIFT = 28;
+        private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+        private final int length;
+        private IntBuffer[] segments;
+        private File file;
+
+        MappedArray(File file, int length) throws IOException
+        {
+            this.length = length;
+            this.file = file;
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+            try
+            {
+                raf.setLength(0);
+                raf.setLength((long) length << 2);
+
+                FileChannel channel = raf.getChannel();
+                int nrSegments = (int) (((long) length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+                segments = new IntBuffer[nrSegments];
+                for (int ii = 0; ii < nrSegments; ii++)
+                {
+                    long start = (long) ii << SEGMENT_SHIFT;
+                    long size = Math.min(SEGMENT_MASK + 1L, length - start);
+                    segments[ii] = channel.map(FileChannel.MapMode.READ_WRITE, start << 2, size << 2)
+                                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+                }
+            }
+            catch (IOException e)
+            {
+                raf.close();
+                segments = null;
+                file.delete();
+                throw e;
+            }
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+
+        public int get(int index)
+        {
+            return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+        }
+
+        public void set(int index, int value)
+        {
+            segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+        }
+
+        public void fill(int value)
+        {
+            for (IntBuffer segment : segments)
+            {
+                for (int ii = 0, size = segment.capacity(); ii < size; ii++)
+                    segment.put(ii, value);
+            }
+        }
+
+        public int length()
+        {
+            return length;
+        }
+
+        public boolean isMapped()
+        {
+            return true;
+        }
+
+        public int[] toArray()
+        {
+            int[] result = new int[length];
+            for (int ii = 0; ii < segments.length; ii++)
+            {
+                IntBuffer segment = segments[ii].duplicate();
+                segment.clear();
+                segment.get(result, ii << SEGMENT_SHIFT, segment.remaining());
+            }
+            return result;
+        }
+
+        public void close()
+        {
+            segments = null;
+            if (file != null)
+            {
+                // on some platforms the file cannot be deleted until the
+                // mapping is garbage collected
+                if (!file.delete())
+                    file.deleteOnExit();
+                file = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A read-only file mapped into memory.
+ * <p>
+ * The file is mapped in windows of up to 2GB. A window starts at every
+ * multiple of the window step and overlaps the following window, so that
+ * reads shorter than the step never span two windows. All reads are
+ * positional and do not modify the state of this object, therefore the file
+ * can be read by several threads at the same time without locking.
+ *
+ * @since 1.7
+ */
+public class MappedRandomAccessFile
+{
+    /**
+     * System property to switch on memory mapped reading of dumps and index
+     * files, e.g. -Dorg.eclipse.mat.mappedIO=true
+     */
+    public static final String MAPPED_IO_PROPERTY = "org.eclipse.mat.mappedIO"; //$NON-NLS-1$
+
+    private static final int DEFAULT_STEP_SHIFT = 30;
+
+    private final File file;
+    private final long length;
+    private final int stepShift;
+    private final long stepMask;
+    private MappedByteBuffer[] windows;
+
+    public MappedRandomAccessFile(File file) throws IOException
+    {
+        this(file, DEFAULT_STEP_SHIFT);
+    }
+
+    /**
+     * @param stepShift
+     *            the windows start at multiples of 2^stepShift, must be
+     *            between 1 and 30
+     */
+    public MappedRandomAccessFile(File file, int stepShift) throws IOException
+    {
+        if (stepShift < 1 || stepShift > DEFAULT_STEP_SHIFT)
+            throw new IllegalArgumentException(String.valueOf(stepShift));
+
+        this.file = file;
+        this.stepShift = stepShift;
+        this.stepMask = (1L << stepShift) - 1;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            this.length = channel.size();
+
+            long windowSize = Math.min(2L << stepShift, Integer.MAX_VALUE);
+            int nrWindows = (int) ((length + stepMask) >>> stepShift);
+            windows = new MappedByteBuffer[nrWindows];
+            for (int ii = 0; ii < nrWindows; ii++)
+            {
+                long start = (long) ii << stepShift;
+                windows[ii] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, length - start));
+            }
+        }
+        finally
+        {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps the file if memory mapped reading has been switched on with
+     * {@link #MAPPED_IO_PROPERTY}.
+     *
+     * @return the mapped file, or null if mapped reading is switched off or
+     *         the file cannot be mapped (for example if the address space of
+     *         a 32-bit VM is exhausted)
+     */
+    public static MappedRandomAccessFile open(File file)
+    {
+        if (!isEnabled())
+            return null;
+
+        try
+        {
+            return new MappedRandomAccessFile(file);
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(MappedRandomAccessFile.class.getName()).log(Level.WARNING,
+                            "Cannot map " + file + ", falling back to buffered reading", e); //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+    }
+
+    /**
+     * @return true if -Dorg.eclipse.mat.mappedIO=true is set
+     */
+    public static boolean isEnabled()
+    {
+        return Boolean.getBoolean(MAPPED_IO_PROPERTY);
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    /**
+     * Reads up to len bytes starting at the given file position.
+     *
+     * @return the number of bytes read, or -1 if the position is at or
+     *         beyond the end of the file
+     */
+    public int read(long pos, byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException();
+        if (pos < 0)
+            throw new IOException(String.valueOf(pos));
+        if (pos >= length)
+            return -1;
+
+        len = (int) Math.min(len, length - pos);
+        int copied = 0;
+        while (copied < len)
+        {
+            ByteBuffer window = window(pos).duplicate();
+            int offset = (int) (pos & stepMask);
+            int n = Math.min(len - copied, window.limit() - offset);
+            window.position(offset);
+            window.get(b, off + copied, n);
+            copied += n;
+            pos += n;
+        }
+        return copied;
+    }
+
+    public void readFully(long pos, byte[] b, int off, int len) throws IOException
+    {
+        if (read(pos, b, off, len) != len)
+            throw new EOFException();
+    }
+
+    public int read(long pos) throws IOException
+    {
+        if (pos >= length)
+            return -1;
+        return window(pos).get((int) (pos & stepMask)) & 0xff;
+    }
+
+    public int readInt(long pos) throws IOException
+    {
+        if (pos + 4 > length)
+            throw new EOFException();
+        return window(pos).getInt((int) (pos & stepMask));
+    }
+
+    public long readLong(long pos) throws IOException
+    {
+        if (pos + 8 > length)
+            throw new EOFException();
+        return window(pos).getLong((int) (pos & stepMask));
+    }
+
+    /**
+     * Releases the windows. The memory is returned to the operating system
+     * once the buffers are garbage collected.
+     */
+    public void close()
+    {
+        windows = null;
+    }
+
+    private MappedByteBuffer window(long pos) throws IOException
+    {
+        MappedByteBuffer[] w = windows;
+        if (w == null)
+            throw new IOException(file.getPath());
+        return w[(int) (pos >>> stepShift)];
+    }
+}
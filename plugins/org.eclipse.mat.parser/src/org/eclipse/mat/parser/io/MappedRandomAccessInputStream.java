@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.parser.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A seekable stream over a {@link MappedRandomAccessFile}. The stream only
+ * holds the current position, so it is cheap to create one stream per reading
+ * thread on a shared mapped file. Closing the stream does not close the file.
+ *
+ * @since 1.7
+ */
+public class MappedRandomAccessInputStream extends InputStream
+{
+    private final MappedRandomAccessFile file;
+    private long pos;
+
+    public MappedRandomAccessInputStream(MappedRandomAccessFile file)
+    {
+        this.file = file;
+    }
+
+    public int read() throws IOException
+    {
+        int b = file.read(pos);
+        if (b >= 0)
+            pos++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+        int n = file.read(pos, b, off, len);
+        if (n > 0)
+            pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        if (n <= 0)
+            return 0;
+        n = Math.max(0, Math.min(n, file.length() - pos));
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, file.length() - pos));
+    }
+
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    public void seek(long pos)
+    {
+        this.pos = pos;
+    }
+
+    public long getFilePointer()
+    {
+        return pos;
+    }
+
+    public final int readInt() throws IOException
+    {
+        int a = file.readInt(pos);
+        pos += 4;
+        return a;
+    }
+
+    public final long readLong() throws IOException
+    {
+        long a = file.readLong(pos);
+        pos += 8;
+        return a;
+    }
+}
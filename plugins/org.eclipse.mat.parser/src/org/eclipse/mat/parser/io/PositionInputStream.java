@@ -127,6 +127,11 @@ public class PositionInputStream extends FilterInputStream implements DataInput
             position = pos;
             ((SimpleBufferedRandomAccessInputStream) in).seek(pos);
         }
+        else if (in instanceof MappedRandomAccessInputStream)
+        {
+            position = pos;
+            ((MappedRandomAccessInputStream) in).seek(pos);
+        }
         else
         {
             throw new UnsupportedOperationException(Messages.PositionInputStream_seek);
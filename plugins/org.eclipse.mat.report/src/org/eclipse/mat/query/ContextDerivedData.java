@@ -124,6 +124,31 @@ public abstract class ContextDerivedData
         void calculate(DerivedOperation operation, Object row, IProgressListener listener) throws SnapshotException;
     }
 
+    /**
+     * A calculator which can do the calculations for several rows at the same
+     * time, each in its own thread. {@link #calculate} and {@link #lookup}
+     * must then be safe to call concurrently.
+     * <p>
+     * The rows are not batched: each row is still calculated on its own by
+     * one call of {@link #calculate}, with no pass over the snapshot or
+     * marking of objects shared between rows. Calculating the rows
+     * concurrently saves elapsed time, not work, and each thread needs the
+     * memory of one calculation.
+     * 
+     * @since 1.7
+     */
+    public interface ConcurrentDerivedCalculator extends DerivedCalculator
+    {
+        /**
+         * How many rows to calculate at the same time, for example limited by
+         * the memory needed for each calculation.
+         * @param operation the operation to do on the rows
+         * @param rows the number of rows to calculate
+         * @return the number of threads, 1 to calculate the rows one after the other
+         */
+        int getConcurrency(DerivedOperation operation, int rows);
+    }
+
     /**
      * Get all the derived columns for the current context (page)
      * Do not modify the returned array.
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.query.refined;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.eclipse.mat.query.Bytes;
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.Column.SortDirection;
+
+/**
+ * Sorts rows by the values of columns, read once per row into arrays. The
+ * rows are not moved while sorting, instead an array of row indices is
+ * ordered. Equal rows keep their order, as with
+ * {@link java.util.Collections#sort(List, Comparator)}.
+ */
+/* package */final class ColumnSorter
+{
+    /**
+     * The sort key of one column.
+     */
+    private static abstract class Key
+    {
+        abstract int compare(int a, int b);
+    }
+
+    /** integral numbers or sizes */
+    private static final class LongKey extends Key
+    {
+        final long[] values;
+        final boolean descending;
+
+        LongKey(long[] values, boolean descending)
+        {
+            this.values = values;
+            this.descending = descending;
+        }
+
+        int compare(int a, int b)
+        {
+            long v1 = values[a];
+            long v2 = values[b];
+            int c = v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+            return descending ? -c : c;
+        }
+    }
+
+    /** floating point numbers */
+    private static final class DoubleKey extends Key
+    {
+        final double[] values;
+        final boolean descending;
+
+        DoubleKey(double[] values, boolean descending)
+        {
+            this.values = values;
+            this.descending = descending;
+        }
+
+        int compare(int a, int b)
+        {
+            int c = Double.compare(values[a], values[b]);
+            return descending ? -c : c;
+        }
+    }
+
+    /** any other values, compared as by the natural comparator */
+    private static final class ObjectKey extends Key
+    {
+        final Object[] values;
+        final boolean descending;
+
+        ObjectKey(Object[] values, boolean descending)
+        {
+            this.values = values;
+            this.descending = descending;
+        }
+
+        int compare(int a, int b)
+        {
+            int c = RefinedStructuredResult.NaturalComparator.compareValues(values[a], values[b]);
+            return descending ? -c : c;
+        }
+    }
+
+    /** rows compared by a comparator, which includes the direction */
+    private static final class RowKey extends Key
+    {
+        final Object[] rows;
+        final Comparator<Object> comparator;
+
+        RowKey(Object[] rows, Comparator<Object> comparator)
+        {
+            this.rows = rows;
+            this.comparator = comparator;
+        }
+
+        int compare(int a, int b)
+        {
+            return comparator.compare(rows[a], rows[b]);
+        }
+    }
+
+    private final Key[] keys;
+
+    private ColumnSorter(Key[] keys)
+    {
+        this.keys = keys;
+    }
+
+    /**
+     * Sort by the values of the columns.
+     */
+    static void sort(RefinedStructuredResult result, List<?> elements, int[] columnIndices,
+                    SortDirection[] directions, int limit)
+    {
+        Object[] rows = elements.toArray();
+        Key[] keys = new Key[columnIndices.length];
+        for (int ii = 0; ii < keys.length; ii++)
+        {
+            int columnIndex = columnIndices[ii];
+            Column column = result.columns.get(columnIndex);
+            boolean descending = directions[ii] == SortDirection.DESC;
+
+            if (column.getComparator() != null)
+                keys[ii] = new RowKey(rows, result.buildComparator(columnIndex, directions[ii]));
+            else
+                keys[ii] = createKey(result, rows, columnIndex, descending);
+        }
+        new ColumnSorter(keys).sort(elements, rows, limit);
+    }
+
+    /**
+     * Sort with a comparator only.
+     */
+    static void sort(List<?> elements, Comparator<Object> comparator, int limit)
+    {
+        Object[] rows = elements.toArray();
+        new ColumnSorter(new Key[] { new RowKey(rows, comparator) }).sort(elements, rows, limit);
+    }
+
+    /**
+     * Read the values of the column, into primitive arrays if all values are
+     * of a kind which compares like the primitive.
+     */
+    private static Key createKey(RefinedStructuredResult result, Object[] rows, int columnIndex, boolean descending)
+    {
+        Object[] values = new Object[rows.length];
+        boolean integral = true;
+        boolean floating = true;
+        boolean bytes = true;
+        for (int ii = 0; ii < rows.length; ii++)
+        {
+            Object value = result.getColumnValue(rows[ii], columnIndex);
+            values[ii] = value;
+            integral = integral && (value instanceof Long || value instanceof Integer || value instanceof Short //
+                            || value instanceof Byte);
+            floating = floating && (value instanceof Double || value instanceof Float);
+            bytes = bytes && value instanceof Bytes;
+        }
+
+        if (integral || bytes)
+        {
+            long[] longs = new long[rows.length];
+            for (int ii = 0; ii < rows.length; ii++)
+                longs[ii] = bytes ? ((Bytes) values[ii]).getValue() : ((Number) values[ii]).longValue();
+            return new LongKey(longs, descending);
+        }
+        else if (floating)
+        {
+            double[] doubles = new double[rows.length];
+            for (int ii = 0; ii < rows.length; ii++)
+                doubles[ii] = ((Number) values[ii]).doubleValue();
+            return new DoubleKey(doubles, descending);
+        }
+        else
+        {
+            return new ObjectKey(values, descending);
+        }
+    }
+
+    private int compare(int a, int b)
+    {
+        for (Key key : keys)
+        {
+            int c = key.compare(a, b);
+            if (c != 0)
+                return c;
+        }
+        // keep the order of equal rows
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sort(List<?> elements, Object[] rows, int limit)
+    {
+        int size = rows.length;
+        int[] order;
+        if (limit >= size)
+        {
+            order = new int[size];
+            for (int ii = 0; ii < size; ii++)
+                order[ii] = ii;
+            mergeSort(order, new int[size], 0, size);
+        }
+        else
+        {
+            order = top(Math.max(0, limit), size);
+        }
+
+        ListIterator<Object> iter = ((List<Object>) elements).listIterator();
+        for (int ii = 0; ii < size; ii++)
+        {
+            iter.next();
+            iter.set(rows[order[ii]]);
+        }
+    }
+
+    /**
+     * @return the first rows in order followed by the other rows
+     */
+    private int[] top(int limit, int size)
+    {
+        // heap with the greatest of the first rows found so far at the top
+        int[] heap = new int[limit];
+        int count = 0;
+        for (int ii = 0; ii < size && limit > 0; ii++)
+        {
+            if (count < limit)
+            {
+                heap[count] = ii;
+                siftUp(heap, count++);
+            }
+            else if (compare(ii, heap[0]) < 0)
+            {
+                heap[0] = ii;
+                siftDown(heap, count);
+            }
+        }
+
+        mergeSort(heap, new int[limit], 0, limit);
+
+        boolean[] taken = new boolean[size];
+        for (int index : heap)
+            taken[index] = true;
+
+        int[] order = new int[size];
+        System.arraycopy(heap, 0, order, 0, limit);
+        int position = limit;
+        for (int ii = 0; ii < size; ii++)
+        {
+            if (!taken[ii])
+                order[position++] = ii;
+        }
+        return order;
+    }
+
+    private void siftUp(int[] heap, int position)
+    {
+        int index = heap[position];
+        while (position > 0)
+        {
+            int parent = (position - 1) >>> 1;
+            if (compare(heap[parent], index) >= 0)
+                break;
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = index;
+    }
+
+    private void siftDown(int[] heap, int count)
+    {
+        int index = heap[0];
+        int position = 0;
+        while (true)
+        {
+            int child = 2 * position + 1;
+            if (child >= count)
+                break;
+            if (child + 1 < count && compare(heap[child + 1], heap[child]) > 0)
+                child++;
+            if (compare(index, heap[child]) >= 0)
+                break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = index;
+    }
+
+    private void mergeSort(int[] a, int[] tmp, int from, int to)
+    {
+        if (to - from < 7)
+        {
+            for (int ii = from + 1; ii < to; ii++)
+            {
+                int index = a[ii];
+                int jj = ii;
+                for (; jj > from && compare(a[jj - 1], index) > 0; jj--)
+                    a[jj] = a[jj - 1];
+                a[jj] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(a, tmp, from, middle);
+        mergeSort(a, tmp, middle, to);
+        if (compare(a[middle - 1], a[middle]) <= 0)
+            return;
+
+        System.arraycopy(a, from, tmp, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int ii = from; ii < to; ii++)
+        {
+            if (right >= to || (left < middle && compare(tmp[left], tmp[right]) <= 0))
+                a[ii] = tmp[left++];
+            else
+                a[ii] = tmp[right++];
+        }
+    }
+}
@@ -228,6 +228,10 @@ public final class RefinedResultBuilder
 
             Comparator<Object> cmp = new RefinedStructuredResult.MultiColumnComparator(comparators);
             refinedResult.internalSetSortOrder(indices[0], direction, false, cmp);
+
+            SortDirection[] keyDirections = directions.clone();
+            keyDirections[0] = direction;
+            refinedResult.internalSetSortKeys(indices.clone(), keyDirections);
         }
     }
 
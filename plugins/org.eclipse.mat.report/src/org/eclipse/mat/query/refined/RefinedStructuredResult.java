@@ -17,12 +17,22 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.ArrayInt;
 import org.eclipse.mat.query.Column;
 import org.eclipse.mat.query.Column.SortDirection;
 import org.eclipse.mat.query.ContextDerivedData;
+import org.eclipse.mat.query.ContextDerivedData.ConcurrentDerivedCalculator;
 import org.eclipse.mat.query.ContextDerivedData.DerivedCalculator;
 import org.eclipse.mat.query.ContextDerivedData.DerivedColumn;
 import org.eclipse.mat.query.ContextDerivedData.DerivedOperation;
@@ -114,12 +124,16 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
             this.sortColumn = sortColumn;
         }
 
-        @SuppressWarnings("unchecked")
         public int compare(Object o1, Object o2)
         {
             Object d1 = refinedResult.getColumnValue(o1, sortColumn);
             Object d2 = refinedResult.getColumnValue(o2, sortColumn);
+            return compareValues(d1, d2);
+        }
 
+        @SuppressWarnings("unchecked")
+        /* package */static int compareValues(Object d1, Object d2)
+        {
             // Compare nulls - sort first
             if (d1 == null)
                 return d2 == null ? 0 : -1;
@@ -223,6 +237,9 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
     private int sortColumn = -1;
     private Column.SortDirection sortDirection;
     private Comparator<Object> comparator;
+    /** the columns of the sort order, null if given only by the comparator */
+    private int[] sortKeys;
+    private Column.SortDirection[] sortKeyDirections;
 
     protected boolean inlineJobs = false;
     protected List<DerivedDataJobDefinition> jobs = new ArrayList<DerivedDataJobDefinition>();
@@ -309,11 +326,28 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
         this.resultIsSorted = isPreSorted;
 
         if (cmp == null)
+        {
             cmp = buildComparator(columnIndex, direction);
+            internalSetSortKeys(new int[] { columnIndex }, new Column.SortDirection[] { direction });
+        }
+        else
+        {
+            internalSetSortKeys(null, null);
+        }
 
         this.comparator = cmp;
     }
 
+    /**
+     * Set the columns the comparator sorts by, so the values of the columns
+     * can be read once per row when sorting.
+     */
+    /* package */void internalSetSortKeys(int[] columnIndices, SortDirection[] directions)
+    {
+        this.sortKeys = columnIndices;
+        this.sortKeyDirections = directions;
+    }
+
     @SuppressWarnings("unchecked")
     /* package */Comparator<Object> buildComparator(int columnIndex, Column.SortDirection direction)
     {
@@ -332,8 +366,34 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
 
     public void sort(List<?> elements)
     {
-        if (comparator != null)
-            Collections.sort(elements, comparator);
+        sort(elements, elements.size());
+    }
+
+    /**
+     * Sort only the first elements, for example those shown on a page. The
+     * elements are arranged so that the first <code>limit</code> of them are
+     * those of a full sort, in order, followed by the others in their
+     * previous order.
+     * <p>
+     * The values of the sort columns are read once per row and the rows are
+     * ordered by these values, which is faster than a sort with the
+     * comparator of the result for large tables.
+     *
+     * @param elements
+     *            the rows to sort
+     * @param limit
+     *            the number of elements to put in order
+     * @since 1.7
+     */
+    public void sort(List<?> elements, int limit)
+    {
+        if (comparator == null)
+            return;
+
+        if (sortKeys != null)
+            ColumnSorter.sort(this, elements, sortKeys, sortKeyDirections, limit);
+        else
+            ColumnSorter.sort(elements, comparator, limit);
     }
 
     // //////////////////////////////////////////////////////////////
@@ -429,6 +489,17 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
         }
 
         int work = elements.size();
+        if (work > 1 && accessor.calculator instanceof ConcurrentDerivedCalculator)
+        {
+            int threads = Math.min(work, ((ConcurrentDerivedCalculator) accessor.calculator).getConcurrency(
+                            operation, work));
+            if (threads > 1)
+            {
+                calculateConcurrently(accessor.calculator, operation, elements, threads, progress, listener);
+                return;
+            }
+        }
+
         SimpleMonitor sm;
         IProgressListener l1, l2;
         if (work == 1)
@@ -480,6 +551,106 @@ public abstract class RefinedStructuredResult implements IStructuredResult, //
             l1.done();
     }
 
+    /**
+     * Calculate the rows on a pool of threads. Progress is reported by row
+     * from the calling thread, in the order the rows are finished.
+     */
+    private void calculateConcurrently(final DerivedCalculator calculator, //
+                    final DerivedOperation operation, //
+                    List<?> elements, //
+                    int threads, //
+                    ICalculationProgress progress, //
+                    IProgressListener listener) throws SnapshotException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            int number;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "MAT derived data " + (++number)); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try
+        {
+            // progress of the single rows is not reported
+            final IProgressListener silent = new SilentProgressListener(listener)
+            {
+                @Override
+                public void beginTask(String name, int totalWork)
+                {}
+
+                @Override
+                public void subTask(String name)
+                {}
+            };
+
+            final Object[] rows = elements.toArray();
+            CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+            for (int ii = 0; ii < rows.length; ii++)
+            {
+                final int index = ii;
+                completion.submit(new Callable<Integer>()
+                {
+                    public Integer call() throws Exception
+                    {
+                        // rows not started before the cancellation are skipped
+                        if (!silent.isCanceled())
+                            calculator.calculate(operation, rows[index], silent);
+                        return index;
+                    }
+                });
+            }
+            executor.shutdown();
+
+            listener.beginTask(Messages.RefinedStructuredResult_Calculating, rows.length);
+            for (int ii = 0; ii < rows.length; ii++)
+            {
+                Future<Integer> future;
+                while ((future = completion.poll(100, TimeUnit.MILLISECONDS)) == null)
+                {
+                    if (listener.isCanceled())
+                        return;
+                }
+
+                // a canceled calculation may fail instead of returning
+                if (listener.isCanceled())
+                    return;
+
+                int index = future.get();
+                if (progress != null)
+                    progress.done(index, rows[index]);
+                listener.worked(1);
+
+                if (listener.isCanceled())
+                    return;
+            }
+            listener.done();
+        }
+        catch (InterruptedException e)
+        {
+            throw new SnapshotException(e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof SnapshotException)
+                throw (SnapshotException) cause;
+            throw new SnapshotException(cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     // //////////////////////////////////////////////////////////////
     // access to the underlying original result
     // //////////////////////////////////////////////////////////////
@@ -10,8 +10,9 @@
  *******************************************************************************/
 package org.eclipse.mat.query.refined;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.query.IResultTable;
@@ -70,13 +71,48 @@ public class RefinedTable extends RefinedStructuredResult implements IResultTabl
 
     private List<?> asList()
     {
-        IResultTable table = (IResultTable) subject;
+        return new RowList((IResultTable) subject);
+    }
+
+    /**
+     * The rows of the table, read from the table when first accessed. The
+     * first rows of a huge table are available without reading all rows, and
+     * unless filtered or sorted, the rows are read one by one as they are
+     * displayed or exported.
+     */
+    private static final class RowList extends AbstractList<Object> implements RandomAccess
+    {
+        private final IResultTable table;
+        private final Object[] rows;
+
+        RowList(IResultTable table)
+        {
+            this.table = table;
+            this.rows = new Object[table.getRowCount()];
+        }
+
+        @Override
+        public Object get(int index)
+        {
+            Object row = rows[index];
+            if (row == null)
+                rows[index] = row = table.getRow(index);
+            return row;
+        }
 
-        int rowCount = table.getRowCount();
-        List<Object> l = new ArrayList<Object>(rowCount);
-        for (int ii = 0; ii < rowCount; ii++)
-            l.add(table.getRow(ii));
-        return l;
+        @Override
+        public Object set(int index, Object element)
+        {
+            Object previous = get(index);
+            rows[index] = element;
+            return previous;
+        }
+
+        @Override
+        public int size()
+        {
+            return rows.length;
+        }
     }
 
     @Override
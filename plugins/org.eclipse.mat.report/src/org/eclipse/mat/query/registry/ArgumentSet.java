@@ -53,6 +53,15 @@ public class ArgumentSet
     {
         try
         {
+            // the query is not executed again for the same arguments
+            String key = QueryResultCache.getKey(this);
+            if (key != null)
+            {
+                IResult cached = QueryResultCache.get(this, key);
+                if (cached != null)
+                    return new QueryResult(this.query, this.writeToLine(), cached);
+            }
+
             IQuery impl = query.getCommandType().newInstance();
 
             for (ArgumentDescriptor parameter : query.getArguments())
@@ -129,8 +138,13 @@ public class ArgumentSet
                 }
             }
 
+            long start = System.currentTimeMillis();
             IResult result = impl.execute(listener);
 
+            // a cancelled query can return a partial result
+            if (key != null && !listener.isCanceled())
+                QueryResultCache.put(this, key, result, System.currentTimeMillis() - start);
+
             return new QueryResult(this.query, this.writeToLine(), result);
         }
         catch (InstantiationException e)
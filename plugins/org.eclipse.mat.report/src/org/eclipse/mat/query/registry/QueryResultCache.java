@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.query.registry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.mat.query.IQueryContext;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.report.internal.Messages;
+import org.eclipse.mat.util.MessageUtil;
+
+/**
+ * Results of queries kept in the file <code>results.index</code> next to the
+ * indexes of a snapshot, so a query run again with the same arguments, also
+ * after the snapshot has been reopened, returns at once.
+ * <p>
+ * A result is stored if it is {@link Serializable}, like the histogram, the
+ * query took at least half a second and was not cancelled, and the arguments
+ * of the query can be written to a command line. Queries on selected heap
+ * objects are not stored, as their command line does not always name the
+ * objects. The key is the normalized command line of the
+ * {@link ArgumentSet}. The records are appended to the file, each with the key
+ * and the compressed serialized result; the positions of the records are kept
+ * in memory. The file is deleted with the other indexes when the dump is
+ * parsed again and by {@link #clear(IQueryContext)}; the cache is switched
+ * off with -Dorg.eclipse.mat.resultCache=false.
+ * <p>
+ * Results are serialized and read outside of any lock. Only the positions
+ * and the appending of a record to the file of one snapshot are guarded by a
+ * lock of that file, so queries of different snapshots do not wait for each
+ * other.
+ *
+ * @since 1.7
+ */
+public final class QueryResultCache
+{
+    /**
+     * System property to switch off the cache,
+     * -Dorg.eclipse.mat.resultCache=false.
+     */
+    public static final String RESULT_CACHE_PROPERTY = "org.eclipse.mat.resultCache"; //$NON-NLS-1$
+
+    private static final String SUFFIX = "results.index"; //$NON-NLS-1$
+
+    /** faster queries are executed again rather than read */
+    private static final long MIN_EXECUTION_TIME = 500;
+
+    /**
+     * The positions of the records of a file, valid while the file is
+     * unchanged. Also the lock for reading the positions and appending to the
+     * file.
+     */
+    private static final class Records
+    {
+        /** -1 if the positions are to be read from the file */
+        long length = -1;
+        long lastModified;
+        /** offset and length of the data by key */
+        final Map<String, long[]> positions = new HashMap<String, long[]>();
+
+        boolean isCurrent(File file)
+        {
+            return length == file.length() && lastModified == file.lastModified();
+        }
+
+        void reset()
+        {
+            length = -1;
+            positions.clear();
+        }
+    }
+
+    private static final Map<File, Records> files = new HashMap<File, Records>();
+
+    private QueryResultCache()
+    {}
+
+    public static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty(RESULT_CACHE_PROPERTY)); //$NON-NLS-1$
+    }
+
+    /**
+     * Delete the cached results of the snapshot of the context.
+     *
+     * @return true if there was a cache file and it has been deleted
+     */
+    public static boolean clear(IQueryContext context)
+    {
+        File file = getFile(context);
+        if (file == null)
+            return false;
+        Records records = getRecords(file);
+        synchronized (records)
+        {
+            records.reset();
+            return file.exists() && file.delete();
+        }
+    }
+
+    /**
+     * @return the key of the arguments, or null if the result is not to be
+     *         cached
+     */
+    /* package */static String getKey(ArgumentSet arguments)
+    {
+        if (!isEnabled() || getFile(arguments.getQueryContext()) == null)
+            return null;
+
+        IQueryContext context = arguments.getQueryContext();
+        for (ArgumentDescriptor descriptor : arguments.getQueryDescriptor().getArguments())
+        {
+            Object value = arguments.getArgumentValue(descriptor);
+
+            // the command line of heap object arguments can be just a label
+            // for the selected objects
+            if (value instanceof ArgumentFactory)
+                return null;
+
+            if (context.available(descriptor.getType(), descriptor.getAdvice()))
+            {
+                // the snapshot and its parts are not written, but results
+                // like the tables to compare differ from run to run
+                if (value instanceof IResult || value instanceof List<?> || descriptor.isArray()
+                                || descriptor.isList())
+                    return null;
+                continue;
+            }
+
+            if (value instanceof List<?>)
+            {
+                for (Object v : (List<?>) value)
+                {
+                    if (!isWritten(v))
+                        return null;
+                }
+            }
+            else if (!isWritten(value))
+            {
+                return null;
+            }
+        }
+
+        return arguments.getQueryDescriptor().getCommandType().getName() + ' ' + arguments.writeToLine();
+    }
+
+    /**
+     * @return true if the value appears on the command line so that the same
+     *         line means the same value
+     */
+    private static boolean isWritten(Object value)
+    {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                        || value instanceof Character || value instanceof Enum<?> || value instanceof Pattern;
+    }
+
+    private static File getFile(IQueryContext context)
+    {
+        String prefix = context.getPrefix();
+        return prefix != null ? new File(prefix + SUFFIX) : null;
+    }
+
+    private static Records getRecords(File file)
+    {
+        synchronized (files)
+        {
+            Records records = files.get(file);
+            if (records == null)
+            {
+                records = new Records();
+                files.put(file, records);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * @return the cached result or null
+     */
+    /* package */static IResult get(ArgumentSet arguments, String key)
+    {
+        File file = getFile(arguments.getQueryContext());
+        Records records = getRecords(file);
+        long[] position;
+        synchronized (records)
+        {
+            position = getPosition(records, file, key);
+        }
+        if (position == null)
+            return null;
+
+        // records are only appended, so the data stays where it is
+
+        byte[] data = new byte[(int) position[1]];
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+            raf.seek(position[0]);
+            raf.readFully(data);
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(QueryResultCache.class.getName()).log(Level.WARNING,
+                            Messages.QueryResultCache_ErrorReadingResults, e);
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                if (raf != null)
+                    raf.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+        }
+
+        final ClassLoader loader = arguments.getQueryDescriptor().getCommandType().getClassLoader();
+        ObjectInputStream in = null;
+        try
+        {
+            InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(data));
+            in = new ObjectInputStream(inflater)
+            {
+                // the classes of the result are known to the query
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+                {
+                    try
+                    {
+                        return Class.forName(desc.getName(), false, loader);
+                    }
+                    catch (ClassNotFoundException e)
+                    {
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            return (IResult) in.readObject();
+        }
+        catch (Exception e)
+        {
+            // for example written by another version
+            Logger.getLogger(QueryResultCache.class.getName()).log(Level.WARNING,
+                            MessageUtil.format(Messages.QueryResultCache_ErrorReadingResult, key), e);
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                if (in != null)
+                    in.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+        }
+    }
+
+    /**
+     * Append the result to the cache, if it can be serialized and is worth
+     * storing.
+     *
+     * @param executionTime
+     *            the time the query took in milliseconds
+     */
+    /* package */static void put(ArgumentSet arguments, String key, IResult result, long executionTime)
+    {
+        if (!(result instanceof Serializable) || executionTime < MIN_EXECUTION_TIME)
+            return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(bytes));
+            oos.writeObject(result);
+            oos.close();
+        }
+        catch (IOException e)
+        {
+            // includes results holding objects which cannot be serialized
+            Logger.getLogger(QueryResultCache.class.getName()).log(Level.WARNING,
+                            Messages.QueryResultCache_Warning_IgnoreError, e);
+            return;
+        }
+
+        File file = getFile(arguments.getQueryContext());
+        Records records = getRecords(file);
+        synchronized (records)
+        {
+            boolean current = records.isCurrent(file);
+            long offset = file.length() + 8 + 2L * key.length();
+
+            DataOutputStream out = null;
+            try
+            {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                out.writeInt(key.length());
+                out.writeChars(key);
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+                out.close();
+                out = null;
+
+                // the positions of an unchanged file need not be read again
+                if (current)
+                {
+                    records.positions.put(key, new long[] { offset, bytes.size() });
+                    records.length = file.length();
+                    records.lastModified = file.lastModified();
+                }
+            }
+            catch (IOException e)
+            {
+                Logger.getLogger(QueryResultCache.class.getName()).log(Level.WARNING,
+                                Messages.QueryResultCache_Warning_IgnoreError, e);
+            }
+            finally
+            {
+                try
+                {
+                    if (out != null)
+                        out.close();
+                }
+                catch (IOException ignore)
+                {
+                    // $JL-EXC$
+                }
+            }
+        }
+    }
+
+    /**
+     * @return offset and length of the data of the key, or null
+     */
+    private static long[] getPosition(Records records, File file, String key)
+    {
+        if (!file.exists())
+        {
+            records.reset();
+            return null;
+        }
+
+        if (!records.isCurrent(file) && !read(records, file))
+            return null;
+
+        return records.positions.get(key);
+    }
+
+    /**
+     * Read the keys of the records, a later record of a key replaces an
+     * earlier one.
+     *
+     * @return false if the file is corrupt and deleted
+     */
+    private static boolean read(Records records, File file)
+    {
+        records.reset();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        DataInputStream in = null;
+        boolean delete = false;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            long offset = 0;
+            while (offset < length)
+            {
+                int keyLength = in.readInt();
+                if (keyLength < 0 || offset + 4 + 2L * keyLength > length)
+                    throw new IOException(file.getName());
+                char[] key = new char[keyLength];
+                for (int ii = 0; ii < keyLength; ii++)
+                    key[ii] = in.readChar();
+
+                int dataLength = in.readInt();
+                offset += 8 + 2L * keyLength;
+                if (dataLength < 0 || offset + dataLength > length)
+                    throw new IOException(file.getName());
+                records.positions.put(new String(key), new long[] { offset, dataLength });
+
+                for (int skipped = 0; skipped < dataLength;)
+                {
+                    int n = in.skipBytes(dataLength - skipped);
+                    if (n <= 0)
+                        throw new EOFException(file.getName());
+                    skipped += n;
+                }
+                offset += dataLength;
+            }
+            records.length = length;
+            records.lastModified = lastModified;
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logger.getLogger(QueryResultCache.class.getName()).log(Level.WARNING,
+                            Messages.QueryResultCache_ErrorReadingResults, e);
+            records.reset();
+            delete = true;
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                if (in != null)
+                    in.close();
+            }
+            catch (IOException ignore)
+            {
+                // $JL-EXC$
+            }
+            if (delete)
+                file.delete();
+        }
+    }
+}
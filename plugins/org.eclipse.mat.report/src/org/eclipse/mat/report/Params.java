@@ -56,6 +56,17 @@ public interface Params
      */
     String FILENAME_SUFFIX = "filename_suffix";
 
+    /**
+     * If set to Boolean.TRUE.toString(), the queries of a section and of its
+     * nested sections are executed concurrently on one bounded pool of
+     * threads, while the results are still rendered one after another in the
+     * order of the report. Like all parameters, the setting is inherited by
+     * the nested sections. A nested section which sets it to false is run
+     * serially when it is reached.
+     * @since 1.7
+     */
+    String PARALLEL = "parallel";
+
     /**
      * Parameters specific to HTML reports.
      * @noimplement
@@ -82,6 +82,9 @@ public final class Messages extends NLS
     public static String QueryRegistry_MissingLabel;
 
     public static String QueryRegistry_Msg_QueryRegistered;
+    public static String QueryResultCache_ErrorReadingResult;
+    public static String QueryResultCache_ErrorReadingResults;
+    public static String QueryResultCache_Warning_IgnoreError;
     public static String QuerySpec_Error_IncompatibleTypes;
 
     public static String QueueInt_Error_LengthExceeded;
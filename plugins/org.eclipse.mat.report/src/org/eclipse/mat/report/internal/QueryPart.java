@@ -13,6 +13,10 @@ package org.eclipse.mat.report.internal;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,6 +54,9 @@ public class QueryPart extends AbstractPart
 {
     /* package */PartsFactory factory;
 
+    /** the result of the command, if submitted to a section's executor */
+    private Future<IResult> pending;
+
     public QueryPart(String id, AbstractPart parent, DataFile artefact, QuerySpec spec)
     {
         super(id, parent, artefact, spec);
@@ -93,7 +100,7 @@ public class QueryPart extends AbstractPart
             {
                 try
                 {
-                    result = CommandLine.execute(context, getCommand(), new SilentProgressListener(listener));
+                    result = getResult(context, listener);
                 }
                 catch (Exception e)
                 {
@@ -170,6 +177,63 @@ public class QueryPart extends AbstractPart
         return this;
     }
 
+    /**
+     * @return true if the query has a command which is not yet executed
+     */
+    /* package */boolean canSubmit()
+    {
+        return pending == null && spec().getResult() == null && getCommand() != null;
+    }
+
+    /**
+     * Start executing the command of the query on the executor. The result is
+     * picked up and rendered by {@link #execute}.
+     */
+    /* package */void submit(ExecutorService executor, final IQueryContext context, final IProgressListener listener)
+    {
+
+        final String command = getCommand();
+        pending = executor.submit(new Callable<IResult>()
+        {
+            public IResult call() throws Exception
+            {
+                return CommandLine.execute(context, command, new SilentProgressListener(listener)
+                {
+                    // progress of concurrent queries is not reported
+                    @Override
+                    public void beginTask(String name, int totalWork)
+                    {}
+
+                    @Override
+                    public void subTask(String name)
+                    {}
+                });
+            }
+        });
+    }
+
+    private IResult getResult(IQueryContext context, IProgressListener listener) throws Exception
+    {
+        if (pending == null)
+            return CommandLine.execute(context, getCommand(), new SilentProgressListener(listener));
+
+        try
+        {
+            return pending.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw (Exception) cause;
+        }
+        finally
+        {
+            pending = null;
+        }
+    }
+
     private boolean hasParameterThatNeedRefining()
     {
         String[] providers = params().getStringArray(Params.Rendering.DERIVED_DATA_COLUMN);
@@ -11,6 +11,11 @@
 package org.eclipse.mat.report.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.query.IQueryContext;
@@ -54,18 +59,85 @@ public class SectionPart extends AbstractPart
     public AbstractPart execute(IQueryContext context, ResultRenderer renderer, IProgressListener listener)
                     throws SnapshotException, IOException
     {
-        renderer.beginSection(this);
+        ExecutorService executor = null;
+        if (params().getBoolean(Params.PARALLEL, false))
+            executor = submitQueries(context, listener);
 
-        for (int ii = 0; ii < this.children.size(); ii++)
+        try
         {
-            AbstractPart part = this.children.get(ii).execute(context, renderer, listener);
-            this.status = Status.max(this.status, part.status);
-            this.children.set(ii, part);
-        }
+            renderer.beginSection(this);
+
+            // queries submitted above are waited for and rendered in order
+            for (int ii = 0; ii < this.children.size(); ii++)
+            {
+                AbstractPart part = this.children.get(ii).execute(context, renderer, listener);
+                this.status = Status.max(this.status, part.status);
+                this.children.set(ii, part);
+            }
 
-        renderer.endSection(this);
+            renderer.endSection(this);
+        }
+        finally
+        {
+            if (executor != null)
+                executor.shutdownNow();
+        }
 
         return this;
     }
 
+    /**
+     * Start the commands of the queries of this section and of the nested
+     * sections which are also parallel on a pool of at most one thread per
+     * processor. The queries are submitted in document order. Queries which
+     * are only created while rendering, e.g. from the result of another query,
+     * are submitted by their section when it is executed.
+     * 
+     * @return the executor, or null if there are less than two queries
+     */
+    private ExecutorService submitQueries(IQueryContext context, IProgressListener listener)
+    {
+        List<QueryPart> queries = new ArrayList<QueryPart>();
+        collectQueries(this, queries);
+        int count = queries.size();
+        if (count < 2)
+            return null;
+
+        int threads = Math.min(count, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            int number;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "MAT report query " + (++number)); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (QueryPart query : queries)
+            query.submit(executor, context, listener);
+
+        // let the submitted queries finish
+        executor.shutdown();
+        return executor;
+    }
+
+    private static void collectQueries(AbstractPart section, List<QueryPart> queries)
+    {
+        for (AbstractPart part : section.children)
+        {
+            if (part instanceof QueryPart)
+            {
+                if (((QueryPart) part).canSubmit())
+                    queries.add((QueryPart) part);
+            }
+            else if (part instanceof SectionPart && part.params().getBoolean(Params.PARALLEL, false))
+            {
+                collectQueries(part, queries);
+            }
+        }
+    }
+
 }
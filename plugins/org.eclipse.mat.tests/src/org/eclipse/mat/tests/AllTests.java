@@ -28,14 +28,27 @@ import org.junit.runners.Suite.SuiteClasses;
                 org.eclipse.mat.tests.collect.ExtractCollectionEntriesTest2.class, //
                 org.eclipse.mat.tests.parser.TestIndex.class, //
                 org.eclipse.mat.tests.parser.TestIndex1to1.class, //
+                org.eclipse.mat.tests.parser.TestMappedRandomAccessFile.class, //
+                org.eclipse.mat.tests.parser.TestPageCache.class, //
+                org.eclipse.mat.tests.parser.TestObjectCache.class, //
+                org.eclipse.mat.tests.parser.TestScratchIntArray.class, //
+                org.eclipse.mat.tests.parser.TestIntStack.class, //
+                org.eclipse.mat.tests.parser.TestPurgedMapping.class, //
+                org.eclipse.mat.tests.parser.TestObjectMarker.class, //
                 org.eclipse.mat.tests.snapshot.DominatorTreeTest.class, //
+                org.eclipse.mat.tests.snapshot.RetainedSetTest.class, //
+                org.eclipse.mat.tests.snapshot.ParallelParseTest.class, //
                 org.eclipse.mat.tests.snapshot.TestUnreachableObjects.class, //
                 org.eclipse.mat.tests.snapshot.GeneralSnapshotTests.class, //
                 org.eclipse.mat.tests.snapshot.TestInstanceSizes.class, //
                 org.eclipse.mat.tests.snapshot.QueryLookupTest.class, //
                 org.eclipse.mat.tests.snapshot.QueriesTest.class, //
+                org.eclipse.mat.tests.snapshot.QueryResultCacheTest.class, //
+                org.eclipse.mat.tests.snapshot.ParallelReportTest.class, //
                 org.eclipse.mat.tests.snapshot.OQLTest.class, //
                 org.eclipse.mat.tests.snapshot.MultipleSnapshots.class, //
+                org.eclipse.mat.tests.snapshot.ParseCheckpointTest.class, //
+                org.eclipse.mat.tests.snapshot.BatchAnalysisTest.class, //
                 org.eclipse.mat.tests.acquire.AcquireDumpTest.class,
                 org.eclipse.mat.tests.collect.ExtractCollectionEntriesTest3.class, //
                 org.eclipse.mat.tests.ui.snapshot.panes.textPartitioning.TestClassNameExtractor.class,
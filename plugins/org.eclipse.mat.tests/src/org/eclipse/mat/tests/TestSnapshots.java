@@ -293,7 +293,7 @@ public class TestSnapshots
         return tempFile;
     }
 
-    private static void copyFile(File in, File out) throws IOException
+    public static void copyFile(File in, File out) throws IOException
     {
         FileInputStream fis = null;
         try
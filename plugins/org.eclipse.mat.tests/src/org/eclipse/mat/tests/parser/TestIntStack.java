@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.mat.parser.internal.util.IntStack;
+import org.junit.Test;
+
+public class TestIntStack
+{
+    @Test
+    public void pushAndPop()
+    {
+        IntStack stack = new IntStack(2);
+        for (int ii = 0; ii < 1000; ii++)
+            stack.push(ii);
+        assertEquals(1000, stack.size());
+        for (int ii = 999; ii >= 0; ii--)
+            assertEquals(ii, stack.pop());
+    }
+
+    /**
+     * Stacks of more than a billion object ids must not overflow the length.
+     */
+    @Test
+    public void capacityUpToLimit()
+    {
+        assertEquals(20, IntStack.newCapacity(10, 11));
+        assertEquals(100, IntStack.newCapacity(10, 100));
+        assertEquals(IntStack.MAX_ARRAY_SIZE, IntStack.newCapacity(10240 << 17, (10240 << 17) + 1));
+        assertEquals(IntStack.MAX_ARRAY_SIZE, IntStack.newCapacity(1 << 30, (1 << 30) + 1));
+    }
+
+    @Test(expected = OutOfMemoryError.class)
+    public void capacityBeyondLimit()
+    {
+        IntStack.newCapacity(IntStack.MAX_ARRAY_SIZE, IntStack.MAX_ARRAY_SIZE + 1);
+    }
+
+    @Test(expected = OutOfMemoryError.class)
+    public void capacityOverflow()
+    {
+        IntStack.newCapacity(Integer.MAX_VALUE, Integer.MAX_VALUE + 1);
+    }
+}
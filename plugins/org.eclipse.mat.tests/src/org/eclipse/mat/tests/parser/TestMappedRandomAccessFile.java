@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.eclipse.mat.parser.io.MappedRandomAccessFile;
+import org.eclipse.mat.parser.io.MappedRandomAccessInputStream;
+import org.eclipse.mat.parser.io.PositionInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(value = Parameterized.class)
+public class TestMappedRandomAccessFile
+{
+    int size;
+    int stepShift;
+    File file;
+    byte[] content;
+
+    @Parameters
+    public static Collection<Object[]> data()
+    {
+        return Arrays.asList(new Object[][] {
+                        { 0, 4 },
+                        { 1, 4 },
+                        { 16, 4 },
+                        { 17, 4 },
+                        { 1000, 4 },
+                        { 1000, 9 },
+                        { 100000, 12 },
+                        { 100000, 30 },
+        });
+    }
+
+    public TestMappedRandomAccessFile(int size, int stepShift)
+    {
+        this.size = size;
+        this.stepShift = stepShift;
+    }
+
+    @Before
+    public void createFile() throws IOException
+    {
+        content = new byte[size];
+        new Random(size).nextBytes(content);
+        file = File.createTempFile("mapped_", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @After
+    public void deleteFile()
+    {
+        // might fail on some platforms until the mapping is garbage collected
+        file.delete();
+    }
+
+    @Test
+    public void readBytes() throws IOException
+    {
+        MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, stepShift);
+        try
+        {
+            assertEquals(size, mapped.length());
+            for (int pos = 0; pos < size; pos += 1 + pos / 7)
+            {
+                assertEquals(content[pos] & 0xff, mapped.read(pos));
+                int len = Math.min(size - pos, 3 + pos % 50);
+                byte[] b = new byte[len + 2];
+                mapped.readFully(pos, b, 1, len);
+                for (int ii = 0; ii < len; ii++)
+                    assertEquals(content[pos + ii], b[ii + 1]);
+            }
+            assertEquals(-1, mapped.read(size));
+            assertEquals(-1, mapped.read(size, new byte[1], 0, 1));
+        }
+        finally
+        {
+            mapped.close();
+        }
+    }
+
+    @Test
+    public void readNumbers() throws IOException
+    {
+        MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, stepShift);
+        RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try
+        {
+            for (int pos = 0; pos + 8 <= size; pos += 1 + pos / 5)
+            {
+                raf.seek(pos);
+                assertEquals(raf.readInt(), mapped.readInt(pos));
+                raf.seek(pos);
+                assertEquals(raf.readLong(), mapped.readLong(pos));
+            }
+        }
+        finally
+        {
+            raf.close();
+            mapped.close();
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void readBeyondEnd() throws IOException
+    {
+        MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, stepShift);
+        try
+        {
+            mapped.readLong(size - 7);
+        }
+        finally
+        {
+            mapped.close();
+        }
+    }
+
+    @Test
+    public void readStream() throws IOException
+    {
+        MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, stepShift);
+        try
+        {
+            byte[] b = new byte[size];
+            DataInputStream in = new DataInputStream(new MappedRandomAccessInputStream(mapped));
+            in.readFully(b);
+            assertArrayEquals(content, b);
+            assertEquals(-1, in.read());
+
+            if (size >= 12)
+            {
+                PositionInputStream pin = new PositionInputStream(new MappedRandomAccessInputStream(mapped));
+                pin.seek(size - 12);
+                RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+                try
+                {
+                    raf.seek(size - 12);
+                    assertEquals(raf.readInt(), pin.readInt());
+                    assertEquals(raf.readLong(), pin.readLong());
+                    assertEquals(size, pin.position());
+                }
+                finally
+                {
+                    raf.close();
+                }
+            }
+        }
+        finally
+        {
+            mapped.close();
+        }
+    }
+}
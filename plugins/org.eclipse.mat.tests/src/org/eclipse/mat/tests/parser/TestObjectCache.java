@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.mat.parser.internal.snapshot.ObjectCache;
+import org.junit.Test;
+
+public class TestObjectCache
+{
+    private static class CountingCache extends ObjectCache<Object>
+    {
+        final AtomicInteger loads = new AtomicInteger();
+
+        CountingCache(int maxSize, int concurrency)
+        {
+            super(maxSize, concurrency);
+        }
+
+        @Override
+        protected Object load(int key)
+        {
+            loads.incrementAndGet();
+            return new Integer(key);
+        }
+    }
+
+    @Test
+    public void hitsAndMisses()
+    {
+        CountingCache cache = new CountingCache(100, 1);
+
+        Object o = cache.get(7);
+        assertEquals(7, ((Integer) o).intValue());
+        assertSame(o, cache.get(7));
+
+        assertEquals(1, cache.loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        cache.get(7);
+        assertEquals(2, cache.loads.get());
+    }
+
+    @Test
+    public void maxSize()
+    {
+        CountingCache cache = new CountingCache(100, 4);
+        for (int ii = 0; ii < 1000; ii++)
+        {
+            cache.get(ii);
+            assertTrue(cache.getSize() <= 100);
+        }
+        assertEquals(100, cache.getMaxSize());
+        assertEquals(1000, cache.getMissCount());
+        assertEquals(1000 - cache.getSize(), cache.getEvictionCount());
+    }
+
+    /**
+     * Objects which are read often stay cached while many objects are read
+     * once.
+     */
+    @Test
+    public void frequentObjectsSurviveScan()
+    {
+        CountingCache cache = new CountingCache(100, 1);
+        for (int round = 0; round < 5; round++)
+        {
+            for (int ii = 0; ii < 50; ii++)
+                cache.get(ii);
+        }
+
+        for (int ii = 1000; ii < 11000; ii++)
+            cache.get(ii);
+
+        int loads = cache.loads.get();
+        for (int ii = 0; ii < 50; ii++)
+            cache.get(ii);
+        assertTrue(cache.loads.get() - loads < 5);
+    }
+
+    @Test
+    public void concurrent() throws InterruptedException
+    {
+        final CountingCache cache = new CountingCache(500, 8);
+        final AtomicInteger errors = new AtomicInteger();
+
+        Thread threads[] = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            final int seed = ii;
+            threads[ii] = new Thread() {
+                public void run()
+                {
+                    for (int jj = 0; jj < 100000; jj++)
+                    {
+                        int key = (jj * 31 + seed * 17) % 2000;
+                        if (((Integer) cache.get(key)).intValue() != key)
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(0, errors.get());
+        assertEquals(4 * 100000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getSize() <= 500);
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.mat.parser.index.IIndexReader;
+import org.eclipse.mat.parser.internal.snapshot.ObjectMarker;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Test;
+
+/**
+ * Compares the object markers on generated object graphs.
+ */
+public class TestObjectMarker
+{
+    /**
+     * An outbound index held in memory.
+     */
+    static class Graph implements IIndexReader.IOne2ManyIndex
+    {
+        final int[][] outbound;
+        final int[] roots;
+
+        /**
+         * A random graph with a few long chains, so that most objects are
+         * reached from a few roots and the search goes deep.
+         */
+        Graph(int n, int nrRoots, long seed)
+        {
+            Random r = new Random(seed);
+            outbound = new int[n][];
+            for (int ii = 0; ii < n; ii++)
+            {
+                int[] refs = new int[r.nextInt(5)];
+                for (int jj = 0; jj < refs.length; jj++)
+                    refs[jj] = r.nextInt(n);
+                if (ii % 1000 != 999 && ii + 1 < n)
+                {
+                    // chain to the next object
+                    int[] chained = new int[refs.length + 1];
+                    System.arraycopy(refs, 0, chained, 1, refs.length);
+                    chained[0] = ii + 1;
+                    refs = chained;
+                }
+                outbound[ii] = refs;
+            }
+            roots = new int[nrRoots];
+            for (int ii = 0; ii < nrRoots; ii++)
+                roots[ii] = r.nextInt(n);
+        }
+
+        public int[] get(int index)
+        {
+            return outbound[index];
+        }
+
+        public int size()
+        {
+            return outbound.length;
+        }
+
+        public void unload()
+        {}
+
+        public void close()
+        {}
+
+        public void delete()
+        {}
+    }
+
+    static boolean[] markSingle(Graph g)
+    {
+        boolean[] bits = new boolean[g.size()];
+        new ObjectMarker(g.roots, bits, g, new VoidProgressListener()).markSingleThreaded();
+        return bits;
+    }
+
+    static int count(boolean[] bits)
+    {
+        int count = 0;
+        for (boolean b : bits)
+            if (b)
+                count++;
+        return count;
+    }
+
+    @Test
+    public void workStealing() throws InterruptedException
+    {
+        Graph g = new Graph(100000, 20, 1);
+        boolean[] expected = markSingle(g);
+        for (int threads = 1; threads <= 8; threads <<= 1)
+        {
+            boolean[] bits = new boolean[g.size()];
+            int marked = new ObjectMarker(g.roots, bits, g, new VoidProgressListener()).markWorkStealing(threads);
+            assertArrayEquals("threads=" + threads, expected, bits); //$NON-NLS-1$
+            assertEquals(count(expected), marked);
+        }
+    }
+
+    @Test
+    public void localStacks() throws InterruptedException
+    {
+        Graph g = new Graph(100000, 20, 2);
+        boolean[] expected = markSingle(g);
+        boolean[] bits = new boolean[g.size()];
+        new ObjectMarker(g.roots, bits, g, new VoidProgressListener()).markLocalStacks(4);
+        assertArrayEquals(expected, bits);
+    }
+
+    /**
+     * Objects marked beforehand are not followed.
+     */
+    @Test
+    public void premarked() throws InterruptedException
+    {
+        Graph g = new Graph(10000, 1, 3);
+        int premarked = (g.roots[0] + 1) % g.size();
+        boolean[] expected = new boolean[g.size()];
+        expected[premarked] = true;
+        new ObjectMarker(g.roots, expected, g, new VoidProgressListener()).markSingleThreaded();
+
+        boolean[] bits = new boolean[g.size()];
+        bits[premarked] = true;
+        new ObjectMarker(g.roots, bits, g, new VoidProgressListener()).markWorkStealing(4);
+        assertArrayEquals(expected, bits);
+    }
+}
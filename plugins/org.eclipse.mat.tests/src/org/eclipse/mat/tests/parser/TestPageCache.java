@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.mat.parser.index.PageCache;
+import org.junit.Test;
+
+public class TestPageCache
+{
+    @Test
+    public void hitsAndMisses()
+    {
+        PageCache cache = new PageCache(1000, 1);
+        PageCache.Table table = cache.newTable(10);
+
+        assertNull(table.get(3));
+        table.put(3, "three", 100); //$NON-NLS-1$
+        assertEquals("three", table.get(3)); //$NON-NLS-1$
+        assertEquals("three", table.peek(3)); //$NON-NLS-1$
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(100, cache.getSize());
+
+        table.put(3, "drei", 50); //$NON-NLS-1$
+        assertEquals("drei", table.peek(3)); //$NON-NLS-1$
+        assertEquals(50, cache.getSize());
+
+        table.clear();
+        assertNull(table.peek(3));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void budget()
+    {
+        PageCache cache = new PageCache(1000, 1);
+        PageCache.Table table = cache.newTable(100);
+
+        for (int ii = 0; ii < 100; ii++)
+        {
+            table.put(ii, Integer.valueOf(ii), 100);
+            assertTrue(cache.getSize() <= 1000);
+        }
+        assertEquals(1000, cache.getSize());
+        assertEquals(90, cache.getEvictionCount());
+
+        int cached = 0;
+        for (int ii = 0; ii < 100; ii++)
+        {
+            if (table.peek(ii) != null)
+                cached++;
+        }
+        assertEquals(10, cached);
+    }
+
+    /**
+     * A page which is read again gets a second chance.
+     */
+    @Test
+    public void clock()
+    {
+        PageCache cache = new PageCache(400, 1);
+        PageCache.Table table = cache.newTable(100);
+
+        table.put(0, "hot", 100); //$NON-NLS-1$
+        for (int ii = 1; ii < 100; ii++)
+        {
+            assertNotNull(table.get(0));
+            table.put(ii, Integer.valueOf(ii), 100);
+        }
+        assertEquals("hot", table.peek(0)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void tablesShareBudget()
+    {
+        PageCache cache = new PageCache(1000, 4);
+        List<PageCache.Table> tables = new ArrayList<PageCache.Table>();
+        for (int ii = 0; ii < 10; ii++)
+        {
+            PageCache.Table table = cache.newTable(100);
+            tables.add(table);
+            for (int jj = 0; jj < 100; jj++)
+                table.put(jj, Integer.valueOf(jj), 10);
+        }
+        assertTrue(cache.getSize() <= 1000);
+
+        for (PageCache.Table table : tables)
+            table.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void concurrent() throws InterruptedException
+    {
+        final PageCache cache = new PageCache(5000, 8);
+        final PageCache.Table table = cache.newTable(1000);
+        final AtomicInteger errors = new AtomicInteger();
+
+        Thread threads[] = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            final int seed = ii;
+            threads[ii] = new Thread() {
+                public void run()
+                {
+                    for (int jj = 0; jj < 100000; jj++)
+                    {
+                        int page = (jj * 31 + seed * 17) % 1000;
+                        Object o = table.get(page);
+                        if (o == null)
+                            table.put(page, Integer.valueOf(page), 50);
+                        else if (((Integer) o).intValue() != page)
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(0, errors.get());
+        assertEquals(4 * 100000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getSize() <= 5000);
+    }
+}
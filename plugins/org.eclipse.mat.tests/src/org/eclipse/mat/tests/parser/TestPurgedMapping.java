@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.mat.collect.BitField;
+import org.eclipse.mat.parser.internal.util.PurgedMapping;
+import org.junit.Test;
+
+public class TestPurgedMapping
+{
+    @Test
+    public void randomObjects()
+    {
+        Random random = new Random(1);
+        for (int size : new int[] { 1, 63, 64, 65, 1000, 4099 })
+        {
+            boolean[] reachable = new boolean[size];
+            for (int ii = 0; ii < size; ii++)
+                reachable[ii] = random.nextInt(3) != 0;
+            check(reachable);
+        }
+    }
+
+    @Test
+    public void noObjects()
+    {
+        PurgedMapping mapping = check(new boolean[0]);
+        assertEquals(0, mapping.nextReachable(0));
+    }
+
+    @Test
+    public void allOrNoneReachable()
+    {
+        boolean[] reachable = new boolean[200];
+        check(reachable);
+        Arrays.fill(reachable, true);
+        check(reachable);
+    }
+
+    /**
+     * Reachable objects only in the last word, after empty words.
+     */
+    @Test
+    public void lastWord()
+    {
+        boolean[] reachable = new boolean[300];
+        reachable[299] = true;
+        PurgedMapping mapping = check(reachable);
+        assertEquals(299, mapping.nextReachable(0));
+        assertEquals(0, mapping.get(299));
+    }
+
+    /**
+     * Compares the mapping with an array of the new ids.
+     */
+    private PurgedMapping check(boolean[] reachable)
+    {
+        // a bit field of size 0 would be huge
+        BitField bits = new BitField(Math.max(reachable.length, 1));
+        int[] expected = new int[reachable.length];
+        int next = 0;
+        for (int ii = 0; ii < reachable.length; ii++)
+        {
+            if (reachable[ii])
+                bits.set(ii);
+            expected[ii] = reachable[ii] ? next++ : -1;
+        }
+        PurgedMapping mapping = new PurgedMapping(bits, reachable.length);
+
+        assertEquals(reachable.length, mapping.size());
+        assertEquals(next, mapping.getNumberOfReachableObjects());
+        assertTrue(Arrays.equals(expected, mapping.toArray()));
+        assertTrue(Arrays.equals(expected, mapping.getNext(0, reachable.length)));
+
+        int nextReachable = reachable.length;
+        for (int ii = reachable.length - 1; ii >= 0; ii--)
+        {
+            assertEquals(reachable[ii], mapping.isReachable(ii));
+            assertEquals(expected[ii], mapping.get(ii));
+            if (reachable[ii])
+                nextReachable = ii;
+            assertEquals(nextReachable, mapping.nextReachable(ii));
+        }
+        assertEquals(reachable.length, mapping.nextReachable(reachable.length));
+        return mapping;
+    }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.mat.parser.internal.util.ScratchIntArray;
+import org.junit.Test;
+
+public class TestScratchIntArray
+{
+    @Test
+    public void heap()
+    {
+        ScratchIntArray array = ScratchIntArray.create(1000);
+        assertFalse(array.isMapped());
+        check(array);
+    }
+
+    @Test
+    public void mapped() throws IOException
+    {
+        File file = File.createTempFile("scratch_", ".index"); //$NON-NLS-1$ //$NON-NLS-2$
+        ScratchIntArray array = ScratchIntArray.create(file, 1000);
+        assertTrue(array.isMapped());
+        assertEquals(4000, file.length());
+        check(array);
+    }
+
+    private void check(ScratchIntArray array)
+    {
+        assertEquals(1000, array.length());
+        for (int ii = 0; ii < array.length(); ii++)
+            assertEquals(0, array.get(ii));
+
+        array.fill(-1);
+        for (int ii = 0; ii < array.length(); ii += 7)
+            array.set(ii, ii * 31);
+        int[] copy = array.toArray();
+        for (int ii = 0; ii < array.length(); ii++)
+        {
+            int expected = ii % 7 == 0 ? ii * 31 : -1;
+            assertEquals(expected, array.get(ii));
+            assertEquals(expected, copy[ii]);
+        }
+        array.close();
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.queries;
+
+import org.eclipse.mat.query.IQuery;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.annotations.Argument;
+import org.eclipse.mat.query.annotations.Category;
+import org.eclipse.mat.query.annotations.CommandName;
+import org.eclipse.mat.query.annotations.Help;
+import org.eclipse.mat.query.results.TextResult;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Waits until a number of these queries run at the same time, to show that a
+ * report executes its queries concurrently.
+ */
+@CommandName("concurrent_test")
+@Category("Test")
+@Help("Wait for other queries running at the same time")
+public class ConcurrentQuery implements IQuery
+{
+    private static final Object lock = new Object();
+    private static int running;
+    private static int peak;
+
+    @Argument
+    public String name;
+
+    @Argument(isMandatory = false)
+    public int expected = 1;
+
+    @Argument(isMandatory = false)
+    public int timeout = 10000;
+
+    public IResult execute(IProgressListener listener) throws Exception
+    {
+        synchronized (lock)
+        {
+            running++;
+            peak = Math.max(peak, running);
+            lock.notifyAll();
+
+            try
+            {
+                long end = System.currentTimeMillis() + timeout;
+                long wait;
+                while (peak < expected && (wait = end - System.currentTimeMillis()) > 0)
+                    lock.wait(wait);
+            }
+            finally
+            {
+                running--;
+            }
+        }
+        return new TextResult("concurrent result " + name);
+    }
+
+    /**
+     * @return the most queries which have been running at the same time since
+     *         the last reset
+     */
+    public static int getPeak()
+    {
+        synchronized (lock)
+        {
+            return peak;
+        }
+    }
+
+    public static void reset()
+    {
+        synchronized (lock)
+        {
+            peak = 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.queries;
+
+import java.io.Serializable;
+
+import org.eclipse.mat.query.IQuery;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.ResultMetaData;
+import org.eclipse.mat.query.annotations.Argument;
+import org.eclipse.mat.query.annotations.Category;
+import org.eclipse.mat.query.annotations.CommandName;
+import org.eclipse.mat.query.annotations.Help;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.query.IHeapObjectArgument;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Counts objects slowly, so that the result is kept by the query result cache.
+ */
+@CommandName("slow_count_test")
+@Category("Test")
+@Help("Count objects after a delay")
+public class SlowCountQuery implements IQuery
+{
+    /** the number of times the query has been executed */
+    public static int executions;
+
+    @Argument
+    public ISnapshot snapshot;
+
+    @Argument(isMandatory = false)
+    public IHeapObjectArgument objects;
+
+    @Argument(isMandatory = false)
+    public int delay = 600;
+
+    public IResult execute(IProgressListener listener) throws Exception
+    {
+        synchronized (SlowCountQuery.class)
+        {
+            executions++;
+        }
+        Thread.sleep(delay);
+
+        int count = 0;
+        if (objects == null)
+        {
+            count = snapshot.getSnapshotInfo().getNumberOfObjects();
+        }
+        else
+        {
+            for (int[] ids : objects)
+                count += ids.length;
+        }
+        return new Count(count, listener.isCanceled());
+    }
+
+    public static class Count implements IResult, Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        public final int count;
+        public final boolean partial;
+
+        public Count(int count, boolean partial)
+        {
+            this.count = count;
+            this.partial = partial;
+        }
+
+        public ResultMetaData getResultMetaData()
+        {
+            return null;
+        }
+    }
+}
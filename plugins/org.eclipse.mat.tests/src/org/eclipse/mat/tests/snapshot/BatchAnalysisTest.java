@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.mat.internal.apps.ParseSnapshotApp;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Test;
+
+/**
+ * Tests the analysis of many dumps in one run of the parse application, and
+ * that a dump opened by several threads at once is parsed once.
+ */
+@SuppressWarnings("restriction")
+public class BatchAnalysisTest
+{
+    private static final String[] DUMPS = { TestSnapshots.SUN_JDK6_18_32BIT, TestSnapshots.SUN_JDK5_13_32BIT,
+                    TestSnapshots.ORACLE_JDK8_05_64BIT };
+
+    @Test
+    public void testList() throws Exception
+    {
+        check("-batch_threads=2");
+    }
+
+    /**
+     * Every dump is larger than the budget, so the dumps are analyzed one
+     * after another.
+     */
+    @Test
+    public void testSmallMemoryBudget() throws Exception
+    {
+        check("-batch_threads=3", "-batch_memory=1");
+    }
+
+    /**
+     * A dump in the spool directory is analyzed and marked as done, so it is
+     * not analyzed again after a restart until it is replaced.
+     */
+    @Test
+    public void testSpool() throws Exception
+    {
+        File directory = TestSnapshots.createGeneratedName("batch", null);
+        File spool = new File(directory, "spool");
+        assertTrue(spool.mkdir());
+        File report = writeReport(directory);
+        File dump = copy(DUMPS[0], spool);
+        String name = dump.getName();
+        File zip = new File(spool, name.substring(0, name.lastIndexOf('.')) + "_batch_test.zip");
+        File marker = new File(dump.getPath() + ".done");
+
+        String[] args = { "-batch_spool=" + spool.getPath(), "-batch_poll=1", report.getPath() };
+        spool(args, marker, true);
+        assertTrue(zip.exists());
+        assertEquals(dump.lastModified(), marker.lastModified());
+
+        // restarted: the dump is not analyzed again
+        assertTrue(zip.delete());
+        spool(args, zip, false);
+        assertFalse(zip.exists());
+
+        // replaced: the dump is analyzed again
+        assertTrue(dump.setLastModified(dump.lastModified() - 60000));
+        spool(args, zip, true);
+        assertEquals(dump.lastModified(), marker.lastModified());
+    }
+
+    @Test
+    public void testConcurrentOpen() throws Exception
+    {
+        File directory = TestSnapshots.createGeneratedName("batch", null);
+        final File dump = copy(DUMPS[0], directory);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Callable<ISnapshot> open = new Callable<ISnapshot>()
+            {
+                public ISnapshot call() throws Exception
+                {
+                    return SnapshotFactory.openSnapshot(dump, Collections.<String, String> emptyMap(),
+                                    new VoidProgressListener());
+                }
+            };
+            Future<ISnapshot> first = executor.submit(open);
+            Future<ISnapshot> second = executor.submit(open);
+
+            ISnapshot snapshot = first.get();
+            assertSame(snapshot, second.get());
+            assertEquals(TestSnapshots.getSnapshot(DUMPS[0], false).getSnapshotInfo().getNumberOfObjects(), snapshot
+                            .getSnapshotInfo().getNumberOfObjects());
+            SnapshotFactory.dispose(snapshot);
+            SnapshotFactory.dispose(snapshot);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // internal helper
+    // //////////////////////////////////////////////////////////////
+
+    /**
+     * Analyze copies of the dumps, listed twice, with a report and check that
+     * each is parsed and reported.
+     */
+    private void check(String... options) throws Exception
+    {
+        File directory = TestSnapshots.createGeneratedName("batch", null);
+        File[] dumps = new File[DUMPS.length];
+        StringBuilder list = new StringBuilder("# dumps\n");
+        for (int ii = 0; ii < DUMPS.length; ii++)
+        {
+            dumps[ii] = copy(DUMPS[ii], directory);
+            list.append(dumps[ii].getPath()).append('\n');
+        }
+        list.append(dumps[0].getPath()).append('\n');
+
+        File listFile = new File(directory, "dumps.txt");
+        write(listFile, list.toString());
+        File report = writeReport(directory);
+
+        String[] args = new String[options.length + 2];
+        args[0] = "-batch_list=" + listFile.getPath();
+        System.arraycopy(options, 0, args, 1, options.length);
+        args[args.length - 1] = report.getPath();
+        assertEquals(IApplication.EXIT_OK, new ParseSnapshotApp().start(context(args)));
+
+        for (File dump : dumps)
+        {
+            String name = dump.getName();
+            String prefix = new File(directory, name.substring(0, name.lastIndexOf('.'))).getPath();
+            assertTrue(prefix, new File(prefix + ".index").exists());
+            assertTrue(prefix, new File(prefix + "_batch_test.zip").exists());
+        }
+    }
+
+    /**
+     * Run the application on the spool directory until the file exists, or
+     * for a few looks if it is not expected to.
+     */
+    private static void spool(String[] args, File file, boolean expected) throws Exception
+    {
+        final ParseSnapshotApp app = new ParseSnapshotApp();
+        final IApplicationContext context = context(args);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Object> result = executor.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    return app.start(context);
+                }
+            });
+
+            long end = System.currentTimeMillis() + (expected ? 120000 : 3000);
+            while (!file.exists() && System.currentTimeMillis() < end)
+                Thread.sleep(100);
+            assertEquals(file.getPath(), expected, file.exists());
+
+            // the application may not yet be watching the spool directory
+            while (true)
+            {
+                app.stop();
+                try
+                {
+                    assertEquals(IApplication.EXIT_OK, result.get(100, TimeUnit.MILLISECONDS));
+                    break;
+                }
+                catch (TimeoutException e)
+                {
+                    // stop again
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static File writeReport(File directory) throws IOException
+    {
+        File report = new File(directory, "report.xml");
+        write(report, "<section name=\"Batch\" xmlns=\"http://www.eclipse.org/mat/report.xsd\">\n"
+                        + "<param key=\"filename_suffix\" value=\"batch_test\" />\n"
+                        + "<query name=\"Overview\"><command>heap_dump_overview</command></query>\n"
+                        + "</section>\n");
+        return report;
+    }
+
+    private static File copy(String name, File directory) throws IOException
+    {
+        File source = TestSnapshots.getResourceFile(name);
+        File dump = new File(directory, source.getName());
+        TestSnapshots.copyFile(source, dump);
+        return dump;
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            out.write(text);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static IApplicationContext context(final String[] args)
+    {
+        return (IApplicationContext) Proxy.newProxyInstance(BatchAnalysisTest.class.getClassLoader(),
+                        new Class<?>[] { IApplicationContext.class }, new InvocationHandler()
+                        {
+                            public Object invoke(Object proxy, Method method, Object[] methodArgs)
+                            {
+                                if ("getArguments".equals(method.getName()))
+                                    return Collections.singletonMap(IApplicationContext.APPLICATION_ARGS, args);
+                                return null;
+                            }
+                        });
+    }
+}
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
@@ -37,13 +38,16 @@ import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.collect.SetInt;
 import org.eclipse.mat.query.IResult;
 import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.IStringIndex;
 import org.eclipse.mat.snapshot.SnapshotFactory;
 import org.eclipse.mat.snapshot.model.GCRootInfo;
 import org.eclipse.mat.snapshot.model.GCRootInfo.Type;
 import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.snapshot.model.IStackFrame;
 import org.eclipse.mat.snapshot.model.IThreadStack;
+import org.eclipse.mat.snapshot.model.PrettyPrinter;
 import org.eclipse.mat.snapshot.query.SnapshotQuery;
 import org.eclipse.mat.tests.TestSnapshots;
 import org.eclipse.mat.util.VoidProgressListener;
@@ -214,6 +218,112 @@ public class GeneralSnapshotTests
         }
     }
 
+    /**
+     * Field values read for many objects at once are those of the objects.
+     */
+    @Test
+    public void fieldValues() throws SnapshotException
+    {
+        int[] objectIds = stringsWithFields();
+        long[] hashes = snapshot.getPrimitiveFieldValues(objectIds, "hash");
+        int[] values = snapshot.getReferenceFieldIds(objectIds, "value");
+        for (int ii = 0; ii < objectIds.length; ii++)
+        {
+            IObject o = snapshot.getObject(objectIds[ii]);
+            assertEquals(((Number) o.resolveValue("hash")).longValue(), hashes[ii]);
+            IObject value = (IObject) o.resolveValue("value");
+            assertEquals(value != null ? value.getObjectId() : -1, values[ii]);
+        }
+    }
+
+    /**
+     * Once all instances of a class are read the values are stored as a
+     * column, which then also serves a part of the instances in any order.
+     */
+    @Test
+    public void fieldValuesStored() throws SnapshotException
+    {
+        int[] objectIds = stringsWithFields();
+        long[] hashes = snapshot.getPrimitiveFieldValues(objectIds, "hash");
+        int[] values = snapshot.getReferenceFieldIds(objectIds, "value");
+        assertTrue(new File(snapshot.getSnapshotInfo().getPrefix() + "fields.index").exists());
+
+        int[] part = new int[(objectIds.length + 2) / 3];
+        for (int ii = 0; ii < part.length; ii++)
+            part[ii] = objectIds[objectIds.length - 1 - 3 * ii];
+        long[] partHashes = snapshot.getPrimitiveFieldValues(part, "hash");
+        int[] partValues = snapshot.getReferenceFieldIds(part, "value");
+        for (int ii = 0; ii < part.length; ii++)
+        {
+            assertEquals(hashes[objectIds.length - 1 - 3 * ii], partHashes[ii]);
+            assertEquals(values[objectIds.length - 1 - 3 * ii], partValues[ii]);
+        }
+    }
+
+    /**
+     * The string index holds the same values as the strings themselves.
+     */
+    @Test
+    public void stringIndex() throws SnapshotException
+    {
+        IStringIndex index = snapshot.getSnapshotAddons(IStringIndex.class);
+        assumeTrue(index != null);
+        index.build(new VoidProgressListener());
+        assertTrue(index.isAvailable());
+
+        Pattern pattern = Pattern.compile("java\\..*");
+        SetInt matching = new SetInt();
+        int strings = 0;
+        Collection<IClass> classes = snapshot.getClassesByName("java.lang.String", false);
+        if (classes != null)
+        {
+            for (IClass clazz : classes)
+            {
+                for (int objectId : clazz.getObjectIds())
+                {
+                    // as the resolver for strings, without the index
+                    String value = PrettyPrinter.objectAsString(snapshot.getObject(objectId), 1024);
+                    int valueId = index.getValueId(objectId);
+                    assertTrue(valueId >= 0);
+                    assertEquals(value, index.getValue(valueId));
+                    if (value != null && pattern.matcher(value).matches())
+                        matching.add(objectId);
+                    strings++;
+                }
+            }
+        }
+        assertEquals(strings, index.size());
+
+        int[] found = index.getObjectIds(pattern, new VoidProgressListener());
+        assertEquals(matching.size(), found.length);
+        for (int objectId : found)
+            assertTrue(matching.contains(objectId));
+
+        int total = 0;
+        for (int valueId = 0; valueId < index.getNumberOfValues(); valueId++)
+            total += index.getCount(valueId);
+        assertEquals(strings, total);
+    }
+
+    @Test(expected = SnapshotException.class)
+    public void fieldValuesWrongType() throws SnapshotException
+    {
+        snapshot.getPrimitiveFieldValues(stringsWithFields(), "value");
+    }
+
+    private int[] stringsWithFields() throws SnapshotException
+    {
+        Collection<IClass> classes = snapshot.getClassesByName("java.lang.String", false);
+        assumeTrue(classes != null && classes.size() == 1);
+        int[] objectIds = classes.iterator().next().getObjectIds();
+        assumeTrue(objectIds.length > 0);
+        IObject first = snapshot.getObject(objectIds[0]);
+        // some dumps have no field values
+        assumeTrue(first instanceof IInstance && ((IInstance) first).getField("hash") != null
+                        && ((IInstance) first).getField("value") != null);
+        return objectIds;
+    }
+
     @Test
     public void totalClasses() throws SnapshotException
     {
@@ -9,6 +9,7 @@
  *    SAP AG - initial API and implementation
  *    IBM Corporation - test AS clause
  *    IBM Corporation - test instanceof with object id/address
+ *    agent - test index conditions and EXPLAIN
  *******************************************************************************/
 package org.eclipse.mat.tests.snapshot;
 
@@ -17,15 +18,18 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
 import org.eclipse.mat.query.IResultTable;
 import org.eclipse.mat.snapshot.IOQLQuery;
 import org.eclipse.mat.snapshot.ISnapshot;
@@ -376,6 +380,216 @@ public class OQLTest
         assert objectIds.length == 3;
     }
     
+    @Test
+    public void testWhereIndexConditions() throws SnapshotException
+    {
+        // answered from the indexes, and the same where clause computed on the objects
+        String[][] pairs = {
+                        { "SELECT * FROM java.lang.String s WHERE s.@retainedHeapSize > 64 and s.@objectAddress > 0",
+                                        "SELECT * FROM java.lang.String s WHERE s.@retainedHeapSize + 0 > 64 and s.@objectAddress + 0 > 0" },
+                        { "SELECT * FROM INSTANCEOF java.util.Dictionary s WHERE 24 <= s.@usedHeapSize and s.@displayName != null",
+                                        "SELECT * FROM INSTANCEOF java.util.Dictionary s WHERE 24 <= s.@usedHeapSize + 0 and s.@displayName != null" },
+                        { "SELECT * FROM java.lang.String s WHERE dominatorof(s) = null",
+                                        "SELECT * FROM java.lang.String s WHERE eval(dominatorof(s)) = null" },
+                        { "SELECT * FROM java.lang.String s WHERE dominatorof(s) != null and dominatorof(s).@retainedHeapSize > 1000.5",
+                                        "SELECT * FROM java.lang.String s WHERE eval(dominatorof(s)) != null and eval(dominatorof(s)).@retainedHeapSize > 1000.5" } };
+        for (String[] pair : pairs)
+        {
+            int[] indexed = (int[]) execute(pair[0]);
+            int[] computed = (int[]) execute(pair[1]);
+            assertTrue(pair[0], indexed.length > 0);
+            assertTrue(pair[0], Arrays.equals(indexed, computed));
+        }
+    }
+
+    @Test
+    public void testWhereFieldConditions() throws SnapshotException
+    {
+        // fields read for all objects at once, and the same where clause computed on the objects
+        String[][] pairs = {
+                        { "SELECT * FROM java.lang.String s WHERE s.count > 10 and s.offset = 0",
+                                        "SELECT * FROM java.lang.String s WHERE s.count + 0 > 10 and s.offset + 0 = 0" },
+                        { "SELECT * FROM INSTANCEOF java.util.Hashtable s WHERE 3 < s.count and s.@displayName != null",
+                                        "SELECT * FROM INSTANCEOF java.util.Hashtable s WHERE 3 < s.count + 0 and s.@displayName != null" },
+                        { "SELECT * FROM java.util.HashMap m WHERE m.loadFactor >= 0.75 and m.size > 1",
+                                        "SELECT * FROM java.util.HashMap m WHERE m.loadFactor + 0 >= 0.75 and m.size + 0 > 1" } };
+        for (String[] pair : pairs)
+        {
+            int[] bulk = (int[]) execute(pair[0]);
+            int[] computed = (int[]) execute(pair[1]);
+            assertTrue(pair[0], bulk.length > 0);
+            assertTrue(pair[0], Arrays.equals(bulk, computed));
+        }
+
+        String plan = (String) execute("EXPLAIN SELECT * FROM java.lang.String s WHERE s.count > 10");
+        assertTrue(plan, plan.contains("(s.count > 10) [FIELD]"));
+    }
+
+    /**
+     * With many objects the where clause and the select list of OBJECTS are
+     * evaluated in partitions on helper threads. The rows must be those of
+     * an evaluation in order, in the same order.
+     */
+    @Test
+    public void testParallelWhere() throws SnapshotException
+    {
+        ISnapshot snapshot = TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK6_18_32BIT, false);
+        // the references of all objects, more than fit in a few partitions
+        String from = "FROM OBJECTS (SELECT OBJECTS outbounds(o) FROM INSTANCEOF java.lang.Object o) s";
+        // without a where clause the objects are taken as they are
+        int[] objectIds = (int[]) execute(snapshot, "SELECT * " + from);
+        assertThat(objectIds.length, greaterThanOrEqualTo(3 * 8192));
+
+        ArrayInt expected = new ArrayInt();
+        for (int objectId : objectIds)
+        {
+            if (snapshot.getHeapSize(objectId) > 16)
+                expected.add(objectId);
+        }
+        assertThat(expected.size(), greaterThanOrEqualTo(2 * 8192));
+
+        int[] rows = (int[]) execute(snapshot, "SELECT * " + from + " WHERE s.@usedHeapSize + 0 > 16");
+        assertTrue(Arrays.equals(expected.toArray(), rows));
+
+        int[] objects = (int[]) execute(snapshot, "SELECT OBJECTS s " + from + " WHERE s.@usedHeapSize + 0 > 16");
+        assertTrue(Arrays.equals(expected.toArray(), objects));
+    }
+
+    /**
+     * java.net.SocksSocketImpl declares port, as does java.net.SocketImpl.
+     * The path expression reads the field of the superclass, so the where
+     * clause must not be evaluated from the field of the subclass read for
+     * all objects at once.
+     */
+    @Test
+    public void testWhereShadowedField() throws SnapshotException
+    {
+        ISnapshot snapshot = TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK6_18_32BIT, false);
+        String[][] pairs = {
+                        { "SELECT * FROM java.net.SocksSocketImpl s WHERE s.port = 1080",
+                                        "SELECT * FROM java.net.SocksSocketImpl s WHERE s.port + 0 = 1080" },
+                        { "SELECT * FROM java.net.SocksSocketImpl s WHERE s.port > 2000",
+                                        "SELECT * FROM java.net.SocksSocketImpl s WHERE s.port + 0 > 2000" } };
+        for (String[] pair : pairs)
+        {
+            Object planned = SnapshotFactory.createQuery(pair[0]).execute(snapshot, new VoidProgressListener());
+            Object computed = SnapshotFactory.createQuery(pair[1]).execute(snapshot, new VoidProgressListener());
+            assertTrue(pair[0], Arrays.equals((int[]) planned, (int[]) computed));
+        }
+        int[] objectIds = (int[]) SnapshotFactory.createQuery("SELECT * FROM java.net.SocksSocketImpl s WHERE s.port > 2000")
+                        .execute(snapshot, new VoidProgressListener());
+        assertTrue(objectIds != null && objectIds.length > 0);
+
+        // the snapshot reads the field of the subclass, as Java does
+        long[] ports = snapshot.getPrimitiveFieldValues(objectIds, "port");
+        for (long port : ports)
+            assertEquals(1080L, port);
+    }
+
+    @Test
+    public void testExplain() throws SnapshotException
+    {
+        String plan = (String) execute("EXPLAIN SELECT * FROM java.lang.String s WHERE s.@retainedHeapSize > 64 and toString(s) != \"\"");
+        assertTrue(plan, plan.contains("(s.@retainedHeapSize > 64) [O2RETAINED]"));
+        assertTrue(plan, plan.contains("(toString(s) != \"\")"));
+
+        // the keyword keeps the position of parse errors
+        try
+        {
+            SnapshotFactory.createQuery("explain SELECT * FROM x WHERE");
+            assert false : "parse exception expected";
+        }
+        catch (OQLParseException e)
+        {
+            assertEquals(29, e.getColumn());
+        }
+    }
+
+    @Test
+    public void testAggregate() throws SnapshotException
+    {
+        IResultTable table = (IResultTable) execute("SELECT count(), sum(s.@usedHeapSize), min(s.@usedHeapSize), max(s.@usedHeapSize), avg(s.@usedHeapSize) FROM java.lang.String s");
+        assertEquals(1, table.getRowCount());
+        Object row = table.getRow(0);
+        assertEquals(492L, table.getColumnValue(row, 0));
+        assertEquals(19680L, table.getColumnValue(row, 1));
+        assertEquals(40L, table.getColumnValue(row, 2));
+        assertEquals(40L, table.getColumnValue(row, 3));
+        assertEquals(40.0, table.getColumnValue(row, 4));
+    }
+
+    /**
+     * Aggregates without GROUP BY give one row, also when no object is
+     * selected.
+     */
+    @Test
+    public void testAggregateNoObjects() throws SnapshotException
+    {
+        IResultTable table = (IResultTable) execute("SELECT count(), sum(s.@usedHeapSize), min(s.@usedHeapSize), s.@objectId FROM java.lang.String s WHERE s.@usedHeapSize < 0");
+        assertEquals(1, table.getRowCount());
+        Object row = table.getRow(0);
+        assertEquals(0L, table.getColumnValue(row, 0));
+        assertNull(table.getColumnValue(row, 1));
+        assertNull(table.getColumnValue(row, 2));
+        assertNull(table.getColumnValue(row, 3));
+
+        table = (IResultTable) execute("SELECT count() FROM no.such.Class s");
+        assertEquals(1, table.getRowCount());
+        assertEquals(0L, table.getColumnValue(table.getRow(0), 0));
+
+        // no groups
+        assertNull(execute("SELECT count() FROM java.lang.String s WHERE s.@usedHeapSize < 0 GROUP BY classof(s)"));
+    }
+
+    /**
+     * A sum which does not fit in a long is exact.
+     */
+    @Test
+    public void testAggregateSumOverflow() throws SnapshotException
+    {
+        IResultTable table = (IResultTable) execute("SELECT count(), sum(4611686018427387904L), avg(4611686018427387904L), sum(-4611686018427387904L) FROM java.lang.String s");
+        Object row = table.getRow(0);
+        long count = (Long) table.getColumnValue(row, 0);
+        assertTrue(count > 2);
+        BigInteger expected = BigInteger.valueOf(4611686018427387904L).multiply(BigInteger.valueOf(count));
+        assertEquals(expected, table.getColumnValue(row, 1));
+        assertEquals(4611686018427387904.0, (Double) table.getColumnValue(row, 2), 1e6);
+        assertEquals(expected.negate(), table.getColumnValue(row, 3));
+
+        // no overflow
+        table = (IResultTable) execute("SELECT sum(9223372036854775807L) FROM java.lang.String s WHERE s.@objectId = " + ((int[]) execute("SELECT * FROM java.lang.String s"))[0]);
+        assertEquals(Long.MAX_VALUE, table.getColumnValue(table.getRow(0), 0));
+    }
+
+    @Test
+    public void testGroupBy() throws SnapshotException
+    {
+        IResultTable table = (IResultTable) execute("SELECT classof(s).@name, count(), sum(s.@usedHeapSize) FROM INSTANCEOF java.util.AbstractMap s GROUP BY classof(s)");
+        assertEquals(7, table.getRowCount());
+        long total = 0;
+        for (int ii = 0; ii < table.getRowCount(); ii++)
+        {
+            Object row = table.getRow(ii);
+            total += (Long) table.getColumnValue(row, 1);
+            if ("java.util.HashMap".equals(table.getColumnValue(row, 0)))
+            {
+                assertEquals(18L, table.getColumnValue(row, 1));
+                assertEquals(1152L, table.getColumnValue(row, 2));
+            }
+        }
+        assertEquals(25, total);
+
+        table = (IResultTable) execute("SELECT s.value.@length AS len, count() AS n FROM java.lang.String s WHERE s.value.@length < 5 GROUP BY s.value.@length");
+        assertEquals(5, table.getRowCount());
+        assertEquals("len", table.getColumns()[0].getLabel());
+    }
+
+    @Test(expected = SnapshotException.class)
+    public void testAggregateInExpression() throws SnapshotException
+    {
+        execute("SELECT count() + 1 FROM java.lang.String s");
+    }
+
     /**
      * Check reads of attributes declared in subclasses
      * @throws SnapshotException
@@ -943,10 +1157,14 @@ public class OQLTest
     // //////////////////////////////////////////////////////////////
 
     private Object execute(String oql) throws SnapshotException
+    {
+        return execute(TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK5_64BIT, false), oql);
+    }
+
+    private Object execute(ISnapshot snapshot, String oql) throws SnapshotException
     {
         try
         {
-            ISnapshot snapshot = TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK5_64BIT, false);
             IOQLQuery query = SnapshotFactory.createQuery(oql);
             return query.execute(snapshot, new VoidProgressListener());
         }
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Parses copies of a dump with one and with several threads, for the second
+ * pass of the HPROF parser and for the dominator tree, and compares the
+ * indexes entry by entry.
+ */
+@RunWith(value = Parameterized.class)
+public class ParallelParseTest
+{
+    /** the threads extracting the objects in the second pass of the HPROF parser */
+    private static final String PASS2_THREADS = "hprofPass2Threads";
+    /** the threads calculating the dominator tree */
+    private static final String DOMINATOR_TREE_THREADS = "org.eclipse.mat.dominatorTreeThreads";
+
+    @Parameters
+    public static List<Object[]> data()
+    {
+        return Arrays.asList(new Object[][] { { TestSnapshots.SUN_JDK6_32BIT }, { TestSnapshots.SUN_JDK5_64BIT },
+                        { TestSnapshots.SUN_JDK6_18_32BIT }, { TestSnapshots.SUN_JDK6_30_64BIT_COMPRESSED_OOPS },
+                        { TestSnapshots.ORACLE_JDK8_05_64BIT }, { TestSnapshots.ORACLE_JDK7_21_64BIT } });
+    }
+
+    final String dumpName;
+
+    public ParallelParseTest(String dumpName)
+    {
+        this.dumpName = dumpName;
+    }
+
+    /**
+     * The identifiers, classes, sizes and outbound references of the objects
+     * found by the second pass of the HPROF parser.
+     */
+    @Test
+    public void testPass2() throws SnapshotException, IOException
+    {
+        ISnapshot serial = parse(PASS2_THREADS, 1);
+        try
+        {
+            ISnapshot parallel = parse(PASS2_THREADS, 4);
+            try
+            {
+                int numberOfObjects = serial.getSnapshotInfo().getNumberOfObjects();
+                assertEquals(numberOfObjects, parallel.getSnapshotInfo().getNumberOfObjects());
+                for (int objectId = 0; objectId < numberOfObjects; objectId++)
+                {
+                    String message = dumpName + " " + objectId;
+                    assertEquals(message, serial.mapIdToAddress(objectId), parallel.mapIdToAddress(objectId));
+                    assertEquals(message, serial.getClassOf(objectId).getObjectId(), parallel.getClassOf(objectId)
+                                    .getObjectId());
+                    assertEquals(message, serial.getHeapSize(objectId), parallel.getHeapSize(objectId));
+                    assertArrayEquals(message, serial.getOutboundReferentIds(objectId), parallel
+                                    .getOutboundReferentIds(objectId));
+                }
+            }
+            finally
+            {
+                SnapshotFactory.dispose(parallel);
+            }
+        }
+        finally
+        {
+            SnapshotFactory.dispose(serial);
+        }
+    }
+
+    /**
+     * The immediate dominators, the objects they dominate and the retained
+     * sizes found by the dominator tree calculation.
+     */
+    @Test
+    public void testDominatorTree() throws SnapshotException, IOException
+    {
+        ISnapshot serial = parse(DOMINATOR_TREE_THREADS, 1);
+        try
+        {
+            ISnapshot parallel = parse(DOMINATOR_TREE_THREADS, 4);
+            try
+            {
+                int numberOfObjects = serial.getSnapshotInfo().getNumberOfObjects();
+                assertEquals(numberOfObjects, parallel.getSnapshotInfo().getNumberOfObjects());
+                for (int objectId = 0; objectId < numberOfObjects; objectId++)
+                {
+                    String message = dumpName + " " + objectId;
+                    assertEquals(message, serial.getImmediateDominatorId(objectId), parallel
+                                    .getImmediateDominatorId(objectId));
+                    assertArrayEquals(message, serial.getImmediateDominatedIds(objectId), parallel
+                                    .getImmediateDominatedIds(objectId));
+                    assertEquals(message, serial.getRetainedHeapSize(objectId), parallel
+                                    .getRetainedHeapSize(objectId));
+                }
+            }
+            finally
+            {
+                SnapshotFactory.dispose(parallel);
+            }
+        }
+        finally
+        {
+            SnapshotFactory.dispose(serial);
+        }
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // internal helper
+    // //////////////////////////////////////////////////////////////
+
+    /**
+     * Parse a fresh copy of the dump with the system property for the number
+     * of threads set.
+     */
+    private ISnapshot parse(String property, int threads) throws SnapshotException, IOException
+    {
+        File source = TestSnapshots.getResourceFile(dumpName);
+        File dump = new File(TestSnapshots.createGeneratedName("junit", null), source.getName());
+        TestSnapshots.copyFile(source, dump);
+
+        String old = System.setProperty(property, Integer.toString(threads));
+        try
+        {
+            return SnapshotFactory.openSnapshot(dump, new VoidProgressListener());
+        }
+        finally
+        {
+            if (old != null)
+                System.setProperty(property, old);
+            else
+                System.clearProperty(property);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.text.NumberFormat;
+import java.util.List;
+
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.results.DisplayFileResult;
+import org.eclipse.mat.report.QuerySpec;
+import org.eclipse.mat.report.SectionSpec;
+import org.eclipse.mat.report.Spec;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.query.SnapshotQuery;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.tests.queries.ConcurrentQuery;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that reports run their queries concurrently and still render the
+ * results in the order of the report.
+ */
+public class ParallelReportTest
+{
+    ISnapshot snapshot;
+
+    @Before
+    public void setUp()
+    {
+        snapshot = TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK6_18_32BIT, false);
+        ConcurrentQuery.reset();
+    }
+
+    /**
+     * The queries of the nested sections run together with the queries of the
+     * report.
+     */
+    @Test
+    public void testNestedSections() throws Exception
+    {
+        int expected = Math.min(4, Runtime.getRuntime().availableProcessors());
+        String html = run(report(true, true, expected, 10000));
+        assertEquals(expected, ConcurrentQuery.getPeak());
+        assertInOrder(html);
+    }
+
+    @Test
+    public void testSerialReport() throws Exception
+    {
+        String html = run(report(false, false, 2, 100));
+        assertEquals(1, ConcurrentQuery.getPeak());
+        assertInOrder(html);
+    }
+
+    /**
+     * The queries of a nested section which is not parallel are not submitted
+     * with the other queries of the report.
+     */
+    @Test
+    public void testSerialNestedSection() throws Exception
+    {
+        String html = run(report(true, false, 5, 300));
+        assertEquals(Math.min(3, Runtime.getRuntime().availableProcessors()), ConcurrentQuery.getPeak());
+        assertInOrder(html);
+    }
+
+    /**
+     * The component reports, which run concurrently, are in the order of the
+     * retained size of the class loaders.
+     */
+    @Test
+    public void testTopComponents() throws Exception
+    {
+        IResult result = SnapshotQuery.parse("component_report_top -t 0", snapshot).execute(
+                        new VoidProgressListener());
+        assertTrue(result instanceof SectionSpec);
+        List<Spec> children = ((SectionSpec) result).getChildren();
+        assertTrue(children.size() > 1);
+
+        double previous = Double.MAX_VALUE;
+        for (Spec child : children)
+        {
+            IResult report = ((QuerySpec) child).getResult();
+            assertTrue(child.getName(), report instanceof SectionSpec);
+            assertTrue(report.toString(), !((SectionSpec) report).getChildren().isEmpty());
+
+            // "name (12%)"
+            String name = child.getName();
+            double percent = NumberFormat.getPercentInstance().parse(
+                            name.substring(name.lastIndexOf('(') + 1, name.lastIndexOf(')'))).doubleValue();
+            assertTrue(name, percent <= previous);
+            previous = percent;
+        }
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // internal helper
+    // //////////////////////////////////////////////////////////////
+
+    /**
+     * Queries a1, a2 in section A, b and c1, c2 in section C.
+     */
+    private String report(boolean parallel, boolean parallelSectionC, int expected, int timeout)
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append("<section name=\"Parallel\" xmlns=\"http://www.eclipse.org/mat/report.xsd\">\n");
+        buf.append("<param key=\"parallel\" value=\"").append(parallel).append("\" />\n");
+        buf.append("<param key=\"filename_suffix\" value=\"parallel_test\" />\n");
+        buf.append("<section name=\"Section A\">\n");
+        query(buf, "a1", expected, timeout);
+        query(buf, "a2", expected, timeout);
+        buf.append("</section>\n");
+        query(buf, "b", expected, timeout);
+        buf.append("<section name=\"Section C\">\n");
+        buf.append("<param key=\"parallel\" value=\"").append(parallelSectionC).append("\" />\n");
+        query(buf, "c1", expected, timeout);
+        query(buf, "c2", expected, timeout);
+        buf.append("</section>\n");
+        buf.append("</section>\n");
+        return buf.toString();
+    }
+
+    private void query(StringBuilder buf, String name, int expected, int timeout)
+    {
+        buf.append("<query name=\"Query ").append(name).append("\">\n");
+        buf.append("<command>concurrent_test -name ").append(name).append(" -expected ").append(expected)
+                        .append(" -timeout ").append(timeout).append("</command>\n");
+        buf.append("</query>\n");
+    }
+
+    private String run(String report) throws Exception
+    {
+        File directory = TestSnapshots.createGeneratedName("report", null);
+        File spec = new File(directory, "parallel.xml");
+        Writer out = new OutputStreamWriter(new FileOutputStream(spec), "UTF-8");
+        try
+        {
+            out.write(report);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        SnapshotQuery query = SnapshotQuery.lookup("create_report", snapshot);
+        query.setArgument("testSuite", spec);
+        IResult result = query.execute(new VoidProgressListener());
+        File index = ((DisplayFileResult) result).getFile();
+        try
+        {
+            return read(index);
+        }
+        finally
+        {
+            String prefix = snapshot.getSnapshotInfo().getPrefix();
+            new File(prefix.substring(0, prefix.length() - 1) + "_parallel_test.zip").delete();
+        }
+    }
+
+    private static String read(File file) throws IOException
+    {
+        StringBuilder buf = new StringBuilder();
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try
+        {
+            char[] chars = new char[4096];
+            int n;
+            while ((n = in.read(chars)) >= 0)
+                buf.append(chars, 0, n);
+        }
+        finally
+        {
+            in.close();
+        }
+        return buf.toString();
+    }
+
+    private static void assertInOrder(String html)
+    {
+        int position = -1;
+        for (String name : new String[] { "a1", "a2", "b", "c1", "c2" })
+        {
+            int next = html.indexOf("concurrent result " + name);
+            assertTrue(name + " in " + html, next > position);
+            position = next;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a parse which was cancelled continues from the checkpoint, and
+ * only for the same dump and options.
+ */
+public class ParseCheckpointTest
+{
+    /**
+     * Cancels once a file exists and records the sub tasks.
+     */
+    private static class Listener extends VoidProgressListener
+    {
+        final File cancelWhen;
+        final List<String> subTasks = new ArrayList<String>();
+
+        Listener(File cancelWhen)
+        {
+            this.cancelWhen = cancelWhen;
+        }
+
+        @Override
+        public boolean isCanceled()
+        {
+            return cancelWhen != null && cancelWhen.exists();
+        }
+
+        @Override
+        public void subTask(String name)
+        {
+            subTasks.add(name);
+        }
+
+        boolean resumed()
+        {
+            for (String name : subTasks)
+            {
+                if (name.startsWith("Resuming"))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    File dump;
+    String prefix;
+    int numberOfObjects;
+    long retainedHeapSize;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        File directory = TestSnapshots.createGeneratedName("junit", null);
+        File source = TestSnapshots.getResourceFile(TestSnapshots.SUN_JDK6_18_32BIT);
+        dump = new File(directory, source.getName());
+        TestSnapshots.copyFile(source, dump);
+        String name = dump.getName();
+        prefix = new File(directory, name.substring(0, name.lastIndexOf('.') + 1)).getPath();
+
+        // the expected snapshot, parsed from a copy
+        File other = new File(TestSnapshots.createGeneratedName("junit", null), source.getName());
+        TestSnapshots.copyFile(source, other);
+        ISnapshot snapshot = SnapshotFactory.openSnapshot(other, new VoidProgressListener());
+        numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+        retainedHeapSize = totalRetainedHeapSize(snapshot);
+        SnapshotFactory.dispose(snapshot);
+    }
+
+    @Test
+    public void testNoCheckpointAfterParse() throws SnapshotException
+    {
+        Listener listener = new Listener(null);
+        check(open(new HashMap<String, String>(), listener));
+        assertFalse(listener.resumed());
+        assertFalse(checkpoint().exists());
+    }
+
+    @Test
+    public void testResumeAfterParse() throws SnapshotException
+    {
+        // cancelled while removing the garbage
+        cancel(checkpoint());
+        assertTrue(checkpoint().exists());
+
+        Listener listener = new Listener(null);
+        check(open(new HashMap<String, String>(), listener));
+        assertTrue(listener.subTasks.toString(), listener.resumed());
+        assertFalse(checkpoint().exists());
+    }
+
+    @Test
+    public void testResumeDominatorTree() throws SnapshotException
+    {
+        // cancelled while calculating the dominator tree
+        cancel(new File(prefix + "index"));
+        assertTrue(checkpoint().exists());
+
+        Listener listener = new Listener(null);
+        check(open(new HashMap<String, String>(), listener));
+        assertTrue(listener.subTasks.toString(), listener.resumed());
+        assertFalse(checkpoint().exists());
+    }
+
+    @Test
+    public void testOtherOptions() throws SnapshotException
+    {
+        cancel(new File(prefix + "index"));
+
+        Map<String, String> args = new HashMap<String, String>();
+        args.put("keep_unreachable_objects", "true");
+        Listener listener = new Listener(null);
+        ISnapshot snapshot = open(args, listener);
+        try
+        {
+            assertFalse(listener.resumed());
+            assertTrue(snapshot.getSnapshotInfo().getNumberOfObjects() >= numberOfObjects);
+        }
+        finally
+        {
+            SnapshotFactory.dispose(snapshot);
+        }
+        assertFalse(checkpoint().exists());
+    }
+
+    @Test
+    public void testChangedDumpAfterParse() throws SnapshotException
+    {
+        cancel(checkpoint());
+        assertTrue(dump.setLastModified(dump.lastModified() - 2000));
+
+        Listener listener = new Listener(null);
+        check(open(new HashMap<String, String>(), listener));
+        assertFalse(listener.resumed());
+        assertFalse(checkpoint().exists());
+    }
+
+    /**
+     * The index file is older than the dump, so it would be read if it were
+     * not for the checkpoint.
+     */
+    @Test
+    public void testChangedDumpDominatorTree() throws SnapshotException
+    {
+        cancel(new File(prefix + "index"));
+        assertTrue(dump.setLastModified(dump.lastModified() - 2000));
+
+        Listener listener = new Listener(null);
+        check(open(new HashMap<String, String>(), listener));
+        assertFalse(listener.resumed());
+        assertFalse(checkpoint().exists());
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // internal helper
+    // //////////////////////////////////////////////////////////////
+
+    private File checkpoint()
+    {
+        return new File(prefix + "checkpoint.index");
+    }
+
+    private void cancel(File cancelWhen) throws SnapshotException
+    {
+        try
+        {
+            open(new HashMap<String, String>(), new Listener(cancelWhen));
+            assert false : "parse should have been cancelled";
+        }
+        catch (IProgressListener.OperationCanceledException e)
+        {
+            // expected
+        }
+    }
+
+    private ISnapshot open(Map<String, String> args, Listener listener) throws SnapshotException
+    {
+        return SnapshotFactory.openSnapshot(dump, args, listener);
+    }
+
+    private void check(ISnapshot snapshot) throws SnapshotException
+    {
+        try
+        {
+            assertEquals(numberOfObjects, snapshot.getSnapshotInfo().getNumberOfObjects());
+            assertEquals(retainedHeapSize, totalRetainedHeapSize(snapshot));
+        }
+        finally
+        {
+            SnapshotFactory.dispose(snapshot);
+        }
+    }
+
+    private static long totalRetainedHeapSize(ISnapshot snapshot) throws SnapshotException
+    {
+        long total = 0;
+        for (int root : snapshot.getGCRoots())
+            total += snapshot.getRetainedHeapSize(root);
+        return total;
+    }
+}
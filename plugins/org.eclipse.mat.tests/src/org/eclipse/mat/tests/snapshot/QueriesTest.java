@@ -16,17 +16,31 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.internal.snapshot.SnapshotQueryContext;
 import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.ContextProvider;
 import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IContextObjectSet;
+import org.eclipse.mat.query.IResultTable;
 import org.eclipse.mat.query.IResultTree;
+import org.eclipse.mat.query.ResultMetaData;
 import org.eclipse.mat.query.refined.RefinedResultBuilder;
+import org.eclipse.mat.query.refined.RefinedStructuredResult;
 import org.eclipse.mat.query.refined.RefinedTable;
+import org.eclipse.mat.snapshot.ClassHistogramRecord;
 import org.eclipse.mat.snapshot.Histogram;
 import org.eclipse.mat.snapshot.ISnapshot;
 import org.eclipse.mat.snapshot.model.IClass;
 import org.eclipse.mat.snapshot.model.IClassLoader;
 import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.query.RetainedSizeDerivedData;
 import org.eclipse.mat.snapshot.query.SnapshotQuery;
 import org.eclipse.mat.tests.TestSnapshots;
 import org.eclipse.mat.util.VoidProgressListener;
@@ -203,6 +217,54 @@ public class QueriesTest
             prev = val;
         }
     }
+
+    /**
+     * Test that sorting the first rows only gives the rows of a full sort
+     * @throws SnapshotException
+     */
+    @Test
+    public void testTopSorting() throws SnapshotException
+    {
+        SnapshotQuery query = SnapshotQuery.parse(OQL_MIXED_RESULT, snapshot);
+        RefinedResultBuilder builder = query.refine(new VoidProgressListener());
+        builder.setSortOrder(0, Column.SortDirection.DESC);
+        checkTopSorting((RefinedTable) builder.build(), 0);
+
+        query = SnapshotQuery.parse("histogram", snapshot);
+        builder = query.refine(new VoidProgressListener());
+        builder.setSortOrder(new int[] { 2, 0 }, new Column.SortDirection[] { Column.SortDirection.DESC,
+                        Column.SortDirection.ASC });
+        checkTopSorting((RefinedTable) builder.build(), 2);
+    }
+
+    private void checkTopSorting(RefinedTable table, int column)
+    {
+        List<?> sorted = table.getRows();
+        List<Object> rows = new ArrayList<Object>(sorted);
+        Collections.shuffle(rows, new Random(1));
+        int limit = Math.min(20, rows.size() / 2);
+        table.sort(rows, limit);
+
+        assertEquals(sorted.size(), rows.size());
+        for (int i = 0; i < limit; ++i)
+            assertSameValue(table.getColumnValue(sorted.get(i), column), table.getColumnValue(rows.get(i), column));
+
+        table.sort(rows);
+        for (int i = 0; i < rows.size(); ++i)
+            assertSameValue(table.getColumnValue(sorted.get(i), column), table.getColumnValue(rows.get(i), column));
+    }
+
+    /**
+     * Equal numbers of different types, such as an Integer and a Long, sort
+     * in either order.
+     */
+    private void assertSameValue(Object expected, Object actual)
+    {
+        if (expected instanceof Number && actual instanceof Number)
+            assertEquals(((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 0.0);
+        else
+            assertEquals(expected, actual);
+    }
     
     /**
      * Test parsing of multiple arguments
@@ -216,4 +278,185 @@ public class QueriesTest
         assertTrue(t != null);
         assertEquals(17, t.getRowCount());
     }
+
+    /**
+     * Test that precise retained sizes calculated for many rows at the same
+     * time are those calculated one row at a time, and that each row is
+     * reported once
+     * @throws SnapshotException
+     */
+    @Test
+    public void testConcurrentRetainedSizes() throws SnapshotException
+    {
+        List<int[]> objectSets = getObjectSets();
+        RefinedTable table = buildObjectSetsTable(objectSets);
+        List<?> rows = table.getRows();
+        final int reported[] = new int[rows.size()];
+        table.calculate(createProvider(table), RetainedSizeDerivedData.PRECISE, rows,
+                        new RefinedStructuredResult.ICalculationProgress()
+                        {
+                            public void done(int index, Object row)
+                            {
+                                reported[index]++;
+                            }
+                        }, new VoidProgressListener());
+
+        RefinedTable serial = buildObjectSetsTable(objectSets);
+        ContextProvider serialProvider = createProvider(serial);
+        int column = table.getColumns().length - 1;
+        for (int i = 0; i < rows.size(); ++i)
+        {
+            assertEquals(1, reported[i]);
+            // one row, so calculated by the calling thread
+            Object row = rows.get(i);
+            serial.calculate(serialProvider, RetainedSizeDerivedData.PRECISE, Collections.singletonList(row), null,
+                            new VoidProgressListener());
+            Object expected = serial.getColumnValue(row, column);
+            assertNotNull(expected);
+            assertEquals(expected, table.getColumnValue(row, column));
+        }
+    }
+
+    /**
+     * Test that cancelling the calculation of retained sizes skips the rows
+     * which have not started
+     * @throws SnapshotException
+     */
+    @Test
+    public void testCancelConcurrentRetainedSizes() throws SnapshotException, InterruptedException
+    {
+        final RefinedTable table = buildObjectSetsTable(getObjectSets());
+        final VoidProgressListener listener = new VoidProgressListener();
+        final AtomicInteger started = new AtomicInteger();
+        // all rows but the first wait until the calculation is cancelled
+        ContextProvider provider = new ContextProvider((String) null)
+        {
+            @Override
+            public IContextObject getContext(Object row)
+            {
+                if (started.getAndIncrement() > 0)
+                {
+                    try
+                    {
+                        while (!listener.isCanceled())
+                            Thread.sleep(10);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return null;
+                    }
+                }
+                return table.getContext(row);
+            }
+        };
+
+        final int reported[] = new int[1];
+        List<?> rows = table.getRows();
+        table.calculate(provider, RetainedSizeDerivedData.PRECISE, rows,
+                        new RefinedStructuredResult.ICalculationProgress()
+                        {
+                            public void done(int index, Object row)
+                            {
+                                reported[0]++;
+                                listener.setCanceled(true);
+                            }
+                        }, listener);
+
+        assertEquals(1, reported[0]);
+        // give the threads time to start any other rows
+        int previous;
+        do
+        {
+            previous = started.get();
+            Thread.sleep(200);
+        }
+        while (started.get() != previous);
+        // at most the rows started by each thread before the cancellation
+        int threads = Runtime.getRuntime().availableProcessors();
+        assertTrue(started.get() + " of " + rows.size(), started.get() <= Math.min(rows.size(), threads + 1));
+    }
+
+    /**
+     * The instances of each class with more than one instance
+     */
+    private List<int[]> getObjectSets() throws SnapshotException
+    {
+        List<int[]> objectSets = new ArrayList<int[]>();
+        Histogram histogram = snapshot.getHistogram(new VoidProgressListener());
+        for (ClassHistogramRecord record : histogram.getClassHistogramRecords())
+        {
+            if (record.getNumberOfObjects() > 1)
+                objectSets.add(record.getObjectIds());
+        }
+        return objectSets;
+    }
+
+    /**
+     * A table with a row for each object set, so that the retained sizes are
+     * calculated from the object sets and not from a histogram
+     */
+    private RefinedTable buildObjectSetsTable(final List<int[]> objectSets)
+    {
+        IResultTable result = new IResultTable()
+        {
+            public ResultMetaData getResultMetaData()
+            {
+                return null;
+            }
+
+            public Column[] getColumns()
+            {
+                return new Column[] { new Column("Objects", int.class) }; //$NON-NLS-1$
+            }
+
+            public Object getColumnValue(Object row, int columnIndex)
+            {
+                return objectSets.get((Integer) row).length;
+            }
+
+            public IContextObject getContext(final Object row)
+            {
+                return new IContextObjectSet()
+                {
+                    public int getObjectId()
+                    {
+                        return -1;
+                    }
+
+                    public int[] getObjectIds()
+                    {
+                        return objectSets.get((Integer) row);
+                    }
+
+                    public String getOQL()
+                    {
+                        return null;
+                    }
+                };
+            }
+
+            public int getRowCount()
+            {
+                return objectSets.size();
+            }
+
+            public Object getRow(int rowId)
+            {
+                return rowId;
+            }
+        };
+        return (RefinedTable) new RefinedResultBuilder(new SnapshotQueryContext(snapshot), result).build();
+    }
+
+    private static ContextProvider createProvider(final RefinedTable table)
+    {
+        return new ContextProvider((String) null)
+        {
+            @Override
+            public IContextObject getContext(Object row)
+            {
+                return table.getContext(row);
+            }
+        };
+    }
 }
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.query.SnapshotQuery;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.tests.queries.SlowCountQuery;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests which query results are kept by the query result cache.
+ */
+public class QueryResultCacheTest
+{
+    ISnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        snapshot = TestSnapshots.getSnapshot(TestSnapshots.SUN_JDK6_18_32BIT, false);
+        clear();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        clear();
+    }
+
+    @Test
+    public void testRepeatedQuery() throws SnapshotException
+    {
+        int executions = SlowCountQuery.executions;
+        SlowCountQuery.Count first = count("slow_count_test");
+        SlowCountQuery.Count second = count("slow_count_test");
+        assertEquals(executions + 1, SlowCountQuery.executions);
+        assertEquals(snapshot.getSnapshotInfo().getNumberOfObjects(), first.count);
+        assertEquals(first.count, second.count);
+    }
+
+    @Test
+    public void testDifferentArguments() throws SnapshotException
+    {
+        int executions = SlowCountQuery.executions;
+        count("slow_count_test");
+        count("slow_count_test -delay 700");
+        assertEquals(executions + 2, SlowCountQuery.executions);
+    }
+
+    /**
+     * Selections of objects have the same command line, so are not cached.
+     */
+    @Test
+    public void testSelectedObjects() throws SnapshotException
+    {
+        int ids[] = new int[] { 1, 2, 3, 4, 5 };
+        int executions = SlowCountQuery.executions;
+        assertEquals(5, count(ids).count);
+        int first[] = new int[2];
+        System.arraycopy(ids, 0, first, 0, first.length);
+        assertEquals(2, count(first).count);
+        assertEquals(5, count(ids).count);
+        assertEquals(executions + 3, SlowCountQuery.executions);
+    }
+
+    /**
+     * Queries of several threads store and read their results at the same
+     * time.
+     */
+    @Test
+    public void testConcurrentQueries() throws Exception
+    {
+        int executions = SlowCountQuery.executions;
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final int counts[] = new int[8];
+        Thread threads[] = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            final int index = ii;
+            threads[ii] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        String command = "slow_count_test -delay " + (500 + index);
+                        counts[2 * index] = count(command).count;
+                        counts[2 * index + 1] = count(command).count;
+                    }
+                    catch (Throwable e)
+                    {
+                        synchronized (errors)
+                        {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        for (int count : counts)
+            assertEquals(snapshot.getSnapshotInfo().getNumberOfObjects(), count);
+        assertEquals(executions + threads.length, SlowCountQuery.executions);
+
+        // all records can be read again
+        for (int ii = 0; ii < threads.length; ii++)
+            count("slow_count_test -delay " + (500 + ii));
+        assertEquals(executions + threads.length, SlowCountQuery.executions);
+    }
+
+    /**
+     * A query cancelled while running can return a partial result.
+     */
+    @Test
+    public void testCancelled() throws SnapshotException
+    {
+        int executions = SlowCountQuery.executions;
+        IProgressListener listener = new VoidProgressListener();
+        listener.setCanceled(true);
+        SlowCountQuery.Count partial = (SlowCountQuery.Count) SnapshotQuery.parse("slow_count_test", snapshot)
+                        .execute(listener);
+        assertTrue(partial.partial);
+
+        SlowCountQuery.Count complete = count("slow_count_test");
+        assertFalse(complete.partial);
+        count("slow_count_test");
+        assertEquals(executions + 2, SlowCountQuery.executions);
+    }
+
+    @Test
+    public void testClear() throws SnapshotException
+    {
+        int executions = SlowCountQuery.executions;
+        count("slow_count_test");
+        clear();
+        count("slow_count_test");
+        count("slow_count_test");
+        assertEquals(executions + 2, SlowCountQuery.executions);
+    }
+
+    /**
+     * A cache file which cannot be read is deleted and the query executed.
+     */
+    @Test
+    public void testCorruptFile() throws SnapshotException, IOException
+    {
+        int executions = SlowCountQuery.executions;
+        count("slow_count_test");
+        File file = new File(snapshot.getSnapshotInfo().getPrefix() + "results.index");
+        assertTrue(file.exists());
+
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(new byte[] { 0, 0, 0, 100, 1, 2, 3 });
+        }
+        finally
+        {
+            out.close();
+        }
+
+        SlowCountQuery.Count result = count("slow_count_test");
+        assertEquals(snapshot.getSnapshotInfo().getNumberOfObjects(), result.count);
+        count("slow_count_test");
+        assertEquals(executions + 2, SlowCountQuery.executions);
+    }
+
+    private SlowCountQuery.Count count(String command) throws SnapshotException
+    {
+        return (SlowCountQuery.Count) SnapshotQuery.parse(command, snapshot).execute(new VoidProgressListener());
+    }
+
+    private SlowCountQuery.Count count(int ids[]) throws SnapshotException
+    {
+        return (SlowCountQuery.Count) SnapshotQuery.lookup("slow_count_test", snapshot).setArgument("objects", ids)
+                        .execute(new VoidProgressListener());
+    }
+
+    private void clear() throws SnapshotException
+    {
+        SnapshotQuery.parse("clear_result_cache", snapshot).execute(new VoidProgressListener());
+    }
+}
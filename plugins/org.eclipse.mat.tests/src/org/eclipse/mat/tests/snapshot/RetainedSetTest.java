@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.mat.tests.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.collect.ArrayInt;
+import org.eclipse.mat.parser.index.IIndexReader;
+import org.eclipse.mat.parser.internal.snapshot.IncrementalRetainedSet;
+import org.eclipse.mat.parser.internal.snapshot.ObjectMarker;
+import org.eclipse.mat.snapshot.ExcludedReferencesDescriptor;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.tests.TestSnapshots;
+import org.eclipse.mat.util.VoidProgressListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Compares the retained sets taken from the dominator tree with the retained
+ * sets found by marking the whole heap.
+ */
+@RunWith(value = Parameterized.class)
+public class RetainedSetTest
+{
+    /**
+     * The outbound references read through the snapshot.
+     */
+    private static class Outbound implements IIndexReader.IOne2ManyIndex
+    {
+        final ISnapshot snapshot;
+
+        Outbound(ISnapshot snapshot)
+        {
+            this.snapshot = snapshot;
+        }
+
+        public int[] get(int index)
+        {
+            try
+            {
+                return snapshot.getOutboundReferentIds(index);
+            }
+            catch (SnapshotException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public int size()
+        {
+            return snapshot.getSnapshotInfo().getNumberOfObjects();
+        }
+
+        public void unload()
+        {}
+
+        public void close()
+        {}
+
+        public void delete()
+        {}
+    }
+
+    @Parameters
+    public static List<Object[]> data()
+    {
+        return Arrays.asList(new Object[][] { { TestSnapshots.SUN_JDK6_32BIT }, { TestSnapshots.SUN_JDK5_64BIT } });
+    }
+
+    final ISnapshot snapshot;
+
+    public RetainedSetTest(String snapshotName)
+    {
+        snapshot = TestSnapshots.getSnapshot(snapshotName, false);
+    }
+
+    /**
+     * Single objects spread over the heap.
+     */
+    @Test
+    public void testSingleObjects() throws SnapshotException
+    {
+        int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+        int step = Math.max(numberOfObjects / 200, 1);
+        for (int objectId = 0; objectId < numberOfObjects; objectId += step)
+            check(new int[] { objectId });
+    }
+
+    /**
+     * The instances of classes, which often retain each other.
+     */
+    @Test
+    public void testInstancesOfClasses() throws SnapshotException
+    {
+        int checked = 0;
+        for (IClass cls : snapshot.getClasses())
+        {
+            if (cls.getNumberOfObjects() < 2 || checked++ >= 50)
+                continue;
+            check(cls.getObjectIds());
+        }
+        assertTrue(checked > 0);
+    }
+
+    /**
+     * Random groups of a few objects.
+     */
+    @Test
+    public void testRandomGroups() throws SnapshotException
+    {
+        int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+        Random random = new Random(1);
+        for (int ii = 0; ii < 100; ii++)
+        {
+            int[] objectIds = new int[2 + random.nextInt(4)];
+            for (int jj = 0; jj < objectIds.length; jj++)
+                objectIds[jj] = random.nextInt(numberOfObjects);
+            check(objectIds);
+        }
+    }
+
+    /**
+     * The incremental calculation gives up once the retained set is bigger
+     * than allowed.
+     */
+    @Test
+    public void testLimits() throws SnapshotException
+    {
+        List<int[]> groups = new ArrayList<int[]>();
+        for (IClass cls : snapshot.getClasses())
+        {
+            if (cls.getNumberOfObjects() >= 2 && groups.size() < 50)
+                groups.add(cls.getObjectIds());
+        }
+        for (int[] objectIds : groups)
+        {
+            int[] expected = markedRetainedSet(objectIds);
+            int[] retained = new IncrementalRetainedSet(snapshot, expected.length - 1, Integer.MAX_VALUE,
+                            new VoidProgressListener()).calculate(objectIds);
+            assertNull(retained);
+            retained = new IncrementalRetainedSet(snapshot, expected.length, Integer.MAX_VALUE,
+                            new VoidProgressListener()).calculate(objectIds);
+            assertNotNull(retained);
+            assertArrayEquals(expected, retained);
+        }
+    }
+
+    /**
+     * The retained sets with excluded references, as for the retained set
+     * queries with -excludes, compared with the single threaded marking.
+     */
+    @Test
+    public void testExcludedReferences() throws Exception
+    {
+        List<ExcludedReferencesDescriptor[]> excludes = new ArrayList<ExcludedReferencesDescriptor[]>();
+        excludes.add(new ExcludedReferencesDescriptor[] { new ExcludedReferencesDescriptor(
+                        instances("java.lang.ref.Reference"), "referent") });
+        excludes.add(new ExcludedReferencesDescriptor[] { new ExcludedReferencesDescriptor(
+                        instances("java.lang.Thread"), (Set<String>) null) });
+        excludes.add(new ExcludedReferencesDescriptor[] {
+                        new ExcludedReferencesDescriptor(instances("java.util.HashMap$Entry"), "next", "value"),
+                        new ExcludedReferencesDescriptor(instances("java.lang.ref.Reference"), "referent") });
+
+        List<int[]> groups = new ArrayList<int[]>();
+        for (String className : new String[] { "java.util.HashMap", "java.lang.Thread", "java.lang.ClassLoader",
+                        "java.lang.ref.Reference" })
+            groups.add(instances(className));
+        for (IClass cls : snapshot.getClasses())
+        {
+            if (cls.getNumberOfObjects() >= 2 && groups.size() < 20)
+                groups.add(cls.getObjectIds());
+        }
+
+        for (int ii = 0; ii < excludes.size(); ii++)
+        {
+            ExcludedReferencesDescriptor[] excludeSets = excludes.get(ii);
+            for (int jj = 0; jj < groups.size(); jj++)
+            {
+                int[] objectIds = groups.get(jj);
+                if (objectIds.length == 0)
+                    continue;
+                String message = "excludes " + ii + " objects " + jj;
+
+                boolean[] single = initialMarks(objectIds);
+                int count = new ObjectMarker(snapshot.getGCRoots(), single, new Outbound(snapshot),
+                                new VoidProgressListener()).markSingleThreaded(excludeSets, snapshot);
+                boolean[] multi = initialMarks(objectIds);
+                int multiCount = new ObjectMarker(snapshot.getGCRoots(), multi, new Outbound(snapshot),
+                                new VoidProgressListener()).markMultiThreaded(excludeSets, snapshot, 4);
+                assertEquals(message, count, multiCount);
+                assertArrayEquals(message, single, multi);
+
+                int[] retained = snapshot.getRetainedSet(objectIds, excludeSets, new VoidProgressListener());
+                Arrays.sort(retained);
+                assertArrayEquals(message, markedRetainedSet(objectIds, excludeSets), retained);
+            }
+        }
+    }
+
+    // //////////////////////////////////////////////////////////////
+    // internal helper
+    // //////////////////////////////////////////////////////////////
+
+    private int[] instances(String className) throws SnapshotException
+    {
+        ArrayInt objectIds = new ArrayInt();
+        Collection<IClass> classes = snapshot.getClassesByName(className, true);
+        if (classes != null)
+        {
+            for (IClass cls : classes)
+                objectIds.addAll(cls.getObjectIds());
+        }
+        return objectIds.toArray();
+    }
+
+    private boolean[] initialMarks(int[] objectIds)
+    {
+        boolean[] marks = new boolean[snapshot.getSnapshotInfo().getNumberOfObjects()];
+        for (int objectId : objectIds)
+            marks[objectId] = true;
+        return marks;
+    }
+
+    /**
+     * The retained set with excluded references found single threaded, as
+     * {@link ISnapshot#getRetainedSet(int[], ExcludedReferencesDescriptor[], org.eclipse.mat.util.IProgressListener)}
+     * does: the objects not reachable from the GC roots without going
+     * through the given objects or the excluded references, but reachable
+     * from the given objects.
+     */
+    private int[] markedRetainedSet(int[] objectIds, ExcludedReferencesDescriptor[] excludeSets)
+                    throws SnapshotException
+    {
+        boolean[] firstPass = initialMarks(objectIds);
+        new ObjectMarker(snapshot.getGCRoots(), firstPass, new Outbound(snapshot), new VoidProgressListener())
+                        .markSingleThreaded(excludeSets, snapshot);
+        for (int objectId : objectIds)
+            firstPass[objectId] = false;
+
+        boolean[] secondPass = firstPass.clone();
+        new ObjectMarker(objectIds, secondPass, new Outbound(snapshot), new VoidProgressListener())
+                        .markSingleThreaded();
+
+        ArrayInt retained = new ArrayInt();
+        for (int ii = 0; ii < firstPass.length; ii++)
+        {
+            if (!firstPass[ii] && secondPass[ii])
+                retained.add(ii);
+        }
+        return retained.toArray();
+    }
+
+    private void check(int[] objectIds) throws SnapshotException
+    {
+        int[] expected = markedRetainedSet(objectIds);
+
+        int[] retained = snapshot.getRetainedSet(objectIds, new VoidProgressListener());
+        Arrays.sort(retained);
+        assertArrayEquals(Arrays.toString(objectIds), expected, retained);
+
+        retained = new IncrementalRetainedSet(snapshot, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                        new VoidProgressListener()).calculate(objectIds);
+        assertArrayEquals(Arrays.toString(objectIds), expected, retained);
+    }
+
+    /**
+     * The retained set found as by the single threaded marking of the
+     * snapshot: all objects not reachable from the GC roots without going
+     * through the given objects.
+     */
+    private int[] markedRetainedSet(int[] objectIds) throws SnapshotException
+    {
+        int numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+        boolean[] reachable = new boolean[numberOfObjects];
+        for (int objectId : objectIds)
+            reachable[objectId] = true;
+        new ObjectMarker(snapshot.getGCRoots(), reachable, new Outbound(snapshot), new VoidProgressListener())
+                        .markSingleThreaded();
+        for (int objectId : objectIds)
+            reachable[objectId] = false;
+
+        ArrayInt retained = new ArrayInt();
+        for (int ii = 0; ii < numberOfObjects; ii++)
+        {
+            if (!reachable[ii])
+                retained.add(ii);
+        }
+        return retained.toArray();
+    }
+}
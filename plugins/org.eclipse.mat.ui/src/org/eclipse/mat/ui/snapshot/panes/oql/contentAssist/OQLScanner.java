@@ -53,6 +53,8 @@ public class OQLScanner extends RuleBasedScanner
         wr.addWord("FROM", tKeyWord); //$NON-NLS-1$
         wr.addWord("WHERE", tKeyWord); //$NON-NLS-1$
         wr.addWord("UNION", tKeyWord); //$NON-NLS-1$
+        wr.addWord("GROUP", tKeyWord); //$NON-NLS-1$
+        wr.addWord("BY", tKeyWord); //$NON-NLS-1$
         
         wr.addWord("DISTINCT", tKeyWord); //$NON-NLS-1$
         wr.addWord("INSTANCEOF", tKeyWord); //$NON-NLS-1$